@@ -0,0 +1,179 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tap4j.codec.TestSetCodec;
+import org.tap4j.model.TestSet;
+import org.tap4j.parser.Tap13Parser;
+
+/**
+ * Compares the ways of storing a test set between two stages of a pipeline:
+ * the {@link TestSetCodec}, Java serialization, and the TAP Stream parsed
+ * again with the {@link Tap13Parser}.
+ *
+ * @since 4.2.1
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CodecBenchmark {
+
+    /**
+     * Shape of the TAP Stream: flat, nested (deeply nested subtests) or yaml
+     * (a YAML diagnostic for every test result).
+     */
+    @Param({ "flat", "nested", "yaml" })
+    private String shape;
+
+    /**
+     * Number of test results of the TAP Stream.
+     */
+    @Param({ "10000" })
+    private int testResults;
+
+    /**
+     * Depth of the nested subtests.
+     */
+    @Param({ "50" })
+    private int depth;
+
+    /**
+     * Whether the codec writes the diagnostics as their raw YAML.
+     */
+    @Param({ "false", "true" })
+    private boolean rawDiagnostics;
+
+    /**
+     * TAP Stream.
+     */
+    private String tapStream;
+
+    /**
+     * Test set parsed from the TAP Stream.
+     */
+    private TestSet testSet;
+
+    /**
+     * Codec.
+     */
+    private TestSetCodec codec;
+
+    /**
+     * Test set encoded by the codec.
+     */
+    private byte[] encoded;
+
+    /**
+     * Test set serialized.
+     */
+    private byte[] serialized;
+
+    /**
+     * Generates and parses the TAP Stream, and encodes the test set both ways.
+     *
+     * @throws IOException if the test set cannot be serialized
+     */
+    @Setup
+    public void setUp() throws IOException {
+        tapStream = ParserBenchmark.generate(shape, testResults, depth);
+        testSet = new Tap13Parser("UTF-8", true).parseTapStream(tapStream);
+        codec = new TestSetCodec(rawDiagnostics);
+        encoded = codec.encode(testSet);
+        serialized = serialize();
+    }
+
+    /**
+     * @return test set encoded, consumed by JMH
+     */
+    @Benchmark
+    public byte[] encode() {
+        return codec.encode(testSet);
+    }
+
+    /**
+     * @return test set decoded, consumed by JMH
+     */
+    @Benchmark
+    public TestSet decode() {
+        return codec.decode(encoded);
+    }
+
+    /**
+     * @return test set serialized, consumed by JMH
+     * @throws IOException if the test set cannot be serialized
+     */
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final ObjectOutputStream oos = new ObjectOutputStream(out);
+        oos.writeObject(testSet);
+        oos.close();
+        return out.toByteArray();
+    }
+
+    /**
+     * @return test set deserialized, consumed by JMH
+     * @throws IOException if the test set cannot be deserialized
+     * @throws ClassNotFoundException if a class of the test set is missing
+     */
+    @Benchmark
+    public Object deserialize() throws IOException, ClassNotFoundException {
+        final ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(serialized));
+        try {
+            return ois.readObject();
+        } finally {
+            ois.close();
+        }
+    }
+
+    /**
+     * @return test set parsed again from the TAP Stream, consumed by JMH
+     */
+    @Benchmark
+    public TestSet parse() {
+        return new Tap13Parser("UTF-8", true).parseTapStream(tapStream);
+    }
+
+}
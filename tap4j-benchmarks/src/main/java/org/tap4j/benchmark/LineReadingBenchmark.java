@@ -0,0 +1,127 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.benchmark;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.tap4j.parser.TapLineReader;
+
+/**
+ * Compares the way {@link org.tap4j.parser.Tap13Parser} splits a TAP Stream
+ * into lines and filters the cursor control sequences: a {@link Scanner} with
+ * a regular expression replacement on every line, as done up to 4.2.0, and a
+ * {@link TapLineReader} that filters only the lines containing an ESC.
+ *
+ * @since 4.2.1
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LineReadingBenchmark {
+
+    /**
+     * Cursor related control sequences, ESC[?25l and ESC[?25h.
+     */
+    private static final Pattern CURSOR_CONTROL = Pattern.compile("\u001B\\[\\?25[lh]");
+
+    /**
+     * Number of lines of the TAP Stream.
+     */
+    @Param({ "1000000" })
+    private int lines;
+
+    /**
+     * TAP Stream.
+     */
+    private String tapStream;
+
+    /**
+     * Generates the TAP Stream.
+     */
+    @Setup
+    public void setUp() {
+        tapStream = TapStreamGenerator.flat(lines - 2);
+    }
+
+    /**
+     * Lines read by a {@link Scanner}, filtered with
+     * {@link String#replaceAll(String, String)}.
+     *
+     * @param blackhole blackhole
+     */
+    @Benchmark
+    public void scanner(Blackhole blackhole) {
+        Scanner scanner = new Scanner(new StringReader(tapStream));
+        try {
+            while (scanner.hasNextLine()) {
+                blackhole.consume(scanner.nextLine().replaceAll("\u001B\\[\\?25[lh]", ""));
+            }
+        } finally {
+            scanner.close();
+        }
+    }
+
+    /**
+     * Lines read by a {@link TapLineReader}, filtered only when they contain
+     * an ESC.
+     *
+     * @param blackhole blackhole
+     * @throws IOException never, the stream is in memory
+     */
+    @Benchmark
+    public void tapLineReader(Blackhole blackhole) throws IOException {
+        TapLineReader reader = new TapLineReader(new StringReader(tapStream));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.indexOf('\u001B') >= 0) {
+                    line = CURSOR_CONTROL.matcher(line).replaceAll("");
+                }
+                blackhole.consume(line);
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+}
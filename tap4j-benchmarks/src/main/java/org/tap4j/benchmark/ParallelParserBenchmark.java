@@ -0,0 +1,141 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.benchmark;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tap4j.model.TestSet;
+import org.tap4j.parser.ParallelTap13Parser;
+import org.tap4j.parser.Tap13Parser;
+
+/**
+ * Measures how {@link ParallelTap13Parser} scales with the number of threads,
+ * compared with {@link Tap13Parser} on the same streams.
+ *
+ * @since 4.2.1
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParallelParserBenchmark {
+
+    /**
+     * Shape of the TAP Stream: flat or yaml (a YAML diagnostic for every test
+     * result).
+     */
+    @Param({ "flat", "yaml" })
+    private String shape;
+
+    /**
+     * Number of test results of the TAP Stream.
+     */
+    @Param({ "200000" })
+    private int testResults;
+
+    /**
+     * Number of threads of the executor.
+     */
+    @Param({ "1", "2", "4", "8", "16" })
+    private int threads;
+
+    /**
+     * TAP Stream.
+     */
+    private String tapStream;
+
+    /**
+     * Executor of the parallel parser.
+     */
+    private ExecutorService executor;
+
+    /**
+     * Parallel parser.
+     */
+    private ParallelTap13Parser parallelParser;
+
+    /**
+     * Sequential parser.
+     */
+    private Tap13Parser parser;
+
+    /**
+     * Generates the TAP Stream and starts the threads.
+     */
+    @Setup
+    public void setUp() {
+        tapStream = ParserBenchmark.generate(shape, testResults, 0);
+        executor = Executors.newFixedThreadPool(threads);
+        parallelParser = new ParallelTap13Parser("UTF-8", true, executor);
+        parallelParser.setUseTokenizer(true);
+        parser = new Tap13Parser("UTF-8", true);
+        parser.setUseTokenizer(true);
+    }
+
+    /**
+     * Stops the threads.
+     */
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Parses the TAP Stream with the parallel parser.
+     *
+     * @return test set, consumed by JMH
+     */
+    @Benchmark
+    public TestSet parallel() {
+        return parallelParser.parseTapStream(tapStream);
+    }
+
+    /**
+     * Parses the TAP Stream with the sequential parser, which does not depend
+     * on the number of threads.
+     *
+     * @return test set, consumed by JMH
+     */
+    @Benchmark
+    public TestSet sequential() {
+        return parser.parseTapStream(tapStream);
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tap4j.model.TestSet;
+import org.tap4j.parser.Tap13Parser;
+
+/**
+ * Measures the memory allocated for each line of a flat TAP Stream. One
+ * operation is one line, so with the GC profiler
+ * (<code>-prof gc</code>) <code>gc.alloc.rate.norm</code> is the number of
+ * bytes allocated per parsed line.
+ *
+ * @since 4.2.1
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParseAllocationBenchmark {
+
+    /**
+     * Number of test results of the TAP Stream.
+     */
+    private static final int TEST_RESULTS = 10000;
+
+    /**
+     * Number of lines of the TAP Stream: header, plan and test results.
+     */
+    private static final int LINES = TEST_RESULTS + 2;
+
+    /**
+     * TAP Stream.
+     */
+    private String tapStream;
+
+    /**
+     * Parser.
+     */
+    private Tap13Parser parser;
+
+    /**
+     * Generates the TAP Stream.
+     */
+    @Setup
+    public void setUp() {
+        tapStream = TapStreamGenerator.flat(TEST_RESULTS);
+        parser = new Tap13Parser("UTF-8", true);
+    }
+
+    /**
+     * Parses the TAP Stream.
+     *
+     * @return test set, consumed by JMH
+     */
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public TestSet parseTapStream() {
+        return parser.parseTapStream(tapStream);
+    }
+
+}
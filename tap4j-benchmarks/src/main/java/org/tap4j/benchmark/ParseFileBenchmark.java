@@ -0,0 +1,130 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tap4j.parser.DefaultTapEventHandler;
+import org.tap4j.parser.Tap13Parser;
+
+/**
+ * Compares {@link Tap13Parser#parseFile(File, org.tap4j.parser.TapEventHandler)}
+ * reading the file through a reader and memory mapping it. The elements are
+ * passed to a handler that discards them, so that building the test set does
+ * not hide the cost of reading.
+ *
+ * @since 4.2.1
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParseFileBenchmark {
+
+    /**
+     * Number of test results of the TAP File.
+     */
+    @Param({ "1000000" })
+    private int testResults;
+
+    /**
+     * TAP File.
+     */
+    private File tapFile;
+
+    /**
+     * Parser reading through a reader.
+     */
+    private Tap13Parser readerParser;
+
+    /**
+     * Parser memory mapping the file.
+     */
+    private Tap13Parser mappedParser;
+
+    /**
+     * Writes the TAP File.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    @Setup
+    public void setUp() throws IOException {
+        tapFile = File.createTempFile("tap4j-benchmark", ".tap");
+        Writer writer = new OutputStreamWriter(new FileOutputStream(tapFile), "UTF-8");
+        try {
+            writer.write(TapStreamGenerator.flat(testResults));
+        } finally {
+            writer.close();
+        }
+        readerParser = new Tap13Parser();
+        readerParser.setUseTokenizer(true);
+        mappedParser = new Tap13Parser();
+        mappedParser.setUseTokenizer(true);
+        mappedParser.setUseMemoryMapping(true);
+    }
+
+    /**
+     * Deletes the TAP File.
+     */
+    @TearDown
+    public void tearDown() {
+        tapFile.delete();
+    }
+
+    /**
+     * File read through an {@link java.io.InputStreamReader}.
+     */
+    @Benchmark
+    public void reader() {
+        readerParser.parseFile(tapFile, new DefaultTapEventHandler());
+    }
+
+    /**
+     * File memory mapped.
+     */
+    @Benchmark
+    public void mapped() {
+        mappedParser.parseFile(tapFile, new DefaultTapEventHandler());
+    }
+
+}
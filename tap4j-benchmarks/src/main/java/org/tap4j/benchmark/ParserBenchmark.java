@@ -0,0 +1,138 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tap4j.model.TestSet;
+import org.tap4j.parser.Tap13Parser;
+
+/**
+ * Measures {@link Tap13Parser#parseTapStream(String)} on synthetic streams of
+ * different shapes.
+ *
+ * @since 4.2.1
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParserBenchmark {
+
+    /**
+     * Shape of the TAP Stream: flat, nested (deeply nested subtests) or yaml
+     * (a YAML diagnostic for every test result).
+     */
+    @Param({ "flat", "nested", "yaml" })
+    private String shape;
+
+    /**
+     * Number of test results of the TAP Stream.
+     */
+    @Param({ "10000" })
+    private int testResults;
+
+    /**
+     * Depth of the nested subtests.
+     */
+    @Param({ "50" })
+    private int depth;
+
+    /**
+     * Whether lines are classified with the tokenizer.
+     */
+    @Param({ "false", "true" })
+    private boolean useTokenizer;
+
+    /**
+     * Whether YAML diagnostics are parsed only when accessed, which they
+     * never are here.
+     */
+    @Param({ "false", "true" })
+    private boolean lazyDiagnostics;
+
+    /**
+     * TAP Stream.
+     */
+    private String tapStream;
+
+    /**
+     * Parser.
+     */
+    private Tap13Parser parser;
+
+    /**
+     * Generates the TAP Stream.
+     */
+    @Setup
+    public void setUp() {
+        tapStream = generate(shape, testResults, depth);
+        parser = new Tap13Parser("UTF-8", true);
+        parser.setUseTokenizer(useTokenizer);
+        parser.setLazyDiagnostics(lazyDiagnostics);
+    }
+
+    /**
+     * @param shape shape of the TAP Stream
+     * @param testResults number of test results
+     * @param depth depth of the nested subtests
+     * @return TAP Stream
+     */
+    static String generate(String shape, int testResults, int depth) {
+        if ("flat".equals(shape)) {
+            return TapStreamGenerator.flat(testResults);
+        } else if ("nested".equals(shape)) {
+            return TapStreamGenerator.nested(testResults, depth);
+        } else if ("yaml".equals(shape)) {
+            return TapStreamGenerator.yamlHeavy(testResults);
+        } else if ("flatYaml".equals(shape)) {
+            return TapStreamGenerator.flatYaml(testResults);
+        }
+        throw new IllegalArgumentException("Unknown shape: " + shape);
+    }
+
+    /**
+     * Parses the TAP Stream.
+     *
+     * @return test set, consumed by JMH
+     */
+    @Benchmark
+    public TestSet parseTapStream() {
+        return parser.parseTapStream(tapStream);
+    }
+
+}
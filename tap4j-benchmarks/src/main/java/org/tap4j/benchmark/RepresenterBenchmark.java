@@ -0,0 +1,187 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.benchmark;
+
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.tap4j.model.TestSet;
+import org.tap4j.parser.Tap13Parser;
+import org.tap4j.representer.DumperOptions;
+import org.tap4j.representer.Tap13Representer;
+import org.tap4j.representer.TapJunitRepresenter;
+
+/**
+ * Measures the representers, on test sets parsed from synthetic streams, and
+ * a round trip parsing a stream and representing it again.
+ *
+ * @since 4.2.1
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RepresenterBenchmark {
+
+    /**
+     * Shape of the TAP Stream, see {@link ParserBenchmark}.
+     */
+    @Param({ "flat", "nested", "yaml", "flatYaml" })
+    private String shape;
+
+    /**
+     * Number of test results of the TAP Stream.
+     */
+    @Param({ "10000" })
+    private int testResults;
+
+    /**
+     * Depth of the nested subtests.
+     */
+    @Param({ "50" })
+    private int depth;
+
+    /**
+     * TAP Stream.
+     */
+    private String tapStream;
+
+    /**
+     * Test set parsed from the TAP Stream.
+     */
+    private TestSet testSet;
+
+    /**
+     * Parser.
+     */
+    private Tap13Parser parser;
+
+    /**
+     * TAP 13 representer printing diagnostics.
+     */
+    private Tap13Representer withDiagnostics;
+
+    /**
+     * TAP 13 representer not printing diagnostics.
+     */
+    private Tap13Representer withoutDiagnostics;
+
+    /**
+     * JUnit representer.
+     */
+    private TapJunitRepresenter junit;
+
+    /**
+     * Generates the TAP Stream and parses it.
+     */
+    @Setup
+    public void setUp() {
+        tapStream = ParserBenchmark.generate(shape, testResults, depth);
+        parser = new Tap13Parser("UTF-8", true);
+        testSet = parser.parseTapStream(tapStream);
+        DumperOptions options = new DumperOptions();
+        options.setPrintDiagnostics(true);
+        withDiagnostics = new Tap13Representer(options);
+        options = new DumperOptions();
+        options.setPrintDiagnostics(false);
+        withoutDiagnostics = new Tap13Representer(options);
+        junit = new TapJunitRepresenter("benchmark");
+    }
+
+    /**
+     * @return TAP Stream, with the diagnostics
+     */
+    @Benchmark
+    public String tap13WithDiagnostics() {
+        return withDiagnostics.representData(testSet);
+    }
+
+    /**
+     * @return TAP Stream, without the diagnostics
+     */
+    @Benchmark
+    public String tap13WithoutDiagnostics() {
+        return withoutDiagnostics.representData(testSet);
+    }
+
+    /**
+     * Streams the TAP Stream, with the diagnostics, to a writer discarding
+     * it, which shows the cost of the representer without the output.
+     *
+     * @param blackhole consumes the characters written
+     */
+    @Benchmark
+    public void tap13ToWriter(final Blackhole blackhole) {
+        withDiagnostics.representData(testSet, new Writer() {
+            @Override
+            public void write(char[] cbuf, int off, int len) {
+                blackhole.consume(cbuf);
+            }
+
+            @Override
+            public void write(String str, int off, int len) {
+                blackhole.consume(str);
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+    }
+
+    /**
+     * @return JUnit XML
+     */
+    @Benchmark
+    public String junit() {
+        return junit.representData(testSet);
+    }
+
+    /**
+     * @return TAP Stream parsed and represented again
+     */
+    @Benchmark
+    public String roundTrip() {
+        return withDiagnostics.representData(parser.parseTapStream(tapStream));
+    }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tap4j.model.TapElement;
+import org.tap4j.model.TapElementFactory;
+import org.tap4j.model.TapElementTokenizer;
+
+/**
+ * Measures the classification of a single TAP line by
+ * {@link TapElementFactory} and {@link TapElementTokenizer}, for each type of
+ * line.
+ *
+ * @since 4.2.1
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TapElementFactoryBenchmark {
+
+    /**
+     * Type of line.
+     */
+    @Param({ "header", "plan", "ok", "notOk", "directive", "comment", "bailOut", "footer", "text", "yaml" })
+    private String lineType;
+
+    /**
+     * TAP line.
+     */
+    private String line;
+
+    /**
+     * Picks the line.
+     */
+    @Setup
+    public void setUp() {
+        if ("header".equals(lineType)) {
+            line = "TAP version 13";
+        } else if ("plan".equals(lineType)) {
+            line = "1..1000";
+        } else if ("ok".equals(lineType)) {
+            line = "ok 42 - test number 42";
+        } else if ("notOk".equals(lineType)) {
+            line = "not ok 43 - test number 43 # expected 1";
+        } else if ("directive".equals(lineType)) {
+            line = "ok 44 - test number 44 # SKIP not supported";
+        } else if ("comment".equals(lineType)) {
+            line = "# tests for the frobnicator";
+        } else if ("bailOut".equals(lineType)) {
+            line = "Bail out! Database is down";
+        } else if ("footer".equals(lineType)) {
+            line = "TAP done";
+        } else if ("text".equals(lineType)) {
+            line = "some output of the tests";
+        } else if ("yaml".equals(lineType)) {
+            line = "  message: 'Assertion failed'";
+        } else {
+            throw new IllegalArgumentException("Unknown line type: " + lineType);
+        }
+    }
+
+    /**
+     * @return element created with regular expressions
+     */
+    @Benchmark
+    public TapElement factory() {
+        return TapElementFactory.createTapElement(line);
+    }
+
+    /**
+     * @return element created by the tokenizer
+     */
+    @Benchmark
+    public TapElement tokenizer() {
+        return TapElementTokenizer.createTapElement(line);
+    }
+
+}
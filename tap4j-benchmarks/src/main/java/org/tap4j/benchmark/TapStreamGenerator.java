@@ -0,0 +1,172 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.benchmark;
+
+/**
+ * Generates synthetic TAP Streams for the benchmarks.
+ *
+ * @since 4.2.1
+ */
+public final class TapStreamGenerator {
+
+    /**
+     * Do not instantiate.
+     */
+    private TapStreamGenerator() {
+        super();
+    }
+
+    /**
+     * Generates a flat TAP Stream, with a plan and test results only, some of
+     * them failing, skipped or commented.
+     *
+     * @param numberOfTestResults number of test results
+     * @return TAP Stream
+     */
+    public static String flat(int numberOfTestResults) {
+        StringBuilder sb = new StringBuilder(numberOfTestResults * 40);
+        sb.append("TAP version 13\n");
+        sb.append("1..").append(numberOfTestResults).append('\n');
+        for (int i = 1; i <= numberOfTestResults; i++) {
+            appendTestResult(sb, "", i);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Generates a TAP Stream with nested subtests. Every level has the same
+     * number of test results, and its first test result owns the next level.
+     *
+     * @param numberOfTestResults total number of test results, spread over the
+     * levels
+     * @param depth number of nested levels below the top level
+     * @return TAP Stream
+     */
+    public static String nested(int numberOfTestResults, int depth) {
+        final int width = Math.max(1, numberOfTestResults / (depth + 1));
+        StringBuilder sb = new StringBuilder(numberOfTestResults * 50);
+        sb.append("TAP version 13\n");
+        appendLevel(sb, "", width, depth);
+        return sb.toString();
+    }
+
+    /**
+     * Generates a TAP Stream where every test result has a YAML diagnostic,
+     * like the ones of failed assertions.
+     *
+     * @param numberOfTestResults number of test results
+     * @return TAP Stream
+     */
+    public static String yamlHeavy(int numberOfTestResults) {
+        StringBuilder sb = new StringBuilder(numberOfTestResults * 200);
+        sb.append("TAP version 13\n");
+        sb.append("1..").append(numberOfTestResults).append('\n');
+        for (int i = 1; i <= numberOfTestResults; i++) {
+            appendTestResult(sb, "", i);
+            sb.append("  ---\n");
+            sb.append("  message: 'Assertion number ").append(i).append(" failed'\n");
+            sb.append("  severity: fail\n");
+            sb.append("  data:\n");
+            sb.append("    got: ").append(i).append('\n');
+            sb.append("    expect: ").append(i + 1).append('\n');
+            sb.append("  at:\n");
+            sb.append("    file: test/example_").append(i % 100).append(".t\n");
+            sb.append("    line: ").append(i % 1000).append('\n');
+            sb.append("  ...\n");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Generates a TAP Stream where every test result has a flat YAML
+     * diagnostic of plain scalars, like the ones of the TestNG and JUnit
+     * extensions.
+     *
+     * @param numberOfTestResults number of test results
+     * @return TAP Stream
+     */
+    public static String flatYaml(int numberOfTestResults) {
+        StringBuilder sb = new StringBuilder(numberOfTestResults * 140);
+        sb.append("TAP version 13\n");
+        sb.append("1..").append(numberOfTestResults).append('\n');
+        for (int i = 1; i <= numberOfTestResults; i++) {
+            appendTestResult(sb, "", i);
+            sb.append("  ---\n");
+            sb.append("  message: Assertion number ").append(i).append(" failed\n");
+            sb.append("  severity: fail\n");
+            sb.append("  file: test/example_").append(i % 100).append(".t\n");
+            sb.append("  line: ").append(i % 1000).append('\n');
+            sb.append("  ...\n");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Appends a level of nested subtests, subtests first as they come before
+     * the test result owning them.
+     *
+     * @param sb builder
+     * @param indentation indentation of the level
+     * @param width number of test results of the level
+     * @param depth number of levels below this one
+     */
+    private static void appendLevel(StringBuilder sb, String indentation, int width, int depth) {
+        sb.append(indentation).append("1..").append(width).append('\n');
+        for (int i = 1; i <= width; i++) {
+            if (i == 1 && depth > 0) {
+                appendLevel(sb, indentation + "    ", width, depth - 1);
+            }
+            appendTestResult(sb, indentation, i);
+        }
+    }
+
+    /**
+     * Appends a test result line.
+     *
+     * @param sb builder
+     * @param indentation indentation of the line
+     * @param testNumber test number
+     */
+    static void appendTestResult(StringBuilder sb, String indentation, int testNumber) {
+        sb.append(indentation);
+        switch (testNumber % 10) {
+        case 3:
+            sb.append("not ok ").append(testNumber).append(" - test number ").append(testNumber);
+            break;
+        case 5:
+            sb.append("ok ").append(testNumber).append(" - test number ").append(testNumber)
+                    .append(" # SKIP not supported");
+            break;
+        case 7:
+            sb.append("ok ").append(testNumber).append(" - test number ").append(testNumber)
+                    .append(" # a comment");
+            break;
+        default:
+            sb.append("ok ").append(testNumber).append(" - test number ").append(testNumber);
+            break;
+        }
+        sb.append('\n');
+    }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tap4j.model.TestResult;
+import org.tap4j.model.TestSet;
+import org.tap4j.util.StatusValues;
+
+/**
+ * Measures building a {@link TestSet} and looking up its Test Results by
+ * number.
+ *
+ * @since 4.2.1
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TestSetBenchmark {
+
+    /**
+     * Number of Test Results in the Test Set.
+     */
+    @Param({ "1000", "500000" })
+    private int testResults;
+
+    /**
+     * Test Set with all the Test Results.
+     */
+    private TestSet testSet;
+
+    /**
+     * Test Results to add.
+     */
+    private TestResult[] results;
+
+    /**
+     * Next Test Number looked up.
+     */
+    private int next = 0;
+
+    /**
+     * Creates the Test Results and the Test Set.
+     */
+    @Setup
+    public void setUp() {
+        results = new TestResult[testResults];
+        testSet = new TestSet();
+        for (int i = 0; i < testResults; i++) {
+            results[i] = new TestResult(StatusValues.OK, i + 1);
+            testSet.addTestResult(results[i]);
+        }
+    }
+
+    /**
+     * @return Test Result looked up by number
+     */
+    @Benchmark
+    public TestResult getTestResult() {
+        next = next % testResults + 1;
+        return testSet.getTestResult(next);
+    }
+
+    /**
+     * @return Test Set built from all the Test Results
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public TestSet addTestResults() {
+        final TestSet built = new TestSet();
+        for (TestResult result : results) {
+            built.addTestResult(result);
+        }
+        return built;
+    }
+
+}
@@ -0,0 +1,152 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.benchmark;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tap4j.util.YamlEngine;
+import org.tap4j.util.YamlishReader;
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.DumperOptions.LineBreak;
+import org.yaml.snakeyaml.Yaml;
+
+/**
+ * Measures the cost of a single YAML diagnostic block: with a new SnakeYAML
+ * instance for every block, as the parser did up to 4.2.0, and with the
+ * instances of the {@link YamlEngine} reused by each thread. Flat blocks are
+ * also read by the {@link YamlishReader}.
+ *
+ * @since 4.2.1
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class YamlBenchmark {
+
+    /**
+     * YAML diagnostic block.
+     */
+    private static final String YAML = "message: 'Assertion number 42 failed'\n"
+            + "severity: fail\n"
+            + "data:\n"
+            + "  got: 42\n"
+            + "  expect: 43\n"
+            + "at:\n"
+            + "  file: test/example_42.t\n"
+            + "  line: 42\n";
+
+    /**
+     * Flat YAML diagnostic block, like the ones of the TestNG listeners.
+     */
+    private static final String FLAT_YAML = "message: TestNG Test testSomething\n"
+            + "severity: High\n"
+            + "source: org.tap4j.SomeTest:testSomething\n"
+            + "datetime: '2014-03-08T12:45:11'\n"
+            + "file: org.tap4j.SomeTest\n"
+            + "line: 42\n"
+            + "name: testSomething\n";
+
+    /**
+     * Diagnostic to dump.
+     */
+    private Map<String, Object> diagnostic;
+
+    /**
+     * Parses the diagnostic to dump.
+     */
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        diagnostic = new LinkedHashMap<String, Object>((Map<String, Object>) new Yaml().load(YAML));
+    }
+
+    /**
+     * @return diagnostic loaded by a new instance
+     */
+    @Benchmark
+    public Object loadNewInstance() {
+        return new Yaml().load(YAML);
+    }
+
+    /**
+     * @return diagnostic loaded by the engine
+     */
+    @Benchmark
+    public Object loadEngine() {
+        return YamlEngine.getDefault().load(YAML);
+    }
+
+    /**
+     * @return flat diagnostic loaded by SnakeYAML
+     */
+    @Benchmark
+    public Object loadFlatEngine() {
+        return YamlEngine.getDefault().load(FLAT_YAML);
+    }
+
+    /**
+     * @return flat diagnostic read without SnakeYAML
+     */
+    @Benchmark
+    public Object loadFlatYamlishReader() {
+        return YamlishReader.read(FLAT_YAML);
+    }
+
+    /**
+     * @return diagnostic dumped by a new instance
+     */
+    @Benchmark
+    public String dumpNewInstance() {
+        final DumperOptions options = new DumperOptions();
+        options.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
+        options.setLineBreak(LineBreak.getPlatformLineBreak());
+        options.setExplicitStart(true);
+        options.setExplicitEnd(true);
+        return new Yaml(options).dump(diagnostic);
+    }
+
+    /**
+     * @return diagnostic dumped by the engine
+     */
+    @Benchmark
+    public String dumpEngine() {
+        return YamlEngine.getDefault().dump(diagnostic);
+    }
+
+}
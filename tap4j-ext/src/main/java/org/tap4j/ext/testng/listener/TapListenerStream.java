@@ -0,0 +1,157 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.ext.testng.listener;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.tap4j.ext.testng.util.TapTestNGUtil;
+import org.tap4j.producer.AsyncTapProducer;
+import org.tap4j.producer.StreamingTapProducer;
+import org.tap4j.representer.DumperOptions;
+import org.testng.ITestContext;
+import org.testng.ITestListener;
+import org.testng.ITestResult;
+
+/**
+ * A TestNG test reporter writing a TAP file for every test as its methods
+ * complete, safe to use with parallel methods.
+ *
+ * Unlike the other listeners, it does not keep the results until the end of
+ * the test. The test threads only put each result in the bounded queue of an
+ * {@link AsyncTapProducer}, whose writer thread numbers the results in the
+ * order they complete and writes them in batches. The plan is written at the
+ * end of the file.
+ *
+ * @since 4.2.1
+ */
+public class TapListenerStream implements ITestListener {
+
+    /**
+     * Producer of each running test.
+     */
+    private final Map<ITestContext, AsyncTapProducer> producers
+        = new ConcurrentHashMap<ITestContext, AsyncTapProducer>();
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.testng.ITestListener#onStart(org.testng.ITestContext)
+     */
+    public void onStart(ITestContext testContext) {
+        File output = new File(testContext.getOutputDirectory(),
+                testContext.getName() + ".tap");
+        if (!output.getParentFile().exists()) {
+            output.getParentFile().mkdirs();
+        }
+        DumperOptions options = new DumperOptions();
+        options.setPrintDiagnostics(isYaml());
+        AsyncTapProducer producer = new AsyncTapProducer(
+                new StreamingTapProducer(output, options));
+        producer.begin(null);
+        producers.put(testContext, producer);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.testng.ITestListener#onTestStart(org.testng.ITestResult)
+     */
+    public void onTestStart(ITestResult tr) {
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.testng.ITestListener#onTestSuccess(org.testng.ITestResult)
+     */
+    public void onTestSuccess(ITestResult tr) {
+        emit(tr);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.testng.ITestListener#onTestFailure(org.testng.ITestResult)
+     */
+    public void onTestFailure(ITestResult tr) {
+        emit(tr);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.testng.ITestListener#onTestSkipped(org.testng.ITestResult)
+     */
+    public void onTestSkipped(ITestResult tr) {
+        emit(tr);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.testng.ITestListener#onTestFailedButWithinSuccessPercentage
+     * (org.testng.ITestResult)
+     */
+    public void onTestFailedButWithinSuccessPercentage(ITestResult tr) {
+        emit(tr);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.testng.ITestListener#onFinish(org.testng.ITestContext)
+     */
+    public void onFinish(ITestContext testContext) {
+        AsyncTapProducer producer = producers.remove(testContext);
+        if (producer != null) {
+            producer.end(null);
+        }
+    }
+
+    /**
+     * @return <code>true</code> when output YAML is enabled.
+     */
+    public boolean isYaml() {
+        return false;
+    }
+
+    /**
+     * Queues a TestNG result, numbered when it is written.
+     * 
+     * @param tr TestNG test result
+     */
+    private void emit(ITestResult tr) {
+        ITestContext testContext = tr.getTestContext();
+        AsyncTapProducer producer = producers.get(testContext);
+        if (producer != null) {
+            TapTestNGUtil.fillAttributes(tr, testContext);
+            producer.emit(TapTestNGUtil.generateTAPTestResult(tr, null,
+                    isYaml()));
+        }
+    }
+
+}
@@ -0,0 +1,344 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.codec;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads the primitive values written by a {@link BinaryOutput}. The data is
+ * read one chunk at a time, and never past the empty chunk that ends it.
+ *
+ * @since 4.2.1
+ */
+abstract class BinaryInput {
+
+    /**
+     * Data of the current chunk.
+     */
+    private byte[] buffer = new byte[CodecFormat.CHUNK_SIZE];
+
+    /**
+     * Position of the next byte in the current chunk.
+     */
+    private int position = 0;
+
+    /**
+     * Number of bytes in the current chunk.
+     */
+    private int limit = 0;
+
+    /**
+     * Strings read, by position in the table.
+     */
+    private final List<String> strings = new ArrayList<String>();
+
+    /**
+     * Single byte read outside of the chunks.
+     */
+    private final byte[] single = new byte[1];
+
+    /**
+     * Default constructor.
+     */
+    BinaryInput() {
+        super();
+    }
+
+    /**
+     * Reads bytes from the source.
+     *
+     * @param bytes array receiving the bytes
+     * @param offset position of the first byte in the array
+     * @param length maximum number of bytes
+     * @return the number of bytes read, or <code>-1</code> at the end of the
+     *         source
+     * @throws IOException if an I/O error occurs
+     */
+    protected abstract int read(byte[] bytes, int offset, int length) throws IOException;
+
+    /**
+     * Reads and checks the magic bytes and the version of the format.
+     *
+     * @throws IOException if an I/O error occurs
+     * @throws CodecException if the source does not start with an encoded
+     *         test set of a supported version
+     */
+    void readHeader() throws IOException {
+        for (byte expected : CodecFormat.MAGIC) {
+            if (readRawByte() != (expected & 0xFF)) {
+                throw new CodecException("Not an encoded test set");
+            }
+        }
+        final int version = readRawByte();
+        if (version != CodecFormat.VERSION) {
+            throw new CodecException("Unsupported version of encoded test set: " + version);
+        }
+    }
+
+    /**
+     * Reads the empty chunk ending the data.
+     *
+     * @throws IOException if an I/O error occurs
+     * @throws CodecException if some data was not read
+     */
+    void finish() throws IOException {
+        if (position < limit || readChunkLength() != 0) {
+            throw new CodecException("Unexpected data after the encoded test set");
+        }
+    }
+
+    /**
+     * @return the next byte, from 0 to 255
+     * @throws IOException if an I/O error occurs
+     */
+    int readByte() throws IOException {
+        if (position == limit) {
+            readChunk();
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    /**
+     * @return the next boolean
+     * @throws IOException if an I/O error occurs
+     */
+    boolean readBoolean() throws IOException {
+        return readByte() != 0;
+    }
+
+    /**
+     * @return the next unsigned varint
+     * @throws IOException if an I/O error occurs
+     */
+    int readVarInt() throws IOException {
+        return (int) readVarLong();
+    }
+
+    /**
+     * @return the next unsigned varint
+     * @throws IOException if an I/O error occurs
+     */
+    long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new CodecException("Malformed varint");
+    }
+
+    /**
+     * @return the next zigzag encoded varint
+     * @throws IOException if an I/O error occurs
+     */
+    long readSignedVarLong() throws IOException {
+        final long value = readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * @return the next integer, or <code>null</code>
+     * @throws IOException if an I/O error occurs
+     */
+    Integer readInteger() throws IOException {
+        final long value = readVarLong();
+        if (value == 0) {
+            return null;
+        }
+        return Integer.valueOf((int) (((value - 1) >>> 1) ^ -((value - 1) & 1)));
+    }
+
+    /**
+     * @return the next eight bytes, most significant first
+     * @throws IOException if an I/O error occurs
+     */
+    long readLong() throws IOException {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | readByte();
+        }
+        return value;
+    }
+
+    /**
+     * Reads bytes preceded by their number. The number is not trusted: the
+     * array grows as the bytes are read, so that corrupted data does not
+     * allocate more than twice the bytes it has.
+     *
+     * @return the next bytes, preceded by their number
+     * @throws IOException if an I/O error occurs
+     * @throws CodecException if the data ends before the bytes
+     */
+    byte[] readBytes() throws IOException {
+        final int length = readLength();
+        byte[] bytes = new byte[initialCapacity(length)];
+        for (int i = 0; i < length; i++) {
+            if (i == bytes.length) {
+                bytes = Arrays.copyOf(bytes, grownCapacity(length, i));
+            }
+            bytes[i] = (byte) readByte();
+        }
+        return bytes;
+    }
+
+    /**
+     * @return the next length or number of items
+     * @throws IOException if an I/O error occurs
+     */
+    int readLength() throws IOException {
+        final int length = readVarInt();
+        if (length < 0) {
+            throw new CodecException("Invalid length: " + (length & 0xFFFFFFFFL));
+        }
+        return length;
+    }
+
+    /**
+     * Reads a string, or a reference to a string read before. The length of
+     * a new string is not trusted, as in {@link #readBytes()}.
+     *
+     * @return the next string, or <code>null</code>
+     * @throws IOException if an I/O error occurs
+     * @throws CodecException if the data ends before the string
+     */
+    String readString() throws IOException {
+        final int reference = readVarInt();
+        if (reference == CodecFormat.NULL_REFERENCE) {
+            return null;
+        }
+        if (reference != CodecFormat.NEW_REFERENCE) {
+            final int index = reference - CodecFormat.FIRST_REFERENCE;
+            if (index < 0 || index >= strings.size()) {
+                throw new CodecException("Invalid string reference: " + index);
+            }
+            return strings.get(index);
+        }
+        final int length = readLength();
+        char[] chars = new char[initialCapacity(length)];
+        for (int i = 0; i < length; i++) {
+            if (i == chars.length) {
+                chars = Arrays.copyOf(chars, grownCapacity(length, i));
+            }
+            final int b = readByte();
+            if (b < 0x80) {
+                chars[i] = (char) b;
+            } else if (b < 0xE0) {
+                chars[i] = (char) (((b & 0x1F) << 6) | (readByte() & 0x3F));
+            } else {
+                chars[i] = (char) (((b & 0x0F) << 12) | ((readByte() & 0x3F) << 6) | (readByte() & 0x3F));
+            }
+        }
+        final String value = new String(chars);
+        if (strings.size() < CodecFormat.MAX_STRINGS) {
+            strings.add(value);
+        }
+        return value;
+    }
+
+    /**
+     * @param length number of items announced
+     * @return capacity allocated before reading them: the announced number,
+     *         unless more than the current chunk holds
+     */
+    private int initialCapacity(int length) {
+        return Math.min(length, Math.max(limit - position, CodecFormat.CHUNK_SIZE));
+    }
+
+    /**
+     * @param length number of items announced
+     * @param read number of items read, filling the current capacity
+     * @return capacity for the next items
+     */
+    private static int grownCapacity(int length, int read) {
+        return (int) Math.min(length, 2L * read);
+    }
+
+    /**
+     * Reads the next chunk.
+     *
+     * @throws IOException if an I/O error occurs
+     * @throws CodecException if the data ended
+     */
+    private void readChunk() throws IOException {
+        final int length = readChunkLength();
+        if (length == 0) {
+            throw new CodecException("Unexpected end of the encoded test set");
+        }
+        if (length < 0 || length > CodecFormat.MAX_CHUNK_SIZE) {
+            throw new CodecException("Invalid chunk length: " + (length & 0xFFFFFFFFL));
+        }
+        if (length > buffer.length) {
+            buffer = new byte[length];
+        }
+        int read = 0;
+        while (read < length) {
+            final int n = read(buffer, read, length - read);
+            if (n < 0) {
+                throw new CodecException("Unexpected end of the encoded test set");
+            }
+            read += n;
+        }
+        position = 0;
+        limit = length;
+    }
+
+    /**
+     * @return the length of the next chunk
+     * @throws IOException if an I/O error occurs
+     */
+    private int readChunkLength() throws IOException {
+        int length = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            final int b = readRawByte();
+            length |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return length;
+            }
+        }
+        throw new CodecException("Malformed chunk length");
+    }
+
+    /**
+     * @return the next byte of the source, outside of the chunks
+     * @throws IOException if an I/O error occurs
+     * @throws CodecException at the end of the source
+     */
+    private int readRawByte() throws IOException {
+        int n;
+        do {
+            n = read(single, 0, 1);
+        } while (n == 0);
+        if (n < 0) {
+            throw new CodecException("Unexpected end of the encoded test set");
+        }
+        return single[0] & 0xFF;
+    }
+
+}
@@ -0,0 +1,244 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.codec;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes the primitive values of the binary format: bytes, varints and
+ * strings, buffered in chunks.
+ *
+ * @since 4.2.1
+ */
+abstract class BinaryOutput {
+
+    /**
+     * Data of the current chunk.
+     */
+    private final byte[] buffer = new byte[CodecFormat.CHUNK_SIZE];
+
+    /**
+     * Number of bytes in the current chunk.
+     */
+    private int position = 0;
+
+    /**
+     * Position in the table of every string written.
+     */
+    private final Map<String, Integer> strings = new HashMap<String, Integer>();
+
+    /**
+     * Default constructor.
+     */
+    BinaryOutput() {
+        super();
+    }
+
+    /**
+     * Writes bytes to the destination.
+     *
+     * @param bytes bytes
+     * @param offset position of the first byte
+     * @param length number of bytes
+     * @throws IOException if an I/O error occurs
+     */
+    protected abstract void write(byte[] bytes, int offset, int length) throws IOException;
+
+    /**
+     * Writes the magic bytes and the version of the format.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    void writeHeader() throws IOException {
+        write(CodecFormat.MAGIC, 0, CodecFormat.MAGIC.length);
+        write(new byte[] {(byte) CodecFormat.VERSION }, 0, 1);
+    }
+
+    /**
+     * Writes the last chunk and the empty chunk ending the data.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    void finish() throws IOException {
+        if (position > 0) {
+            writeChunk();
+        }
+        writeChunk();
+    }
+
+    /**
+     * @param value byte to write, as its eight lowest bits
+     * @throws IOException if an I/O error occurs
+     */
+    void writeByte(int value) throws IOException {
+        if (position == buffer.length) {
+            writeChunk();
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    /**
+     * @param value boolean to write
+     * @throws IOException if an I/O error occurs
+     */
+    void writeBoolean(boolean value) throws IOException {
+        writeByte(value ? 1 : 0);
+    }
+
+    /**
+     * Writes an unsigned varint.
+     *
+     * @param value value, negative ones taking five bytes
+     * @throws IOException if an I/O error occurs
+     */
+    void writeVarInt(int value) throws IOException {
+        writeVarLong(value & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Writes an unsigned varint.
+     *
+     * @param value value, negative ones taking ten bytes
+     * @throws IOException if an I/O error occurs
+     */
+    void writeVarLong(long value) throws IOException {
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            writeByte((int) (remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        writeByte((int) remaining);
+    }
+
+    /**
+     * Writes a zigzag encoded varint, so that small negative values take few
+     * bytes.
+     *
+     * @param value value
+     * @throws IOException if an I/O error occurs
+     */
+    void writeSignedVarLong(long value) throws IOException {
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    /**
+     * Writes an integer that may be <code>null</code>.
+     *
+     * @param value value, or <code>null</code>
+     * @throws IOException if an I/O error occurs
+     */
+    void writeInteger(Integer value) throws IOException {
+        if (value == null) {
+            writeByte(0);
+        } else {
+            writeVarLong(((value.longValue() << 1) ^ (value.longValue() >> 63)) + 1);
+        }
+    }
+
+    /**
+     * Writes eight bytes, most significant first.
+     *
+     * @param value value
+     * @throws IOException if an I/O error occurs
+     */
+    void writeLong(long value) throws IOException {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            writeByte((int) (value >>> shift));
+        }
+    }
+
+    /**
+     * @param bytes bytes to write, preceded by their number
+     * @throws IOException if an I/O error occurs
+     */
+    void writeBytes(byte[] bytes) throws IOException {
+        writeVarInt(bytes.length);
+        for (byte b : bytes) {
+            writeByte(b);
+        }
+    }
+
+    /**
+     * Writes a string, or a reference to the same string written before.
+     *
+     * @param value string, or <code>null</code>
+     * @throws IOException if an I/O error occurs
+     */
+    void writeString(String value) throws IOException {
+        if (value == null) {
+            writeByte(CodecFormat.NULL_REFERENCE);
+            return;
+        }
+        final Integer index = strings.get(value);
+        if (index != null) {
+            writeVarInt(index + CodecFormat.FIRST_REFERENCE);
+            return;
+        }
+        if (strings.size() < CodecFormat.MAX_STRINGS) {
+            strings.put(value, strings.size());
+        }
+        writeByte(CodecFormat.NEW_REFERENCE);
+        final int length = value.length();
+        writeVarInt(length);
+        // like UTF-8, but encoding the surrogates one by one, so that any
+        // string is written as is
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+            if (c < 0x80) {
+                writeByte(c);
+            } else if (c < 0x800) {
+                writeByte(0xC0 | (c >> 6));
+                writeByte(0x80 | (c & 0x3F));
+            } else {
+                writeByte(0xE0 | (c >> 12));
+                writeByte(0x80 | ((c >> 6) & 0x3F));
+                writeByte(0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    /**
+     * Writes the current chunk, preceded by its length.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    private void writeChunk() throws IOException {
+        final byte[] length = new byte[5];
+        int size = 0;
+        int remaining = position;
+        while ((remaining & ~0x7F) != 0) {
+            length[size++] = (byte) ((remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        length[size++] = (byte) remaining;
+        write(length, 0, size);
+        if (position > 0) {
+            write(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+}
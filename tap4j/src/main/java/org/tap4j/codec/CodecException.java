@@ -0,0 +1,69 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.codec;
+
+/**
+ * Exception thrown when a test set cannot be encoded or decoded.
+ *
+ * @since 4.2.1
+ */
+public class CodecException extends RuntimeException {
+
+    /**
+     * Serial Version UID.
+     */
+    private static final long serialVersionUID = -6022541731908371648L;
+
+    /**
+     * Default constructor.
+     */
+    public CodecException() {
+        super();
+    }
+
+    /**
+     * Constructor with parameter.
+     *
+     * @param message Exception message
+     * @param cause Exception cause
+     */
+    public CodecException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    /**
+     * @param message Exception message
+     */
+    public CodecException(String message) {
+        super(message);
+    }
+
+    /**
+     * @param cause Exception cause
+     */
+    public CodecException(Throwable cause) {
+        super(cause);
+    }
+
+}
@@ -0,0 +1,286 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.codec;
+
+/**
+ * Constants of the binary format of test sets.
+ *
+ * <p>
+ * An encoded test set starts with the {@link #MAGIC} bytes and the version of
+ * the format, followed by the data in chunks. Each chunk is preceded by its
+ * length as a varint, and an empty chunk ends the test set, so that a decoder
+ * never reads past it.
+ * </p>
+ *
+ * <p>
+ * Integers are written as varints, seven bits per byte, the signed ones
+ * zigzag encoded, and a test number as its difference with the one following
+ * the previous test number. The optional fields of the elements are flagged
+ * in a byte, and only the ones present are written. A string is written
+ * once, and then referred to by its position in the table of the strings
+ * already written. Comments and test sets are written once too, and then
+ * referred to by their position in the table of the shared objects, so that a
+ * comment found both in the lines and in the comments of a test result is
+ * still the same object once decoded.
+ * </p>
+ *
+ * @since 4.2.1
+ */
+final class CodecFormat {
+
+    /**
+     * First bytes of an encoded test set.
+     */
+    static final byte[] MAGIC = { 'T', 'A', 'P', 'B' };
+
+    /**
+     * Version of the format written.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * Size of the chunks written.
+     */
+    static final int CHUNK_SIZE = 8192;
+
+    /**
+     * Maximum size of a chunk accepted by the decoder, larger than the one
+     * written to leave room for other encoders.
+     */
+    static final int MAX_CHUNK_SIZE = 1 << 20;
+
+    /**
+     * Maximum number of strings in the table. Once full, the new strings are
+     * written every time.
+     */
+    static final int MAX_STRINGS = 1 << 16;
+
+    /**
+     * Maximum depth of the diagnostic values encoded natively, deeper ones
+     * being encoded as YAML, and of the subtests.
+     */
+    static final int MAX_DEPTH = 64;
+
+    /**
+     * Reference to <code>null</code>, instead of a string or a shared object.
+     */
+    static final int NULL_REFERENCE = 0;
+
+    /**
+     * Reference to a string or a shared object written next.
+     */
+    static final int NEW_REFERENCE = 1;
+
+    /**
+     * Number of references before the ones to table positions.
+     */
+    static final int FIRST_REFERENCE = 2;
+
+    /**
+     * Flag of a test set with a header.
+     */
+    static final int HAS_HEADER = 1;
+
+    /**
+     * Flag of a test set with a plan.
+     */
+    static final int HAS_PLAN = 2;
+
+    /**
+     * Flag of a test set with a footer.
+     */
+    static final int HAS_FOOTER = 4;
+
+    /**
+     * Line with a test result.
+     */
+    static final int TEST_RESULT = 1;
+
+    /**
+     * Line with a bail out.
+     */
+    static final int BAIL_OUT = 2;
+
+    /**
+     * Line with a comment.
+     */
+    static final int COMMENT = 3;
+
+    /**
+     * Line with text.
+     */
+    static final int TEXT = 4;
+
+    /**
+     * Flag of a line that is also in the list of its type: test results,
+     * bail outs or comments.
+     */
+    static final int LISTED = 8;
+
+    /**
+     * Mask of the status of a test result: 0 for none, or its ordinal plus 1.
+     */
+    static final int STATUS_MASK = 3;
+
+    /**
+     * Shift of the directive of a test result: 0 for none, 1 for a directive
+     * without value, or the ordinal of the value plus 2.
+     */
+    static final int DIRECTIVE_SHIFT = 2;
+
+    /**
+     * Flag of a test result with a test number.
+     */
+    static final int HAS_TEST_NUMBER = 16;
+
+    /**
+     * Flag of a test result with comments.
+     */
+    static final int HAS_COMMENTS = 32;
+
+    /**
+     * Flag of a test result with a subtest.
+     */
+    static final int HAS_SUBTEST = 64;
+
+    /**
+     * Flag of an element with an indentation.
+     */
+    static final int HAS_INDENTATION = 1;
+
+    /**
+     * Flag of an element with a comment.
+     */
+    static final int HAS_COMMENT = 2;
+
+    /**
+     * Flag of an element with a raw diagnostic.
+     */
+    static final int HAS_RAW_DIAGNOSTIC = 4;
+
+    /**
+     * Shift of the type of the diagnostic of an element.
+     */
+    static final int DIAGNOSTIC_SHIFT = 3;
+
+    /**
+     * Element without diagnostic.
+     */
+    static final int NO_DIAGNOSTIC = 0;
+
+    /**
+     * Diagnostic encoded natively.
+     */
+    static final int NATIVE_DIAGNOSTIC = 1;
+
+    /**
+     * Diagnostic encoded as YAML.
+     */
+    static final int YAML_DIAGNOSTIC = 2;
+
+    /**
+     * Diagnostic to parse from the raw YAML of the element, replaced by an
+     * error message if the YAML is corrupted.
+     */
+    static final int RAW_DIAGNOSTIC = 3;
+
+    /**
+     * Diagnostic to parse from the raw YAML of the element, raising a parser
+     * error if the YAML is corrupted.
+     */
+    static final int STRICT_RAW_DIAGNOSTIC = 4;
+
+    /**
+     * <code>null</code> diagnostic value.
+     */
+    static final int NULL = 0;
+
+    /**
+     * String diagnostic value.
+     */
+    static final int STRING = 1;
+
+    /**
+     * <code>false</code> diagnostic value.
+     */
+    static final int FALSE = 2;
+
+    /**
+     * <code>true</code> diagnostic value.
+     */
+    static final int TRUE = 3;
+
+    /**
+     * Integer diagnostic value.
+     */
+    static final int INTEGER = 4;
+
+    /**
+     * Long diagnostic value.
+     */
+    static final int LONG = 5;
+
+    /**
+     * Double diagnostic value.
+     */
+    static final int DOUBLE = 6;
+
+    /**
+     * Big integer diagnostic value.
+     */
+    static final int BIG_INTEGER = 7;
+
+    /**
+     * Date diagnostic value.
+     */
+    static final int DATE = 8;
+
+    /**
+     * Binary diagnostic value.
+     */
+    static final int BINARY = 9;
+
+    /**
+     * List diagnostic value.
+     */
+    static final int LIST = 10;
+
+    /**
+     * Set diagnostic value.
+     */
+    static final int SET = 11;
+
+    /**
+     * Map diagnostic value.
+     */
+    static final int MAP = 12;
+
+    /**
+     * Do not instantiate.
+     */
+    private CodecFormat() {
+        super();
+    }
+
+}
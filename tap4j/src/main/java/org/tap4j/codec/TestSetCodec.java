@@ -0,0 +1,232 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import org.tap4j.model.TestSet;
+
+/**
+ * Encodes test sets in a compact binary format, and decodes them, much faster
+ * than with Java serialization or by parsing their TAP Stream again.
+ *
+ * <p>
+ * Test numbers and other integers are written as varints, and repeated
+ * strings, such as directive reasons or the keys of the diagnostics, are
+ * written once and then referred to. The diagnostics are written natively
+ * unless they hold values other than the ones SnakeYAML creates, in which
+ * case they are written as YAML. With {@link #setRawDiagnostics(boolean)},
+ * the lazy diagnostics of the parsed elements are instead written as their
+ * raw YAML, without parsing it, and parsed again only when accessed once
+ * decoded. A corrupted YAML is then either replaced by an error message or
+ * raises a {@link org.tap4j.parser.ParserException}, as it did with the
+ * parser that created the diagnostic.
+ * </p>
+ *
+ * <p>
+ * The data starts with a version header, and is written in chunks ending
+ * with an empty one, so that a decoder never reads past the end of a test
+ * set: several test sets can follow each other in the same stream. The test
+ * sets decoded are equal to the ones encoded, except that their elements are
+ * of the standard classes, and their diagnostic maps are
+ * {@link java.util.LinkedHashMap}s.
+ * </p>
+ *
+ * <p>
+ * Instances of this class are safe to use from many threads.
+ * </p>
+ *
+ * @since 4.2.1
+ */
+public class TestSetCodec {
+
+    /**
+     * Version of the format written.
+     */
+    public static final int FORMAT_VERSION = CodecFormat.VERSION;
+
+    /**
+     * Whether the diagnostics are written as their raw YAML when there is one.
+     */
+    private volatile boolean rawDiagnostics = false;
+
+    /**
+     * Default constructor.
+     */
+    public TestSetCodec() {
+        super();
+    }
+
+    /**
+     * @param rawDiagnostics whether the diagnostics are written as their raw
+     *        YAML when there is one
+     */
+    public TestSetCodec(boolean rawDiagnostics) {
+        super();
+        this.rawDiagnostics = rawDiagnostics;
+    }
+
+    /**
+     * @return whether the diagnostics are written as their raw YAML when
+     *         there is one
+     */
+    public boolean isRawDiagnostics() {
+        return rawDiagnostics;
+    }
+
+    /**
+     * Sets whether the diagnostics are written as their raw YAML when there is
+     * one. This is faster, as the YAML of the parsed elements does not have to
+     * be parsed. A diagnostic that may have been changed or iterated since it
+     * was parsed is written as usual.
+     *
+     * @param rawDiagnostics whether the diagnostics are written as their raw
+     *        YAML when there is one
+     */
+    public void setRawDiagnostics(boolean rawDiagnostics) {
+        this.rawDiagnostics = rawDiagnostics;
+    }
+
+    /**
+     * Encodes a test set to a stream. The stream is neither flushed nor
+     * closed.
+     *
+     * @param testSet test set
+     * @param out stream
+     * @throws CodecException if the test set holds elements that cannot be
+     *         encoded, or if an I/O error occurs
+     */
+    public void encode(TestSet testSet, final OutputStream out) {
+        try {
+            new TestSetEncoder(new BinaryOutput() {
+                @Override
+                protected void write(byte[] bytes, int offset, int length) throws IOException {
+                    out.write(bytes, offset, length);
+                }
+            }, rawDiagnostics).encode(testSet);
+        } catch (IOException e) {
+            throw new CodecException("Error encoding test set: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Encodes a test set to a buffer, from its position.
+     *
+     * @param testSet test set
+     * @param buffer buffer
+     * @throws java.nio.BufferOverflowException if the buffer is too small
+     * @throws CodecException if the test set holds elements that cannot be
+     *         encoded
+     */
+    public void encode(TestSet testSet, final ByteBuffer buffer) {
+        try {
+            new TestSetEncoder(new BinaryOutput() {
+                @Override
+                protected void write(byte[] bytes, int offset, int length) {
+                    buffer.put(bytes, offset, length);
+                }
+            }, rawDiagnostics).encode(testSet);
+        } catch (IOException e) {
+            throw new CodecException("Error encoding test set: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Encodes a test set.
+     *
+     * @param testSet test set
+     * @return encoded test set
+     * @throws CodecException if the test set holds elements that cannot be
+     *         encoded
+     */
+    public byte[] encode(TestSet testSet) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encode(testSet, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes a test set from a stream. The stream is read up to the end of
+     * the test set, and not closed.
+     *
+     * @param in stream
+     * @return test set
+     * @throws CodecException if the stream does not hold an encoded test set,
+     *         or if an I/O error occurs
+     */
+    public TestSet decode(final InputStream in) {
+        try {
+            return new TestSetDecoder(new BinaryInput() {
+                @Override
+                protected int read(byte[] bytes, int offset, int length) throws IOException {
+                    return in.read(bytes, offset, length);
+                }
+            }).decode();
+        } catch (IOException e) {
+            throw new CodecException("Error decoding test set: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Decodes a test set from a buffer, from its position. Once decoded, the
+     * position of the buffer is the end of the test set.
+     *
+     * @param buffer buffer
+     * @return test set
+     * @throws CodecException if the buffer does not hold an encoded test set
+     */
+    public TestSet decode(final ByteBuffer buffer) {
+        try {
+            return new TestSetDecoder(new BinaryInput() {
+                @Override
+                protected int read(byte[] bytes, int offset, int length) {
+                    final int n = Math.min(length, buffer.remaining());
+                    if (n == 0) {
+                        return -1;
+                    }
+                    buffer.get(bytes, offset, n);
+                    return n;
+                }
+            }).decode();
+        } catch (IOException e) {
+            throw new CodecException("Error decoding test set: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Decodes a test set.
+     *
+     * @param data encoded test set
+     * @return test set
+     * @throws CodecException if the data is not an encoded test set
+     */
+    public TestSet decode(byte[] data) {
+        return decode(ByteBuffer.wrap(data));
+    }
+
+}
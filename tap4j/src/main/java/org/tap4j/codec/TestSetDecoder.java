@@ -0,0 +1,414 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.codec;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.tap4j.model.BailOut;
+import org.tap4j.model.Comment;
+import org.tap4j.model.Directive;
+import org.tap4j.model.Footer;
+import org.tap4j.model.Header;
+import org.tap4j.model.Plan;
+import org.tap4j.model.SkipPlan;
+import org.tap4j.model.TapElement;
+import org.tap4j.model.TestResult;
+import org.tap4j.model.TestSet;
+import org.tap4j.model.Text;
+import org.tap4j.parser.LazyDiagnostic;
+import org.tap4j.util.DirectiveValues;
+import org.tap4j.util.StatusValues;
+import org.tap4j.util.YamlEngine;
+
+/**
+ * Reads a test set written by a {@link TestSetEncoder}.
+ *
+ * @since 4.2.1
+ */
+final class TestSetDecoder {
+
+    /**
+     * Status values, by ordinal.
+     */
+    private static final StatusValues[] STATUSES = StatusValues.values();
+
+    /**
+     * Directive values, by ordinal.
+     */
+    private static final DirectiveValues[] DIRECTIVES = DirectiveValues.values();
+
+    /**
+     * Source.
+     */
+    private final BinaryInput in;
+
+    /**
+     * Comments and test sets read, by position in the table.
+     */
+    private final List<Object> shared = new ArrayList<Object>();
+
+    /**
+     * Test number following the previous one of the current test set.
+     */
+    private int nextTestNumber;
+
+    /**
+     * Depth of the current test set, from 0 for the top one.
+     */
+    private int depth = -1;
+
+    /**
+     * @param in source
+     */
+    TestSetDecoder(BinaryInput in) {
+        super();
+        this.in = in;
+    }
+
+    /**
+     * Reads a test set, with its header and the end of the data.
+     *
+     * @return test set
+     * @throws IOException if an I/O error occurs
+     */
+    TestSet decode() throws IOException {
+        in.readHeader();
+        final TestSet testSet = readTestSet();
+        if (testSet == null) {
+            throw new CodecException("No test set encoded");
+        }
+        in.finish();
+        return testSet;
+    }
+
+    /**
+     * @return test set, or <code>null</code>
+     * @throws IOException if an I/O error occurs
+     * @throws CodecException if the subtests are nested too deeply
+     */
+    private TestSet readTestSet() throws IOException {
+        final int reference = in.readVarInt();
+        if (reference != CodecFormat.NEW_REFERENCE) {
+            return readReference(reference, TestSet.class);
+        }
+        if (++depth > CodecFormat.MAX_DEPTH) {
+            throw new CodecException("Subtests nested too deeply");
+        }
+        final TestSet testSet = new TestSet();
+        shared.add(testSet);
+        final int parentNextTestNumber = nextTestNumber;
+        nextTestNumber = 1;
+        final int flags = in.readByte();
+        if ((flags & CodecFormat.HAS_HEADER) != 0) {
+            final Header header = new Header(in.readInteger());
+            readElement(header);
+            testSet.setHeader(header);
+        }
+        if ((flags & CodecFormat.HAS_PLAN) != 0) {
+            final Integer initialTestNumber = in.readInteger();
+            final Integer lastTestNumber = in.readInteger();
+            final SkipPlan skip = in.readBoolean() ? new SkipPlan(in.readString()) : null;
+            final Plan plan = new Plan(initialTestNumber, lastTestNumber, skip);
+            plan.setSubtest(readTestSet());
+            readElement(plan);
+            testSet.setPlan(plan);
+        }
+        if ((flags & CodecFormat.HAS_FOOTER) != 0) {
+            final Footer footer = new Footer(in.readString());
+            readElement(footer);
+            testSet.setFooter(footer);
+        }
+
+        final List<TapElement> tapLines = testSet.getTapLines();
+        final int numberOfTapLines = in.readLength();
+        for (int i = 0; i < numberOfTapLines; i++) {
+            final int type = in.readByte();
+            final boolean listed = (type & CodecFormat.LISTED) != 0;
+            switch (type & ~CodecFormat.LISTED) {
+            case CodecFormat.TEST_RESULT:
+                final TestResult testResult = readTestResult();
+                tapLines.add(testResult);
+                if (listed) {
+                    testSet.getTestResults().add(testResult);
+                }
+                break;
+            case CodecFormat.BAIL_OUT:
+                final BailOut bailOut = readBailOut();
+                tapLines.add(bailOut);
+                if (listed) {
+                    testSet.getBailOuts().add(bailOut);
+                }
+                break;
+            case CodecFormat.COMMENT:
+                final Comment comment = readComment();
+                tapLines.add(comment);
+                if (listed) {
+                    testSet.getComments().add(comment);
+                }
+                break;
+            case CodecFormat.TEXT:
+                tapLines.add(readText());
+                break;
+            default:
+                throw new CodecException("Invalid TAP line type: " + type);
+            }
+        }
+        for (int i = in.readLength(); i > 0; i--) {
+            testSet.getTestResults().add(readTestResult());
+        }
+        for (int i = in.readLength(); i > 0; i--) {
+            testSet.getBailOuts().add(readBailOut());
+        }
+        for (int i = in.readLength(); i > 0; i--) {
+            testSet.getComments().add(readComment());
+        }
+        nextTestNumber = parentNextTestNumber;
+        depth--;
+        return testSet;
+    }
+
+    /**
+     * @return test result
+     * @throws IOException if an I/O error occurs
+     */
+    private TestResult readTestResult() throws IOException {
+        final int flags = in.readByte();
+        final int status = flags & CodecFormat.STATUS_MASK;
+        Integer testNumber = null;
+        if ((flags & CodecFormat.HAS_TEST_NUMBER) != 0) {
+            testNumber = Integer.valueOf((int) (nextTestNumber + in.readSignedVarLong()));
+            nextTestNumber = testNumber + 1;
+        }
+        final TestResult testResult = new TestResult(status == 0 ? null : value(STATUSES, status - 1),
+                testNumber);
+        testResult.setDescription(in.readString());
+        final int directive = (flags >> CodecFormat.DIRECTIVE_SHIFT) & 3;
+        if (directive != 0) {
+            testResult.setDirective(new Directive(directive == 1 ? null : value(DIRECTIVES, directive - 2),
+                    in.readString()));
+        }
+        if ((flags & CodecFormat.HAS_COMMENTS) != 0) {
+            for (int i = in.readLength(); i > 0; i--) {
+                testResult.addComment(readComment());
+            }
+        }
+        if ((flags & CodecFormat.HAS_SUBTEST) != 0) {
+            testResult.setSubtest(readTestSet());
+        }
+        readElement(testResult);
+        return testResult;
+    }
+
+    /**
+     * @return bail out
+     * @throws IOException if an I/O error occurs
+     */
+    private BailOut readBailOut() throws IOException {
+        final BailOut bailOut = new BailOut(in.readString());
+        readElement(bailOut);
+        return bailOut;
+    }
+
+    /**
+     * @return text
+     * @throws IOException if an I/O error occurs
+     */
+    private Text readText() throws IOException {
+        final Text text = new Text(in.readString());
+        text.setIndentationString(in.readString());
+        readElement(text);
+        return text;
+    }
+
+    /**
+     * @return comment, or <code>null</code>
+     * @throws IOException if an I/O error occurs
+     */
+    private Comment readComment() throws IOException {
+        final int reference = in.readVarInt();
+        if (reference != CodecFormat.NEW_REFERENCE) {
+            return readReference(reference, Comment.class);
+        }
+        final String text = in.readString();
+        final Comment comment = new Comment(text, in.readBoolean());
+        shared.add(comment);
+        readElement(comment);
+        return comment;
+    }
+
+    /**
+     * @param reference reference, other than to a new object
+     * @param type type of the object referred to
+     * @param <T> type of the object referred to
+     * @return the object read before, or <code>null</code>
+     */
+    private <T> T readReference(int reference, Class<T> type) {
+        if (reference == CodecFormat.NULL_REFERENCE) {
+            return null;
+        }
+        final int index = reference - CodecFormat.FIRST_REFERENCE;
+        if (index < 0 || index >= shared.size() || !type.isInstance(shared.get(index))) {
+            throw new CodecException("Invalid reference to a " + type.getSimpleName() + ": " + index);
+        }
+        return type.cast(shared.get(index));
+    }
+
+    /**
+     * Reads what all the elements have: indentation, comment and diagnostic.
+     *
+     * @param element TAP element
+     * @throws IOException if an I/O error occurs
+     */
+    private void readElement(TapElement element) throws IOException {
+        final int flags = in.readByte();
+        if ((flags & CodecFormat.HAS_INDENTATION) != 0) {
+            element.setIndentation(in.readVarInt());
+        }
+        if ((flags & CodecFormat.HAS_COMMENT) != 0) {
+            element.setComment(readComment());
+        }
+        String rawDiagnostic = null;
+        if ((flags & CodecFormat.HAS_RAW_DIAGNOSTIC) != 0) {
+            rawDiagnostic = in.readString();
+        }
+        final int diagnostic = flags >> CodecFormat.DIAGNOSTIC_SHIFT;
+        switch (diagnostic) {
+        case CodecFormat.NO_DIAGNOSTIC:
+            break;
+        case CodecFormat.NATIVE_DIAGNOSTIC:
+            element.setDiagnostic(asDiagnostic(readValue(0)));
+            break;
+        case CodecFormat.YAML_DIAGNOSTIC:
+            element.setDiagnostic(asDiagnostic(YamlEngine.getDefault().load(in.readString())));
+            break;
+        case CodecFormat.RAW_DIAGNOSTIC:
+        case CodecFormat.STRICT_RAW_DIAGNOSTIC:
+            if (rawDiagnostic == null) {
+                throw new CodecException("Raw diagnostic missing");
+            }
+            element.setDiagnostic(new LazyDiagnostic(rawDiagnostic, diagnostic == CodecFormat.RAW_DIAGNOSTIC));
+            element.setRawDiagnostic(rawDiagnostic);
+            break;
+        default:
+            throw new CodecException("Invalid diagnostic type: " + diagnostic);
+        }
+    }
+
+    /**
+     * @param value value read
+     * @return the value as a diagnostic
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asDiagnostic(Object value) {
+        if (!(value instanceof Map)) {
+            throw new CodecException("Invalid diagnostic: " + value);
+        }
+        return (Map<String, Object>) value;
+    }
+
+    /**
+     * @param depth depth of the value in the diagnostic
+     * @return diagnostic value
+     * @throws IOException if an I/O error occurs
+     * @throws CodecException if the value is nested deeper than the encoder
+     *         writes them
+     */
+    private Object readValue(int depth) throws IOException {
+        if (depth > CodecFormat.MAX_DEPTH) {
+            throw new CodecException("Diagnostic value nested too deeply");
+        }
+        final int type = in.readByte();
+        switch (type) {
+        case CodecFormat.NULL:
+            return null;
+        case CodecFormat.STRING:
+            return in.readString();
+        case CodecFormat.FALSE:
+            return Boolean.FALSE;
+        case CodecFormat.TRUE:
+            return Boolean.TRUE;
+        case CodecFormat.INTEGER:
+            return Integer.valueOf((int) in.readSignedVarLong());
+        case CodecFormat.LONG:
+            return Long.valueOf(in.readSignedVarLong());
+        case CodecFormat.DOUBLE:
+            return Double.valueOf(Double.longBitsToDouble(in.readLong()));
+        case CodecFormat.BIG_INTEGER:
+            return new BigInteger(in.readBytes());
+        case CodecFormat.DATE:
+            return new Date(in.readSignedVarLong());
+        case CodecFormat.BINARY:
+            return in.readBytes();
+        case CodecFormat.LIST:
+            return readItems(new ArrayList<Object>(), depth);
+        case CodecFormat.SET:
+            return readItems(new LinkedHashSet<Object>(), depth);
+        case CodecFormat.MAP:
+            final int size = in.readLength();
+            final Map<Object, Object> map = new LinkedHashMap<Object, Object>();
+            for (int i = 0; i < size; i++) {
+                final Object key = readValue(depth + 1);
+                map.put(key, readValue(depth + 1));
+            }
+            return map;
+        default:
+            throw new CodecException("Invalid diagnostic value type: " + type);
+        }
+    }
+
+    /**
+     * @param items collection receiving the items
+     * @param depth depth of the collection in the diagnostic
+     * @return the collection
+     * @throws IOException if an I/O error occurs
+     */
+    private Collection<Object> readItems(Collection<Object> items, int depth) throws IOException {
+        for (int i = in.readLength(); i > 0; i--) {
+            items.add(readValue(depth + 1));
+        }
+        return items;
+    }
+
+    /**
+     * @param values enumeration values
+     * @param ordinal ordinal read
+     * @param <T> type of the enumeration
+     * @return the value
+     */
+    private static <T> T value(T[] values, int ordinal) {
+        if (ordinal >= values.length) {
+            throw new CodecException("Invalid enumeration value: " + ordinal);
+        }
+        return values[ordinal];
+    }
+
+}
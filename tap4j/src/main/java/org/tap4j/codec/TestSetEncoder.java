@@ -0,0 +1,436 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.codec;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Collection;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.tap4j.model.BailOut;
+import org.tap4j.model.Comment;
+import org.tap4j.model.Directive;
+import org.tap4j.model.Footer;
+import org.tap4j.model.Header;
+import org.tap4j.model.Plan;
+import org.tap4j.model.TapElement;
+import org.tap4j.model.TestResult;
+import org.tap4j.model.TestSet;
+import org.tap4j.model.TestSetSnapshot;
+import org.tap4j.model.Text;
+import org.tap4j.parser.LazyDiagnostic;
+import org.tap4j.util.YamlEngine;
+
+/**
+ * Writes a test set in the binary format. Every test set is frozen before it
+ * is written, so it may still be growing in another thread.
+ *
+ * @since 4.2.1
+ */
+final class TestSetEncoder {
+
+    /**
+     * Destination.
+     */
+    private final BinaryOutput out;
+
+    /**
+     * Whether the diagnostics are written as their raw YAML when there is one.
+     */
+    private final boolean rawDiagnostics;
+
+    /**
+     * Position in the table of every comment and test set written.
+     */
+    private final Map<Object, Integer> shared = new IdentityHashMap<Object, Integer>();
+
+    /**
+     * Test number following the previous one of the current test set.
+     */
+    private int nextTestNumber;
+
+    /**
+     * Depth of the current test set, from 0 for the top one.
+     */
+    private int depth = -1;
+
+    /**
+     * @param out destination
+     * @param rawDiagnostics whether the diagnostics are written as their raw
+     *        YAML when there is one
+     */
+    TestSetEncoder(BinaryOutput out, boolean rawDiagnostics) {
+        super();
+        this.out = out;
+        this.rawDiagnostics = rawDiagnostics;
+    }
+
+    /**
+     * Writes a test set, with its header and the end of the data.
+     *
+     * @param testSet test set
+     * @throws IOException if an I/O error occurs
+     */
+    void encode(TestSet testSet) throws IOException {
+        out.writeHeader();
+        writeTestSet(testSet);
+        out.finish();
+    }
+
+    /**
+     * @param testSet test set, or <code>null</code>
+     * @throws IOException if an I/O error occurs
+     * @throws CodecException if the subtests are nested too deeply
+     */
+    private void writeTestSet(TestSet testSet) throws IOException {
+        if (writeReference(testSet)) {
+            return;
+        }
+        if (++depth > CodecFormat.MAX_DEPTH) {
+            throw new CodecException("Subtests nested too deeply");
+        }
+        final int parentNextTestNumber = nextTestNumber;
+        nextTestNumber = 1;
+        final TestSetSnapshot snapshot = testSet.freeze();
+        final Header header = snapshot.getHeader();
+        final Plan plan = snapshot.getPlan();
+        final Footer footer = snapshot.getFooter();
+        out.writeByte((header != null ? CodecFormat.HAS_HEADER : 0)
+                | (plan != null ? CodecFormat.HAS_PLAN : 0)
+                | (footer != null ? CodecFormat.HAS_FOOTER : 0));
+        if (header != null) {
+            out.writeInteger(header.getVersion());
+            writeElement(header);
+        }
+        if (plan != null) {
+            out.writeInteger(plan.getInitialTestNumber());
+            out.writeInteger(plan.getLastTestNumber());
+            out.writeBoolean(plan.getSkip() != null);
+            if (plan.getSkip() != null) {
+                out.writeString(plan.getSkip().getReason());
+            }
+            writeTestSet(plan.getSubtest());
+            writeElement(plan);
+        }
+        if (footer != null) {
+            out.writeString(footer.getText());
+            writeElement(footer);
+        }
+
+        // the lists of test results, bail outs and comments are usually the
+        // lines of their type, in the same order: flag these lines, and write
+        // the elements found only in the lists after the lines
+        final List<TestResult> testResults = snapshot.getTestResults();
+        final List<BailOut> bailOuts = snapshot.getBailOuts();
+        final List<Comment> comments = snapshot.getComments();
+        int testResultIndex = 0;
+        int bailOutIndex = 0;
+        int commentIndex = 0;
+        final List<TapElement> tapLines = snapshot.getTapLines();
+        out.writeVarInt(tapLines.size());
+        for (TapElement tapLine : tapLines) {
+            if (tapLine instanceof TestResult) {
+                final boolean listed = testResultIndex < testResults.size()
+                        && testResults.get(testResultIndex) == tapLine;
+                if (listed) {
+                    testResultIndex++;
+                }
+                out.writeByte(CodecFormat.TEST_RESULT | (listed ? CodecFormat.LISTED : 0));
+                writeTestResult((TestResult) tapLine);
+            } else if (tapLine instanceof BailOut) {
+                final boolean listed = bailOutIndex < bailOuts.size()
+                        && bailOuts.get(bailOutIndex) == tapLine;
+                if (listed) {
+                    bailOutIndex++;
+                }
+                out.writeByte(CodecFormat.BAIL_OUT | (listed ? CodecFormat.LISTED : 0));
+                writeBailOut((BailOut) tapLine);
+            } else if (tapLine instanceof Comment) {
+                final boolean listed = commentIndex < comments.size()
+                        && comments.get(commentIndex) == tapLine;
+                if (listed) {
+                    commentIndex++;
+                }
+                out.writeByte(CodecFormat.COMMENT | (listed ? CodecFormat.LISTED : 0));
+                writeComment((Comment) tapLine);
+            } else if (tapLine instanceof Text) {
+                out.writeByte(CodecFormat.TEXT);
+                writeText((Text) tapLine);
+            } else {
+                throw new CodecException("Cannot encode TAP line of type "
+                        + (tapLine == null ? null : tapLine.getClass().getName()));
+            }
+        }
+        out.writeVarInt(testResults.size() - testResultIndex);
+        for (int i = testResultIndex; i < testResults.size(); i++) {
+            writeTestResult(testResults.get(i));
+        }
+        out.writeVarInt(bailOuts.size() - bailOutIndex);
+        for (int i = bailOutIndex; i < bailOuts.size(); i++) {
+            writeBailOut(bailOuts.get(i));
+        }
+        out.writeVarInt(comments.size() - commentIndex);
+        for (int i = commentIndex; i < comments.size(); i++) {
+            writeComment(comments.get(i));
+        }
+        nextTestNumber = parentNextTestNumber;
+        depth--;
+    }
+
+    /**
+     * @param testResult test result
+     * @throws IOException if an I/O error occurs
+     */
+    private void writeTestResult(TestResult testResult) throws IOException {
+        final Integer testNumber = testResult.getTestNumber();
+        final Directive directive = testResult.getDirective();
+        final boolean hasComments = testResult.hasComments();
+        int flags = testResult.getStatus() == null ? 0 : testResult.getStatus().ordinal() + 1;
+        if (directive != null) {
+            flags |= (directive.getDirectiveValue() == null ? 1
+                    : directive.getDirectiveValue().ordinal() + 2) << CodecFormat.DIRECTIVE_SHIFT;
+        }
+        flags |= (testNumber != null ? CodecFormat.HAS_TEST_NUMBER : 0)
+                | (hasComments ? CodecFormat.HAS_COMMENTS : 0)
+                | (testResult.getSubtest() != null ? CodecFormat.HAS_SUBTEST : 0);
+        out.writeByte(flags);
+        if (testNumber != null) {
+            out.writeSignedVarLong((long) testNumber - nextTestNumber);
+            nextTestNumber = testNumber + 1;
+        }
+        out.writeString(testResult.getDescription());
+        if (directive != null) {
+            out.writeString(directive.getReason());
+        }
+        if (hasComments) {
+            final List<Comment> comments = testResult.getComments();
+            out.writeVarInt(comments.size());
+            for (Comment comment : comments) {
+                writeComment(comment);
+            }
+        }
+        if (testResult.getSubtest() != null) {
+            writeTestSet(testResult.getSubtest());
+        }
+        writeElement(testResult);
+    }
+
+    /**
+     * @param bailOut bail out
+     * @throws IOException if an I/O error occurs
+     */
+    private void writeBailOut(BailOut bailOut) throws IOException {
+        out.writeString(bailOut.getReason());
+        writeElement(bailOut);
+    }
+
+    /**
+     * @param text text
+     * @throws IOException if an I/O error occurs
+     */
+    private void writeText(Text text) throws IOException {
+        out.writeString(text.getValue());
+        out.writeString(text.getIndentationString());
+        writeElement(text);
+    }
+
+    /**
+     * @param comment comment, or <code>null</code>
+     * @throws IOException if an I/O error occurs
+     */
+    private void writeComment(Comment comment) throws IOException {
+        if (writeReference(comment)) {
+            return;
+        }
+        out.writeString(comment.getText());
+        out.writeBoolean(comment.isInline());
+        writeElement(comment);
+    }
+
+    /**
+     * Writes a reference to a comment or a test set. Unless it is
+     * <code>null</code> or was written before, the object must be written
+     * next.
+     *
+     * @param object comment or test set, or <code>null</code>
+     * @return whether the reference is enough
+     * @throws IOException if an I/O error occurs
+     */
+    private boolean writeReference(Object object) throws IOException {
+        if (object == null) {
+            out.writeByte(CodecFormat.NULL_REFERENCE);
+            return true;
+        }
+        final Integer index = shared.get(object);
+        if (index != null) {
+            out.writeVarInt(index + CodecFormat.FIRST_REFERENCE);
+            return true;
+        }
+        shared.put(object, shared.size());
+        out.writeByte(CodecFormat.NEW_REFERENCE);
+        return false;
+    }
+
+    /**
+     * Writes what all the elements have: indentation, comment and diagnostic.
+     *
+     * @param element TAP element
+     * @throws IOException if an I/O error occurs
+     */
+    private void writeElement(TapElement element) throws IOException {
+        final int indentation = element.getIndentation();
+        final Comment comment = element.getComment();
+        String rawDiagnostic = element.getRawDiagnostic();
+        Map<String, Object> diagnostic = null;
+        final int type;
+        if (rawDiagnostics && rawDiagnostic != null && isDescribedBy(element.getDiagnostic(), rawDiagnostic)) {
+            type = ((LazyDiagnostic) element.getDiagnostic()).isRemoveYamlIfCorrupted()
+                    ? CodecFormat.RAW_DIAGNOSTIC : CodecFormat.STRICT_RAW_DIAGNOSTIC;
+        } else if (!element.hasDiagnostic()) {
+            type = CodecFormat.NO_DIAGNOSTIC;
+        } else {
+            diagnostic = element.getDiagnostic();
+            type = isNative(diagnostic, 0) ? CodecFormat.NATIVE_DIAGNOSTIC : CodecFormat.YAML_DIAGNOSTIC;
+        }
+        if (type != CodecFormat.RAW_DIAGNOSTIC && type != CodecFormat.STRICT_RAW_DIAGNOSTIC) {
+            // the diagnostic itself is written
+            rawDiagnostic = null;
+        }
+        out.writeByte((indentation != 0 ? CodecFormat.HAS_INDENTATION : 0)
+                | (comment != null ? CodecFormat.HAS_COMMENT : 0)
+                | (rawDiagnostic != null ? CodecFormat.HAS_RAW_DIAGNOSTIC : 0)
+                | type << CodecFormat.DIAGNOSTIC_SHIFT);
+        if (indentation != 0) {
+            out.writeVarInt(indentation);
+        }
+        if (comment != null) {
+            writeComment(comment);
+        }
+        if (rawDiagnostic != null) {
+            out.writeString(rawDiagnostic);
+        }
+        if (type == CodecFormat.NATIVE_DIAGNOSTIC) {
+            writeValue(diagnostic);
+        } else if (type == CodecFormat.YAML_DIAGNOSTIC) {
+            out.writeString(YamlEngine.getDefault().dump(diagnostic));
+        }
+    }
+
+    /**
+     * @param diagnostic diagnostic of an element
+     * @param rawDiagnostic raw YAML of the element
+     * @return whether the diagnostic is a lazy one known to match the raw
+     *         YAML
+     */
+    private static boolean isDescribedBy(Map<String, Object> diagnostic, String rawDiagnostic) {
+        return diagnostic instanceof LazyDiagnostic && ((LazyDiagnostic) diagnostic).isDescribedBy(rawDiagnostic);
+    }
+
+    /**
+     * @param value diagnostic value
+     * @param depth depth of the value in the diagnostic
+     * @return whether the value can be encoded natively
+     */
+    private static boolean isNative(Object value, int depth) {
+        if (depth > CodecFormat.MAX_DEPTH) {
+            return false;
+        }
+        if (value == null || value instanceof String || value instanceof Boolean
+                || value instanceof Integer || value instanceof Long || value instanceof Double
+                || value instanceof BigInteger || value instanceof byte[]
+                || value.getClass() == Date.class) {
+            return true;
+        }
+        if (value instanceof List || value instanceof Set) {
+            for (Object item : (Collection<?>) value) {
+                if (!isNative(item, depth + 1)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (value instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!isNative(entry.getKey(), depth + 1) || !isNative(entry.getValue(), depth + 1)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param value diagnostic value that can be encoded natively
+     * @throws IOException if an I/O error occurs
+     */
+    private void writeValue(Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(CodecFormat.NULL);
+        } else if (value instanceof String) {
+            out.writeByte(CodecFormat.STRING);
+            out.writeString((String) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(((Boolean) value).booleanValue() ? CodecFormat.TRUE : CodecFormat.FALSE);
+        } else if (value instanceof Integer) {
+            out.writeByte(CodecFormat.INTEGER);
+            out.writeSignedVarLong(((Integer) value).longValue());
+        } else if (value instanceof Long) {
+            out.writeByte(CodecFormat.LONG);
+            out.writeSignedVarLong(((Long) value).longValue());
+        } else if (value instanceof Double) {
+            out.writeByte(CodecFormat.DOUBLE);
+            out.writeLong(Double.doubleToRawLongBits(((Double) value).doubleValue()));
+        } else if (value instanceof BigInteger) {
+            out.writeByte(CodecFormat.BIG_INTEGER);
+            out.writeBytes(((BigInteger) value).toByteArray());
+        } else if (value instanceof Date) {
+            out.writeByte(CodecFormat.DATE);
+            out.writeSignedVarLong(((Date) value).getTime());
+        } else if (value instanceof byte[]) {
+            out.writeByte(CodecFormat.BINARY);
+            out.writeBytes((byte[]) value);
+        } else if (value instanceof Map) {
+            final Map<?, ?> map = (Map<?, ?>) value;
+            out.writeByte(CodecFormat.MAP);
+            out.writeVarInt(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeValue(entry.getKey());
+                writeValue(entry.getValue());
+            }
+        } else {
+            final Collection<?> collection = (Collection<?>) value;
+            out.writeByte(value instanceof Set ? CodecFormat.SET : CodecFormat.LIST);
+            out.writeVarInt(collection.size());
+            for (Object item : collection) {
+                writeValue(item);
+            }
+        }
+    }
+
+}
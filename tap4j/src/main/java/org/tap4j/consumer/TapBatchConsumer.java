@@ -0,0 +1,334 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.consumer;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+
+import org.tap4j.model.TestSet;
+import org.tap4j.parser.Parser;
+import org.tap4j.parser.Tap13Parser;
+
+/**
+ * Loads many TAP Files concurrently.
+ *
+ * <p>
+ * Every file is parsed by its own {@link TapConsumerImpl}, with a parser
+ * created by {@link #createParser()}, as parsers keep the state of the stream
+ * they parse. The files are given to an {@link ExecutorService}, and passed
+ * to a {@link TapBatchListener} as soon as they are done, in the thread of
+ * the caller. Each load returns the totals of its files.
+ * </p>
+ *
+ * <p>
+ * Unless an executor is given, each load uses a thread per processor, which
+ * suits parsing as it is bound by the processors. The executor given is not
+ * shut down by the consumer. Instances of this class are safe to use from
+ * many threads, if {@link #createParser()} is.
+ * </p>
+ *
+ * @since 4.2.1
+ */
+public class TapBatchConsumer {
+
+    /**
+     * Glob of the TAP Files of a directory and its subdirectories.
+     */
+    public static final String DEFAULT_GLOB = "**/*.tap";
+
+    /**
+     * Executor parsing the files, or <code>null</code> to create one for
+     * each load.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Constructor of a consumer that creates a thread per processor for each
+     * load.
+     */
+    public TapBatchConsumer() {
+        this(null);
+    }
+
+    /**
+     * Constructor with an executor.
+     *
+     * @param executor executor parsing the files, or <code>null</code> to
+     * create a thread per processor for each load
+     */
+    public TapBatchConsumer(ExecutorService executor) {
+        super();
+        this.executor = executor;
+    }
+
+    /**
+     * @return executor parsing the files, or <code>null</code>
+     */
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Creates the parser of a file. It is called by the threads of the
+     * executor. Subclasses can override it to configure the parser.
+     *
+     * @return TAP parser
+     */
+    protected Parser createParser() {
+        return new Tap13Parser();
+    }
+
+    /**
+     * Loads the TAP Files of a directory and of its subdirectories.
+     *
+     * @param directory directory
+     * @param listener listener receiving the files, or <code>null</code>
+     * @return totals of the files
+     * @throws TapConsumerException if the directory cannot be listed
+     */
+    public TapBatchTotals load(File directory, TapBatchListener listener) {
+        return load(directory, DEFAULT_GLOB, listener);
+    }
+
+    /**
+     * Loads the files of a directory whose path, relative to the directory,
+     * matches a glob. <code>*</code> matches any characters but
+     * <code>/</code>, <code>?</code> any character but <code>/</code>, and
+     * <code>**</code> any characters, so that <code>**&#47;</code> matches
+     * any number of directories.
+     *
+     * @param directory directory
+     * @param glob glob of the paths, like <code>**&#47;*.tap</code>
+     * @param listener listener receiving the files, or <code>null</code>
+     * @return totals of the files
+     * @throws TapConsumerException if the directory cannot be listed
+     */
+    public TapBatchTotals load(File directory, String glob, TapBatchListener listener) {
+        return load(listFiles(directory, glob), listener);
+    }
+
+    /**
+     * Loads TAP Files.
+     *
+     * @param files TAP Files
+     * @param listener listener receiving the files, or <code>null</code>
+     * @return totals of the files
+     * @throws TapConsumerException if the thread is interrupted, or if the
+     * executor fails
+     */
+    public TapBatchTotals load(Collection<File> files, TapBatchListener listener) {
+        final ExecutorService service = executor != null ? executor
+                : Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        final CompletionService<Result> completion = new ExecutorCompletionService<Result>(service);
+        // only the pending tasks, as the completed ones hold their test set
+        final Set<Future<Result>> pending = new HashSet<Future<Result>>();
+        final TapBatchTotals totals = new TapBatchTotals();
+        try {
+            for (File file : files) {
+                pending.add(completion.submit(new Task(file)));
+            }
+            while (!pending.isEmpty()) {
+                final Future<Result> completed = completion.take();
+                pending.remove(completed);
+                final Result result = completed.get();
+                if (result.error != null) {
+                    totals.addError();
+                    if (listener != null) {
+                        listener.onError(result.file, result.error);
+                    }
+                } else {
+                    totals.add(result.testSet.getSummary());
+                    if (listener != null) {
+                        listener.onTestSet(result.file, result.testSet);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TapConsumerException("Interrupted while loading TAP files", e);
+        } catch (ExecutionException e) {
+            throw new TapConsumerException("Failed to load TAP files: " + e.getCause(), e.getCause());
+        } finally {
+            for (Future<Result> future : pending) {
+                future.cancel(false);
+            }
+            if (service != executor) {
+                service.shutdown();
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * Lists the files of a directory whose path, relative to the directory,
+     * matches a glob.
+     *
+     * @param directory directory
+     * @param glob glob of the paths
+     * @return files, sorted by path in each directory
+     * @throws TapConsumerException if the directory cannot be listed
+     */
+    public static List<File> listFiles(File directory, String glob) {
+        final List<File> files = new ArrayList<File>();
+        listFiles(directory, "", toPattern(glob), files);
+        return files;
+    }
+
+    /**
+     * @param directory directory
+     * @param path path of the directory, relative to the directory listed,
+     * ending with <code>/</code> unless empty
+     * @param pattern pattern of the paths
+     * @param files list receiving the files
+     */
+    private static void listFiles(File directory, String path, Pattern pattern, List<File> files) {
+        final File[] children = directory.listFiles();
+        if (children == null) {
+            throw new TapConsumerException("Failed to list directory " + directory);
+        }
+        Arrays.sort(children);
+        for (File child : children) {
+            final String childPath = path + child.getName();
+            if (child.isDirectory()) {
+                listFiles(child, childPath + '/', pattern, files);
+            } else if (pattern.matcher(childPath).matches()) {
+                files.add(child);
+            }
+        }
+    }
+
+    /**
+     * @param glob glob
+     * @return regular expression matching the paths matched by the glob
+     */
+    static Pattern toPattern(String glob) {
+        final StringBuilder regex = new StringBuilder();
+        int literal = 0;
+        for (int i = 0; i < glob.length(); i++) {
+            final char c = glob.charAt(i);
+            if (c != '*' && c != '?') {
+                continue;
+            }
+            if (literal < i) {
+                regex.append(Pattern.quote(glob.substring(literal, i)));
+            }
+            if (c == '?') {
+                regex.append("[^/]");
+            } else if (!glob.startsWith("**", i)) {
+                regex.append("[^/]*");
+            } else if (glob.startsWith("**/", i)) {
+                regex.append("(?:.*/)?");
+                i += 2;
+            } else {
+                regex.append(".*");
+                i++;
+            }
+            literal = i + 1;
+        }
+        if (literal < glob.length()) {
+            regex.append(Pattern.quote(glob.substring(literal)));
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    /**
+     * Parses a file in a thread of the executor.
+     */
+    private final class Task implements Callable<Result> {
+
+        /**
+         * TAP File.
+         */
+        private final File file;
+
+        /**
+         * @param file TAP File
+         */
+        Task(File file) {
+            super();
+            this.file = file;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Result call() {
+            try {
+                return new Result(file, new TapConsumerImpl(createParser()).load(file), null);
+            } catch (TapConsumerException e) {
+                return new Result(file, null, e);
+            }
+        }
+
+    }
+
+    /**
+     * Test Set or error of a file.
+     */
+    private static final class Result {
+
+        /**
+         * TAP File.
+         */
+        private final File file;
+
+        /**
+         * Test Set, or <code>null</code> if the file could not be parsed.
+         */
+        private final TestSet testSet;
+
+        /**
+         * Error, or <code>null</code> if the file was parsed.
+         */
+        private final TapConsumerException error;
+
+        /**
+         * @param file TAP File
+         * @param testSet Test Set, or <code>null</code>
+         * @param error error, or <code>null</code>
+         */
+        Result(File file, TestSet testSet, TapConsumerException error) {
+            super();
+            this.file = file;
+            this.testSet = testSet;
+            this.error = error;
+        }
+
+    }
+
+}
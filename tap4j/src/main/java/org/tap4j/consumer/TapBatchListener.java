@@ -0,0 +1,55 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.consumer;
+
+import java.io.File;
+
+import org.tap4j.model.TestSet;
+
+/**
+ * Receives the files of a {@link TapBatchConsumer} as they are parsed. The
+ * methods are called in the thread that loads the batch, one at a time, in
+ * the order the files are done.
+ *
+ * @since 4.2.1
+ */
+public interface TapBatchListener {
+
+    /**
+     * Called when a file was parsed.
+     *
+     * @param file TAP File
+     * @param testSet Test Set of the file
+     */
+    void onTestSet(File file, TestSet testSet);
+
+    /**
+     * Called when a file could not be parsed.
+     *
+     * @param file TAP File
+     * @param error error of the consumer
+     */
+    void onError(File file, TapConsumerException error);
+
+}
@@ -0,0 +1,205 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.consumer;
+
+import java.io.Serializable;
+
+import org.tap4j.model.TestSetSummary;
+
+/**
+ * Totals of the files loaded by a {@link TapBatchConsumer}. The Test Results
+ * are the top-level ones of each file, as counted by
+ * {@link TestSetSummary}.
+ *
+ * @since 4.2.1
+ */
+public final class TapBatchTotals implements Serializable {
+
+    /**
+     * Serial Version UID.
+     */
+    private static final long serialVersionUID = 2911487005613874350L;
+
+    /**
+     * Number of files.
+     */
+    private int numberOfFiles = 0;
+
+    /**
+     * Number of files that could not be parsed.
+     */
+    private int numberOfErrors = 0;
+
+    /**
+     * Number of Test Results.
+     */
+    private int numberOfTestResults = 0;
+
+    /**
+     * Number of Test Results without directive that are ok.
+     */
+    private int passed = 0;
+
+    /**
+     * Number of Test Results without directive that are not ok.
+     */
+    private int failed = 0;
+
+    /**
+     * Number of skipped Test Results.
+     */
+    private int skipped = 0;
+
+    /**
+     * Number of Test Results to do.
+     */
+    private int todo = 0;
+
+    /**
+     * Number of Bail Outs.
+     */
+    private int bailOuts = 0;
+
+    /**
+     * Number of files whose plan does not match their number of Test Results.
+     */
+    private int planMismatches = 0;
+
+    /**
+     * Default constructor.
+     */
+    TapBatchTotals() {
+        super();
+    }
+
+    /**
+     * Adds a file that was parsed.
+     *
+     * @param summary summary of the Test Set of the file
+     */
+    void add(TestSetSummary summary) {
+        numberOfFiles++;
+        numberOfTestResults += summary.getNumberOfTestResults();
+        passed += summary.getPassed();
+        failed += summary.getFailed();
+        skipped += summary.getSkipped();
+        todo += summary.getTodo();
+        bailOuts += summary.getBailOuts();
+        if (summary.isPlanMismatch()) {
+            planMismatches++;
+        }
+    }
+
+    /**
+     * Adds a file that could not be parsed.
+     */
+    void addError() {
+        numberOfFiles++;
+        numberOfErrors++;
+    }
+
+    /**
+     * @return number of files, parsed or not
+     */
+    public int getNumberOfFiles() {
+        return numberOfFiles;
+    }
+
+    /**
+     * @return number of files that could not be parsed
+     */
+    public int getNumberOfErrors() {
+        return numberOfErrors;
+    }
+
+    /**
+     * @return number of Test Results
+     */
+    public int getNumberOfTestResults() {
+        return numberOfTestResults;
+    }
+
+    /**
+     * @return number of Test Results without directive that are ok
+     */
+    public int getPassed() {
+        return passed;
+    }
+
+    /**
+     * @return number of Test Results without directive that are not ok
+     */
+    public int getFailed() {
+        return failed;
+    }
+
+    /**
+     * @return number of skipped Test Results
+     */
+    public int getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * @return number of Test Results to do
+     */
+    public int getTodo() {
+        return todo;
+    }
+
+    /**
+     * @return number of Bail Outs
+     */
+    public int getBailOuts() {
+        return bailOuts;
+    }
+
+    /**
+     * @return number of files whose plan does not match their number of Test
+     * Results
+     */
+    public int getPlanMismatches() {
+        return planMismatches;
+    }
+
+    /**
+     * @return <code>true</code> if every file was parsed, without failed Test
+     * Result nor Bail Out
+     */
+    public boolean isSuccessful() {
+        return numberOfErrors == 0 && failed == 0 && bailOuts == 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "TapBatchTotals [files=" + numberOfFiles + ", errors=" + numberOfErrors
+                + ", testResults=" + numberOfTestResults + ", passed=" + passed
+                + ", failed=" + failed + ", skipped=" + skipped + ", todo=" + todo
+                + ", bailOuts=" + bailOuts + ", planMismatches=" + planMismatches + "]";
+    }
+
+}
@@ -0,0 +1,483 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.consumer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.NoSuchElementException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.tap4j.model.BailOut;
+import org.tap4j.model.Comment;
+import org.tap4j.model.Footer;
+import org.tap4j.model.Header;
+import org.tap4j.model.Plan;
+import org.tap4j.model.TapElement;
+import org.tap4j.model.TestResult;
+import org.tap4j.model.TestSet;
+import org.tap4j.model.Text;
+import org.tap4j.parser.TapEventHandler;
+import org.tap4j.parser.Tap13Parser;
+import org.tap4j.parser.TapLineReader;
+import org.tap4j.parser.TestSetBuilder;
+
+/**
+ * Pull style TAP reader. Instead of parsing the whole TAP Stream into a
+ * {@link TestSet} like {@link TapConsumer#load(Readable)}, it reads the stream
+ * only as far as needed to hand back the next top level element.
+ *
+ * <p>
+ * Elements are handed back once they are complete, i.e. a test result comes
+ * with its comments, diagnostic and subtest attached. The reader does not keep
+ * any reference to the elements it has handed back, so they can be reclaimed
+ * as soon as the caller is done with them.
+ * </p>
+ *
+ * <p>
+ * Only one reader at a time may use a given parser.
+ * </p>
+ *
+ * @since 4.2.1
+ */
+public class TapReader implements Iterator<TapElement>, Closeable {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(TapReader.class
+            .getCanonicalName());
+
+    /**
+     * TAP parser.
+     */
+    private final Tap13Parser parser;
+
+    /**
+     * Source of the TAP Stream lines.
+     */
+    private final TapLineReader lineReader;
+
+    /**
+     * Elements ready to be handed back.
+     */
+    private final LinkedList<TapElement> ready = new LinkedList<TapElement>();
+
+    /**
+     * Elements that may still be completed by the following lines.
+     */
+    private final LinkedList<TapElement> pending = new LinkedList<TapElement>();
+
+    /**
+     * Receives the elements from the parser.
+     */
+    private final Handler handler = new Handler();
+
+    /**
+     * Whether the whole stream has been parsed.
+     */
+    private boolean finished = false;
+
+    /**
+     * TAP Header, once found.
+     */
+    private Header header;
+
+    /**
+     * TAP Plan, once found.
+     */
+    private Plan plan;
+
+    /**
+     * TAP Footer, once found.
+     */
+    private Footer footer;
+
+    /**
+     * Creates a reader using a TAP 13 parser.
+     *
+     * @param tapStream TAP Stream
+     */
+    public TapReader(Readable tapStream) {
+        this(new Tap13Parser(), tapStream);
+    }
+
+    /**
+     * Creates a reader.
+     *
+     * @param parser TAP parser
+     * @param tapStream TAP Stream
+     */
+    public TapReader(Tap13Parser parser, Readable tapStream) {
+        super();
+        this.parser = parser;
+        this.lineReader = new TapLineReader(tapStream);
+        try {
+            parser.beginStream(handler);
+        } catch (RuntimeException e) {
+            throw new TapConsumerException("Failed to parse TAP Stream: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Creates a reader for a TAP File, decoded with the charset of the parser.
+     *
+     * @param parser TAP parser
+     * @param tapFile TAP File
+     * @see Tap13Parser#parseFile(File)
+     */
+    public TapReader(Tap13Parser parser, File tapFile) {
+        this(parser, openFile(parser, tapFile));
+    }
+
+    /**
+     * @param parser TAP parser
+     * @param tapFile TAP File
+     * @return a reader for the file
+     */
+    private static Readable openFile(Tap13Parser parser, File tapFile) {
+        if (parser.getCharset() == null) {
+            throw new TapConsumerException("Must have encoding specified if using a TAP File");
+        }
+        try {
+            return new InputStreamReader(new FileInputStream(tapFile), parser.getCharset().newDecoder());
+        } catch (FileNotFoundException e) {
+            throw new TapConsumerException("TAP file not found: " + tapFile, e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasNext() {
+        while (ready.isEmpty() && !finished) {
+            readLine();
+        }
+        return !ready.isEmpty();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public TapElement next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return ready.removeFirst();
+    }
+
+    /**
+     * @return the next test result, or {@code null} if there are no more test
+     * results. The elements skipped are not handed back.
+     */
+    public TestResult nextTestResult() {
+        while (hasNext()) {
+            TapElement element = next();
+            if (element instanceof TestResult) {
+                return (TestResult) element;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the remaining test results, consuming this reader as they are
+     * iterated
+     */
+    public Iterable<TestResult> testResults() {
+        return new Iterable<TestResult>() {
+            @Override
+            public Iterator<TestResult> iterator() {
+                return new Iterator<TestResult>() {
+
+                    private TestResult next = nextTestResult();
+
+                    @Override
+                    public boolean hasNext() {
+                        return next != null;
+                    }
+
+                    @Override
+                    public TestResult next() {
+                        if (next == null) {
+                            throw new NoSuchElementException();
+                        }
+                        TestResult current = next;
+                        next = nextTestResult();
+                        return current;
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Not supported.
+     */
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @return the TAP Header, or {@code null} if not read yet
+     */
+    public Header getHeader() {
+        return header;
+    }
+
+    /**
+     * @return the TAP Plan, or {@code null} if not read yet
+     */
+    public Plan getPlan() {
+        return plan;
+    }
+
+    /**
+     * @return the TAP Footer, or {@code null} if not read yet
+     */
+    public Footer getFooter() {
+        return footer;
+    }
+
+    /**
+     * Closes the TAP Stream.
+     */
+    @Override
+    public void close() {
+        finished = true;
+        try {
+            lineReader.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Failed to close TAP Stream: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads and parses the next line of the TAP Stream, or completes the
+     * stream if there are no more lines.
+     */
+    private void readLine() {
+        try {
+            String line = lineReader.readLine();
+            if (line != null) {
+                if (line.length() > 0) {
+                    parser.parseLine(line);
+                }
+            } else {
+                finished = true;
+                parser.endStream();
+                lineReader.close();
+            }
+        } catch (IOException e) {
+            close();
+            throw new TapConsumerException("Failed to read TAP Stream: " + e.getMessage(), e);
+        } catch (TapConsumerException e) {
+            close();
+            throw e;
+        } catch (RuntimeException e) {
+            close();
+            throw new TapConsumerException("Failed to parse TAP Stream: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Collects the top level elements, building the subtests they own.
+     */
+    private class Handler implements TapEventHandler {
+
+        /**
+         * Subtest depth.
+         */
+        private int depth = 0;
+
+        /**
+         * Builds the subtest being parsed.
+         */
+        private TestSetBuilder subtest;
+
+        /**
+         * Subtest that came before the test result it belongs to.
+         */
+        private TestSet looseSubtests;
+
+        /**
+         * A new top level element completes every element before it, except
+         * comments, which never become the last parsed element.
+         *
+         * @param tapElement top level element
+         */
+        private void add(TapElement tapElement) {
+            if (!(tapElement instanceof Comment)) {
+                ready.addAll(pending);
+                pending.clear();
+            }
+            pending.add(tapElement);
+        }
+
+        @Override
+        public void onStreamStart() {
+            depth = 0;
+            subtest = null;
+            looseSubtests = null;
+        }
+
+        @Override
+        public void onStreamEnd() {
+            if (depth > 0) {
+                // the stream started indented, and its base level is a subtest
+                TestSet testSet = subtest.getTestSet();
+                header = testSet.getHeader();
+                plan = testSet.getPlan();
+                footer = testSet.getFooter();
+                if (header != null) {
+                    ready.add(header);
+                }
+                if (plan != null) {
+                    ready.add(plan);
+                }
+                ready.addAll(testSet.getTapLines());
+                if (footer != null) {
+                    ready.add(footer);
+                }
+            }
+            ready.addAll(pending);
+            pending.clear();
+        }
+
+        @Override
+        public void onHeader(Header h) {
+            if (depth > 0) {
+                subtest.onHeader(h);
+            } else {
+                header = h;
+                add(h);
+            }
+        }
+
+        @Override
+        public void onPlan(Plan p) {
+            if (depth > 0) {
+                subtest.onPlan(p);
+            } else {
+                plan = p;
+                add(p);
+            }
+        }
+
+        @Override
+        public void onTestResult(TestResult testResult) {
+            if (depth > 0) {
+                subtest.onTestResult(testResult);
+            } else {
+                if (looseSubtests != null) {
+                    testResult.setSubtest(looseSubtests);
+                    looseSubtests = null;
+                }
+                add(testResult);
+            }
+        }
+
+        @Override
+        public void onBailOut(BailOut bailOut) {
+            if (depth > 0) {
+                subtest.onBailOut(bailOut);
+            } else {
+                add(bailOut);
+            }
+        }
+
+        @Override
+        public void onComment(Comment comment) {
+            if (depth > 0) {
+                subtest.onComment(comment);
+            } else {
+                add(comment);
+            }
+        }
+
+        @Override
+        public void onFooter(Footer f) {
+            if (depth > 0) {
+                subtest.onFooter(f);
+            } else {
+                footer = f;
+                add(f);
+            }
+        }
+
+        @Override
+        public void onText(Text text) {
+            if (depth > 0) {
+                subtest.onText(text);
+            } else {
+                add(text);
+            }
+        }
+
+        @Override
+        public void onYamlBlock(TapElement tapElement) {
+            // the diagnostic is already set on the element
+        }
+
+        @Override
+        public void onSubtestStart(TestResult parent) {
+            if (depth == 0) {
+                subtest = new TestSetBuilder();
+                if (parent != null) {
+                    parent.setSubtest(subtest.getTestSet());
+                } else {
+                    looseSubtests = subtest.getTestSet();
+                }
+            } else {
+                subtest.onSubtestStart(parent);
+            }
+            depth++;
+        }
+
+        @Override
+        public void onSubtestEnd() {
+            depth--;
+            if (depth > 0) {
+                subtest.onSubtestEnd();
+            } else {
+                subtest = null;
+            }
+        }
+    }
+
+}
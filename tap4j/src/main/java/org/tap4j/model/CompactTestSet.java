@@ -0,0 +1,769 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.model;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+import org.tap4j.util.DirectiveValues;
+import org.tap4j.util.StatusValues;
+
+/**
+ * A {@link TestSet} that stores its Test Results in columns, for keeping very
+ * large numbers of results in memory.
+ *
+ * <p>
+ * Instead of one {@link TestResult} object per result, the status and the
+ * directive are stored in byte arrays, the Test Number in an int array, and
+ * the description and directive reason as references into a table of unique
+ * strings. A result costs about ten bytes, plus its strings the first time
+ * they appear. {@link #getTestResults()}, {@link #getTapLines()} and
+ * {@link #getTestResult(Integer)} create {@link TestResult} views on demand,
+ * so the Test Set can be used with the representers and the rest of the API.
+ * </p>
+ *
+ * <p>
+ * Test Results that carry more than the columns hold (diagnostics, comments,
+ * subtests, indentation) are kept as they are. The views of the other Test
+ * Results are copies: changing them does not change the Test Set, and each
+ * call returns a new view. Bail Outs, Comments and other TAP Lines are kept as
+ * they are, in their original position.
+ * </p>
+ *
+ * <p>
+ * The parser attaches the diagnostic, comments and subtest of a Test Result
+ * after adding it, so the last Test Result added is kept as it is, and only
+ * compacted when a TAP Line other than a Comment is added or
+ * {@link #trimToSize()} is called. {@link org.tap4j.parser.CompactTestSetBuilder} parses TAP Streams
+ * into compact Test Sets this way.
+ * </p>
+ *
+ * <p>
+ * The Test Set is append-only: the <code>remove</code> methods throw an
+ * {@link UnsupportedOperationException}, and so do the lists returned by
+ * {@link #getTestResults()} and {@link #getTapLines()}.
+ * </p>
+ *
+ * @since 4.2.1
+ */
+public class CompactTestSet extends TestSet {
+
+    /**
+     * Serial Version UID.
+     */
+    private static final long serialVersionUID = -8315016306431532311L;
+
+    /**
+     * Capacity allocated for the first Test Result.
+     */
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * Code of a missing status or directive.
+     */
+    private static final byte NONE = 0;
+
+    /**
+     * Number of Test Results.
+     */
+    private int size = 0;
+
+    /**
+     * Status codes.
+     */
+    private byte[] statuses = new byte[0];
+
+    /**
+     * Directive codes.
+     */
+    private byte[] directives = new byte[0];
+
+    /**
+     * Test Numbers.
+     */
+    private int[] testNumbers = new int[0];
+
+    /**
+     * Descriptions, as indexes in the string table.
+     */
+    private int[] descriptions = new int[0];
+
+    /**
+     * Directive reasons, as indexes in the string table. Allocated for the
+     * first directive with a reason.
+     */
+    private int[] reasons = null;
+
+    /**
+     * Table of unique strings.
+     */
+    private final StringTable strings = new StringTable();
+
+    /**
+     * Test Results kept as they are, by position.
+     */
+    private final Map<Integer, TestResult> fullTestResults =
+        new HashMap<Integer, TestResult>();
+
+    /**
+     * Positions of the other TAP Lines, in the whole list of TAP Lines.
+     */
+    private int[] otherPositions = new int[0];
+
+    /**
+     * Number of Test Results, by category.
+     *
+     * @see TestSetSummary#category(StatusValues, DirectiveValues)
+     */
+    private final int[] counts = new int[TestSetSummary.CATEGORIES];
+
+    /**
+     * Number of changes of the status or directive of counted Test Results
+     * when the counters were last checked.
+     *
+     * @see TestResult#getCategoryChanges()
+     */
+    private transient int categoryChanges = TestResult.getCategoryChanges();
+
+    /**
+     * Whether the Test Numbers are the sequence 1, 2, 3...
+     */
+    private boolean sequential = true;
+
+    /**
+     * Position of the last Test Result added, kept as it is until a TAP Line
+     * other than a Comment is added, or <code>-1</code>.
+     */
+    private int pending = -1;
+
+    /**
+     * Creates an empty Test Set.
+     */
+    public CompactTestSet() {
+        super();
+    }
+
+    /**
+     * Creates a compact copy of a Test Set.
+     *
+     * @param testSet Test Set
+     */
+    public CompactTestSet(TestSet testSet) {
+        super();
+        setHeader(testSet.getHeader());
+        setPlan(testSet.getPlan());
+        setFooter(testSet.getFooter());
+        final List<TestResult> testResults = testSet.getTestResults();
+        final List<BailOut> bailOuts = testSet.getBailOuts();
+        final List<Comment> comments = testSet.getComments();
+        int nextTestResult = 0;
+        int nextBailOut = 0;
+        int nextComment = 0;
+        for (TapElement tapLine : testSet.getTapLines()) {
+            if (nextTestResult < testResults.size()
+                    && tapLine == testResults.get(nextTestResult)) {
+                addTestResult(testResults.get(nextTestResult++));
+            } else if (nextBailOut < bailOuts.size()
+                    && tapLine == bailOuts.get(nextBailOut)) {
+                addBailOut(bailOuts.get(nextBailOut++));
+            } else if (nextComment < comments.size()
+                    && tapLine == comments.get(nextComment)) {
+                addComment(comments.get(nextComment++));
+            } else {
+                addOtherTapLine(tapLine);
+            }
+        }
+        // Test Results that are not TAP Lines
+        while (nextTestResult < testResults.size()) {
+            addTestResult(testResults.get(nextTestResult++));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<TapElement> getTapLines() {
+        return new TapLinesView();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<TestResult> getTestResults() {
+        return new TestResultsView();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getNextTestNumber() {
+        return size + 1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean addTapLine(TapResult tapLine) {
+        addOtherTapLine(tapLine);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean addTestResult(TestResult testResult) {
+        if (testResult.getTestNumber() == null
+                || testResult.getTestNumber() <= 0) {
+            testResult.setTestNumber(size + 1);
+        }
+        compactPending();
+        if (size == statuses.length) {
+            grow();
+        }
+        record(size, testResult);
+        testResult.setCounted();
+        counts[TestSetSummary.category(testResult)]++;
+        fullTestResults.put(size, testResult);
+        pending = size;
+        size++;
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean addBailOut(BailOut bailOut) {
+        compactPending();
+        addPosition();
+        return super.addBailOut(bailOut);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean addComment(Comment comment) {
+        // the parser attaches the comment to the last Test Result too
+        addPosition();
+        return super.addComment(comment);
+    }
+
+    /**
+     * Not supported, the Test Set is append-only.
+     *
+     * @param tapLine TAP Line object.
+     * @return never
+     */
+    @Override
+    protected boolean removeTapLine(TapResult tapLine) {
+        throw new UnsupportedOperationException(
+                "Cannot remove TAP Lines from a compact Test Set");
+    }
+
+    /**
+     * Not supported, the Test Set is append-only.
+     *
+     * @param testResult Test Result.
+     * @return never
+     */
+    @Override
+    public boolean removeTestResult(TestResult testResult) {
+        throw new UnsupportedOperationException(
+                "Cannot remove Test Results from a compact Test Set");
+    }
+
+    /**
+     * Not supported, the Test Set is append-only.
+     *
+     * @param bailOut Bail Out object.
+     * @return never
+     */
+    @Override
+    public boolean removeBailOut(BailOut bailOut) {
+        throw new UnsupportedOperationException(
+                "Cannot remove Bail Outs from a compact Test Set");
+    }
+
+    /**
+     * Not supported, the Test Set is append-only.
+     *
+     * @param comment Comment.
+     * @return never
+     */
+    @Override
+    public boolean removeComment(Comment comment) {
+        throw new UnsupportedOperationException(
+                "Cannot remove Comments from a compact Test Set");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getNumberOfTapLines() {
+        return size + super.getNumberOfTapLines();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getNumberOfTestResults() {
+        return size;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Boolean containsOk() {
+        return getSummary().getOk() > 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Boolean containsNotOk() {
+        return getSummary().getNotOk() > 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public TestSetSummary getSummary() {
+        final int changes = TestResult.getCategoryChanges();
+        if (changes != categoryChanges) {
+            for (Map.Entry<Integer, TestResult> entry : fullTestResults.entrySet()) {
+                recordAgain(entry.getKey(), entry.getValue());
+            }
+            categoryChanges = changes;
+        }
+        return new TestSetSummary(counts, size, getNumberOfBailOuts(),
+                getPlan());
+    }
+
+    /**
+     * Looks up a Test Result by its number. This takes constant time when the
+     * Test Numbers are the sequence 1, 2, 3... as they usually are, and linear
+     * time otherwise.
+     *
+     * @param testNumber test result number.
+     * @return View of the first Test Result with given number.
+     */
+    @Override
+    public TestResult getTestResult(Integer testNumber) {
+        if (testNumber == null) {
+            return null;
+        }
+        final int number = testNumber.intValue();
+        if (sequential) {
+            return number > 0 && number <= size ? view(number - 1) : null;
+        }
+        for (int i = 0; i < size; i++) {
+            if (testNumbers[i] == number) {
+                return view(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Also compacts the last Test Result added, if it can be.
+     */
+    @Override
+    public void trimToSize() {
+        compactPending();
+        super.trimToSize();
+        statuses = Arrays.copyOf(statuses, size);
+        directives = Arrays.copyOf(directives, size);
+        testNumbers = Arrays.copyOf(testNumbers, size);
+        descriptions = Arrays.copyOf(descriptions, size);
+        if (reasons != null) {
+            reasons = Arrays.copyOf(reasons, size);
+        }
+        otherPositions = Arrays.copyOf(otherPositions,
+                super.getNumberOfTapLines());
+        strings.trimToSize();
+    }
+
+    /**
+     * Creates an immutable snapshot of the Test Set. Unlike the one of a
+     * {@link TestSet}, this takes linear time, as it creates the views of all
+     * the Test Results, and it must not run while Test Results are added.
+     *
+     * @return Immutable snapshot of the Test Set.
+     */
+    @Override
+    public TestSetSnapshot freeze() {
+        final List<TestResult> testResults = new ArrayList<TestResult>(size);
+        for (int i = 0; i < size; i++) {
+            testResults.add(view(i));
+        }
+        final List<TapElement> others = super.getTapLines();
+        final List<TapElement> tapLines = new ArrayList<TapElement>(
+                getNumberOfTapLines());
+        int other = 0;
+        for (TestResult testResult : testResults) {
+            while (other < others.size()
+                    && otherPositions[other] == tapLines.size()) {
+                tapLines.add(others.get(other++));
+            }
+            tapLines.add(testResult);
+        }
+        while (other < others.size()) {
+            tapLines.add(others.get(other++));
+        }
+        return new TestSetSnapshot(getHeader(), getPlan(), getFooter(),
+                Collections.unmodifiableList(tapLines),
+                Collections.unmodifiableList(testResults),
+                Collections.unmodifiableList(new ArrayList<BailOut>(
+                        getBailOuts())),
+                Collections.unmodifiableList(new ArrayList<Comment>(
+                        getComments())));
+    }
+
+    /**
+     * @return Number of unique descriptions and directive reasons.
+     */
+    public int getNumberOfStrings() {
+        return strings.size();
+    }
+
+    /**
+     * Creates a view of a Test Result.
+     *
+     * @param index position of the Test Result
+     * @return Test Result, either kept as it was or created from the columns
+     */
+    private TestResult view(int index) {
+        final TestResult full = fullTestResults.get(index);
+        if (full != null) {
+            return full;
+        }
+        final TestResult testResult = new TestResult(status(statuses[index]),
+                testNumbers[index]);
+        testResult.setDescription(strings.get(descriptions[index]));
+        if (directives[index] != NONE) {
+            testResult.setDirective(new Directive(
+                    directive(directives[index]),
+                    reasons == null ? null : strings.get(reasons[index])));
+        }
+        return testResult;
+    }
+
+    /**
+     * Adds a TAP Line that is not a Test Result of the Test Set.
+     *
+     * @param tapLine TAP Line
+     */
+    private void addOtherTapLine(TapElement tapLine) {
+        compactPending();
+        addPosition();
+        super.getTapLines().add(tapLine);
+    }
+
+    /**
+     * Records the position of a TAP Line that is not a Test Result, before
+     * adding it.
+     */
+    private void addPosition() {
+        final int others = super.getNumberOfTapLines();
+        if (others == otherPositions.length) {
+            otherPositions = Arrays.copyOf(otherPositions,
+                    Math.max(DEFAULT_CAPACITY, others + (others >> 1)));
+        }
+        otherPositions[others] = size + others;
+    }
+
+    /**
+     * Stores a Test Result in the columns.
+     *
+     * @param index position of the Test Result
+     * @param testResult Test Result
+     */
+    private void record(int index, TestResult testResult) {
+        final Directive directive = testResult.getDirective();
+        statuses[index] = statusCode(testResult.getStatus());
+        directives[index] = directive == null ? NONE
+                : directiveCode(directive.getDirectiveValue());
+        testNumbers[index] = testResult.getTestNumber();
+        descriptions[index] = strings.add(testResult.getDescription());
+        if (directive != null && directive.getReason() != null) {
+            if (reasons == null) {
+                reasons = new int[statuses.length];
+                Arrays.fill(reasons, -1);
+            }
+            reasons[index] = strings.add(directive.getReason());
+        } else if (reasons != null) {
+            reasons[index] = -1;
+        }
+        sequential = sequential && testNumbers[index] == index + 1;
+    }
+
+    /**
+     * Stores the columns of a Test Result kept as it is again, and moves it
+     * to its current category, in case it was changed since it was added.
+     *
+     * @param index position of the Test Result
+     * @param testResult Test Result
+     */
+    private void recordAgain(int index, TestResult testResult) {
+        counts[TestSetSummary.category(status(statuses[index]),
+                directive(directives[index]))]--;
+        record(index, testResult);
+        counts[TestSetSummary.category(testResult)]++;
+    }
+
+    /**
+     * Compacts the last Test Result added, now that nothing more will be
+     * attached to it, unless it carries more than the columns hold. Its
+     * columns are stored again, in case it was changed since it was added.
+     */
+    private void compactPending() {
+        if (pending < 0) {
+            return;
+        }
+        final TestResult testResult = fullTestResults.get(pending);
+        recordAgain(pending, testResult);
+        if (isCompactable(testResult)) {
+            fullTestResults.remove(pending);
+        }
+        pending = -1;
+    }
+
+    /**
+     * Grows the columns by half of their capacity.
+     */
+    private void grow() {
+        final int capacity = Math.max(DEFAULT_CAPACITY, size + (size >> 1));
+        statuses = Arrays.copyOf(statuses, capacity);
+        directives = Arrays.copyOf(directives, capacity);
+        testNumbers = Arrays.copyOf(testNumbers, capacity);
+        descriptions = Arrays.copyOf(descriptions, capacity);
+        if (reasons != null) {
+            reasons = Arrays.copyOf(reasons, capacity);
+            Arrays.fill(reasons, size, capacity, -1);
+        }
+    }
+
+    /**
+     * @param testResult Test Result
+     * @return <code>true</code> if the columns hold everything about the Test
+     *         Result, <code>false</code> if it must be kept as it is.
+     */
+    private static boolean isCompactable(TestResult testResult) {
+        final Directive directive = testResult.getDirective();
+        return testResult.getIndentation() == 0
+                && testResult.getComment() == null
+                && testResult.getRawDiagnostic() == null
+                && !testResult.hasDiagnostic()
+                && !testResult.hasComments()
+                && testResult.getSubtest() == null
+                && (directive == null || directive.getDirectiveValue() != null);
+    }
+
+    /**
+     * @param status status
+     * @return Code of the status.
+     */
+    private static byte statusCode(StatusValues status) {
+        return status == null ? NONE : (byte) (status.ordinal() + 1);
+    }
+
+    /**
+     * @param code code of a status
+     * @return Status.
+     */
+    private static StatusValues status(byte code) {
+        return code == NONE ? null : StatusValues.values()[code - 1];
+    }
+
+    /**
+     * @param directive directive value
+     * @return Code of the directive value.
+     */
+    private static byte directiveCode(DirectiveValues directive) {
+        return directive == null ? NONE : (byte) (directive.ordinal() + 1);
+    }
+
+    /**
+     * @param code code of a directive value
+     * @return Directive value.
+     */
+    private static DirectiveValues directive(byte code) {
+        return code == NONE ? null : DirectiveValues.values()[code - 1];
+    }
+
+    /**
+     * Read-only view of the Test Results.
+     */
+    private class TestResultsView extends AbstractList<TestResult> implements
+            RandomAccess {
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public TestResult get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index
+                        + ", Size: " + size);
+            }
+            return view(index);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int size() {
+            return size;
+        }
+
+    }
+
+    /**
+     * Read-only view of the TAP Lines, merging the Test Results and the other
+     * TAP Lines.
+     */
+    private class TapLinesView extends AbstractList<TapElement> implements
+            RandomAccess {
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public TapElement get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Index: " + index
+                        + ", Size: " + size());
+            }
+            final List<TapElement> others = CompactTestSet.super.getTapLines();
+            final int other = Arrays.binarySearch(otherPositions, 0,
+                    others.size(), index);
+            if (other >= 0) {
+                return others.get(other);
+            }
+            // number of other TAP Lines before the position
+            return view(index - (-other - 1));
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int size() {
+            return getNumberOfTapLines();
+        }
+
+    }
+
+    /**
+     * Table of unique strings, giving each one an index.
+     */
+    private static final class StringTable implements Serializable {
+
+        /**
+         * Serial Version UID.
+         */
+        private static final long serialVersionUID = 2046713938562370541L;
+
+        /**
+         * Index of each string.
+         */
+        private final Map<String, Integer> indexes =
+            new HashMap<String, Integer>();
+
+        /**
+         * Strings, by index.
+         */
+        private String[] strings = new String[DEFAULT_CAPACITY];
+
+        /**
+         * Number of strings.
+         */
+        private int size = 0;
+
+        /**
+         * @param string string, may be <code>null</code>
+         * @return Index of the string, or <code>-1</code> for
+         *         <code>null</code>.
+         */
+        int add(String string) {
+            if (string == null) {
+                return -1;
+            }
+            final Integer index = indexes.get(string);
+            if (index != null) {
+                return index.intValue();
+            }
+            if (size == strings.length) {
+                strings = Arrays.copyOf(strings,
+                        Math.max(DEFAULT_CAPACITY, size + (size >> 1)));
+            }
+            strings[size] = string;
+            indexes.put(string, size);
+            return size++;
+        }
+
+        /**
+         * @param index index of a string, or <code>-1</code>
+         * @return String, or <code>null</code>.
+         */
+        String get(int index) {
+            return index < 0 ? null : strings[index];
+        }
+
+        /**
+         * @return Number of strings.
+         */
+        int size() {
+            return size;
+        }
+
+        /**
+         * Releases the unused slots of the array.
+         */
+        void trimToSize() {
+            strings = Arrays.copyOf(strings, size);
+        }
+
+    }
+
+}
@@ -24,8 +24,12 @@
 package org.tap4j.model;
 
 import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
  * A TAP element.
@@ -39,6 +43,22 @@ public class TapElement implements Serializable {
      */
     private static final long serialVersionUID = 9108597596777603763L;
 
+    /**
+     * Diagnostic of the elements that have none, replaced with a new map the
+     * first time the diagnostic is requested. Most elements never have one.
+     * It is serialized as an empty {@link LinkedHashMap}, so that the
+     * versions without it can read the elements.
+     */
+    private static final Map<String, Object> NO_DIAGNOSTIC = new NoDiagnostic();
+
+    /**
+     * Replaces {@link #NO_DIAGNOSTIC} atomically, so that threads requesting
+     * the diagnostic at the same time get the same map.
+     */
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<TapElement, Map> DIAGNOSTIC =
+        AtomicReferenceFieldUpdater.newUpdater(TapElement.class, Map.class, "diagnostic");
+
     /**
      * Input line indentation.
      */
@@ -47,7 +67,12 @@ public class TapElement implements Serializable {
     /**
      * Iterable object returned by SnakeYAML.
      */
-    private Map<String, Object> diagnostic = new LinkedHashMap<String, Object>();
+    private volatile Map<String, Object> diagnostic = NO_DIAGNOSTIC;
+
+    /**
+     * YAML text of the diagnostic, as found in the TAP Stream.
+     */
+    private String rawDiagnostic;
 
     /**
      * Comment.
@@ -63,20 +88,67 @@ public class TapElement implements Serializable {
         return indentation;
     }
 
+    /**
+     * @param indentation Indentation in the original stream
+     * @since 4.2.1
+     */
+    public void setIndentation(int indentation) {
+        this.indentation = indentation;
+    }
+
     /**
      * YAML diagnostic information.
      * @return the YAML diagnostic as a map
      */
     public Map<String, Object> getDiagnostic() {
+        if (this.diagnostic == NO_DIAGNOSTIC) {
+            // a map set meanwhile by another thread is kept
+            DIAGNOSTIC.compareAndSet(this, NO_DIAGNOSTIC,
+                    new LinkedHashMap<String, Object>());
+        }
         return this.diagnostic;
     }
 
     /**
-     * YAML diagnostic information setter.
+     * Whether there is YAML diagnostic information. Unlike
+     * {@link #getDiagnostic()}, this never creates an empty map.
+     * @return <code>true</code> if the diagnostic has entries,
+     * <code>false</code> otherwise
+     * @since 4.2.1
+     */
+    public boolean hasDiagnostic() {
+        final Map<String, Object> current = this.diagnostic;
+        return current != null && !current.isEmpty();
+    }
+
+    /**
+     * YAML diagnostic information setter. The raw YAML text no longer
+     * describes the diagnostic, so it is cleared.
      * @param diagnostic TAP element YAML diagnostic map
      */
     public void setDiagnostic(Map<String, Object> diagnostic) {
         this.diagnostic = diagnostic;
+        this.rawDiagnostic = null;
+    }
+
+    /**
+     * YAML diagnostic information, as found in the TAP Stream. Unlike
+     * {@link #getDiagnostic()}, this never parses the YAML.
+     * @return the YAML text of the diagnostic, or <code>null</code> if the
+     * element was not parsed with a lazy diagnostic
+     * @since 4.2.1
+     */
+    public String getRawDiagnostic() {
+        return this.rawDiagnostic;
+    }
+
+    /**
+     * Raw YAML diagnostic information setter.
+     * @param rawDiagnostic YAML text of the diagnostic
+     * @since 4.2.1
+     */
+    public void setRawDiagnostic(String rawDiagnostic) {
+        this.rawDiagnostic = rawDiagnostic;
     }
 
     /**
@@ -92,4 +164,31 @@ public class TapElement implements Serializable {
     public Comment getComment() {
         return this.comment;
     }
+
+    /**
+     * Empty diagnostic shared by the elements that have none.
+     */
+    private static final class NoDiagnostic extends AbstractMap<String, Object>
+            implements Serializable {
+
+        /**
+         * Serial Version UID.
+         */
+        private static final long serialVersionUID = -3580524564927227416L;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Set<Map.Entry<String, Object>> entrySet() {
+            return Collections.emptySet();
+        }
+
+        /**
+         * @return an empty map, of a class known by all the versions
+         */
+        private Object writeReplace() {
+            return new LinkedHashMap<String, Object>();
+        }
+    }
 }
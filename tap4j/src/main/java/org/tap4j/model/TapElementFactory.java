@@ -26,6 +26,7 @@ package org.tap4j.model;
 import java.util.regex.Matcher;
 import org.tap4j.util.DirectiveValues;
 import org.tap4j.util.StatusValues;
+import org.tap4j.util.StringCache;
 
 /**
  * Factory to produce {@link TapElement}s from given textual source.
@@ -66,12 +67,24 @@ public final class TapElementFactory {
      * @return a {@link TapElement} created with from the given TAP stream line, or {@code null} if not a valid token
      */
     public static TapElement createTapElement(String tapLine) {
+        return createTapElement(tapLine, null);
+    }
+
+    /**
+     * Create a {@link TapElement} given a TAP stream line, sharing the strings
+     * of comments, bail outs and test results through a cache.
+     * @param tapLine TAP stream line
+     * @param strings cache of strings, or {@code null} not to share them
+     * @return a {@link TapElement} created with from the given TAP stream line, or {@code null} if not a valid token
+     * @since 4.2.1
+     */
+    public static TapElement createTapElement(String tapLine, StringCache strings) {
 
         Matcher m;
 
         m = Patterns.COMMENT_PATTERN.matcher(tapLine);
         if (m.matches()) {
-            Comment comment = new Comment(m.group(3), false);
+            Comment comment = new Comment(cached(strings, m.group(3)), false);
             comment.indentation = m.group(1).length();
             return comment;
         }
@@ -107,7 +120,7 @@ public final class TapElementFactory {
         if (m.matches()) {
             String reason = m.group(3);
             String comment = m.group(5);
-            BailOut bailOut = new BailOut(reason);
+            BailOut bailOut = new BailOut(cached(strings, reason));
             addComment(bailOut, comment);
             bailOut.indentation = m.group(1).length();
             return bailOut;
@@ -123,14 +136,14 @@ public final class TapElementFactory {
             TestResult testResult = new TestResult(StatusValues.get(m.group(3)), testNumber);
             String comment = m.group(10);
             if (comment != null && comment.trim().length() > 0) {
-                final Comment c = new Comment(comment, true);
+                final Comment c = new Comment(cached(strings, comment), true);
                 testResult.setComment(c);
                 testResult.addComment(c);
             }
-            testResult.setDescription(m.group(5));
+            testResult.setDescription(cached(strings, m.group(5)));
             DirectiveValues directive = DirectiveValues.get(m.group(7));
             if (directive != null) {
-                testResult.setDirective(new Directive(directive, m.group(8)));
+                testResult.setDirective(new Directive(directive, cached(strings, m.group(8))));
             }
             testResult.indentation = m.group(1).length();
             return testResult;
@@ -139,6 +152,15 @@ public final class TapElementFactory {
         return null;
     }
 
+    /**
+     * @param strings cache of strings, may be {@code null}
+     * @param string a string, may be {@code null}
+     * @return the cached instance of the string, or the string itself if there is no cache
+     */
+    static String cached(StringCache strings, String string) {
+        return strings == null ? string : strings.get(string);
+    }
+
     /**
      * Add a comment to a {@link TapElement}, as long as the comment is not empty.
      * @param element TAP element
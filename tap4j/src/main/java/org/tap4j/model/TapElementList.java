@@ -0,0 +1,316 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.model;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * List of TAP elements backed by a growable array, used by {@link TestSet}.
+ *
+ * <p>
+ * Unlike a {@link java.util.LinkedList}, it needs no node per element, and
+ * it gives access by position in constant time. Subclasses are notified of
+ * every element added or removed, including through the iterators, so that
+ * the {@link TestSet} can keep its indexes up to date even when the list is
+ * changed directly.
+ * </p>
+ *
+ * <p>
+ * {@link #freeze()} returns an immutable copy of the list that shares its
+ * array. Elements added at the end go to slots the copy does not see, or to a
+ * new array when it grows, and the other changes copy the array first if it
+ * is shared. Another thread may freeze the list while elements are being
+ * added at its end; the other changes must not run while the list is being
+ * frozen.
+ * </p>
+ *
+ * @param <E> type of the elements
+ * @since 4.2.1
+ */
+class TapElementList<E> extends AbstractList<E> implements RandomAccess,
+        Serializable {
+
+    /**
+     * Serial Version UID.
+     */
+    private static final long serialVersionUID = -3447815043216480916L;
+
+    /**
+     * Capacity allocated for the first element.
+     */
+    private static final int DEFAULT_CAPACITY = 10;
+
+    /**
+     * Shared array of the empty lists.
+     */
+    private static final Object[] EMPTY = new Object[0];
+
+    /**
+     * Elements, followed by unused slots. Only this array is ever written to:
+     * an array replaced by a larger one is left as it is.
+     */
+    private volatile Object[] elements = EMPTY;
+
+    /**
+     * Number of elements. Writing it publishes the elements and the array to
+     * the threads that read it before reading them.
+     */
+    private volatile int size = 0;
+
+    /**
+     * Array last shared with a frozen copy of the list. The array in use is
+     * shared if it is this one, so replacing the array needs no reset that
+     * could race with {@link #freeze()}.
+     */
+    private transient volatile Object[] sharedArray = null;
+
+    /**
+     * Creates an empty list. No array is allocated until the first element is
+     * added.
+     */
+    TapElementList() {
+        super();
+    }
+
+    /**
+     * Called after an element was added to the list.
+     *
+     * @param element element added
+     */
+    protected void added(E element) {
+    }
+
+    /**
+     * Called after an element was removed from the list.
+     *
+     * @param element element removed
+     */
+    protected void removed(E element) {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        checkIndex(index);
+        return (E) elements[index];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public E set(int index, E element) {
+        final E old = get(index);
+        unshare();
+        elements[index] = element;
+        removed(old);
+        added(element);
+        return old;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void add(int index, E element) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: "
+                    + size);
+        }
+        if (size == elements.length) {
+            grow();
+        } else if (index < size) {
+            unshare();
+        }
+        final Object[] array = elements;
+        System.arraycopy(array, index, array, index + 1, size - index);
+        array[index] = element;
+        size++;
+        modCount++;
+        added(element);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public E remove(int index) {
+        final E old = get(index);
+        unshare();
+        final Object[] array = elements;
+        System.arraycopy(array, index + 1, array, index, size - index - 1);
+        array[--size] = null;
+        modCount++;
+        removed(old);
+        return old;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void clear() {
+        final Object[] old = elements;
+        final int oldSize = size;
+        elements = EMPTY;
+        size = 0;
+        modCount++;
+        for (int i = 0; i < oldSize; i++) {
+            removed((E) old[i]);
+        }
+    }
+
+    /**
+     * Releases the unused slots of the array.
+     */
+    public void trimToSize() {
+        if (size < elements.length) {
+            final Object[] trimmed = size == 0 ? EMPTY : new Object[size];
+            System.arraycopy(elements, 0, trimmed, 0, size);
+            elements = trimmed;
+        }
+    }
+
+    /**
+     * Creates an immutable copy of the list in constant time. The copy shares
+     * the array and the elements of the list.
+     *
+     * @return immutable list of the current elements
+     */
+    public List<E> freeze() {
+        // read the size first: the array read next holds at least as many
+        final int frozenSize = size;
+        if (frozenSize == 0) {
+            return Collections.emptyList();
+        }
+        final Object[] array = elements;
+        sharedArray = array;
+        return new FrozenList<E>(array, frozenSize);
+    }
+
+    /**
+     * Grows the array by half of its capacity. The new array is not shared.
+     */
+    private void grow() {
+        final Object[] array = elements;
+        final int capacity = array.length == 0 ? DEFAULT_CAPACITY
+                : array.length + (array.length >> 1);
+        final Object[] grown = new Object[capacity];
+        System.arraycopy(array, 0, grown, 0, size);
+        elements = grown;
+    }
+
+    /**
+     * Copies the array if it is shared with frozen copies, before changing
+     * its elements.
+     */
+    private void unshare() {
+        final Object[] array = elements;
+        if (array == sharedArray) {
+            final Object[] copy = new Object[array.length];
+            System.arraycopy(array, 0, copy, 0, size);
+            elements = copy;
+        }
+    }
+
+    /**
+     * @param index position of an element
+     * @throws IndexOutOfBoundsException if there is no element at the position
+     */
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: "
+                    + size);
+        }
+    }
+
+    /**
+     * Immutable list sharing the array of a {@link TapElementList}.
+     *
+     * @param <E> type of the elements
+     */
+    private static final class FrozenList<E> extends AbstractList<E>
+            implements RandomAccess {
+
+        /**
+         * Array, whose first elements are the ones of the list.
+         */
+        private final Object[] elements;
+
+        /**
+         * Number of elements.
+         */
+        private final int size;
+
+        /**
+         * @param elements array, whose first elements are the ones of the
+         *        list
+         * @param size number of elements
+         */
+        FrozenList(Object[] elements, int size) {
+            super();
+            this.elements = elements;
+            this.size = size;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        @SuppressWarnings("unchecked")
+        public E get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index
+                        + ", Size: " + size);
+            }
+            return (E) elements[index];
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int size() {
+            return size;
+        }
+
+    }
+
+}
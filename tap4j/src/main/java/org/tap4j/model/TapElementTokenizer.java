@@ -0,0 +1,421 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.model;
+
+import org.tap4j.util.DirectiveValues;
+import org.tap4j.util.StatusValues;
+import org.tap4j.util.StringCache;
+
+/**
+ * Hand-written, single pass alternative to {@link TapElementFactory}.
+ *
+ * <p>
+ * Instead of trying each regular expression in {@link Patterns} in turn, the
+ * tokenizer skips the indentation, dispatches on the first non blank
+ * character and extracts the fields of the element while walking the line.
+ * The elements created are the same that {@link TapElementFactory} would
+ * create for the same line, including the quirks of the regular expressions
+ * (e.g. trailing blanks kept in descriptions and footer texts).
+ * </p>
+ *
+ * <p>
+ * Lines containing line terminators never come out of the parser, but as
+ * the regular expressions treat them specially, such lines are handed over
+ * to {@link TapElementFactory}.
+ * </p>
+ *
+ * @since 4.2.1
+ */
+public final class TapElementTokenizer {
+
+    /**
+     * TAP token, used by headers and footers.
+     */
+    private static final String TAP = "TAP";
+
+    /**
+     * Version token, used by headers.
+     */
+    private static final String VERSION = "version";
+
+    /**
+     * Bail out token.
+     */
+    private static final String BAIL_OUT = "Bail out!";
+
+    /**
+     * Plan range separator.
+     */
+    private static final String PLAN_SEPARATOR = "..";
+
+    /**
+     * Length of the SKIP and TODO directives.
+     */
+    private static final int DIRECTIVE_LENGTH = 4;
+
+    /**
+     * Hidden constructor.
+     */
+    private TapElementTokenizer() {
+        // prevent instantiation
+    }
+
+    /**
+     * Create a text element. The counterpart of
+     * {@link TapElementFactory#createTextElement(String)}.
+     *
+     * @param tapLine TAP stream line
+     * @return a {@link Text} TAP element
+     */
+    public static Text createTextElement(String tapLine) {
+        if (containsLineTerminator(tapLine)) {
+            return TapElementFactory.createTextElement(tapLine);
+        }
+        final int indentation = skipWhitespace(tapLine, 0);
+        final Text result = new Text(tapLine);
+        result.setIndentationString(tapLine.substring(0, indentation));
+        result.indentation = indentation;
+        return result;
+    }
+
+    /**
+     * Create a {@link TapElement} given a TAP stream line. The counterpart of
+     * {@link TapElementFactory#createTapElement(String)}.
+     *
+     * @param tapLine TAP stream line
+     * @return a {@link TapElement} created with from the given TAP stream line, or {@code null} if not a valid token
+     */
+    public static TapElement createTapElement(String tapLine) {
+        return createTapElement(tapLine, null);
+    }
+
+    /**
+     * Create a {@link TapElement} given a TAP stream line, sharing the strings
+     * of comments, bail outs and test results through a cache. The
+     * counterpart of {@link TapElementFactory#createTapElement(String, StringCache)}.
+     *
+     * @param tapLine TAP stream line
+     * @param strings cache of strings, or {@code null} not to share them
+     * @return a {@link TapElement} created with from the given TAP stream line, or {@code null} if not a valid token
+     * @since 4.2.1
+     */
+    public static TapElement createTapElement(String tapLine, StringCache strings) {
+        if (containsLineTerminator(tapLine)) {
+            return TapElementFactory.createTapElement(tapLine, strings);
+        }
+
+        final int indentation = skipWhitespace(tapLine, 0);
+        if (indentation == tapLine.length()) {
+            return null;
+        }
+
+        final TapElement element;
+        final char c = tapLine.charAt(indentation);
+        switch (c) {
+            case '#':
+                element = new Comment(TapElementFactory.cached(strings,
+                        tapLine.substring(skipWhitespace(tapLine, indentation + 1))), false);
+                break;
+            case 'T':
+                element = createHeaderOrFooter(tapLine, indentation);
+                break;
+            case 'B':
+                element = createBailOut(tapLine, indentation, strings);
+                break;
+            case 'o':
+            case 'n':
+                element = createTestResult(tapLine, indentation, strings);
+                break;
+            default:
+                element = isDigit(c) ? createPlan(tapLine, indentation) : null;
+                break;
+        }
+
+        if (element != null) {
+            element.indentation = indentation;
+        }
+        return element;
+    }
+
+    /**
+     * Tokenize a header, or a footer if the line is not a valid header.
+     *
+     * @param tapLine TAP stream line
+     * @param start position of the first non blank character
+     * @return a {@link Header}, a {@link Footer} or {@code null}
+     */
+    private static TapElement createHeaderOrFooter(String tapLine, int start) {
+        if (!tapLine.startsWith(TAP, start)) {
+            return null;
+        }
+        final int afterTap = skipWhitespace(tapLine, start + TAP.length());
+
+        if (tapLine.startsWith(VERSION, afterTap)) {
+            final int versionStart = skipWhitespace(tapLine, afterTap + VERSION.length());
+            final int versionEnd = skipDigits(tapLine, versionStart);
+            if (versionEnd > versionStart) {
+                final int pos = skipWhitespace(tapLine, versionEnd);
+                if (pos == tapLine.length() || tapLine.charAt(pos) == '#') {
+                    Header header = new Header(Integer.parseInt(tapLine.substring(versionStart, versionEnd)));
+                    TapElementFactory.addComment(header, commentAt(tapLine, pos));
+                    return header;
+                }
+            }
+        }
+
+        final int hash = indexOfHash(tapLine, afterTap);
+        Footer footer = new Footer(tapLine.substring(afterTap, hash));
+        TapElementFactory.addComment(footer, commentAt(tapLine, hash));
+        return footer;
+    }
+
+    /**
+     * Tokenize a plan.
+     *
+     * @param tapLine TAP stream line
+     * @param start position of the first non blank character
+     * @return a {@link Plan} or {@code null}
+     */
+    private static Plan createPlan(String tapLine, int start) {
+        final int length = tapLine.length();
+        final int initialEnd = skipDigits(tapLine, start);
+        if (!tapLine.startsWith(PLAN_SEPARATOR, initialEnd)) {
+            return null;
+        }
+        final int lastStart = initialEnd + PLAN_SEPARATOR.length();
+        final int lastEnd = skipDigits(tapLine, lastStart);
+        if (lastEnd == lastStart) {
+            return null;
+        }
+
+        int pos = skipWhitespace(tapLine, lastEnd);
+        String skip = null;
+        if (pos < length && tapLine.charAt(pos) == '#') {
+            final int directive = skipWhitespace(tapLine, pos + 1);
+            if (tapLine.startsWith("SKIP", directive) || tapLine.startsWith("skip", directive)) {
+                final int afterDirective = directive + DIRECTIVE_LENGTH;
+                int reasonStart = skipWhitespace(tapLine, afterDirective);
+                final int reasonEnd = indexOfHash(tapLine, reasonStart);
+                if (reasonEnd == reasonStart && reasonStart > afterDirective) {
+                    // the reason needs at least one character, give back a blank
+                    reasonStart--;
+                }
+                if (reasonEnd > reasonStart) {
+                    skip = tapLine.substring(reasonStart, reasonEnd);
+                    pos = reasonEnd;
+                }
+            }
+        }
+        final String comment;
+        if (pos < length) {
+            if (tapLine.charAt(pos) != '#') {
+                return null;
+            }
+            comment = commentAt(tapLine, pos);
+        } else {
+            comment = null;
+        }
+
+        SkipPlan skipPlan = (skip != null && skip.trim().length() > 0) ? new SkipPlan(skip) : null;
+        Plan plan = new Plan(Integer.parseInt(tapLine.substring(start, initialEnd)),
+                Integer.parseInt(tapLine.substring(lastStart, lastEnd)), skipPlan);
+        TapElementFactory.addComment(plan, comment);
+        return plan;
+    }
+
+    /**
+     * Tokenize a bail out.
+     *
+     * @param tapLine TAP stream line
+     * @param start position of the first non blank character
+     * @param strings cache of strings, may be {@code null}
+     * @return a {@link BailOut} or {@code null}
+     */
+    private static BailOut createBailOut(String tapLine, int start, StringCache strings) {
+        if (!tapLine.startsWith(BAIL_OUT, start)) {
+            return null;
+        }
+        final int reasonStart = skipWhitespace(tapLine, start + BAIL_OUT.length());
+        final int reasonEnd = indexOfHash(tapLine, reasonStart);
+        BailOut bailOut = new BailOut(reasonEnd > reasonStart
+                ? TapElementFactory.cached(strings, tapLine.substring(reasonStart, reasonEnd)) : null);
+        TapElementFactory.addComment(bailOut, commentAt(tapLine, reasonEnd));
+        return bailOut;
+    }
+
+    /**
+     * Tokenize a test result.
+     *
+     * @param tapLine TAP stream line
+     * @param start position of the first non blank character
+     * @param strings cache of strings, may be {@code null}
+     * @return a {@link TestResult} or {@code null}
+     */
+    private static TestResult createTestResult(String tapLine, int start, StringCache strings) {
+        final StatusValues status;
+        int pos;
+        if (tapLine.startsWith("ok", start)) {
+            status = StatusValues.OK;
+            pos = start + StatusValues.OK.toString().length();
+        } else if (tapLine.startsWith("not ok", start)) {
+            status = StatusValues.NOT_OK;
+            pos = start + StatusValues.NOT_OK.toString().length();
+        } else {
+            return null;
+        }
+
+        final int numberStart = skipWhitespace(tapLine, pos);
+        final int numberEnd = skipDigits(tapLine, numberStart);
+        final int descriptionStart = skipWhitespace(tapLine, numberEnd);
+        final int descriptionEnd = indexOfHash(tapLine, descriptionStart);
+        pos = descriptionEnd;
+
+        Directive directive = null;
+        if (pos < tapLine.length()) {
+            final int directiveStart = skipWhitespace(tapLine, pos + 1);
+            final DirectiveValues directiveValue = directiveAt(tapLine, directiveStart);
+            if (directiveValue != null) {
+                final int reasonStart = skipWhitespace(tapLine, directiveStart + DIRECTIVE_LENGTH);
+                final int reasonEnd = indexOfHash(tapLine, reasonStart);
+                directive = new Directive(directiveValue,
+                        TapElementFactory.cached(strings, tapLine.substring(reasonStart, reasonEnd)));
+                pos = reasonEnd;
+            }
+        }
+
+        int testNumber = 0;
+        if (numberEnd > numberStart) {
+            testNumber = Integer.parseInt(tapLine.substring(numberStart, numberEnd));
+        }
+        TestResult testResult = new TestResult(status, testNumber);
+        String comment = commentAt(tapLine, pos);
+        if (comment != null && comment.trim().length() > 0) {
+            final Comment c = new Comment(TapElementFactory.cached(strings, comment), true);
+            testResult.setComment(c);
+            testResult.addComment(c);
+        }
+        testResult.setDescription(TapElementFactory.cached(strings,
+                tapLine.substring(descriptionStart, descriptionEnd)));
+        testResult.setDirective(directive);
+        return testResult;
+    }
+
+    /* -- Utility methods --*/
+
+    /**
+     * @param tapLine TAP stream line
+     * @param pos position
+     * @return the directive whose exact text starts at the given position, or {@code null}
+     */
+    private static DirectiveValues directiveAt(String tapLine, int pos) {
+        if (tapLine.startsWith("SKIP", pos) || tapLine.startsWith("skip", pos)) {
+            return DirectiveValues.SKIP;
+        }
+        if (tapLine.startsWith("TODO", pos) || tapLine.startsWith("todo", pos)) {
+            return DirectiveValues.TODO;
+        }
+        return null;
+    }
+
+    /**
+     * @param tapLine TAP stream line
+     * @param hash position of a {@code #}, or the length of the line
+     * @return text of the comment started at the given position, or {@code null} if there is none
+     */
+    private static String commentAt(String tapLine, int hash) {
+        if (hash >= tapLine.length()) {
+            return null;
+        }
+        return tapLine.substring(skipWhitespace(tapLine, hash + 1));
+    }
+
+    /**
+     * @param tapLine TAP stream line
+     * @param from start position
+     * @return position of the next {@code #}, or the length of the line
+     */
+    private static int indexOfHash(String tapLine, int from) {
+        final int hash = tapLine.indexOf('#', from);
+        return hash < 0 ? tapLine.length() : hash;
+    }
+
+    /**
+     * @param tapLine TAP stream line
+     * @param from start position
+     * @return position of the first non blank character, or the length of the line
+     */
+    private static int skipWhitespace(String tapLine, int from) {
+        final int length = tapLine.length();
+        int pos = from;
+        while (pos < length && isWhitespace(tapLine.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * @param tapLine TAP stream line
+     * @param from start position
+     * @return position of the first non digit character, or the length of the line
+     */
+    private static int skipDigits(String tapLine, int from) {
+        final int length = tapLine.length();
+        int pos = from;
+        while (pos < length && isDigit(tapLine.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * @param c character
+     * @return whether the character matches {@code \s} in the patterns
+     */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /**
+     * @param c character
+     * @return whether the character matches {@code \d} in the patterns
+     */
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * @param tapLine TAP stream line
+     * @return whether the line contains any character not matched by {@code .} in the patterns
+     */
+    private static boolean containsLineTerminator(String tapLine) {
+        for (int i = 0; i < tapLine.length(); i++) {
+            final char c = tapLine.charAt(i);
+            if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,166 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.model;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of the Test Results of a {@link TestSet} by Test Number.
+ *
+ * <p>
+ * Test Numbers are usually a sequence starting at 1, so the index is an array
+ * where the Test Result with number <i>n</i> is stored at position <i>n</i>.
+ * Numbers far beyond the sequence, and numbers less than one, go to a map
+ * instead. When several Test Results share a number, the first one in the
+ * Test Set is indexed.
+ * </p>
+ *
+ * @since 4.2.1
+ */
+final class TestNumberIndex {
+
+    /**
+     * Initial capacity of the array.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Test Results, by Test Number.
+     */
+    private TestResult[] byNumber = new TestResult[INITIAL_CAPACITY];
+
+    /**
+     * Test Results whose numbers are outside of the array.
+     */
+    private Map<Integer, TestResult> sparse = null;
+
+    /**
+     * Creates an index of the given Test Results.
+     *
+     * @param testResults Test Results, in the order of the Test Set
+     */
+    TestNumberIndex(List<TestResult> testResults) {
+        super();
+        for (TestResult testResult : testResults) {
+            add(testResult);
+        }
+    }
+
+    /**
+     * @param testNumber Test Number
+     * @return first Test Result indexed with the given number, or
+     *         <code>null</code>
+     */
+    TestResult get(int testNumber) {
+        if (testNumber > 0 && testNumber < byNumber.length) {
+            return byNumber[testNumber];
+        }
+        return sparse == null ? null : sparse.get(testNumber);
+    }
+
+    /**
+     * Indexes a Test Result added at the end of the Test Set, unless another
+     * one has the same number already.
+     *
+     * @param testResult Test Result
+     */
+    void add(TestResult testResult) {
+        final Integer testNumber = testResult.getTestNumber();
+        if (testNumber == null) {
+            return;
+        }
+        final int number = testNumber.intValue();
+        if (number >= byNumber.length && number < byNumber.length * 2) {
+            grow(byNumber.length * 2);
+        }
+        if (number > 0 && number < byNumber.length) {
+            if (byNumber[number] == null) {
+                byNumber[number] = testResult;
+            }
+        } else {
+            if (sparse == null) {
+                sparse = new HashMap<Integer, TestResult>();
+            }
+            if (!sparse.containsKey(testNumber)) {
+                sparse.put(testNumber, testResult);
+            }
+        }
+    }
+
+    /**
+     * Removes a Test Result from the index, replacing it with the next Test
+     * Result with the same number, if any.
+     *
+     * @param testResult Test Result removed from the Test Set
+     * @param testResults Test Results left in the Test Set
+     */
+    void remove(TestResult testResult, List<TestResult> testResults) {
+        final Integer testNumber = testResult.getTestNumber();
+        if (testNumber == null || get(testNumber) != testResult) {
+            return;
+        }
+        TestResult next = null;
+        for (TestResult candidate : testResults) {
+            if (testNumber.equals(candidate.getTestNumber())) {
+                next = candidate;
+                break;
+            }
+        }
+        final int number = testNumber.intValue();
+        if (number > 0 && number < byNumber.length) {
+            byNumber[number] = next;
+        } else if (next == null) {
+            sparse.remove(testNumber);
+        } else {
+            sparse.put(testNumber, next);
+        }
+    }
+
+    /**
+     * Grows the array, moving into it the Test Results of the map that fit.
+     *
+     * @param capacity new capacity
+     */
+    private void grow(int capacity) {
+        final TestResult[] grown = new TestResult[capacity];
+        System.arraycopy(byNumber, 0, grown, 0, byNumber.length);
+        byNumber = grown;
+        if (sparse != null) {
+            final Iterator<Map.Entry<Integer, TestResult>> it = sparse
+                    .entrySet().iterator();
+            while (it.hasNext()) {
+                final Map.Entry<Integer, TestResult> entry = it.next();
+                final int number = entry.getKey().intValue();
+                if (number > 0 && number < capacity) {
+                    byNumber[number] = entry.getValue();
+                    it.remove();
+                }
+            }
+        }
+    }
+
+}
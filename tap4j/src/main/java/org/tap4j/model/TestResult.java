@@ -23,8 +23,13 @@
  */
 package org.tap4j.model;
 
+import java.io.Serializable;
+import java.util.AbstractList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 import org.tap4j.util.StatusValues;
 
@@ -40,6 +45,29 @@ public class TestResult extends TapResult {
      */
     private static final long serialVersionUID = -2735372334488828166L;
 
+    /**
+     * Comments of the Test Results that have none, replaced with a new list
+     * the first time the comments are requested. It is serialized as an
+     * empty {@link LinkedList}, so that the versions without it can read the
+     * Test Results.
+     */
+    private static final List<Comment> NO_COMMENTS = new NoComments();
+
+    /**
+     * Replaces {@link #NO_COMMENTS} atomically, so that threads requesting the
+     * comments at the same time get the same list.
+     */
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<TestResult, List> COMMENTS =
+        AtomicReferenceFieldUpdater.newUpdater(TestResult.class, List.class, "comments");
+
+    /**
+     * Number of changes of the status or directive of Test Results already
+     * counted by a Test Set, so that the Test Sets know when to count their
+     * Test Results again.
+     */
+    private static final AtomicInteger CATEGORY_CHANGES = new AtomicInteger();
+
     /**
      * Test Status (OK, NOT OK).
      */
@@ -68,7 +96,13 @@ public class TestResult extends TapResult {
     /**
      * Comment.
      */
-    private List<Comment> comments;
+    private volatile List<Comment> comments;
+
+    /**
+     * Whether a Test Set counted this Test Result. Kept when serialized, for
+     * the Test Sets that do not count their Test Results again when read.
+     */
+    private boolean counted;
 
     /**
      * Default constructor.
@@ -78,7 +112,7 @@ public class TestResult extends TapResult {
         this.status = StatusValues.NOT_OK;
         this.testNumber = -1;
         this.subtest = null;
-        this.comments = new LinkedList<Comment>();
+        this.comments = NO_COMMENTS;
     }
 
     /**
@@ -91,7 +125,7 @@ public class TestResult extends TapResult {
         super();
         this.status = testStatus;
         this.testNumber = testNumber;
-        this.comments = new LinkedList<Comment>();
+        this.comments = NO_COMMENTS;
     }
 
     /**
@@ -106,6 +140,7 @@ public class TestResult extends TapResult {
      */
     public void setStatus(StatusValues status) {
         this.status = status;
+        categoryChanged();
     }
 
     /**
@@ -148,6 +183,32 @@ public class TestResult extends TapResult {
      */
     public void setDirective(Directive directive) {
         this.directive = directive;
+        categoryChanged();
+    }
+
+    /**
+     * Marks this Test Result as counted by a Test Set.
+     */
+    void setCounted() {
+        this.counted = true;
+    }
+
+    /**
+     * Records a change of the status or directive, if a Test Set counted this
+     * Test Result.
+     */
+    private void categoryChanged() {
+        if (this.counted) {
+            CATEGORY_CHANGES.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return Number of changes of the status or directive of Test Results
+     *         counted by a Test Set.
+     */
+    static int getCategoryChanges() {
+        return CATEGORY_CHANGES.get();
     }
 
     /**
@@ -168,9 +229,26 @@ public class TestResult extends TapResult {
      * @return The comments for this Test Result.
      */
     public List<Comment> getComments() {
+        if (this.comments == NO_COMMENTS) {
+            // a list set meanwhile by another thread is kept
+            COMMENTS.compareAndSet(this, NO_COMMENTS, new LinkedList<Comment>());
+        }
         return this.comments;
     }
 
+    /**
+     * Whether this Test Result has comments. Unlike {@link #getComments()},
+     * this never creates an empty list.
+     *
+     * @return <code>true</code> if there are comments, <code>false</code>
+     *         otherwise.
+     * @since 4.2.1
+     */
+    public boolean hasComments() {
+        final List<Comment> current = this.comments;
+        return current != null && !current.isEmpty();
+    }
+
     /**
      * @param comments list of comments for this Test Result.
      */
@@ -184,7 +262,43 @@ public class TestResult extends TapResult {
      * @param comment comment for this Test Result.
      */
     public void addComment(Comment comment) {
-        this.comments.add(comment);
+        getComments().add(comment);
+    }
+
+    /**
+     * Empty list of comments shared by the Test Results that have none.
+     */
+    private static final class NoComments extends AbstractList<Comment>
+            implements RandomAccess, Serializable {
+
+        /**
+         * Serial Version UID.
+         */
+        private static final long serialVersionUID = 4601427383567326373L;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Comment get(int index) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: 0");
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int size() {
+            return 0;
+        }
+
+        /**
+         * @return an empty list, of a class known by all the versions
+         */
+        private Object writeReplace() {
+            return new LinkedList<Comment>();
+        }
+
     }
 
 }
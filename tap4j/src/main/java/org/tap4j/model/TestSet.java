@@ -23,10 +23,15 @@
  */
 package org.tap4j.model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 
+import org.tap4j.util.DirectiveValues;
 import org.tap4j.util.StatusValues;
 
 /**
@@ -42,40 +47,82 @@ public class TestSet implements Serializable {
      */
     private static final long serialVersionUID = 114777557084672201L;
 
+    /**
+     * Serialized fields, which are still those of the Test Sets backed by
+     * linked lists, so that both forms can be read by either version.
+     */
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("header", Header.class),
+        new ObjectStreamField("plan", Plan.class),
+        new ObjectStreamField("tapLines", List.class),
+        new ObjectStreamField("testResults", List.class),
+        new ObjectStreamField("bailOuts", List.class),
+        new ObjectStreamField("comments", List.class),
+        new ObjectStreamField("footer", Footer.class)
+    };
+
     /**
      * TAP Header.
      */
-    private Header header;
+    private volatile Header header;
 
     /**
      * TAP Plan.
      */
-    private Plan plan;
+    private volatile Plan plan;
 
     /**
      * List of TAP Lines.
      */
-    private List<TapElement> tapLines = new LinkedList<TapElement>();
+    private TapElementList<TapElement> tapLines = new TapLineList();
 
     /**
      * List of Test Results.
      */
-    private List<TestResult> testResults = new LinkedList<TestResult>();
+    private TapElementList<TestResult> testResults =
+        new TestResultList();
 
     /**
      * List of Bail Outs.
      */
-    private List<BailOut> bailOuts = new LinkedList<BailOut>();
+    private TapElementList<BailOut> bailOuts =
+        new TapElementList<BailOut>();
 
     /**
      * List of comments.
      */
-    private List<Comment> comments = new LinkedList<Comment>();
+    private TapElementList<Comment> comments =
+        new TapElementList<Comment>();
+
+    /**
+     * Index of the Test Results by Test Number, created on the first lookup.
+     */
+    private transient TestNumberIndex testNumberIndex = null;
+
+    /**
+     * Number of Test Results, by category.
+     *
+     * @see TestSetSummary#category(TestResult)
+     */
+    private int[] counts = new int[TestSetSummary.CATEGORIES];
+
+    /**
+     * Number of changes of the status or directive of counted Test Results
+     * when the counters were last checked.
+     *
+     * @see TestResult#getCategoryChanges()
+     */
+    private transient int categoryChanges = TestResult.getCategoryChanges();
+
+    /**
+     * Number of Bail Outs in the TAP Lines.
+     */
+    private int bailOutLines = 0;
 
     /**
      * TAP Footer.
      */
-    private Footer footer;
+    private volatile Footer footer;
 
     /**
      * Default constructor.
@@ -296,16 +343,7 @@ public class TestSet implements Serializable {
      *         <code>false</code> otherwise.
      */
     public boolean hasBailOut() {
-        boolean isBailOut = false;
-
-        for (TapElement tapLine : tapLines) {
-            if (tapLine instanceof BailOut) {
-                isBailOut = true;
-                break;
-            }
-        }
-
-        return isBailOut;
+        return bailOutLines > 0;
     }
 
     /**
@@ -313,16 +351,7 @@ public class TestSet implements Serializable {
      *         otherwise.
      */
     public Boolean containsOk() {
-        Boolean containsOk = false;
-
-        for (TestResult testResult : this.testResults) {
-            if (testResult.getStatus().equals(StatusValues.OK)) {
-                containsOk = true;
-                break;
-            }
-        }
-
-        return containsOk;
+        return count(StatusValues.OK) > 0;
     }
 
     /**
@@ -330,16 +359,52 @@ public class TestSet implements Serializable {
      *         <code>false</code> otherwise.
      */
     public Boolean containsNotOk() {
-        Boolean containsNotOk = false;
+        return count(StatusValues.NOT_OK) > 0;
+    }
+
+    /**
+     * @param status status
+     * @return Number of Test Results with the given status.
+     */
+    private int count(StatusValues status) {
+        final int[] current = counts();
+        return current[TestSetSummary.category(status, null)]
+                + current[TestSetSummary.category(status, DirectiveValues.SKIP)]
+                + current[TestSetSummary.category(status, DirectiveValues.TODO)];
+    }
 
-        for (TestResult testResult : this.testResults) {
-            if (testResult.getStatus().equals(StatusValues.NOT_OK)) {
-                containsNotOk = true;
-                break;
+    /**
+     * Returns the counters, counted again from the Test Results if the status
+     * or directive of a Test Result changed after it was added to a Test Set.
+     *
+     * @return Number of Test Results, by category.
+     */
+    private int[] counts() {
+        final int changes = TestResult.getCategoryChanges();
+        if (changes != categoryChanges) {
+            final int[] recounted = new int[TestSetSummary.CATEGORIES];
+            for (TestResult testResult : testResults) {
+                recounted[TestSetSummary.category(testResult)]++;
             }
+            counts = recounted;
+            categoryChanges = changes;
         }
+        return counts;
+    }
 
-        return containsNotOk;
+    /**
+     * Creates a summary of the Test Set in constant time, from counters kept
+     * up to date as elements are added or removed. Changing the status or
+     * directive of a Test Result already added to a Test Set makes the next
+     * summary of the Test Sets count their Test Results again, in linear
+     * time.
+     *
+     * @return Summary of the Test Results, Bail Outs and plan.
+     * @since 4.2.1
+     */
+    public TestSetSummary getSummary() {
+        return new TestSetSummary(counts(), testResults.size(), bailOuts.size(),
+                plan);
     }
 
     /**
@@ -351,18 +416,212 @@ public class TestSet implements Serializable {
     }
 
     /**
+     * Looks up a Test Result by its number, in constant time. The index is
+     * kept up to date when Test Results are added or removed. A Test Result
+     * renumbered after it was added is still found, but the index is then
+     * rebuilt, and a number that no Test Result has takes linear time.
+     *
      * @param testNumber test result number.
      * @return Test Result with given number.
      */
     public TestResult getTestResult(Integer testNumber) {
-        TestResult foundTestResult = null;
-        for (TestResult testResult : this.testResults) {
-            if (testResult.getTestNumber().equals(testNumber)) {
-                foundTestResult = testResult;
-                break;
+        if (testNumber == null) {
+            return null;
+        }
+        if (testNumberIndex == null) {
+            testNumberIndex = new TestNumberIndex(testResults);
+        }
+        final TestResult foundTestResult = testNumberIndex.get(testNumber);
+        if (foundTestResult != null
+                && testNumber.equals(foundTestResult.getTestNumber())) {
+            return foundTestResult;
+        }
+        // missing, or renumbered after being added
+        for (TestResult testResult : testResults) {
+            if (testNumber.equals(testResult.getTestNumber())) {
+                testNumberIndex = new TestNumberIndex(testResults);
+                return testResult;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Creates an immutable snapshot of the Test Set in constant time, sharing
+     * its lists instead of copying them. The Test Set can still be changed
+     * afterwards, without affecting the snapshot.
+     *
+     * <p>
+     * A thread reading the Test Set while another one parses into it can use
+     * this method, as long as elements are only added to the Test Set (which
+     * is what the parser does). The summary of the snapshot is counted from
+     * its own lists, so it always matches them.
+     * </p>
+     *
+     * @return Immutable snapshot of the Test Set.
+     * @since 4.2.1
+     */
+    public TestSetSnapshot freeze() {
+        final List<TapElement> frozenTapLines = tapLines.freeze();
+        final List<TestResult> frozenTestResults = testResults.freeze();
+        final List<BailOut> frozenBailOuts = bailOuts.freeze();
+        final List<Comment> frozenComments = comments.freeze();
+        final Plan frozenPlan = plan;
+        return new TestSetSnapshot(header, frozenPlan, footer, frozenTapLines,
+                frozenTestResults, frozenBailOuts, frozenComments);
+    }
+
+    /**
+     * Releases the unused capacity of the lists of TAP Lines, Test Results,
+     * Bail Outs and Comments. Useful once a Test Set is complete and will be
+     * kept in memory.
+     *
+     * @since 4.2.1
+     */
+    public void trimToSize() {
+        tapLines.trimToSize();
+        testResults.trimToSize();
+        bailOuts.trimToSize();
+        comments.trimToSize();
+    }
+
+    /**
+     * Writes the lists as plain lists.
+     *
+     * @param out stream
+     * @throws IOException if the Test Set could not be written
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        final ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("header", header);
+        fields.put("plan", plan);
+        fields.put("tapLines", new ArrayList<TapElement>(tapLines));
+        fields.put("testResults", new ArrayList<TestResult>(testResults));
+        fields.put("bailOuts", new ArrayList<BailOut>(bailOuts));
+        fields.put("comments", new ArrayList<Comment>(comments));
+        fields.put("footer", footer);
+        out.writeFields();
+    }
+
+    /**
+     * Reads the lists, and rebuilds the counters from them.
+     *
+     * @param in stream
+     * @throws IOException if the Test Set could not be read
+     * @throws ClassNotFoundException if the class of an element is unknown
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException,
+            ClassNotFoundException {
+        final ObjectInputStream.GetField fields = in.readFields();
+        header = (Header) fields.get("header", null);
+        plan = (Plan) fields.get("plan", null);
+        footer = (Footer) fields.get("footer", null);
+        counts = new int[TestSetSummary.CATEGORIES];
+        categoryChanges = TestResult.getCategoryChanges();
+        bailOutLines = 0;
+        tapLines = new TapLineList();
+        testResults = new TestResultList();
+        bailOuts = new TapElementList<BailOut>();
+        comments = new TapElementList<Comment>();
+        addAll(tapLines, (List<TapElement>) fields.get("tapLines", null));
+        addAll(testResults, (List<TestResult>) fields.get("testResults", null));
+        addAll(bailOuts, (List<BailOut>) fields.get("bailOuts", null));
+        addAll(comments, (List<Comment>) fields.get("comments", null));
+    }
+
+    /**
+     * Adds the elements read to a list.
+     *
+     * @param list list of the Test Set
+     * @param elements elements read, may be <code>null</code>
+     * @param <E> type of the elements
+     */
+    private static <E> void addAll(TapElementList<E> list, List<E> elements) {
+        if (elements != null) {
+            list.addAll(elements);
+        }
+    }
+
+    /**
+     * List of TAP Lines, which counts the Bail Outs.
+     */
+    private class TapLineList extends TapElementList<TapElement> {
+
+        /**
+         * Serial Version UID.
+         */
+        private static final long serialVersionUID = -1386807745474536893L;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void added(TapElement tapLine) {
+            if (tapLine instanceof BailOut) {
+                bailOutLines++;
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void removed(TapElement tapLine) {
+            if (tapLine instanceof BailOut) {
+                bailOutLines--;
             }
         }
-        return foundTestResult;
+
+    }
+
+    /**
+     * List of Test Results, which keeps the counters and the index by Test
+     * Number up to date.
+     */
+    private class TestResultList extends TapElementList<TestResult> {
+
+        /**
+         * Serial Version UID.
+         */
+        private static final long serialVersionUID = 2918383502474215765L;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void add(int index, TestResult testResult) {
+            final boolean append = index == size();
+            super.add(index, testResult);
+            if (!append) {
+                // the first Test Result with a number may have changed
+                testNumberIndex = null;
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void added(TestResult testResult) {
+            testResult.setCounted();
+            counts[TestSetSummary.category(testResult)]++;
+            if (testNumberIndex != null) {
+                testNumberIndex.add(testResult);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void removed(TestResult testResult) {
+            counts[TestSetSummary.category(testResult)]--;
+            if (testNumberIndex != null) {
+                testNumberIndex.remove(testResult, this);
+            }
+        }
+
     }
 
 }
@@ -0,0 +1,304 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.model;
+
+import java.util.List;
+
+/**
+ * Immutable snapshot of a {@link TestSet}, created by
+ * {@link TestSet#freeze()}.
+ *
+ * <p>
+ * A snapshot is cheap to create: it shares the arrays of the Test Set instead
+ * of copying them, and the Test Set copies an array only when a shared part
+ * of it is changed. Elements added to the Test Set after the snapshot was
+ * created are not seen by the snapshot. The lists of a snapshot can be read
+ * by many threads without locking, while the Test Set keeps growing.
+ * </p>
+ *
+ * <p>
+ * The TAP elements themselves are shared, not copied. An element that is
+ * still being completed when the snapshot is created, like a Test Result
+ * whose YAML diagnostic or comments are still being parsed, may change
+ * afterwards, and must not be read by other threads until it is complete.
+ * Requesting the diagnostic or the comments of a complete element never
+ * changes it in a way other threads could see, even when they are created
+ * empty on first access.
+ * </p>
+ *
+ * <p>
+ * The summary of a snapshot is counted from its own lists, the first time it
+ * is requested, so that it always matches them.
+ * </p>
+ *
+ * @since 4.2.1
+ */
+public final class TestSetSnapshot {
+
+    /**
+     * TAP Header.
+     */
+    private final Header header;
+
+    /**
+     * TAP Plan.
+     */
+    private final Plan plan;
+
+    /**
+     * TAP Footer.
+     */
+    private final Footer footer;
+
+    /**
+     * TAP Lines.
+     */
+    private final List<TapElement> tapLines;
+
+    /**
+     * Test Results.
+     */
+    private final List<TestResult> testResults;
+
+    /**
+     * Bail Outs.
+     */
+    private final List<BailOut> bailOuts;
+
+    /**
+     * Comments.
+     */
+    private final List<Comment> comments;
+
+    /**
+     * Summary of the Test Set, counted on the first request.
+     */
+    private volatile TestSetSummary summary = null;
+
+    /**
+     * Whether there are Bail Outs in the TAP Lines, checked on the first
+     * request.
+     */
+    private volatile Boolean bailOut = null;
+
+    /**
+     * Index of the Test Results by Test Number, created on the first lookup.
+     */
+    private volatile TestNumberIndex testNumberIndex = null;
+
+    /**
+     * Creates a snapshot.
+     *
+     * @param header TAP Header
+     * @param plan TAP Plan
+     * @param footer TAP Footer
+     * @param tapLines immutable list of TAP Lines
+     * @param testResults immutable list of Test Results
+     * @param bailOuts immutable list of Bail Outs
+     * @param comments immutable list of Comments
+     */
+    TestSetSnapshot(Header header, Plan plan, Footer footer,
+            List<TapElement> tapLines, List<TestResult> testResults,
+            List<BailOut> bailOuts, List<Comment> comments) {
+        super();
+        this.header = header;
+        this.plan = plan;
+        this.footer = footer;
+        this.tapLines = tapLines;
+        this.testResults = testResults;
+        this.bailOuts = bailOuts;
+        this.comments = comments;
+    }
+
+    /**
+     * @return TAP Header.
+     */
+    public Header getHeader() {
+        return header;
+    }
+
+    /**
+     * @return TAP Plan.
+     */
+    public Plan getPlan() {
+        return plan;
+    }
+
+    /**
+     * @return TAP Footer.
+     */
+    public Footer getFooter() {
+        return footer;
+    }
+
+    /**
+     * @return Immutable list of TAP Lines.
+     */
+    public List<TapElement> getTapLines() {
+        return tapLines;
+    }
+
+    /**
+     * @return Immutable list of Test Results.
+     */
+    public List<TestResult> getTestResults() {
+        return testResults;
+    }
+
+    /**
+     * @return Immutable list of Bail Outs.
+     */
+    public List<BailOut> getBailOuts() {
+        return bailOuts;
+    }
+
+    /**
+     * @return Immutable list of Comments.
+     */
+    public List<Comment> getComments() {
+        return comments;
+    }
+
+    /**
+     * @return Number of TAP Lines.
+     */
+    public int getNumberOfTapLines() {
+        return tapLines.size();
+    }
+
+    /**
+     * @return Number of Test Results.
+     */
+    public int getNumberOfTestResults() {
+        return testResults.size();
+    }
+
+    /**
+     * @return Number of Bail Outs.
+     */
+    public int getNumberOfBailOuts() {
+        return bailOuts.size();
+    }
+
+    /**
+     * @return Number of Comments.
+     */
+    public int getNumberOfComments() {
+        return comments.size();
+    }
+
+    /**
+     * Counts the Test Results of the snapshot the first time, in linear time,
+     * and in constant time afterwards.
+     *
+     * @return Summary of the Test Results, Bail Outs and plan of the snapshot.
+     */
+    public TestSetSummary getSummary() {
+        TestSetSummary current = summary;
+        if (current == null) {
+            // several threads may count, any of them will do
+            final int[] counts = new int[TestSetSummary.CATEGORIES];
+            for (TestResult testResult : testResults) {
+                counts[TestSetSummary.category(testResult)]++;
+            }
+            current = new TestSetSummary(counts, testResults.size(),
+                    bailOuts.size(), plan);
+            summary = current;
+        }
+        return current;
+    }
+
+    /**
+     * @return <code>true</code> if it has any Bail Out statement,
+     *         <code>false</code> otherwise.
+     */
+    public boolean hasBailOut() {
+        Boolean current = bailOut;
+        if (current == null) {
+            current = Boolean.FALSE;
+            for (TapElement tapLine : tapLines) {
+                if (tapLine instanceof BailOut) {
+                    current = Boolean.TRUE;
+                    break;
+                }
+            }
+            bailOut = current;
+        }
+        return current.booleanValue();
+    }
+
+    /**
+     * @return <code>true</code> if it contains OK status, <code>false</code>
+     *         otherwise.
+     */
+    public boolean containsOk() {
+        return getSummary().getOk() > 0;
+    }
+
+    /**
+     * @return <code>true</code> if it contains NOT OK status,
+     *         <code>false</code> otherwise.
+     */
+    public boolean containsNotOk() {
+        return getSummary().getNotOk() > 0;
+    }
+
+    /**
+     * @return <code>true</code> if it contains BAIL OUT!, <code>false</code>
+     *         otherwise.
+     */
+    public boolean containsBailOut() {
+        return !bailOuts.isEmpty();
+    }
+
+    /**
+     * Looks up a Test Result by its number, in constant time.
+     *
+     * @param testNumber test result number.
+     * @return First Test Result with given number.
+     */
+    public TestResult getTestResult(Integer testNumber) {
+        if (testNumber == null) {
+            return null;
+        }
+        TestNumberIndex index = testNumberIndex;
+        if (index == null) {
+            // several threads may build an index, any of them will do
+            index = new TestNumberIndex(testResults);
+            testNumberIndex = index;
+        }
+        final TestResult found = index.get(testNumber);
+        if (found != null && !testNumber.equals(found.getTestNumber())) {
+            // renumbered after being indexed
+            for (TestResult testResult : testResults) {
+                if (testNumber.equals(testResult.getTestNumber())) {
+                    return testResult;
+                }
+            }
+            return null;
+        }
+        return found;
+    }
+
+}
@@ -0,0 +1,228 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.model;
+
+import java.io.Serializable;
+
+import org.tap4j.util.DirectiveValues;
+import org.tap4j.util.StatusValues;
+
+/**
+ * Snapshot of the counters of a {@link TestSet}. The counters are kept up to
+ * date by the Test Set as elements are added or removed, so a summary is
+ * created in constant time, even while the Test Set is still being parsed.
+ *
+ * <p>
+ * Test Results are counted with the status and directive they had when they
+ * were added to the Test Set. <i>Passed</i> and <i>failed</i> only count Test
+ * Results without directive, so passed, failed, skipped and todo add up to the
+ * number of Test Results, but for those with neither status nor directive.
+ * </p>
+ *
+ * @since 4.2.1
+ */
+public final class TestSetSummary implements Serializable {
+
+    /**
+     * Serial Version UID.
+     */
+    private static final long serialVersionUID = -5404470402096582651L;
+
+    /**
+     * Number of categories of Test Results: three statuses (OK, NOT OK and
+     * none) by three directives (none, SKIP and TODO).
+     */
+    static final int CATEGORIES = 9;
+
+    /**
+     * Number of Test Results, by status and directive.
+     *
+     * @see #category(StatusValues, DirectiveValues)
+     */
+    private final int[] counts;
+
+    /**
+     * Number of Test Results.
+     */
+    private final int numberOfTestResults;
+
+    /**
+     * Number of Bail Outs.
+     */
+    private final int numberOfBailOuts;
+
+    /**
+     * Number of tests in the plan, or -1 if there is no plan.
+     */
+    private final int planned;
+
+    /**
+     * Creates a summary.
+     *
+     * @param counts number of Test Results by category, copied
+     * @param numberOfTestResults number of Test Results
+     * @param numberOfBailOuts number of Bail Outs
+     * @param plan TAP Plan, may be <code>null</code>
+     */
+    TestSetSummary(int[] counts, int numberOfTestResults, int numberOfBailOuts,
+            Plan plan) {
+        super();
+        this.counts = counts.clone();
+        this.numberOfTestResults = numberOfTestResults;
+        this.numberOfBailOuts = numberOfBailOuts;
+        if (plan == null || plan.getInitialTestNumber() == null
+                || plan.getLastTestNumber() == null) {
+            this.planned = -1;
+        } else {
+            this.planned = Math.max(0, plan.getLastTestNumber()
+                    - plan.getInitialTestNumber() + 1);
+        }
+    }
+
+    /**
+     * @return Number of Test Results.
+     */
+    public int getNumberOfTestResults() {
+        return numberOfTestResults;
+    }
+
+    /**
+     * @return Number of Test Results with OK status and no directive.
+     */
+    public int getPassed() {
+        return getCount(StatusValues.OK, null);
+    }
+
+    /**
+     * @return Number of Test Results with NOT OK status and no directive.
+     */
+    public int getFailed() {
+        return getCount(StatusValues.NOT_OK, null);
+    }
+
+    /**
+     * @return Number of Test Results with a SKIP directive.
+     */
+    public int getSkipped() {
+        return getCount(StatusValues.OK, DirectiveValues.SKIP)
+                + getCount(StatusValues.NOT_OK, DirectiveValues.SKIP)
+                + getCount(null, DirectiveValues.SKIP);
+    }
+
+    /**
+     * @return Number of Test Results with a TODO directive.
+     */
+    public int getTodo() {
+        return getCount(StatusValues.OK, DirectiveValues.TODO)
+                + getCount(StatusValues.NOT_OK, DirectiveValues.TODO)
+                + getCount(null, DirectiveValues.TODO);
+    }
+
+    /**
+     * @return Number of Test Results with OK status, with or without
+     *         directive.
+     */
+    public int getOk() {
+        return getCount(StatusValues.OK, null)
+                + getCount(StatusValues.OK, DirectiveValues.SKIP)
+                + getCount(StatusValues.OK, DirectiveValues.TODO);
+    }
+
+    /**
+     * @return Number of Test Results with NOT OK status, with or without
+     *         directive.
+     */
+    public int getNotOk() {
+        return getCount(StatusValues.NOT_OK, null)
+                + getCount(StatusValues.NOT_OK, DirectiveValues.SKIP)
+                + getCount(StatusValues.NOT_OK, DirectiveValues.TODO);
+    }
+
+    /**
+     * @param status status, may be <code>null</code>
+     * @param directive directive, or <code>null</code> for Test Results
+     *        without directive
+     * @return Number of Test Results with the given status and directive.
+     */
+    public int getCount(StatusValues status, DirectiveValues directive) {
+        return counts[category(status, directive)];
+    }
+
+    /**
+     * @return Number of Bail Outs.
+     */
+    public int getBailOuts() {
+        return numberOfBailOuts;
+    }
+
+    /**
+     * @return Number of tests in the plan, or <code>-1</code> if there is no
+     *         plan.
+     */
+    public int getPlanned() {
+        return planned;
+    }
+
+    /**
+     * @return <code>true</code> if there is a plan and the number of Test
+     *         Results differs from it, <code>false</code> otherwise.
+     */
+    public boolean isPlanMismatch() {
+        return planned >= 0 && planned != numberOfTestResults;
+    }
+
+    /**
+     * @param status status, may be <code>null</code>
+     * @param directive directive, may be <code>null</code>
+     * @return Category of the Test Results with the given status and
+     *         directive.
+     */
+    static int category(StatusValues status, DirectiveValues directive) {
+        final int row;
+        if (status == StatusValues.OK) {
+            row = 0;
+        } else if (status == StatusValues.NOT_OK) {
+            row = 3;
+        } else {
+            row = 6;
+        }
+        if (directive == DirectiveValues.SKIP) {
+            return row + 1;
+        } else if (directive == DirectiveValues.TODO) {
+            return row + 2;
+        }
+        return row;
+    }
+
+    /**
+     * @param testResult Test Result
+     * @return Category of the Test Result.
+     */
+    static int category(TestResult testResult) {
+        final Directive directive = testResult.getDirective();
+        return category(testResult.getStatus(),
+                directive == null ? null : directive.getDirectiveValue());
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.parser;
+
+import org.tap4j.model.CompactTestSet;
+import org.tap4j.model.TestSet;
+
+/**
+ * {@link TestSetBuilder} that builds {@link CompactTestSet}s, for parsing TAP
+ * Streams with very large numbers of Test Results.
+ *
+ * <p>
+ * A compact Test Set keeps the last Test Result added as it is until the next
+ * TAP Line other than a Comment starts, so the diagnostic, comments and subtest the parser attaches
+ * to it are kept. The builder compacts the last Test Result of each Test Set
+ * when its level ends.
+ * </p>
+ *
+ * @since 4.2.1
+ */
+public class CompactTestSetBuilder extends TestSetBuilder {
+
+    /**
+     * Default constructor.
+     */
+    public CompactTestSetBuilder() {
+        super();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected TestSet createTestSet() {
+        return new CompactTestSet();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onSubtestEnd() {
+        final TestSet subtest = getTestSet();
+        super.onSubtestEnd();
+        subtest.trimToSize();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onStreamEnd() {
+        super.onStreamEnd();
+        getTestSet().trimToSize();
+    }
+
+}
@@ -0,0 +1,294 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.parser;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import org.tap4j.util.StringCache;
+
+/**
+ * YAML diagnostic map that keeps the YAML text and parses it only the first
+ * time the map is accessed. Used by {@link Tap13Parser} when lazy diagnostics
+ * are enabled, so that streams whose diagnostics are never read do not pay
+ * for parsing them, and by the {@link org.tap4j.codec.TestSetCodec} for the
+ * diagnostics it keeps as raw YAML.
+ *
+ * A YAML text without any content is parsed as an empty map. The map is
+ * serialized parsed, so that the versions without this class can read it.
+ *
+ * @since 4.2.1
+ */
+public final class LazyDiagnostic implements Map<String, Object>, Serializable {
+
+    /**
+     * Serial Version UID.
+     */
+    private static final long serialVersionUID = -5409170381394834256L;
+
+    /**
+     * Sets the parsed diagnostic once, so that threads accessing the map at
+     * the same time all get the first map parsed.
+     */
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<LazyDiagnostic, Map> DIAGNOSTIC =
+        AtomicReferenceFieldUpdater.newUpdater(LazyDiagnostic.class, Map.class, "diagnostic");
+
+    /**
+     * YAML text of the diagnostic.
+     */
+    private final String rawDiagnostic;
+
+    /**
+     * Whether a corrupted YAML is replaced by an error message.
+     */
+    private final boolean removeYamlIfCorrupted;
+
+    /**
+     * Cache of the strings of the diagnostic, or <code>null</code>. Not kept
+     * when serialized.
+     */
+    private final transient StringCache strings;
+
+    /**
+     * Parsed diagnostic, once accessed.
+     */
+    private volatile Map<String, Object> diagnostic;
+
+    /**
+     * Whether the map may have been changed since it was parsed, either
+     * directly or through one of its views.
+     */
+    private volatile boolean changed = false;
+
+    /**
+     * Creates a diagnostic, without parsing it.
+     *
+     * @param rawDiagnostic YAML text of the diagnostic
+     * @param removeYamlIfCorrupted whether a corrupted YAML is replaced by an
+     * error message instead of causing a {@link ParserException}
+     */
+    public LazyDiagnostic(String rawDiagnostic, boolean removeYamlIfCorrupted) {
+        this(rawDiagnostic, removeYamlIfCorrupted, null);
+    }
+
+    /**
+     * Creates a diagnostic, without parsing it.
+     *
+     * @param rawDiagnostic YAML text of the diagnostic
+     * @param removeYamlIfCorrupted whether a corrupted YAML is replaced by an
+     * error message instead of causing a {@link ParserException}
+     * @param strings cache of the strings of the diagnostic, or
+     * <code>null</code>
+     */
+    LazyDiagnostic(String rawDiagnostic, boolean removeYamlIfCorrupted, StringCache strings) {
+        super();
+        this.rawDiagnostic = rawDiagnostic;
+        this.removeYamlIfCorrupted = removeYamlIfCorrupted;
+        this.strings = strings;
+    }
+
+    /**
+     * @return whether the YAML has been parsed
+     */
+    boolean isLoaded() {
+        return diagnostic != null;
+    }
+
+    /**
+     * @return whether a corrupted YAML is replaced by an error message
+     * instead of causing a {@link ParserException}
+     */
+    public boolean isRemoveYamlIfCorrupted() {
+        return removeYamlIfCorrupted;
+    }
+
+    /**
+     * Whether the map still holds exactly what a YAML text describes, without
+     * parsing the text: it was neither changed nor iterated.
+     *
+     * @param text YAML text
+     * @return <code>true</code> if the map is known to match the text,
+     * <code>false</code> if it may not
+     */
+    public boolean isDescribedBy(String text) {
+        return !changed && rawDiagnostic.equals(text);
+    }
+
+    /**
+     * @return the parsed diagnostic
+     * @throws ParserException if the YAML is corrupted and not removed
+     */
+    private Map<String, Object> getDiagnostic() {
+        if (diagnostic == null) {
+            Map<String, Object> loaded = Tap13Parser.loadDiagnostic(rawDiagnostic, removeYamlIfCorrupted,
+                    strings);
+            DIAGNOSTIC.compareAndSet(this, null, loaded == null ? new LinkedHashMap<String, Object>() : loaded);
+        }
+        return diagnostic;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+        return getDiagnostic().size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEmpty() {
+        return getDiagnostic().isEmpty();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean containsKey(Object key) {
+        return getDiagnostic().containsKey(key);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean containsValue(Object value) {
+        return getDiagnostic().containsValue(value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object get(Object key) {
+        return getDiagnostic().get(key);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object put(String key, Object value) {
+        changed = true;
+        return getDiagnostic().put(key, value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object remove(Object key) {
+        changed = true;
+        return getDiagnostic().remove(key);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void putAll(Map<? extends String, ? extends Object> m) {
+        changed = true;
+        getDiagnostic().putAll(m);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear() {
+        changed = true;
+        getDiagnostic().clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<String> keySet() {
+        // the views can change the map
+        changed = true;
+        return getDiagnostic().keySet();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<Object> values() {
+        // the views can change the map
+        changed = true;
+        return getDiagnostic().values();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        // the views can change the map
+        changed = true;
+        return getDiagnostic().entrySet();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object o) {
+        return o == this || getDiagnostic().equals(o);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        return getDiagnostic().hashCode();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return getDiagnostic().toString();
+    }
+
+    /**
+     * @return the parsed diagnostic, serialized instead of this map
+     * @throws ParserException if the YAML is corrupted and not removed
+     */
+    private Object writeReplace() {
+        return getDiagnostic();
+    }
+
+}
@@ -0,0 +1,348 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.parser;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+
+/**
+ * Reads the lines of a TAP File by memory mapping it in windows. Line feeds
+ * and carriage returns are found in the mapped bytes, and only the bytes of
+ * each line are decoded, with the strict decoder of the parser, instead of
+ * copying the whole file through a reader.
+ *
+ * This only works for encodings where line feeds and carriage returns are
+ * always single bytes with their ASCII values, see
+ * {@link #isSupported(Charset)}. The other line terminators recognized by
+ * {@link java.util.Scanner#nextLine()} are looked for in the decoded lines, so
+ * the lines are the same as the ones of a {@link TapLineReader}.
+ *
+ * @since 4.2.1
+ */
+final class MappedTapFileReader implements Closeable {
+
+    /**
+     * Default size of the mapped windows.
+     */
+    static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * File opened for reading.
+     */
+    private final RandomAccessFile file;
+
+    /**
+     * Channel of the file.
+     */
+    private final FileChannel channel;
+
+    /**
+     * Size of the file.
+     */
+    private final long size;
+
+    /**
+     * Strict decoder.
+     */
+    private final CharsetDecoder decoder;
+
+    /**
+     * Size of the mapped windows.
+     */
+    private final int windowSize;
+
+    /**
+     * Size of the current window, larger than the window size when a line
+     * does not fit in it.
+     */
+    private int mappedSize;
+
+    /**
+     * Current window.
+     */
+    private MappedByteBuffer window;
+
+    /**
+     * Position of the current window in the file.
+     */
+    private long windowPosition = 0;
+
+    /**
+     * Position in the current window of the next line.
+     */
+    private int lineStart = 0;
+
+    /**
+     * Whether the last line was terminated by a carriage return, which may be
+     * followed by a line feed.
+     */
+    private boolean carriageReturn = false;
+
+    /**
+     * Characters of the last line decoded, which may contain other line
+     * terminators.
+     */
+    private CharBuffer chars = CharBuffer.allocate(256);
+
+    /**
+     * Whether the characters decoded end the file without a line terminator.
+     */
+    private boolean lastLine = false;
+
+    /**
+     * Whether lines are left in the characters decoded.
+     */
+    private boolean segmentsLeft = false;
+
+    /**
+     * Offset in the file of the last line decoded.
+     */
+    private long lineOffset = 0;
+
+    /**
+     * Offset in the file of the end of the last line decoded, after its line
+     * feed or carriage return.
+     */
+    private long lineEnd = 0;
+
+    /**
+     * Creates a reader with the default window size.
+     *
+     * @param tapFile TAP File
+     * @param decoder strict decoder
+     * @throws IOException if the file cannot be opened
+     */
+    MappedTapFileReader(File tapFile, CharsetDecoder decoder) throws IOException {
+        this(tapFile, decoder, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Creates a reader.
+     *
+     * @param tapFile TAP File
+     * @param decoder strict decoder
+     * @param windowSize size of the mapped windows
+     * @throws IOException if the file cannot be opened
+     */
+    MappedTapFileReader(File tapFile, CharsetDecoder decoder, int windowSize) throws IOException {
+        super();
+        this.file = new RandomAccessFile(tapFile, "r");
+        this.channel = file.getChannel();
+        this.size = channel.size();
+        this.decoder = decoder;
+        this.windowSize = windowSize;
+        this.mappedSize = windowSize;
+        this.chars.flip();
+    }
+
+    /**
+     * Tells whether a file in an encoding can be read by this class.
+     *
+     * @param charset encoding
+     * @return <code>true</code> if line feeds and carriage returns are always
+     * single bytes with their ASCII values in the encoding
+     */
+    static boolean isSupported(Charset charset) {
+        final String name = charset.name();
+        return "UTF-8".equals(name) || "US-ASCII".equals(name) || name.startsWith("ISO-8859-")
+                || name.startsWith("windows-125");
+    }
+
+    /**
+     * Reads the next line, without its terminator.
+     *
+     * @return the next line, or <code>null</code> at the end of the file
+     * @throws IOException if the file cannot be read or is not valid in the
+     * encoding of the decoder
+     */
+    public String readLine() throws IOException {
+        if (!segmentsLeft) {
+            if (!nextLine()) {
+                return null;
+            }
+            segmentsLeft = true;
+        }
+        final char[] array = chars.array();
+        final int start = chars.position();
+        final int limit = chars.limit();
+        for (int i = start; i < limit; i++) {
+            if (TapLineReader.isLineTerminator(array[i])) {
+                chars.position(i + 1);
+                // like a Scanner, no empty line after the last terminator
+                segmentsLeft = i + 1 < limit || !lastLine;
+                return new String(array, start, i - start);
+            }
+        }
+        chars.position(limit);
+        segmentsLeft = false;
+        return new String(array, start, limit - start);
+    }
+
+    /**
+     * Offset in the file of the line last read. The lines split at other line
+     * terminators than line feeds and carriage returns all have the offset of
+     * the line they were split from.
+     *
+     * @return offset of the line last read
+     */
+    long getLineOffset() {
+        return lineOffset;
+    }
+
+    /**
+     * Offset in the file of the end of the line last read, after its line feed
+     * or carriage return. The lines split at other line terminators all have
+     * the end of the line they were split from.
+     *
+     * @return offset of the end of the line last read
+     */
+    long getLineEnd() {
+        return lineEnd;
+    }
+
+    /**
+     * Finds and decodes the next line.
+     *
+     * @return <code>false</code> at the end of the file
+     * @throws IOException if the file cannot be read or is not valid in the
+     * encoding of the decoder
+     */
+    private boolean nextLine() throws IOException {
+        while (true) {
+            if (window == null) {
+                if (windowPosition >= size) {
+                    return false;
+                }
+                window = channel.map(FileChannel.MapMode.READ_ONLY, windowPosition,
+                        Math.min(mappedSize, size - windowPosition));
+                lineStart = 0;
+            }
+            final int limit = window.limit();
+            if (carriageReturn && lineStart < limit) {
+                carriageReturn = false;
+                if (window.get(lineStart) == '\n') {
+                    lineStart++;
+                }
+            }
+            boolean ascii = true;
+            for (int i = lineStart; i < limit; i++) {
+                final byte b = window.get(i);
+                if (b == '\n' || b == '\r') {
+                    carriageReturn = b == '\r';
+                    decode(lineStart, i, ascii, false);
+                    lineOffset = windowPosition + lineStart;
+                    lineEnd = windowPosition + i + 1;
+                    lineStart = i + 1;
+                    return true;
+                }
+                ascii &= b >= 0;
+            }
+            if (windowPosition + limit >= size) {
+                final boolean found = lineStart < limit;
+                if (found) {
+                    decode(lineStart, limit, ascii, true);
+                    lineOffset = windowPosition + lineStart;
+                    lineEnd = windowPosition + limit;
+                }
+                window = null;
+                windowPosition = size;
+                return found;
+            }
+            if (lineStart == 0) {
+                // a line longer than the window, map a larger one
+                if (mappedSize == Integer.MAX_VALUE) {
+                    throw new IOException("Line too long at offset " + windowPosition);
+                }
+                mappedSize = (int) Math.min(2L * mappedSize, Integer.MAX_VALUE);
+            } else {
+                // map the next window from the beginning of the incomplete line
+                windowPosition += lineStart;
+                mappedSize = windowSize;
+            }
+            window = null;
+        }
+    }
+
+    /**
+     * Decodes the bytes of a line. ASCII bytes stand for the same characters
+     * in every supported encoding, so lines made only of them are copied
+     * without going through the decoder.
+     *
+     * @param start position of the line in the window
+     * @param end position of the line terminator in the window
+     * @param ascii whether the line has ASCII bytes only
+     * @param last whether the line ends the file without a terminator
+     * @throws IOException if the bytes are not valid in the encoding
+     */
+    private void decode(int start, int end, boolean ascii, boolean last) throws IOException {
+        final int length = end - start;
+        final int maxChars = ascii ? length : (int) Math.ceil(length * (double) decoder.maxCharsPerByte());
+        if (chars.capacity() < maxChars) {
+            chars = CharBuffer.allocate(maxChars);
+        }
+        chars.clear();
+        if (ascii) {
+            final char[] array = chars.array();
+            for (int i = 0; i < length; i++) {
+                array[i] = (char) window.get(start + i);
+            }
+            chars.limit(length);
+        } else {
+            final int limit = window.limit();
+            window.limit(end);
+            window.position(start);
+            decoder.reset();
+            CoderResult result = decoder.decode(window, chars, true);
+            if (!result.isError()) {
+                result = decoder.flush(chars);
+            }
+            window.limit(limit);
+            if (result.isError()) {
+                result.throwException();
+            }
+            chars.flip();
+        }
+        lastLine = last;
+    }
+
+    /**
+     * Closes the file.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        window = null;
+        file.close();
+    }
+
+}
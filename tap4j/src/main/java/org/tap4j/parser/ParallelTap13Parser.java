@@ -0,0 +1,528 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.parser;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.tap4j.model.TapElement;
+
+/**
+ * TAP 13 parser that uses several threads for large TAP Streams.
+ *
+ * <p>
+ * The lines are read first, and cut into chunks of about
+ * {@link #getChunkSize()} lines, never inside a YAML diagnostic. The chunks
+ * are then given to an {@link ExecutorService}, which creates the elements of
+ * their lines and loads their YAML diagnostics in parallel. This is most of
+ * the work of the parser. Finally, the elements of the chunks are passed in
+ * order to the state of the parser, in the thread of the caller, which checks
+ * the stream, numbers the test results, and nests the subtests exactly like
+ * {@link Tap13Parser} does. The elements of a chunk are passed as soon as the
+ * chunk is done, while the next ones are still being worked on.
+ * </p>
+ *
+ * <p>
+ * The whole stream is kept in memory while it is parsed, and the threads of
+ * the executor share the {@link org.tap4j.util.StringCache} if one is set.
+ * Streams with fewer lines than a chunk are parsed in the thread of the
+ * caller. Like {@link Tap13Parser}, instances of this class must not be used
+ * by several threads at the same time.
+ * </p>
+ *
+ * @since 4.2.1
+ */
+public class ParallelTap13Parser extends Tap13Parser {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(ParallelTap13Parser.class
+            .getCanonicalName());
+
+    /**
+     * Default number of lines of a chunk.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 4096;
+
+    /**
+     * Executor working on the chunks.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Number of lines of a chunk, before moving to the end of a YAML
+     * diagnostic.
+     */
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    /**
+     * Diagnostics loaded for the chunk being passed to the state of the
+     * parser, or <code>null</code>.
+     */
+    private List<Diagnostic> diagnostics;
+
+    /**
+     * Position of the next diagnostic expected by the state of the parser.
+     */
+    private int nextDiagnostic;
+
+    /**
+     * Parser Constructor.
+     *
+     * A parser constructed this way will enforce that any input should include
+     * a plan.
+     *
+     * @param encoding Encoding, used in the {@link #parseFile} method
+     * @param enableSubtests Whether subtests are enabled or not
+     * @param executor executor working on the chunks. It is not shut down by
+     * the parser.
+     */
+    public ParallelTap13Parser(String encoding, boolean enableSubtests, ExecutorService executor) {
+        this(encoding, enableSubtests, true, false, executor);
+    }
+
+    /**
+     * Parser Constructor.
+     *
+     * @param encoding Encoding, used in the {@link #parseFile} method
+     * @param enableSubtests Whether subtests are enabled or not
+     * @param planRequired flag that defines whether a plan is required or not
+     * @param removeYamlIfCorrupted flag that defines whether a corrupted YAML
+     * content will be removed without causing whole TAP processing failure
+     * @param executor executor working on the chunks. It is not shut down by
+     * the parser.
+     */
+    public ParallelTap13Parser(String encoding, boolean enableSubtests, boolean planRequired,
+            boolean removeYamlIfCorrupted, ExecutorService executor) {
+        super(encoding, enableSubtests, planRequired, removeYamlIfCorrupted);
+        if (executor == null) {
+            throw new IllegalArgumentException("Missing executor");
+        }
+        this.executor = executor;
+    }
+
+    /**
+     * @return executor working on the chunks
+     */
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * @return number of lines of a chunk
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * A chunk ends after this number of lines, or at the end of the YAML
+     * diagnostic it is in. Larger chunks need less coordination between the
+     * threads, and smaller ones balance the work better.
+     *
+     * @param chunkSize number of lines of a chunk, at least 1
+     */
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Invalid chunk size: " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void parseTapStream(Readable tapStream, TapEventHandler handler) {
+        final List<String> lines = new ArrayList<String>();
+        TapLineReader reader = null;
+        try {
+            reader = new TapLineReader(tapStream);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.length() > 0) {
+                    lines.add(line);
+                }
+            }
+        } catch (Exception e) {
+            throw new ParserException("Error parsing TAP Stream: "
+                    + e.getMessage(), e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    LOGGER.log(Level.SEVERE, "Failed to close TAP Stream: "
+                            + e.getMessage(), e);
+                }
+            }
+        }
+        parseLines(lines, handler);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void parseFile(File tapFile, TapEventHandler handler) {
+        if (!isUseMemoryMapping() || getCharset() == null
+                || !MappedTapFileReader.isSupported(getCharset())) {
+            // read through parseTapStream(Readable, TapEventHandler)
+            super.parseFile(tapFile, handler);
+            return;
+        }
+        final List<String> lines = new ArrayList<String>();
+        MappedTapFileReader reader = null;
+        try {
+            reader = new MappedTapFileReader(tapFile, getCharset().newDecoder());
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.length() > 0) {
+                    lines.add(line);
+                }
+            }
+        } catch (FileNotFoundException e) {
+            throw new ParserException("TAP file not found: " + tapFile, e);
+        } catch (Exception e) {
+            throw new ParserException("Error parsing TAP Stream: "
+                    + e.getMessage(), e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    LOGGER.log(Level.SEVERE, "Failed to close file: "
+                            + e.getMessage(), e);
+                }
+            }
+        }
+        parseLines(lines, handler);
+    }
+
+    /**
+     * Parses the lines of a TAP Stream.
+     *
+     * @param lines non-empty lines of the TAP Stream. The control sequences
+     * are filtered out of the list.
+     * @param handler handler receiving the elements
+     */
+    private void parseLines(List<String> lines, TapEventHandler handler) {
+        final List<Chunk> chunks = split(lines);
+        final List<Future<Chunk>> futures = new ArrayList<Future<Chunk>>(chunks.size());
+        try {
+            if (chunks.size() > 1) {
+                for (Chunk chunk : chunks) {
+                    futures.add(executor.submit(chunk));
+                }
+            }
+            beginStream(handler);
+            for (int i = 0; i < chunks.size(); i++) {
+                final Chunk chunk = futures.isEmpty() ? chunks.get(i).call() : await(futures.get(i));
+                diagnostics = chunk.diagnostics;
+                nextDiagnostic = 0;
+                for (int j = 0; j < chunk.elements.length; j++) {
+                    parseElement(lines.get(chunk.start + j), chunk.elements[j]);
+                }
+            }
+            diagnostics = null;
+            endStream();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ParserException("Interrupted while parsing TAP Stream", e);
+        } catch (Exception e) {
+            throw new ParserException("Error parsing TAP Stream: "
+                    + e.getMessage(), e);
+        } finally {
+            diagnostics = null;
+            for (Future<Chunk> future : futures) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Cuts the lines into chunks, and filters out their control sequences.
+     * The YAML diagnostics are tracked like {@link Tap13Parser} does, so that
+     * a chunk never starts inside one.
+     *
+     * @param lines non-empty lines of the TAP Stream
+     * @return the chunks
+     */
+    private List<Chunk> split(List<String> lines) {
+        final List<Chunk> chunks = new ArrayList<Chunk>();
+        final YamlTracker yaml = new YamlTracker();
+        int start = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            if (i - start >= chunkSize && !yaml.isInYaml()) {
+                chunks.add(new Chunk(lines, start, i));
+                start = i;
+            }
+            final String line = Tap13Parser.filterControlSequences(lines.get(i));
+            lines.set(i, line);
+            yaml.track(line);
+        }
+        if (start < lines.size() || chunks.isEmpty()) {
+            chunks.add(new Chunk(lines, start, lines.size()));
+        }
+        return chunks;
+    }
+
+    /**
+     * Waits for a chunk to be done.
+     *
+     * @param future future of the chunk
+     * @return the chunk
+     * @throws InterruptedException if the thread is interrupted
+     */
+    private static Chunk await(Future<Chunk> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new ParserException(e.getCause());
+        }
+    }
+
+    /**
+     * Uses the diagnostic loaded with the chunk when it is the one expected,
+     * or else creates it.
+     *
+     * @param rawDiagnostic YAML text of the diagnostic
+     * @return the YAML diagnostic as a map
+     */
+    @Override
+    Map<String, Object> createDiagnostic(String rawDiagnostic) {
+        if (diagnostics != null && nextDiagnostic < diagnostics.size()) {
+            final Diagnostic diagnostic = diagnostics.get(nextDiagnostic);
+            if (diagnostic.rawDiagnostic.equals(rawDiagnostic)) {
+                nextDiagnostic++;
+                if (diagnostic.diagnostic != null) {
+                    return diagnostic.diagnostic;
+                }
+            }
+        }
+        // the errors are reported here, at the same place as by Tap13Parser
+        return super.createDiagnostic(rawDiagnostic);
+    }
+
+    /**
+     * Loads a diagnostic in the thread of a chunk.
+     *
+     * @param rawDiagnostic YAML text of the diagnostic
+     * @return the YAML diagnostic as a map, or <code>null</code> if it could
+     * not be loaded
+     */
+    private Map<String, Object> preloadDiagnostic(String rawDiagnostic) {
+        try {
+            return super.createDiagnostic(rawDiagnostic);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Lines whose elements are created and YAML diagnostics loaded by a
+     * thread of the executor.
+     */
+    private final class Chunk implements Callable<Chunk> {
+
+        /**
+         * Lines of the TAP Stream.
+         */
+        private final List<String> lines;
+
+        /**
+         * Position of the first line of the chunk.
+         */
+        private final int start;
+
+        /**
+         * Elements of the lines, <code>null</code> for the ones that are not
+         * valid tokens.
+         */
+        private final TapElement[] elements;
+
+        /**
+         * Diagnostics of the YAML blocks ending in the chunk.
+         */
+        private List<Diagnostic> diagnostics;
+
+        /**
+         * @param lines lines of the TAP Stream
+         * @param start position of the first line of the chunk
+         * @param end position after the last line of the chunk
+         */
+        Chunk(List<String> lines, int start, int end) {
+            super();
+            this.lines = lines;
+            this.start = start;
+            this.elements = new TapElement[end - start];
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Chunk call() {
+            final YamlTracker yaml = new YamlTracker();
+            final boolean loadDiagnostics = !isLazyDiagnostics();
+            final List<Diagnostic> loaded = new ArrayList<Diagnostic>();
+            final StringBuilder buffer = new StringBuilder();
+            for (int i = 0; i < elements.length; i++) {
+                final String line = lines.get(start + i);
+                final TapElement element = createTapElement(line);
+                elements[i] = element;
+                if (!loadDiagnostics) {
+                    continue;
+                }
+                final boolean inYaml = yaml.isInYaml();
+                yaml.track(line);
+                if (inYaml && yaml.isInYaml()) {
+                    buffer.append(line).append('\n');
+                } else if (inYaml && buffer.length() > 0) {
+                    final String rawDiagnostic = buffer.toString();
+                    loaded.add(new Diagnostic(rawDiagnostic, preloadDiagnostic(rawDiagnostic)));
+                    buffer.setLength(0);
+                }
+            }
+            this.diagnostics = loaded;
+            return this;
+        }
+
+    }
+
+    /**
+     * YAML diagnostic loaded by a chunk.
+     */
+    private static final class Diagnostic {
+
+        /**
+         * YAML text of the diagnostic.
+         */
+        private final String rawDiagnostic;
+
+        /**
+         * The diagnostic, or <code>null</code> if it could not be loaded.
+         */
+        private final Map<String, Object> diagnostic;
+
+        /**
+         * @param rawDiagnostic YAML text of the diagnostic
+         * @param diagnostic the diagnostic, or <code>null</code>
+         */
+        Diagnostic(String rawDiagnostic, Map<String, Object> diagnostic) {
+            super();
+            this.rawDiagnostic = rawDiagnostic;
+            this.diagnostic = diagnostic;
+        }
+
+    }
+
+    /**
+     * Tracks the YAML blocks of a sequence of lines, like {@link Tap13Parser}
+     * does: a block starts with a line made of <code>---</code>, and ends with
+     * a line made of <code>...</code> that is not indented more than the
+     * start.
+     */
+    private static final class YamlTracker {
+
+        /**
+         * Indentation of the block the lines are in, or <code>null</code>
+         * outside blocks.
+         */
+        private String indentation;
+
+        /**
+         * Default constructor.
+         */
+        YamlTracker() {
+            super();
+        }
+
+        /**
+         * @return whether the last line tracked is in a block, and is not
+         * its end
+         */
+        boolean isInYaml() {
+            return indentation != null;
+        }
+
+        /**
+         * Tracks the next line.
+         *
+         * @param line line, without control sequences
+         */
+        void track(String line) {
+            final int mark = markIndex(line);
+            if (mark < 0) {
+                return;
+            }
+            if (indentation == null) {
+                if (line.startsWith("---", mark)) {
+                    indentation = line.substring(0, mark);
+                }
+            } else if (line.startsWith("...", mark)
+                    && (mark < indentation.length() || line.equals(indentation + "..."))) {
+                indentation = null;
+            }
+        }
+
+        /**
+         * @param line line
+         * @return the position of the <code>---</code> or <code>...</code>
+         * the line is made of, besides white space, or -1
+         */
+        private static int markIndex(String line) {
+            int start = 0;
+            while (start < line.length() && line.charAt(start) <= ' ') {
+                start++;
+            }
+            int end = line.length();
+            while (end > start && line.charAt(end - 1) <= ' ') {
+                end--;
+            }
+            if (end - start != 3) {
+                return -1;
+            }
+            final char c = line.charAt(start);
+            return (c == '-' || c == '.') && line.charAt(start + 1) == c && line.charAt(start + 2) == c
+                    ? start : -1;
+        }
+
+    }
+
+}
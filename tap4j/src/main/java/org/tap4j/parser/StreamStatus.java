@@ -23,6 +23,8 @@
  */
 package org.tap4j.parser;
 
+import org.tap4j.model.Header;
+import org.tap4j.model.Plan;
 import org.tap4j.model.TapElement;
 import org.tap4j.model.TestSet;
 
@@ -77,9 +79,35 @@ public class StreamStatus {
     private final StringBuilder diagnosticBuffer = new StringBuilder();
 
     /**
-     * The immutable test set.
+     * The test set built at this level, when the parser builds one.
      */
-    private final TestSet testSet = new TestSet();
+    private TestSet testSet = null;
+
+    /**
+     * The TAP Header found at this level.
+     */
+    private Header header = null;
+
+    /**
+     * The TAP Plan found at this level.
+     */
+    private Plan plan = null;
+
+    /**
+     * Number of test results found at this level.
+     */
+    private int numberOfTestResults = 0;
+
+    /**
+     * Number of bail outs found at this level.
+     */
+    private int numberOfBailOuts = 0;
+
+    /**
+     * Whether the last parsed element is a test result that already has a
+     * subtest.
+     */
+    private boolean lastParsedElementHasSubtest = false;
 
     /**
      * In case sub-tests could not have been attached to parent (as the sub-tests came first)
@@ -90,7 +118,13 @@ public class StreamStatus {
     /**
      * Stream status test set.
      */
-    protected TestSet looseSubtests; 
+    protected TestSet looseSubtests;
+
+    /**
+     * Whether a subtest that could not be attached to its parent is waiting
+     * for the next test result at this level.
+     */
+    protected boolean looseSubtestsWaiting;
 
     /**
      * Default constructor.
@@ -153,6 +187,23 @@ public class StreamStatus {
      */
     public void setLastParsedElement(TapElement lastParsedElement) {
         this.lastParsedElement = lastParsedElement;
+        this.lastParsedElementHasSubtest = false;
+    }
+
+    /**
+     * @return whether the last parsed element is a test result that already
+     * has a subtest
+     */
+    public boolean isLastParsedElementHasSubtest() {
+        return lastParsedElementHasSubtest;
+    }
+
+    /**
+     * @param lastParsedElementHasSubtest whether the last parsed element is a
+     * test result that already has a subtest
+     */
+    public void setLastParsedElementHasSubtest(boolean lastParsedElementHasSubtest) {
+        this.lastParsedElementHasSubtest = lastParsedElementHasSubtest;
     }
 
     /**
@@ -191,12 +242,90 @@ public class StreamStatus {
     }
 
     /**
-     * @return the testSet
+     * @return the header
+     */
+    public Header getHeader() {
+        return header;
+    }
+
+    /**
+     * @param header the header to set
+     */
+    public void setHeader(Header header) {
+        this.header = header;
+    }
+
+    /**
+     * @return the plan
      */
+    public Plan getPlan() {
+        return plan;
+    }
+
+    /**
+     * @param plan the plan to set
+     */
+    public void setPlan(Plan plan) {
+        this.plan = plan;
+    }
+
+    /**
+     * @return the number of test results
+     */
+    public int getNumberOfTestResults() {
+        return numberOfTestResults;
+    }
+
+    /**
+     * @param numberOfTestResults the number of test results to set
+     */
+    public void setNumberOfTestResults(int numberOfTestResults) {
+        this.numberOfTestResults = numberOfTestResults;
+    }
+
+    /**
+     * @return the number of bail outs
+     */
+    public int getNumberOfBailOuts() {
+        return numberOfBailOuts;
+    }
+
+    /**
+     * @param numberOfBailOuts the number of bail outs to set
+     */
+    public void setNumberOfBailOuts(int numberOfBailOuts) {
+        this.numberOfBailOuts = numberOfBailOuts;
+    }
+
+    /**
+     * @return the testSet built by the {@link TestSetBuilder} at this level,
+     * or an empty test set when the parser passes its elements to another
+     * {@link TapEventHandler}
+     * @deprecated the parser passes its elements to a {@link TapEventHandler},
+     * use {@link TestSetBuilder#getTestSet()} instead
+     */
+    @Deprecated
     public TestSet getTestSet() {
+        if (testSet == null) {
+            testSet = new TestSet();
+        }
+        return testSet;
+    }
+
+    /**
+     * @return the test set built at this level, or <code>null</code>
+     */
+    TestSet getBuiltTestSet() {
         return testSet;
     }
 
+    /**
+     * @param testSet the test set built at this level
+     */
+    void setBuiltTestSet(TestSet testSet) {
+        this.testSet = testSet;
+    }
+
     /**
      * @return the yamlIndentation
      */
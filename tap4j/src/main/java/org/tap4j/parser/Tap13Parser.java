@@ -34,10 +34,10 @@ import java.nio.charset.CharsetDecoder;
 import java.nio.charset.UnsupportedCharsetException;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Scanner;
 import java.util.Stack;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
 
 import org.tap4j.model.BailOut;
 import org.tap4j.model.Comment;
@@ -46,11 +46,14 @@ import org.tap4j.model.Header;
 import org.tap4j.model.Plan;
 import org.tap4j.model.TapElement;
 import org.tap4j.model.TapElementFactory;
+import org.tap4j.model.TapElementTokenizer;
 import org.tap4j.model.TestResult;
 import org.tap4j.model.TestSet;
 import org.tap4j.model.Text;
+import org.tap4j.util.StringCache;
+import org.tap4j.util.YamlEngine;
+import org.tap4j.util.YamlishReader;
 
-import org.yaml.snakeyaml.Yaml;
 
 /**
  * TAP 13 parser.
@@ -65,6 +68,11 @@ public class Tap13Parser implements Parser {
     private static final Logger LOGGER = Logger.getLogger(Tap13Parser.class
             .getCanonicalName());
 
+    /**
+     * Cursor related control sequences, ESC[?25l and ESC[?25h.
+     */
+    private static final Pattern CURSOR_CONTROL = Pattern.compile("\u001B\\[\\?25[lh]");
+
     /**
      * Stack of stream status information bags. Every bag stores state of the parser
      * related to certain indentation level. This is to support subtest feature.
@@ -77,6 +85,12 @@ public class Tap13Parser implements Parser {
     private StreamStatus state = null;
 
     private int baseIndentation;
+
+    /**
+     * Handler receiving the parsed elements.
+     */
+    private TapEventHandler handler;
+
     /**
      * Decoder used. This is only used when trying to parse something that is
      * encoded (like a raw file or byte stream) and the encoding isn't otherwise
@@ -96,6 +110,31 @@ public class Tap13Parser implements Parser {
      */
     private boolean removeYamlIfCorrupted = false;
 
+    /**
+     * Classify lines with the hand-written {@link TapElementTokenizer} instead
+     * of the regular expressions of {@link TapElementFactory}. Both create the
+     * same elements. Switched off by default.
+     */
+    private boolean useTokenizer = false;
+
+    /**
+     * Read files in {@link #parseFile} by memory mapping them, when their
+     * encoding allows it. Switched off by default.
+     */
+    private boolean useMemoryMapping = false;
+
+    /**
+     * Parse YAML diagnostics only when they are first accessed. Switched off
+     * by default.
+     */
+    private boolean lazyDiagnostics = false;
+
+    /**
+     * Cache sharing the strings of the elements and of the YAML diagnostics,
+     * or <code>null</code> not to share them, which is the default.
+     */
+    private StringCache stringCache = null;
+
     /**
      * Parser Constructor.
      *
@@ -182,6 +221,98 @@ public class Tap13Parser implements Parser {
         this("UTF-8", false);
     }
 
+    /**
+     * @return the charset used by {@link #parseFile}, or {@code null} if none
+     * was specified
+     * @since 4.2.1
+     */
+    public Charset getCharset() {
+        return decoder == null ? null : decoder.charset();
+    }
+
+    /**
+     * @return whether lines are classified with the {@link TapElementTokenizer}
+     * @since 4.2.1
+     */
+    public boolean isUseTokenizer() {
+        return useTokenizer;
+    }
+
+    /**
+     * @param useTokenizer whether lines are classified with the
+     * {@link TapElementTokenizer} rather than the {@link TapElementFactory}
+     * @since 4.2.1
+     */
+    public void setUseTokenizer(boolean useTokenizer) {
+        this.useTokenizer = useTokenizer;
+    }
+
+    /**
+     * @return whether files are read by memory mapping them
+     * @since 4.2.1
+     */
+    public boolean isUseMemoryMapping() {
+        return useMemoryMapping;
+    }
+
+    /**
+     * Files are then mapped in windows, in which only the bytes of each line
+     * are decoded. This is only done for encodings where line feeds and
+     * carriage returns are single bytes, like {@code UTF-8} or
+     * {@code ISO-8859-1}; other files are still read through a reader.
+     *
+     * @param useMemoryMapping whether files are read by memory mapping them
+     * @since 4.2.1
+     */
+    public void setUseMemoryMapping(boolean useMemoryMapping) {
+        this.useMemoryMapping = useMemoryMapping;
+    }
+
+    /**
+     * @return whether YAML diagnostics are parsed only when first accessed
+     * @since 4.2.1
+     */
+    public boolean isLazyDiagnostics() {
+        return lazyDiagnostics;
+    }
+
+    /**
+     * The diagnostic maps of the elements then keep the YAML text, and parse
+     * it the first time they are accessed. The elements keep the YAML text
+     * too, see {@link TapElement#getRawDiagnostic()}. Errors in the YAML are then
+     * reported by that access, as a {@link ParserException}, instead of by
+     * the parser (unless corrupted YAML is removed).
+     *
+     * @param lazyDiagnostics whether YAML diagnostics are parsed only when
+     * first accessed
+     * @since 4.2.1
+     */
+    public void setLazyDiagnostics(boolean lazyDiagnostics) {
+        this.lazyDiagnostics = lazyDiagnostics;
+    }
+
+    /**
+     * @return cache sharing the strings of the elements and of the YAML
+     * diagnostics, or <code>null</code>
+     * @since 4.2.1
+     */
+    public StringCache getStringCache() {
+        return stringCache;
+    }
+
+    /**
+     * Equal descriptions, directive reasons, comments, and keys and values of
+     * YAML diagnostics then share one instance, which saves memory when the
+     * Test Sets are kept. A cache can be shared by several parsers.
+     *
+     * @param stringCache cache sharing the strings of the elements and of the
+     * YAML diagnostics, or <code>null</code> not to share them
+     * @since 4.2.1
+     */
+    public void setStringCache(StringCache stringCache) {
+        this.stringCache = stringCache;
+    }
+
     /**
      * Saves the current state in the stack.
      * @param indentation state indentation
@@ -200,21 +331,52 @@ public class Tap13Parser implements Parser {
         return parseTapStream(CharBuffer.wrap(tapStream));
     }
 
+    /**
+     * Parses a TAP Stream, passing its elements to a handler instead of
+     * building a {@link TestSet}.
+     *
+     * @param tapStream TAP Stream
+     * @param handler handler receiving the elements
+     * @since 4.2.1
+     */
+    public void parseTapStream(String tapStream, TapEventHandler handler) {
+        parseTapStream(CharBuffer.wrap(tapStream), handler);
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public TestSet parseFile(File tapFile) {
+        TestSetBuilder builder = new TestSetBuilder();
+        parseFile(tapFile, builder);
+        return builder.getTestSet();
+    }
+
+    /**
+     * Parses a TAP File, passing its elements to a handler instead of
+     * building a {@link TestSet}. The same encoding rules of
+     * {@link #parseFile(File)} apply.
+     *
+     * @param tapFile TAP File
+     * @param handler handler receiving the elements
+     * @since 4.2.1
+     */
+    public void parseFile(File tapFile, TapEventHandler handler) {
         if (null == decoder) {
             throw new ParserException(
                 "Must have encoding specified if using parseFile");
         }
+        if (useMemoryMapping && MappedTapFileReader.isSupported(decoder.charset())) {
+            parseMappedFile(tapFile, handler);
+            return;
+        }
         FileInputStream fis = null;
         InputStreamReader isr = null;
         try {
             fis = new FileInputStream(tapFile);
             isr = new InputStreamReader(fis, decoder);
-            return parseTapStream(isr);
+            parseTapStream(isr, handler);
         } catch (FileNotFoundException e) {
             throw new ParserException("TAP file not found: " + tapFile, e);
         } finally {
@@ -232,33 +394,112 @@ public class Tap13Parser implements Parser {
         }
     }
 
+    /**
+     * Parses a TAP File by memory mapping it.
+     *
+     * @param tapFile TAP File
+     * @param handler handler receiving the elements
+     */
+    private void parseMappedFile(File tapFile, TapEventHandler handler) {
+        MappedTapFileReader reader = null;
+        try {
+            reader = new MappedTapFileReader(tapFile, decoder);
+            beginStream(handler);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.length() > 0) {
+                    parseLine(line);
+                }
+            }
+            endStream();
+        } catch (FileNotFoundException e) {
+            throw new ParserException("TAP file not found: " + tapFile, e);
+        } catch (Exception e) {
+            throw new ParserException("Error parsing TAP Stream: "
+                    + e.getMessage(), e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    LOGGER.log(Level.SEVERE, "Failed to close file: "
+                            + e.getMessage(), e);
+                }
+            }
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public TestSet parseTapStream(Readable tapStream) {
-        state = new StreamStatus();
-        baseIndentation = Integer.MAX_VALUE;
-        Scanner scanner = null;
+        TestSetBuilder builder = new TestSetBuilder();
+        parseTapStream(tapStream, builder);
+        return builder.getTestSet();
+    }
+
+    /**
+     * Parses a TAP Stream, passing its elements to a handler instead of
+     * building a {@link TestSet}.
+     *
+     * @param tapStream TAP Stream
+     * @param handler handler receiving the elements
+     * @since 4.2.1
+     */
+    public void parseTapStream(Readable tapStream, TapEventHandler handler) {
+        TapLineReader reader = null;
         try {
-            scanner = new Scanner(tapStream);
-            while (scanner.hasNextLine()) {
-                String line = scanner.nextLine();
-                if (line != null && line.length() > 0) {
+            beginStream(handler);
+            reader = new TapLineReader(tapStream);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.length() > 0) {
                     parseLine(line);
                 }
             }
-            onFinish();
+            endStream();
         } catch (Exception e) {
             throw new ParserException("Error parsing TAP Stream: "
                     + e.getMessage(), e);
         } finally {
-            if (scanner != null) {
-                scanner.close();
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    LOGGER.log(Level.SEVERE, "Failed to close TAP Stream: "
+                            + e.getMessage(), e);
+                }
             }
         }
+    }
+
+    /**
+     * Prepares the parser for a new TAP Stream, whose lines are then given one
+     * at a time to {@link #parseLine(String)}, and which is completed by
+     * {@link #endStream()}. This lets callers that read the stream themselves
+     * drive the parser incrementally.
+     *
+     * @param handler handler receiving the elements
+     * @since 4.2.1
+     */
+    public void beginStream(TapEventHandler handler) {
+        this.handler = handler;
+        state = new StreamStatus();
+        states.clear();
+        baseIndentation = Integer.MAX_VALUE;
+        handler.onStreamStart();
+        bindTestSet();
+    }
 
-        return state.getTestSet();
+    /**
+     * Lets the current state return the test set built at its level, for
+     * the deprecated {@link StreamStatus#getTestSet()}.
+     */
+    private void bindTestSet() {
+        if (handler instanceof TestSetBuilder) {
+            state.setBuiltTestSet(((TestSetBuilder) handler).getTestSet());
+        }
     }
 
     /**
@@ -267,16 +508,49 @@ public class Tap13Parser implements Parser {
      * @param tapLineOrig TAP line
      */
     public void parseLine(String tapLineOrig) {
+        final String tapLine = filterControlSequences(tapLineOrig);
+        parseElement(tapLine, createTapElement(tapLine));
+    }
+
+    /**
+     * Filters out cursor related control sequences, ESC[?25l and ESC[?25h.
+     *
+     * @param tapLine TAP line
+     * @return the TAP line without the control sequences
+     */
+    static String filterControlSequences(String tapLine) {
+        if (tapLine.indexOf('\u001B') >= 0) {
+            return CURSOR_CONTROL.matcher(tapLine).replaceAll("");
+        }
+        return tapLine;
+    }
 
-        // filter out cursor related control sequences ESC[25?l and ESC[25?h
-        String tapLine = tapLineOrig.replaceAll("\u001B\\[\\?25[lh]", "");
+    /**
+     * Creates the element of a TAP line, the way this parser is configured
+     * to. This does not depend on the state of the parser.
+     *
+     * @param tapLine TAP line, without control sequences
+     * @return the element, or <code>null</code> if the line is not a valid
+     * token
+     */
+    TapElement createTapElement(String tapLine) {
+        return useTokenizer ? TapElementTokenizer.createTapElement(tapLine, stringCache)
+                : TapElementFactory.createTapElement(tapLine, stringCache);
+    }
 
-        TapElement tapElement = TapElementFactory.createTapElement(tapLine);
+    /**
+     * Parses a TAP line whose element was already created.
+     *
+     * @param tapLine TAP line, without control sequences
+     * @param tapElement element created by {@link #createTapElement(String)}
+     */
+    void parseElement(String tapLine, TapElement tapElement) {
 
         if (tapElement == null || state.isInYaml()) {
 
             String trimmedLine = tapLine.trim();
-            Text text = TapElementFactory.createTextElement(tapLine);
+            Text text = useTokenizer ? TapElementTokenizer.createTextElement(tapLine)
+                    : TapElementFactory.createTextElement(tapLine);
 
             if (state.isInYaml()) {
 
@@ -300,7 +574,7 @@ public class Tap13Parser implements Parser {
                     state.setInYaml(true);
                     state.setYamlIndentation(text.getIndentationString());
                 } else {
-                    state.getTestSet().getTapLines().add(text);
+                    handler.onText(text);
                     state.setLastParsedElement(text);
                 }
             }
@@ -320,30 +594,36 @@ public class Tap13Parser implements Parser {
                 pushState(indentation); // make room for children
 
                 TapElement lastParentElement = parentState.getLastParsedElement();
+                TestResult parent = null;
                 if (lastParentElement instanceof TestResult) {
-                    final TestResult lastTestResult = (TestResult) lastParentElement;
                     // whatever test set comes should be attached to parent
-                    if (lastTestResult.getSubtest() == null) {
-                        lastTestResult.setSubtest(state.getTestSet());
+                    if (!parentState.isLastParsedElementHasSubtest()) {
+                        parent = (TestResult) lastParentElement;
+                        parentState.setLastParsedElementHasSubtest(true);
                         state.attachedToParent = true;
                     }
                 }
+                handler.onSubtestStart(parent);
+                bindTestSet();
             } else {
                 // going down
                 do {
                     StreamStatus prevState = state;
                     state = states.pop();
                     if (!prevState.attachedToParent) {
-                        state.looseSubtests = prevState.getTestSet();
+                        state.looseSubtestsWaiting = true;
+                        state.looseSubtests = prevState.getBuiltTestSet();
                     }
+                    handler.onSubtestEnd();
                     // there could be more than one level diff
                 } while (indentation < state.getIndentationLevel());
             }
         }
 
+        boolean hasSubtest = false;
         if (tapElement instanceof Header) {
 
-            if (state.getTestSet().getHeader() != null) {
+            if (state.getHeader() != null) {
                 throw new ParserException("Duplicated TAP Header found.");
             }
             if (!state.isFirstLine()) {
@@ -351,22 +631,24 @@ public class Tap13Parser implements Parser {
                         "Invalid position of TAP Header. It must be the first "
                                 + "element (apart of Comments) in the TAP Stream.");
             }
-            state.getTestSet().setHeader((Header) tapElement);
+            state.setHeader((Header) tapElement);
+            handler.onHeader((Header) tapElement);
 
         } else if (tapElement instanceof Plan) {
 
             Plan currentPlan = (Plan) tapElement;
 
-            if (state.getTestSet().getPlan() != null) {
+            if (state.getPlan() != null) {
                 if (currentPlan.getInitialTestNumber() != 1 || currentPlan.getLastTestNumber() != 0) {
                     throw new ParserException("Duplicated TAP Plan found.");
                 }
             } else {
-                state.getTestSet().setPlan(currentPlan);
+                state.setPlan(currentPlan);
+                handler.onPlan(currentPlan);
             }
 
-            if (state.getTestSet().getTestResults().size() <= 0
-                    && state.getTestSet().getBailOuts().size() <= 0) {
+            if (state.getNumberOfTestResults() <= 0
+                    && state.getNumberOfBailOuts() <= 0) {
                 state.setPlanBeforeTestResult(true);
             }
 
@@ -376,35 +658,36 @@ public class Tap13Parser implements Parser {
 
             final TestResult testResult = (TestResult) tapElement;
             if (testResult.getTestNumber() == 0) {
-                if (state.getTestSet().getPlan() != null && state.isPlanBeforeTestResult() == false) {
+                if (state.getPlan() != null && state.isPlanBeforeTestResult() == false) {
                     return; // done testing mark
                 }
-                if (state.getTestSet().getPlan() != null &&
-                    state.getTestSet().getPlan().getLastTestNumber() == state.getTestSet().getTestResults().size()) {
+                if (state.getPlan() != null &&
+                    state.getPlan().getLastTestNumber() == state.getNumberOfTestResults()) {
                     return; // done testing mark but plan before test result
                 }
-                testResult.setTestNumber(state.getTestSet().getNextTestNumber());
+                testResult.setTestNumber(state.getNumberOfTestResults() + 1);
             }
 
-            state.getTestSet().addTestResult(testResult);
-            if (state.looseSubtests != null) {
-                testResult.setSubtest(state.looseSubtests);
-                state.looseSubtests = null;
-            }
+            state.setNumberOfTestResults(state.getNumberOfTestResults() + 1);
+            handler.onTestResult(testResult);
+            hasSubtest = state.looseSubtestsWaiting;
+            state.looseSubtestsWaiting = false;
+            state.looseSubtests = null;
 
         } else if (tapElement instanceof Footer) {
 
-            state.getTestSet().setFooter((Footer) tapElement);
+            handler.onFooter((Footer) tapElement);
 
         } else if (tapElement instanceof BailOut) {
 
-            state.getTestSet().addBailOut((BailOut) tapElement);
+            state.setNumberOfBailOuts(state.getNumberOfBailOuts() + 1);
+            handler.onBailOut((BailOut) tapElement);
 
         } else if (tapElement instanceof Comment) {
 
             final Comment comment = (Comment) tapElement;
 
-            state.getTestSet().addComment(comment);
+            handler.onComment(comment);
 
             if (state.getLastParsedElement() instanceof TestResult) {
                 ((TestResult) state.getLastParsedElement()).addComment(comment);
@@ -414,15 +697,19 @@ public class Tap13Parser implements Parser {
         state.setFirstLine(false);
         if (!(tapElement instanceof Comment)) {
             state.setLastParsedElement(tapElement);
+            state.setLastParsedElementHasSubtest(hasSubtest);
         }
     }
 
     /**
      * Called after the rest of the stream has been processed.
+     *
+     * @since 4.2.1
+     * @see #beginStream(TapEventHandler)
      */
-    private void onFinish() {
+    public void endStream() {
         if (planRequired) {
-            if (state.getTestSet().getPlan() == null) {
+            if (state.getPlan() == null) {
                 throw new ParserException("Missing TAP Plan.");
             }
         }
@@ -430,7 +717,9 @@ public class Tap13Parser implements Parser {
 
         while (!states.isEmpty() && state.getIndentationLevel() > baseIndentation) {
             state = states.pop();
+            handler.onSubtestEnd();
         }
+        handler.onStreamEnd();
     }
 
     /* -- Utility methods --*/
@@ -451,23 +740,84 @@ public class Tap13Parser implements Parser {
                 throw new ParserException("Found diagnostic information without a previous TAP element.");
             }
 
-            try {
-                @SuppressWarnings("unchecked")
-                Map<String, Object> metaIterable = (Map<String, Object>) new Yaml()
-                        .load(state.getDiagnosticBuffer().toString());
-                state.getLastParsedElement().setDiagnostic(metaIterable);
-            } catch (Exception ex) {
-                if (this.removeYamlIfCorrupted) {
-                    Map<String, Object> metaInfo = new HashMap<String, Object>();
-                    metaInfo.put("TAP processing error", "could not parse original diagnostic YAML data");
-                    state.getLastParsedElement().setDiagnostic(metaInfo);
-                } else {
-                    throw new ParserException("Error parsing YAML ["
-                            + state.getDiagnosticBuffer().toString() + "]: "
-                            + ex.getMessage(), ex);
-                }
+            final TapElement element = state.getLastParsedElement();
+            final String rawDiagnostic = state.getDiagnosticBuffer().toString();
+            element.setDiagnostic(createDiagnostic(rawDiagnostic));
+            if (lazyDiagnostics) {
+                // only kept while it is not parsed anyway
+                element.setRawDiagnostic(rawDiagnostic);
             }
             this.state.getDiagnosticBuffer().setLength(0);
+            handler.onYamlBlock(state.getLastParsedElement());
+        }
+    }
+
+    /**
+     * Creates the diagnostic of a YAML block, the way this parser is
+     * configured to. This does not depend on the state of the parser.
+     *
+     * @param rawDiagnostic YAML text of the diagnostic
+     * @return the YAML diagnostic as a map
+     * @throws ParserException if the YAML is corrupted and not removed
+     */
+    Map<String, Object> createDiagnostic(String rawDiagnostic) {
+        if (lazyDiagnostics) {
+            return new LazyDiagnostic(rawDiagnostic, removeYamlIfCorrupted, stringCache);
+        }
+        return loadDiagnostic(rawDiagnostic, removeYamlIfCorrupted, stringCache);
+    }
+
+    /**
+     * Parses a YAML diagnostic, and passes its strings through a cache.
+     *
+     * @param rawDiagnostic YAML text of the diagnostic
+     * @param removeYamlIfCorrupted whether a corrupted YAML is replaced by an
+     * error message instead of causing a parser error
+     * @param strings cache of strings, or <code>null</code>
+     * @return the YAML diagnostic as a map
+     * @throws ParserException if the YAML is corrupted and not removed
+     */
+    static Map<String, Object> loadDiagnostic(String rawDiagnostic, boolean removeYamlIfCorrupted,
+            StringCache strings) {
+        Map<String, Object> diagnostic = loadDiagnostic(rawDiagnostic, removeYamlIfCorrupted);
+        if (strings != null && diagnostic != null) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> cached = (Map<String, Object>) strings.deduplicate(diagnostic);
+            diagnostic = cached;
+        }
+        return diagnostic;
+    }
+
+    /**
+     * Parses a YAML diagnostic, with the {@link YamlishReader} when it is
+     * simple enough, or else with SnakeYAML.
+     *
+     * @param rawDiagnostic YAML text of the diagnostic
+     * @param removeYamlIfCorrupted whether a corrupted YAML is replaced by an
+     * error message instead of causing a parser error
+     * @return the YAML diagnostic as a map
+     * @throws ParserException if the YAML is corrupted and not removed
+     */
+    static Map<String, Object> loadDiagnostic(String rawDiagnostic, boolean removeYamlIfCorrupted) {
+        try {
+            Map<String, Object> metaIterable = YamlishReader.read(rawDiagnostic);
+            if (metaIterable == null) {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> loaded = (Map<String, Object>) YamlEngine.getDefault()
+                        .load(rawDiagnostic);
+                metaIterable = loaded;
+            }
+            return metaIterable;
+        } catch (Exception ex) {
+            if (removeYamlIfCorrupted) {
+                Map<String, Object> metaInfo = new HashMap<String, Object>();
+                metaInfo.put("TAP processing error", "could not parse original diagnostic YAML data");
+                return metaInfo;
+            } else {
+                throw new ParserException("Error parsing YAML ["
+                        + rawDiagnostic + "]: "
+                        + ex.getMessage(), ex);
+            }
         }
     }
 }
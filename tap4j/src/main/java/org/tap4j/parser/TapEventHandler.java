@@ -0,0 +1,129 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.parser;
+
+import org.tap4j.model.BailOut;
+import org.tap4j.model.Comment;
+import org.tap4j.model.Footer;
+import org.tap4j.model.Header;
+import org.tap4j.model.Plan;
+import org.tap4j.model.TapElement;
+import org.tap4j.model.TestResult;
+import org.tap4j.model.Text;
+
+/**
+ * Receives the elements of a TAP Stream as they are parsed, SAX style.
+ *
+ * <p>
+ * The parser does not keep the elements after they have been passed to the
+ * handler, so a handler that does not retain them either can process streams
+ * of any length in constant memory. {@link TestSetBuilder} is the handler that
+ * builds the usual {@link org.tap4j.model.TestSet} tree.
+ * </p>
+ *
+ * <p>
+ * Elements at a deeper indentation are reported between
+ * {@link #onSubtestStart(TestResult)} and {@link #onSubtestEnd()}. Diagnostics
+ * are reported by {@link #onYamlBlock(TapElement)} once the YAMLish block
+ * following an element ends, so the element has already been passed to the
+ * handler by then.
+ * </p>
+ *
+ * @since 4.2.1
+ * @see DefaultTapEventHandler
+ */
+public interface TapEventHandler {
+
+    /**
+     * Called before the first line of the TAP Stream is parsed.
+     */
+    void onStreamStart();
+
+    /**
+     * Called after the last line of the TAP Stream was parsed.
+     */
+    void onStreamEnd();
+
+    /**
+     * @param header TAP Header
+     */
+    void onHeader(Header header);
+
+    /**
+     * @param plan TAP Plan
+     */
+    void onPlan(Plan plan);
+
+    /**
+     * Called for every test result, with its test number already assigned.
+     *
+     * @param testResult TAP Test Result
+     */
+    void onTestResult(TestResult testResult);
+
+    /**
+     * @param bailOut TAP Bail Out
+     */
+    void onBailOut(BailOut bailOut);
+
+    /**
+     * @param comment TAP Comment
+     */
+    void onComment(Comment comment);
+
+    /**
+     * @param footer TAP Footer
+     */
+    void onFooter(Footer footer);
+
+    /**
+     * Called for lines that are not TAP elements.
+     *
+     * @param text Text
+     */
+    void onText(Text text);
+
+    /**
+     * Called when the YAMLish block following an element ends. The diagnostic
+     * has already been set on the element.
+     *
+     * @param tapElement TAP element owning the diagnostic
+     */
+    void onYamlBlock(TapElement tapElement);
+
+    /**
+     * Called when the indentation increases.
+     *
+     * @param parent test result the subtest belongs to, when the subtest comes
+     * after it, or {@code null} when the subtest comes before its test result
+     * (i.e. the next test result at the current level)
+     */
+    void onSubtestStart(TestResult parent);
+
+    /**
+     * Called when the indentation decreases back to the parent level.
+     */
+    void onSubtestEnd();
+
+}
@@ -0,0 +1,311 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.parser;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Follows a TAP File that is still being written, like {@code tail -f}.
+ *
+ * <p>
+ * Every {@link #poll()} reads only the bytes appended since the previous one
+ * and passes them to the parser, whose state (subtest stack, YAMLish buffer,
+ * base indentation) is kept between polls. The handler thus receives only the
+ * new elements. Bytes of an incomplete character and an incomplete last line
+ * are carried over to the next poll. Call {@link #finish()} once the file is
+ * complete, to parse the last line and check the stream.
+ * </p>
+ *
+ * <p>
+ * The follower can be scheduled to poll the file periodically, e.g.
+ * {@code executor.scheduleWithFixedDelay(follower, 0, 1, TimeUnit.SECONDS)}.
+ * </p>
+ *
+ * @since 4.2.1
+ */
+public class TapFileFollower implements Runnable {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(TapFileFollower.class
+            .getCanonicalName());
+
+    /**
+     * Size of the read buffers.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * TAP parser.
+     */
+    private final Tap13Parser parser;
+
+    /**
+     * TAP File.
+     */
+    private final File tapFile;
+
+    /**
+     * Decoder, which keeps track of incomplete characters between polls.
+     */
+    private final CharsetDecoder decoder;
+
+    /**
+     * Bytes read and not decoded yet.
+     */
+    private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+
+    /**
+     * Characters decoded and not split into lines yet.
+     */
+    private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+
+    /**
+     * Last line, not terminated yet.
+     */
+    private final StringBuilder partialLine = new StringBuilder();
+
+    /**
+     * Whether the last line was terminated by a carriage return, which may be
+     * followed by a line feed.
+     */
+    private boolean carriageReturn = false;
+
+    /**
+     * Number of bytes of the file read so far.
+     */
+    private long offset = 0;
+
+    /**
+     * Whether {@link #finish()} was called.
+     */
+    private boolean finished = false;
+
+    /**
+     * Creates a follower and starts the TAP Stream.
+     *
+     * @param parser TAP parser, which must have an encoding and must not be
+     * used for anything else while following the file
+     * @param tapFile TAP File
+     * @param handler handler receiving the elements
+     */
+    public TapFileFollower(Tap13Parser parser, File tapFile, TapEventHandler handler) {
+        super();
+        if (null == parser.getCharset()) {
+            throw new ParserException(
+                "Must have encoding specified if following a file");
+        }
+        this.parser = parser;
+        this.tapFile = tapFile;
+        this.decoder = parser.getCharset().newDecoder();
+        parser.beginStream(handler);
+    }
+
+    /**
+     * @return number of bytes of the file read so far
+     */
+    public synchronized long getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return whether {@link #finish()} was called
+     */
+    public synchronized boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Polls the file.
+     *
+     * @see #poll()
+     */
+    @Override
+    public void run() {
+        poll();
+    }
+
+    /**
+     * Reads and parses what was appended to the file since the last poll. A
+     * file that does not exist yet is considered empty.
+     *
+     * @return number of lines parsed
+     */
+    public synchronized int poll() {
+        if (finished) {
+            throw new ParserException("TAP file already finished: " + tapFile);
+        }
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(tapFile, "r");
+            final FileChannel channel = raf.getChannel();
+            final long size = channel.size();
+            if (size < offset) {
+                throw new ParserException("TAP file truncated: " + tapFile);
+            }
+            int lines = 0;
+            while (offset < size) {
+                final int read = channel.read(bytes, offset);
+                if (read <= 0) {
+                    break;
+                }
+                offset += read;
+                bytes.flip();
+                lines += decode(false);
+                bytes.compact();
+            }
+            return lines;
+        } catch (FileNotFoundException e) {
+            return 0;
+        } catch (IOException e) {
+            throw new ParserException("Error reading TAP file " + tapFile
+                    + ": " + e.getMessage(), e);
+        } finally {
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (IOException e) {
+                    LOGGER.log(Level.SEVERE, "Failed to close file: "
+                            + e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads what is left in the file, parses the last line even if it is not
+     * terminated, and ends the TAP Stream.
+     */
+    public synchronized void finish() {
+        poll();
+        try {
+            bytes.flip();
+            decode(true);
+            bytes.clear();
+            CoderResult result = decoder.flush(chars);
+            if (result.isError()) {
+                result.throwException();
+            }
+            chars.flip();
+            split();
+            chars.clear();
+        } catch (CharacterCodingException e) {
+            throw new ParserException("Error decoding TAP file " + tapFile
+                    + ": " + e.getMessage(), e);
+        }
+        if (partialLine.length() > 0) {
+            parseLine();
+        }
+        finished = true;
+        try {
+            parser.endStream();
+        } catch (ParserException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw new ParserException("Error parsing TAP Stream: "
+                    + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Decodes the bytes read and parses the complete lines.
+     *
+     * @param endOfInput whether no more bytes will be read
+     * @return number of lines parsed
+     * @throws CharacterCodingException if the bytes are not valid in the
+     * encoding of the parser
+     */
+    private int decode(boolean endOfInput) throws CharacterCodingException {
+        int lines = 0;
+        CoderResult result;
+        do {
+            result = decoder.decode(bytes, chars, endOfInput);
+            if (result.isError()) {
+                result.throwException();
+            }
+            chars.flip();
+            lines += split();
+            chars.clear();
+        } while (result.isOverflow());
+        return lines;
+    }
+
+    /**
+     * Splits the decoded characters into lines, with the line terminators
+     * recognized by {@link java.util.Scanner#nextLine()}.
+     *
+     * @return number of lines parsed
+     */
+    private int split() {
+        int lines = 0;
+        while (chars.hasRemaining()) {
+            final char c = chars.get();
+            if (carriageReturn) {
+                carriageReturn = false;
+                if (c == '\n') {
+                    continue;
+                }
+            }
+            if (TapLineReader.isLineTerminator(c)) {
+                carriageReturn = c == '\r';
+                parseLine();
+                lines++;
+            } else {
+                partialLine.append(c);
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Parses the current line.
+     */
+    private void parseLine() {
+        final String line = partialLine.toString();
+        partialLine.setLength(0);
+        if (line.length() > 0) {
+            try {
+                parser.parseLine(line);
+            } catch (ParserException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                throw new ParserException("Error parsing TAP Stream: "
+                        + e.getMessage(), e);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,1044 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.parser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.tap4j.model.BailOut;
+import org.tap4j.model.Comment;
+import org.tap4j.model.Footer;
+import org.tap4j.model.Header;
+import org.tap4j.model.Plan;
+import org.tap4j.model.TapElement;
+import org.tap4j.model.TestResult;
+import org.tap4j.model.TestSet;
+import org.tap4j.model.Text;
+
+/**
+ * Index of the top-level test results and bail outs of a TAP File, giving
+ * access to any of them without parsing the whole file.
+ *
+ * <p>
+ * The file is scanned once, with lazy diagnostics, and the byte range of
+ * every top-level test result is recorded: its line, its YAML diagnostic, the
+ * comments following it and its subtest, whether the subtest comes before or
+ * after it. Reading a test
+ * result then maps and parses only its range. The index is saved next to the
+ * file, in a sidecar file with the {@link #SIDECAR_EXTENSION} extension, and
+ * reused by the next {@link #open(File, String)} unless the size or the last
+ * modification time of the file changed.
+ * </p>
+ *
+ * <p>
+ * Only the encodings where line feeds and carriage returns are single bytes,
+ * such as UTF-8 or ISO-8859-1, are supported. Instances of this class are
+ * immutable and safe to use from many threads.
+ * </p>
+ *
+ * @since 4.2.1
+ */
+public final class TapIndex {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(TapIndex.class.getCanonicalName());
+
+    /**
+     * Extension added to the name of a TAP File for its sidecar index.
+     */
+    public static final String SIDECAR_EXTENSION = ".idx";
+
+    /**
+     * First bytes of a sidecar index.
+     */
+    private static final int MAGIC = 0x54415049;
+
+    /**
+     * Version of the format of the sidecar index.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Initial capacity of the columns.
+     */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Type of the entries of the index.
+     */
+    public enum Type {
+        /**
+         * Top-level test result.
+         */
+        TEST_RESULT,
+        /**
+         * Top-level bail out.
+         */
+        BAIL_OUT
+    }
+
+    /**
+     * Entry of the index: the byte range of a top-level test result or bail
+     * out in the TAP File.
+     */
+    public static final class Entry {
+
+        /**
+         * Type of the entry.
+         */
+        private final Type type;
+
+        /**
+         * Test number, or number of the bail out.
+         */
+        private final int number;
+
+        /**
+         * Whether the test result has a subtest.
+         */
+        private final boolean subtest;
+
+        /**
+         * Offset of the range.
+         */
+        private final long offset;
+
+        /**
+         * Length of the range.
+         */
+        private final long length;
+
+        /**
+         * @param type type of the entry
+         * @param number test number, or number of the bail out
+         * @param subtest whether the test result has a subtest
+         * @param offset offset of the range
+         * @param length length of the range
+         */
+        Entry(Type type, int number, boolean subtest, long offset, long length) {
+            super();
+            this.type = type;
+            this.number = number;
+            this.subtest = subtest;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        /**
+         * @return the type of the entry
+         */
+        public Type getType() {
+            return type;
+        }
+
+        /**
+         * @return the test number of a test result, or the number of a bail
+         *         out, counting from 1 in the order of the file
+         */
+        public int getNumber() {
+            return number;
+        }
+
+        /**
+         * @return whether the test result has a subtest, included in the range
+         */
+        public boolean hasSubtest() {
+            return subtest;
+        }
+
+        /**
+         * @return the offset of the range in the file, in bytes
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        /**
+         * @return the length of the range, in bytes
+         */
+        public long getLength() {
+            return length;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return type + " " + number + (subtest ? " with subtest" : "") + " at " + offset + "+" + length;
+        }
+
+    }
+
+    /**
+     * TAP File.
+     */
+    private final File tapFile;
+
+    /**
+     * Encoding of the TAP File.
+     */
+    private final Charset charset;
+
+    /**
+     * Whether the index was read from its sidecar file.
+     */
+    private final boolean fromSidecar;
+
+    /**
+     * Number of entries.
+     */
+    private final int size;
+
+    /**
+     * Type of each entry: ordinal, plus 2 if the test result has a subtest.
+     */
+    private final byte[] types;
+
+    /**
+     * Number of each entry.
+     */
+    private final int[] numbers;
+
+    /**
+     * Offset of each entry.
+     */
+    private final long[] offsets;
+
+    /**
+     * Length of each entry.
+     */
+    private final long[] lengths;
+
+    /**
+     * Test number of every test result in the high 32 bits, and its position
+     * in the entries in the low 32 bits, sorted.
+     */
+    private final long[] testNumbers;
+
+    /**
+     * Positions of the bail outs in the entries.
+     */
+    private final int[] bailOuts;
+
+    /**
+     * Positions of the test results with a subtest in the entries.
+     */
+    private final int[] subtests;
+
+    /**
+     * @param tapFile TAP File
+     * @param charset encoding of the TAP File
+     * @param fromSidecar whether the index was read from its sidecar file
+     * @param columns entries
+     */
+    private TapIndex(File tapFile, Charset charset, boolean fromSidecar, Columns columns) {
+        super();
+        this.tapFile = tapFile;
+        this.charset = charset;
+        this.fromSidecar = fromSidecar;
+        this.size = columns.size;
+        this.types = Arrays.copyOf(columns.types, size);
+        this.numbers = Arrays.copyOf(columns.numbers, size);
+        this.offsets = Arrays.copyOf(columns.offsets, size);
+        this.lengths = Arrays.copyOf(columns.lengths, size);
+        int numberOfTestResults = 0;
+        int numberOfSubtests = 0;
+        for (int i = 0; i < size; i++) {
+            if ((types[i] & 1) == Type.TEST_RESULT.ordinal()) {
+                numberOfTestResults++;
+                if ((types[i] & 2) != 0) {
+                    numberOfSubtests++;
+                }
+            }
+        }
+        this.testNumbers = new long[numberOfTestResults];
+        this.bailOuts = new int[size - numberOfTestResults];
+        this.subtests = new int[numberOfSubtests];
+        int t = 0;
+        int b = 0;
+        int s = 0;
+        for (int i = 0; i < size; i++) {
+            if ((types[i] & 1) == Type.TEST_RESULT.ordinal()) {
+                testNumbers[t++] = ((long) numbers[i] << 32) | i;
+                if ((types[i] & 2) != 0) {
+                    subtests[s++] = i;
+                }
+            } else {
+                bailOuts[b++] = i;
+            }
+        }
+        // the first test result of a test number sorts first
+        Arrays.sort(testNumbers);
+    }
+
+    /**
+     * Opens the index of a TAP File in UTF-8.
+     *
+     * @param tapFile TAP File
+     * @return index
+     * @throws ParserException if the file cannot be read or parsed
+     * @see #open(File, String)
+     */
+    public static TapIndex open(File tapFile) {
+        return open(tapFile, "UTF-8");
+    }
+
+    /**
+     * Opens the index of a TAP File. The index is read from its sidecar file
+     * if it is still valid, or else built by scanning the TAP File, and saved
+     * in the sidecar file. Failing to save it is only logged.
+     *
+     * @param tapFile TAP File
+     * @param encoding encoding of the TAP File
+     * @return index
+     * @throws ParserException if the file cannot be read or parsed, or if
+     *         the encoding is not supported
+     */
+    public static TapIndex open(File tapFile, String encoding) {
+        final Charset charset = charset(encoding);
+        final File sidecar = getSidecarFile(tapFile);
+        if (sidecar.isFile()) {
+            try {
+                final Columns columns = readSidecar(tapFile, charset, sidecar);
+                if (columns != null) {
+                    return new TapIndex(tapFile, charset, true, columns);
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Ignoring invalid TAP index " + sidecar + ": " + e);
+            }
+        }
+        final TapIndex index = build(tapFile, encoding);
+        try {
+            index.writeSidecar(sidecar);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to save TAP index " + sidecar + ": " + e.getMessage(), e);
+        }
+        return index;
+    }
+
+    /**
+     * Builds the index of a TAP File by scanning it, without reading or saving
+     * its sidecar file.
+     *
+     * @param tapFile TAP File
+     * @param encoding encoding of the TAP File
+     * @return index
+     * @throws ParserException if the file cannot be read or parsed, or if
+     *         the encoding is not supported
+     */
+    public static TapIndex build(File tapFile, String encoding) {
+        final Charset charset = charset(encoding);
+        final Tap13Parser parser = new Tap13Parser(encoding, true, false);
+        parser.setUseTokenizer(true);
+        parser.setLazyDiagnostics(true);
+        final Scanner scanner = new Scanner();
+        MappedTapFileReader reader = null;
+        try {
+            reader = new MappedTapFileReader(tapFile, charset.newDecoder());
+            parser.beginStream(scanner);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.length() > 0) {
+                    scanner.line(line, reader.getLineOffset(), reader.getLineEnd());
+                    parser.parseLine(line);
+                }
+            }
+            scanner.line("", tapFile.length(), tapFile.length());
+            parser.endStream();
+        } catch (FileNotFoundException e) {
+            throw new ParserException("TAP file not found: " + tapFile, e);
+        } catch (IOException e) {
+            throw new ParserException("Error indexing TAP file " + tapFile + ": " + e.getMessage(), e);
+        } finally {
+            close(reader);
+        }
+        return new TapIndex(tapFile, charset, false, scanner.columns);
+    }
+
+    /**
+     * @param tapFile TAP File
+     * @return the sidecar file of its index
+     */
+    public static File getSidecarFile(File tapFile) {
+        return new File(tapFile.getPath() + SIDECAR_EXTENSION);
+    }
+
+    /**
+     * @return the TAP File
+     */
+    public File getTapFile() {
+        return tapFile;
+    }
+
+    /**
+     * @return whether the index was read from its sidecar file instead of
+     *         scanning the TAP File
+     */
+    public boolean isFromSidecar() {
+        return fromSidecar;
+    }
+
+    /**
+     * @return the number of top-level test results
+     */
+    public int getNumberOfTestResults() {
+        return testNumbers.length;
+    }
+
+    /**
+     * @return the entries of the top-level test results and bail outs, in the
+     *         order of the file
+     */
+    public List<Entry> getEntries() {
+        return new EntryList(null);
+    }
+
+    /**
+     * @return the entries of the top-level test results with a subtest
+     */
+    public List<Entry> getSubtests() {
+        return new EntryList(subtests);
+    }
+
+    /**
+     * @return the entries of the top-level bail outs
+     */
+    public List<Entry> getBailOuts() {
+        return new EntryList(bailOuts);
+    }
+
+    /**
+     * Finds the entry of a top-level test result.
+     *
+     * @param testNumber test number
+     * @return the entry of the first test result with this number, or
+     *         <code>null</code> if there is none
+     */
+    public Entry getEntry(int testNumber) {
+        // first key not below the one of the test number at position 0
+        final long key = (long) testNumber << 32;
+        int low = 0;
+        int high = testNumbers.length;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (testNumbers[middle] < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        if (low < testNumbers.length && (int) (testNumbers[low] >> 32) == testNumber) {
+            return entry((int) testNumbers[low]);
+        }
+        return null;
+    }
+
+    /**
+     * Reads a top-level test result, with its diagnostic and subtest, parsing
+     * only its range of the file.
+     *
+     * @param testNumber test number
+     * @return test result, or <code>null</code> if there is none with this
+     *         number
+     * @throws ParserException if the file cannot be read or parsed
+     */
+    public TestResult readTestResult(int testNumber) {
+        final Entry entry = getEntry(testNumber);
+        if (entry == null) {
+            return null;
+        }
+        for (TapElement tapLine : read(entry).getTapLines()) {
+            if (tapLine instanceof TestResult) {
+                final TestResult testResult = (TestResult) tapLine;
+                // alone in its range, a test result without number is the first
+                testResult.setTestNumber(entry.getNumber());
+                return testResult;
+            }
+        }
+        throw new ParserException("No test result found at " + entry + " in " + tapFile);
+    }
+
+    /**
+     * Reads a top-level bail out, with its diagnostic.
+     *
+     * @param number number of the bail out, counting from 1
+     * @return bail out, or <code>null</code> if there are fewer bail outs
+     * @throws ParserException if the file cannot be read or parsed
+     */
+    public BailOut readBailOut(int number) {
+        if (number < 1 || number > bailOuts.length) {
+            return null;
+        }
+        final Entry entry = entry(bailOuts[number - 1]);
+        final List<BailOut> parsed = read(entry).getBailOuts();
+        if (parsed.isEmpty()) {
+            throw new ParserException("No bail out found at " + entry + " in " + tapFile);
+        }
+        return parsed.get(0);
+    }
+
+    /**
+     * Parses the range of an entry.
+     *
+     * @param entry entry of this index
+     * @return test set of the elements in the range
+     * @throws ParserException if the file cannot be read or parsed
+     */
+    public TestSet read(Entry entry) {
+        RandomAccessFile file = null;
+        try {
+            file = new RandomAccessFile(tapFile, "r");
+            if (file.length() < entry.getOffset() + entry.getLength()) {
+                throw new ParserException("TAP file " + tapFile + " is shorter than its index");
+            }
+            final MappedByteBuffer bytes = file.getChannel().map(FileChannel.MapMode.READ_ONLY,
+                    entry.getOffset(), entry.getLength());
+            final CharBuffer chars = charset.newDecoder().decode(bytes);
+            return new Tap13Parser(charset.name(), true, false).parseTapStream(chars);
+        } catch (FileNotFoundException e) {
+            throw new ParserException("TAP file not found: " + tapFile, e);
+        } catch (IOException e) {
+            throw new ParserException("Error reading TAP file " + tapFile + ": " + e.getMessage(), e);
+        } finally {
+            if (file != null) {
+                try {
+                    file.close();
+                } catch (IOException e) {
+                    LOGGER.log(Level.SEVERE, "Failed to close file: " + e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param index position of an entry
+     * @return the entry
+     */
+    private Entry entry(int index) {
+        return new Entry(Type.values()[types[index] & 1], numbers[index], (types[index] & 2) != 0,
+                offsets[index], lengths[index]);
+    }
+
+    /**
+     * Saves the index, writing a temporary file first, so that another
+     * process never reads an incomplete one.
+     *
+     * @param sidecar sidecar file
+     * @throws IOException if the file cannot be written
+     */
+    private void writeSidecar(File sidecar) throws IOException {
+        final File temporary = new File(sidecar.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(tapFile.length());
+            out.writeLong(tapFile.lastModified());
+            out.writeUTF(charset.name());
+            out.writeInt(size);
+            for (int i = 0; i < size; i++) {
+                out.writeByte(types[i]);
+                out.writeInt(numbers[i]);
+                out.writeLong(offsets[i]);
+                out.writeLong(lengths[i]);
+            }
+            out.close();
+            out = null;
+            if (!temporary.renameTo(sidecar) && !(sidecar.delete() && temporary.renameTo(sidecar))) {
+                throw new IOException("Cannot rename " + temporary + " to " + sidecar);
+            }
+        } finally {
+            close(out);
+            if (temporary.exists() && !temporary.delete()) {
+                LOGGER.log(Level.WARNING, "Failed to delete " + temporary);
+            }
+        }
+    }
+
+    /**
+     * Reads a sidecar file.
+     *
+     * @param tapFile TAP File
+     * @param charset encoding of the TAP File
+     * @param sidecar sidecar file
+     * @return the entries, or <code>null</code> if the TAP File changed or was
+     *         indexed with another encoding
+     * @throws IOException if the sidecar file cannot be read or is invalid
+     */
+    private static Columns readSidecar(File tapFile, Charset charset, File sidecar) throws IOException {
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(sidecar)));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a TAP index of version " + VERSION);
+            }
+            if (in.readLong() != tapFile.length() || in.readLong() != tapFile.lastModified()
+                    || !charset.name().equals(in.readUTF())) {
+                return null;
+            }
+            final int size = in.readInt();
+            if (size < 0) {
+                throw new IOException("Invalid number of entries: " + size);
+            }
+            final Columns columns = new Columns();
+            for (int i = 0; i < size; i++) {
+                final int row = columns.add(in.readByte(), in.readInt(), in.readLong());
+                columns.lengths[row] = in.readLong();
+            }
+            return columns;
+        } finally {
+            close(in);
+        }
+    }
+
+    /**
+     * @param encoding encoding
+     * @return the charset of the encoding
+     * @throws ParserException if the encoding is not supported
+     */
+    private static Charset charset(String encoding) {
+        final Charset charset;
+        try {
+            charset = Charset.forName(encoding);
+        } catch (IllegalArgumentException e) {
+            throw new ParserException("Invalid encoding: " + encoding, e);
+        }
+        if (!MappedTapFileReader.isSupported(charset)) {
+            throw new ParserException("Encoding not supported by the TAP index: " + encoding);
+        }
+        return charset;
+    }
+
+    /**
+     * @param closeable stream or reader to close, or <code>null</code>
+     */
+    private static void close(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.SEVERE, "Failed to close file: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Entries of the index, or some of them.
+     */
+    private final class EntryList extends AbstractList<Entry> {
+
+        /**
+         * Positions of the entries, or <code>null</code> for all of them.
+         */
+        private final int[] positions;
+
+        /**
+         * @param positions positions of the entries, or <code>null</code> for
+         *        all of them
+         */
+        EntryList(int[] positions) {
+            super();
+            this.positions = positions;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Entry get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+            }
+            return entry(positions == null ? index : positions[index]);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int size() {
+            return positions == null ? size : positions.length;
+        }
+
+    }
+
+    /**
+     * Growable columns of the entries.
+     */
+    private static final class Columns {
+
+        /**
+         * Number of entries.
+         */
+        private int size = 0;
+
+        /**
+         * Type of each entry.
+         */
+        private byte[] types = new byte[INITIAL_CAPACITY];
+
+        /**
+         * Number of each entry.
+         */
+        private int[] numbers = new int[INITIAL_CAPACITY];
+
+        /**
+         * Offset of each entry.
+         */
+        private long[] offsets = new long[INITIAL_CAPACITY];
+
+        /**
+         * Length of each entry.
+         */
+        private long[] lengths = new long[INITIAL_CAPACITY];
+
+        /**
+         * Default constructor.
+         */
+        Columns() {
+            super();
+        }
+
+        /**
+         * Adds an entry, of length 0.
+         *
+         * @param type type of the entry
+         * @param number number of the entry
+         * @param offset offset of the entry
+         * @return position of the entry
+         */
+        int add(byte type, int number, long offset) {
+            if (size == types.length) {
+                final int capacity = size + (size >> 1);
+                types = Arrays.copyOf(types, capacity);
+                numbers = Arrays.copyOf(numbers, capacity);
+                offsets = Arrays.copyOf(offsets, capacity);
+                lengths = Arrays.copyOf(lengths, capacity);
+            }
+            types[size] = type;
+            numbers[size] = number;
+            offsets[size] = offset;
+            return size++;
+        }
+
+    }
+
+    /**
+     * Records the range of the top-level elements from the events of the
+     * parser, knowing the range of the line being parsed.
+     *
+     * <p>
+     * The top level is usually the first level of the parser. When the stream
+     * starts indented, the parser starts a subtest at once, which is the top
+     * level unless a less indented element ends it later: the entries found
+     * so far are then dropped, as the subtest belongs to the next test result.
+     * </p>
+     */
+    private static final class Scanner extends DefaultTapEventHandler {
+
+        /**
+         * Entries found.
+         */
+        private Columns columns = new Columns();
+
+        /**
+         * Line being parsed.
+         */
+        private String line;
+
+        /**
+         * Offset of the line being parsed.
+         */
+        private long lineOffset;
+
+        /**
+         * Offset of the end of the line being parsed.
+         */
+        private long lineEnd;
+
+        /**
+         * Depth of the subtest being parsed.
+         */
+        private int depth = 0;
+
+        /**
+         * Depth of the top level: 1 if the stream starts indented.
+         */
+        private int topDepth = 0;
+
+        /**
+         * Whether an element was parsed.
+         */
+        private boolean started = false;
+
+        /**
+         * Last top-level test result or bail out.
+         */
+        private TapElement lastElement;
+
+        /**
+         * Position of the entry of the last top-level test result or bail
+         * out, or -1.
+         */
+        private int lastEntry = -1;
+
+        /**
+         * Whether the top-level comments belong to the last test result, as
+         * it is the last top-level element other than a comment.
+         */
+        private boolean commentsOfLastEntry = false;
+
+        /**
+         * Position of the entry of the test result owning the current
+         * top-level subtest, or -1 if the subtest comes before its test
+         * result.
+         */
+        private int parentEntry = -1;
+
+        /**
+         * Offset of the top-level subtest waiting for its test result, or -1.
+         */
+        private long looseSubtestOffset = -1;
+
+        /**
+         * Number of top-level test results.
+         */
+        private int numberOfTestResults = 0;
+
+        /**
+         * Number of top-level bail outs.
+         */
+        private int numberOfBailOuts = 0;
+
+        /**
+         * Default constructor.
+         */
+        Scanner() {
+            super();
+        }
+
+        /**
+         * Sets the line about to be parsed.
+         *
+         * @param line line
+         * @param offset offset of the line
+         * @param end offset of the end of the line
+         */
+        void line(String line, long offset, long end) {
+            this.line = line;
+            this.lineOffset = offset;
+            this.lineEnd = end;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onHeader(Header header) {
+            otherElement();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onPlan(Plan plan) {
+            otherElement();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onFooter(Footer footer) {
+            otherElement();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onText(Text text) {
+            if (depth == topDepth) {
+                commentsOfLastEntry = false;
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onTestResult(TestResult testResult) {
+            started = true;
+            if (depth != topDepth) {
+                return;
+            }
+            numberOfTestResults++;
+            final Integer testNumber = testResult.getTestNumber();
+            final int number = testNumber == null || testNumber <= 0 ? numberOfTestResults : testNumber;
+            final boolean loose = looseSubtestOffset >= 0;
+            final byte type = (byte) (Type.TEST_RESULT.ordinal() | (loose ? 2 : 0));
+            lastEntry = columns.add(type, number, loose ? looseSubtestOffset : lineOffset);
+            columns.lengths[lastEntry] = lineEnd - columns.offsets[lastEntry];
+            lastElement = testResult;
+            commentsOfLastEntry = true;
+            looseSubtestOffset = -1;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onBailOut(BailOut bailOut) {
+            started = true;
+            if (depth != topDepth) {
+                return;
+            }
+            numberOfBailOuts++;
+            lastEntry = columns.add((byte) Type.BAIL_OUT.ordinal(), numberOfBailOuts, lineOffset);
+            columns.lengths[lastEntry] = lineEnd - lineOffset;
+            lastElement = bailOut;
+            commentsOfLastEntry = false;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onComment(Comment comment) {
+            started = true;
+            if (depth == topDepth && commentsOfLastEntry) {
+                extend(lastEntry, lineEnd);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onYamlBlock(TapElement tapElement) {
+            if (depth != topDepth || tapElement != lastElement) {
+                return;
+            }
+            // the diagnostic ends with this line if it is the end marker,
+            // or else before it
+            final long end = "...".equals(line.trim()) ? lineEnd : lineOffset;
+            extend(lastEntry, end);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onSubtestStart(TestResult parent) {
+            depth++;
+            if (!started) {
+                // the stream starts indented
+                started = true;
+                topDepth = depth;
+                looseSubtestOffset = lineOffset;
+            } else if (depth == topDepth + 1) {
+                if (parent != null && parent == lastElement) {
+                    parentEntry = lastEntry;
+                    columns.types[parentEntry] |= 2;
+                } else {
+                    parentEntry = -1;
+                    if (looseSubtestOffset < 0) {
+                        looseSubtestOffset = lineOffset;
+                    }
+                }
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onSubtestEnd() {
+            depth--;
+            if (depth < topDepth) {
+                // what looked like the top level is the subtest of the next
+                // test result
+                final long offset = looseSubtestOffset;
+                columns = new Columns();
+                topDepth = depth;
+                lastElement = null;
+                lastEntry = -1;
+                commentsOfLastEntry = false;
+                numberOfTestResults = 0;
+                numberOfBailOuts = 0;
+                looseSubtestOffset = offset >= 0 ? offset : 0;
+            } else if (depth == topDepth && parentEntry >= 0) {
+                // the subtest ends before the line going back to the top level
+                extend(parentEntry, lineOffset);
+                parentEntry = -1;
+            }
+        }
+
+        /**
+         * Called for the elements that end the comments of the last test
+         * result, at the top level.
+         */
+        private void otherElement() {
+            started = true;
+            if (depth == topDepth) {
+                commentsOfLastEntry = false;
+            }
+        }
+
+        /**
+         * Extends the range of an entry.
+         *
+         * @param entry position of the entry
+         * @param end new end of the range, ignored if before the current one
+         */
+        private void extend(int entry, long end) {
+            columns.lengths[entry] = Math.max(columns.lengths[entry], end - columns.offsets[entry]);
+        }
+
+    }
+
+}
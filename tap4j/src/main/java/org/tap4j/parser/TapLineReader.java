@@ -0,0 +1,176 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.parser;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.CharBuffer;
+
+/**
+ * Splits a {@link Readable} into lines, with the line terminators recognized
+ * by {@link java.util.Scanner#nextLine()}. Characters are read into a single
+ * reusable buffer, and a line that fits in it is created directly from the
+ * buffer, without the regular expression matching done by the scanner.
+ *
+ * Unlike the scanner, errors reading the source are not taken as the end of
+ * the stream, but thrown by {@link #readLine()}.
+ *
+ * @since 4.2.1
+ */
+public class TapLineReader implements Closeable {
+
+    /**
+     * Default size of the read buffer.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    /**
+     * Source of the characters.
+     */
+    private final Readable source;
+
+    /**
+     * Characters read and not split into lines yet.
+     */
+    private final CharBuffer buffer;
+
+    /**
+     * Beginning of a line that did not fit in the buffer.
+     */
+    private final StringBuilder partialLine = new StringBuilder();
+
+    /**
+     * Whether the last line was terminated by a carriage return, which may be
+     * followed by a line feed.
+     */
+    private boolean carriageReturn = false;
+
+    /**
+     * Whether the end of the source was reached.
+     */
+    private boolean endOfInput = false;
+
+    /**
+     * Creates a line reader with the default buffer size.
+     *
+     * @param source source of the characters
+     */
+    public TapLineReader(Readable source) {
+        this(source, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a line reader.
+     *
+     * @param source source of the characters
+     * @param bufferSize size of the read buffer
+     */
+    public TapLineReader(Readable source, int bufferSize) {
+        super();
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Invalid buffer size: " + bufferSize);
+        }
+        this.source = source;
+        this.buffer = CharBuffer.allocate(bufferSize);
+        this.buffer.flip();
+    }
+
+    /**
+     * Reads the next line, without its terminator.
+     *
+     * @return the next line, or <code>null</code> at the end of the source
+     * @throws IOException if the source cannot be read
+     */
+    public String readLine() throws IOException {
+        while (true) {
+            final char[] chars = buffer.array();
+            int position = buffer.position();
+            final int limit = buffer.limit();
+            if (carriageReturn && position < limit) {
+                carriageReturn = false;
+                if (chars[position] == '\n') {
+                    position++;
+                }
+            }
+            for (int i = position; i < limit; i++) {
+                final char c = chars[i];
+                if (isLineTerminator(c)) {
+                    carriageReturn = c == '\r';
+                    buffer.position(i + 1);
+                    if (partialLine.length() == 0) {
+                        return new String(chars, position, i - position);
+                    }
+                    partialLine.append(chars, position, i - position);
+                    return takePartialLine();
+                }
+            }
+            partialLine.append(chars, position, limit - position);
+            buffer.clear();
+            if (endOfInput || source.read(buffer) < 0) {
+                endOfInput = true;
+                buffer.flip();
+                return partialLine.length() > 0 ? takePartialLine() : null;
+            }
+            buffer.flip();
+        }
+    }
+
+    /**
+     * Closes the source, if it is {@link Closeable}.
+     *
+     * @throws IOException if the source cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        endOfInput = true;
+        if (source instanceof Closeable) {
+            ((Closeable) source).close();
+        }
+    }
+
+    /**
+     * @return the partial line, which is then emptied
+     */
+    private String takePartialLine() {
+        final String line = partialLine.toString();
+        partialLine.setLength(0);
+        return line;
+    }
+
+    /**
+     * Tells whether a character terminates a line, like in
+     * {@link java.util.Scanner#nextLine()}. A carriage return followed by a
+     * line feed terminates a single line.
+     *
+     * @param c character
+     * @return <code>true</code> if the character terminates a line
+     */
+    static boolean isLineTerminator(char c) {
+        if (c > '\r' && c < '\u0085') {
+            return false;
+        }
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+}
@@ -0,0 +1,215 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.parser;
+
+import java.util.Stack;
+
+import org.tap4j.model.BailOut;
+import org.tap4j.model.Comment;
+import org.tap4j.model.Footer;
+import org.tap4j.model.Header;
+import org.tap4j.model.Plan;
+import org.tap4j.model.TapElement;
+import org.tap4j.model.TestResult;
+import org.tap4j.model.TestSet;
+import org.tap4j.model.Text;
+
+/**
+ * {@link TapEventHandler} that builds the {@link TestSet} tree returned by
+ * {@link Parser#parseTapStream(Readable)}.
+ *
+ * @since 4.2.1
+ */
+public class TestSetBuilder implements TapEventHandler {
+
+    /**
+     * Stack of test sets being built, one per indentation level.
+     */
+    private final Stack<Level> levels = new Stack<Level>();
+
+    /**
+     * Default constructor.
+     */
+    public TestSetBuilder() {
+        super();
+        levels.push(new Level(createTestSet()));
+    }
+
+    /**
+     * Creates the test set of the stream, or of a subtest.
+     *
+     * @return a new, empty test set
+     */
+    protected TestSet createTestSet() {
+        return new TestSet();
+    }
+
+    /**
+     * @return the test set at the current level. Once the stream ended, this
+     * is the test set of the whole stream.
+     */
+    public TestSet getTestSet() {
+        return levels.peek().testSet;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onStreamStart() {
+        levels.clear();
+        levels.push(new Level(createTestSet()));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onStreamEnd() {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onHeader(Header header) {
+        getTestSet().setHeader(header);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onPlan(Plan plan) {
+        getTestSet().setPlan(plan);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onTestResult(TestResult testResult) {
+        final Level level = levels.peek();
+        level.testSet.addTestResult(testResult);
+        if (level.looseSubtests != null) {
+            testResult.setSubtest(level.looseSubtests);
+            level.looseSubtests = null;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onBailOut(BailOut bailOut) {
+        getTestSet().addBailOut(bailOut);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onComment(Comment comment) {
+        getTestSet().addComment(comment);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onFooter(Footer footer) {
+        getTestSet().setFooter(footer);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onText(Text text) {
+        getTestSet().addTapLine(text);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onYamlBlock(TapElement tapElement) {
+        // the diagnostic is already set on the element
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onSubtestStart(TestResult parent) {
+        final Level level = new Level(createTestSet());
+        if (parent != null) {
+            parent.setSubtest(level.testSet);
+            level.attachedToParent = true;
+        }
+        levels.push(level);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onSubtestEnd() {
+        final Level level = levels.pop();
+        if (!level.attachedToParent) {
+            levels.peek().looseSubtests = level.testSet;
+        }
+    }
+
+    /**
+     * Test set being built for an indentation level.
+     */
+    private static class Level {
+
+        /**
+         * The test set.
+         */
+        private final TestSet testSet;
+
+        /**
+         * Whether the test set is already the subtest of a test result.
+         */
+        private boolean attachedToParent;
+
+        /**
+         * Subtest that came before the test result it belongs to, to be
+         * attached to the next test result.
+         */
+        private TestSet looseSubtests;
+
+        /**
+         * @param testSet the test set of the level
+         */
+        Level(TestSet testSet) {
+            this.testSet = testSet;
+        }
+
+    }
+
+}
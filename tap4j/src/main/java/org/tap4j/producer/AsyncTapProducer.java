@@ -0,0 +1,300 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.producer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.tap4j.model.Footer;
+import org.tap4j.model.Plan;
+import org.tap4j.model.TapElement;
+
+/**
+ * Writes a TAP Stream from many threads without making them wait for the
+ * output. The elements emitted are put in a bounded queue, and a single
+ * writer thread takes them in batches, writes them with a
+ * {@link StreamingTapProducer} and flushes the output once per batch.
+ *
+ * The queue has separate locks for putting and taking elements, so the
+ * threads emitting elements never wait for the writer thread, unless the
+ * queue is full: they then wait until there is room, so that the memory
+ * used stays bounded when the output is slower than the tests.
+ *
+ * Test results without a positive test number are numbered in the order the
+ * writer thread takes them. Subtests are not supported, as elements of
+ * different threads may be interleaved.
+ *
+ * @since 4.2.1
+ */
+public class AsyncTapProducer {
+
+    /**
+     * Default number of elements waiting to be written.
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * Default largest number of elements written between two flushes.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    /**
+     * Element put in the queue to end the stream.
+     */
+    private static final TapElement END = new TapElement();
+
+    /**
+     * Writes the elements.
+     */
+    private final StreamingTapProducer producer;
+
+    /**
+     * Elements waiting to be written.
+     */
+    private final BlockingQueue<TapElement> queue;
+
+    /**
+     * Largest number of elements written between two flushes.
+     */
+    private final int batchSize;
+
+    /**
+     * Held by the threads emitting elements while they put them in the queue,
+     * and by the thread ending the stream while it puts the end in the queue,
+     * so that no element is put after the end.
+     */
+    private final ReadWriteLock endLock = new ReentrantReadWriteLock();
+
+    /**
+     * Writer thread, once started.
+     */
+    private volatile Thread writerThread = null;
+
+    /**
+     * Footer written at the end of the stream.
+     */
+    private volatile Footer footer = null;
+
+    /**
+     * Whether the end of the stream has been asked.
+     */
+    private volatile boolean ending = false;
+
+    /**
+     * First error of the writer thread.
+     */
+    private volatile RuntimeException failure = null;
+
+    /**
+     * @param producer producer writing the elements
+     */
+    public AsyncTapProducer(StreamingTapProducer producer) {
+        this(producer, DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param producer producer writing the elements
+     * @param capacity largest number of elements waiting to be written
+     * @param batchSize largest number of elements written between two flushes
+     * @throws IllegalArgumentException if the capacity or the batch size is
+     *         not positive
+     */
+    public AsyncTapProducer(StreamingTapProducer producer, int capacity,
+            int batchSize) {
+        super();
+        if (capacity <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException(
+                    "Capacity and batch size must be positive");
+        }
+        this.producer = producer;
+        this.queue = new LinkedBlockingQueue<TapElement>(capacity);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Begins the TAP 13 Stream, and starts the writer thread.
+     *
+     * @param plan Plan, or <code>null</code> to write it at the end
+     * @throws ProducerException if the stream has already begun, or if
+     *         writing fails
+     */
+    public synchronized void begin(Plan plan) {
+        if (writerThread != null) {
+            throw new ProducerException("TAP Stream already begun");
+        }
+        producer.setAutoFlush(false);
+        producer.begin(plan);
+        writerThread = new Thread(new BatchWriter(), "tap4j-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Puts an element in the queue, waiting while the queue is full. Can be
+     * called from any thread.
+     *
+     * @param tapElement test result, comment or bail out
+     * @throws ProducerException if the stream has not begun or has ended, if
+     *         writing failed, or if the thread is interrupted while waiting
+     */
+    public void emit(TapElement tapElement) {
+        if (tapElement == null) {
+            throw new IllegalArgumentException("TAP element is null");
+        }
+        checkFailure();
+        endLock.readLock().lock();
+        try {
+            if (writerThread == null || ending) {
+                throw new ProducerException(ending ? "TAP Stream already ended"
+                        : "TAP Stream not begun");
+            }
+            queue.put(tapElement);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ProducerException("Interrupted while emitting: "
+                    + e.getMessage(), e);
+        } finally {
+            endLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ends the TAP Stream once the elements emitted before are written, and
+     * waits for the writer thread to finish.
+     *
+     * @param footer Footer, or <code>null</code> to write none
+     * @throws ProducerException if the stream has not begun or has already
+     *         ended, if writing failed, or if the thread is interrupted while
+     *         waiting
+     */
+    public synchronized void end(Footer footer) {
+        if (writerThread == null || ending) {
+            throw new ProducerException(ending ? "TAP Stream already ended"
+                    : "TAP Stream not begun");
+        }
+        this.footer = footer;
+        // waits for the elements being emitted, as the writer thread drops
+        // the ones put after the end
+        endLock.writeLock().lock();
+        try {
+            ending = true;
+            queue.put(END);
+        } catch (InterruptedException e) {
+            ending = false;
+            Thread.currentThread().interrupt();
+            throw new ProducerException("Interrupted while ending: "
+                    + e.getMessage(), e);
+        } finally {
+            endLock.writeLock().unlock();
+        }
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ProducerException("Interrupted while ending: "
+                    + e.getMessage(), e);
+        }
+        checkFailure();
+    }
+
+    /**
+     * @return number of elements waiting to be written
+     */
+    public int getPendingElements() {
+        return queue.size();
+    }
+
+    /**
+     * @throws ProducerException if the writer thread failed
+     */
+    private void checkFailure() {
+        final RuntimeException e = failure;
+        if (e != null) {
+            throw new ProducerException("Failed to write TAP Stream: "
+                    + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Writes the elements of the queue, batch by batch, until the end of the
+     * stream. After an error, the elements are taken and dropped, so that
+     * the emitting threads do not wait forever, and the stream is still
+     * ended to release the output.
+     */
+    private final class BatchWriter implements Runnable {
+
+        /**
+         * {@inheritDoc}
+         */
+        public void run() {
+            final List<TapElement> batch = new ArrayList<TapElement>(batchSize);
+            boolean end = false;
+            while (!end) {
+                try {
+                    batch.add(queue.take());
+                } catch (InterruptedException e) {
+                    fail(new ProducerException("Writer thread interrupted", e));
+                    continue;
+                }
+                queue.drainTo(batch, batchSize - 1);
+                for (TapElement tapElement : batch) {
+                    if (tapElement == END) {
+                        end = true;
+                    } else if (failure == null) {
+                        try {
+                            producer.emit(tapElement);
+                        } catch (RuntimeException e) {
+                            fail(e);
+                        }
+                    }
+                }
+                batch.clear();
+                try {
+                    if (end) {
+                        producer.end(footer);
+                    } else if (failure == null) {
+                        producer.flush();
+                    }
+                } catch (RuntimeException e) {
+                    fail(e);
+                }
+            }
+        }
+
+        /**
+         * @param e error, kept if it is the first one
+         */
+        private void fail(RuntimeException e) {
+            if (failure == null) {
+                failure = e;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,583 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.producer;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.tap4j.model.Footer;
+import org.tap4j.model.Header;
+import org.tap4j.model.Plan;
+import org.tap4j.model.TapElement;
+import org.tap4j.model.TestResult;
+import org.tap4j.representer.DumperOptions;
+import org.tap4j.representer.RepresenterException;
+import org.tap4j.representer.Tap13Representer;
+
+/**
+ * Writes a TAP 13 Stream as the tests complete, instead of representing a
+ * finished {@link org.tap4j.model.TestSet}. Each line is written as soon as
+ * its element is emitted, and nothing is kept once written, so the memory
+ * used does not grow with the number of tests.
+ *
+ * A stream is written by calling {@link #begin(Header, Plan)}, then
+ * {@link #emit(TapElement)} for each test result, comment or bail out, and
+ * finally {@link #end(Footer)}. Subtests are written between
+ * {@link #beginSubtest(TestResult, Plan)} and {@link #endSubtest()}, indented
+ * below the test result owning them, as {@link Tap13Representer} writes them
+ * and the parser reads them. When the number of tests is not known up front,
+ * the plan can be left out: a trailing plan is then written when the stream
+ * or subtest ends.
+ *
+ * Test results without a positive test number, such as the ones created by
+ * {@link TestResult#TestResult()}, are numbered in the order they are
+ * emitted. By default the output is flushed after every element, so that TAP
+ * consumers can follow long runs; see {@link #setAutoFlush(boolean)}. The
+ * methods are synchronized, so that several threads may emit elements.
+ *
+ * @since 4.2.1
+ */
+public class StreamingTapProducer {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = Logger
+            .getLogger(StreamingTapProducer.class.getCanonicalName());
+
+    /**
+     * TAP version written by {@link #begin()} and {@link #begin(Plan)}.
+     */
+    private static final int TAP_VERSION = 13;
+
+    /**
+     * Size of the buffers of the files written.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Prints the lines.
+     */
+    private final LineRepresenter representer;
+
+    /**
+     * Output, keeping its first error.
+     */
+    private final ErrorKeepingWriter output;
+
+    /**
+     * Where the lines are printed.
+     */
+    private final PrintWriter pw;
+
+    /**
+     * Writer closed at the end of the stream, if opened by this producer.
+     */
+    private final Writer ownedWriter;
+
+    /**
+     * Test set and subtests being written, the innermost last.
+     */
+    private final List<Frame> frames = new ArrayList<Frame>();
+
+    /**
+     * Whether the output is flushed after every element.
+     */
+    private boolean autoFlush = true;
+
+    /**
+     * Whether the stream has ended.
+     */
+    private boolean ended = false;
+
+    /**
+     * Writes a TAP 13 Stream, without diagnostics, into a writer. The writer
+     * is flushed but not closed at the end of the stream.
+     *
+     * @param writer Writer
+     */
+    public StreamingTapProducer(Writer writer) {
+        this(writer, new DumperOptions());
+    }
+
+    /**
+     * Writes a TAP 13 Stream into a writer. The writer is flushed but not
+     * closed at the end of the stream.
+     *
+     * @param writer Writer
+     * @param options Dumper options, whose indentation changes while subtests
+     *        are written
+     */
+    public StreamingTapProducer(Writer writer, DumperOptions options) {
+        this(writer, options, false);
+    }
+
+    /**
+     * Writes a TAP 13 Stream into a file, encoded with the charset of the
+     * options. The file is closed at the end of the stream.
+     *
+     * @param output Output File
+     * @param options Dumper options, whose indentation changes while subtests
+     *        are written
+     * @throws ProducerException if the file cannot be opened
+     */
+    public StreamingTapProducer(File output, DumperOptions options) {
+        this(openFile(output, options), options, true);
+    }
+
+    /**
+     * @param writer Writer
+     * @param options Dumper options
+     * @param owned whether the writer is closed at the end of the stream
+     */
+    private StreamingTapProducer(Writer writer, DumperOptions options,
+            boolean owned) {
+        super();
+        this.representer = new LineRepresenter(options);
+        this.output = new ErrorKeepingWriter(writer);
+        this.pw = new PrintWriter(output);
+        this.ownedWriter = owned ? writer : null;
+    }
+
+    /**
+     * @return whether the output is flushed after every element
+     */
+    public synchronized boolean isAutoFlush() {
+        return autoFlush;
+    }
+
+    /**
+     * @param autoFlush whether the output is flushed after every element.
+     *        When false, it is flushed by {@link #flush()} and at the end of
+     *        the stream only.
+     */
+    public synchronized void setAutoFlush(boolean autoFlush) {
+        this.autoFlush = autoFlush;
+    }
+
+    /**
+     * Begins a TAP 13 Stream whose plan is written at its end.
+     *
+     * @throws ProducerException if the stream has already begun
+     */
+    public void begin() {
+        begin(new Header(TAP_VERSION), null);
+    }
+
+    /**
+     * Begins a TAP 13 Stream.
+     *
+     * @param plan Plan, or <code>null</code> to write it at the end
+     * @throws ProducerException if the stream has already begun
+     */
+    public void begin(Plan plan) {
+        begin(new Header(TAP_VERSION), plan);
+    }
+
+    /**
+     * Begins a TAP Stream.
+     *
+     * @param header Header, or <code>null</code> to write none
+     * @param plan Plan, or <code>null</code> to write it at the end
+     * @throws ProducerException if the stream has already begun or if writing
+     *         fails
+     */
+    public synchronized void begin(Header header, Plan plan) {
+        if (!frames.isEmpty() || ended) {
+            throw new ProducerException("TAP Stream already begun");
+        }
+        try {
+            representer.printHeader(pw, header);
+            if (plan != null) {
+                representer.printPlan(pw, plan);
+            }
+        } catch (RepresenterException re) {
+            throw new ProducerException("Failed to begin TAP Stream: "
+                    + re.getMessage(), re);
+        }
+        frames.add(new Frame(plan));
+        written();
+    }
+
+    /**
+     * Writes a test result, a comment or a bail out. A test result without a
+     * positive test number gets the next one of the test set or subtest.
+     *
+     * @param tapElement TAP element
+     * @throws ProducerException if the stream has not begun or has ended, or
+     *         if writing fails
+     */
+    public synchronized void emit(TapElement tapElement) {
+        final Frame frame = currentFrame();
+        if (tapElement instanceof TestResult) {
+            final TestResult testResult = (TestResult) tapElement;
+            frame.testResults++;
+            if (testResult.getTestNumber() == null
+                    || testResult.getTestNumber() < 1) {
+                testResult.setTestNumber(frame.testResults);
+            }
+        }
+        try {
+            representer.printTapLine(pw, tapElement);
+        } catch (RepresenterException re) {
+            throw new ProducerException("Failed to emit TAP element: "
+                    + re.getMessage(), re);
+        }
+        written();
+    }
+
+    /**
+     * Emits a test result, then begins its subtest, written indented below
+     * it.
+     *
+     * @param testResult test result owning the subtest
+     * @param plan Plan, or <code>null</code> to write it at the end of the
+     *        subtest
+     * @throws ProducerException if the stream has not begun or has ended, or
+     *         if writing fails
+     */
+    public synchronized void beginSubtest(TestResult testResult, Plan plan) {
+        emit(testResult);
+        final DumperOptions options = representer.getOptions();
+        final Frame subtest = new Frame(plan);
+        subtest.indent = options.getIndent();
+        options.setIndent(subtest.indent + options.getSpaces());
+        frames.add(subtest);
+        if (plan != null) {
+            try {
+                representer.printPlan(pw, plan);
+            } catch (RepresenterException re) {
+                throw new ProducerException("Failed to begin subtest: "
+                        + re.getMessage(), re);
+            }
+        }
+        written();
+    }
+
+    /**
+     * Ends the current subtest, writing its plan if it had none.
+     *
+     * @throws ProducerException if no subtest has begun, or if writing fails
+     */
+    public synchronized void endSubtest() {
+        if (frames.size() < 2 || ended) {
+            throw new ProducerException("No subtest to end");
+        }
+        final Frame subtest = frames.remove(frames.size() - 1);
+        try {
+            printTrailingPlan(subtest);
+        } finally {
+            representer.getOptions().setIndent(subtest.indent);
+        }
+        written();
+    }
+
+    /**
+     * Ends the TAP Stream, without footer.
+     *
+     * @throws ProducerException if the stream has not begun, or if writing
+     *         fails
+     */
+    public void end() {
+        end(null);
+    }
+
+    /**
+     * Ends the TAP Stream, and the subtests not ended, writing their plans if
+     * they had none, then the footer. The output is flushed, and closed if
+     * this producer opened it.
+     *
+     * @param footer Footer, or <code>null</code> to write none
+     * @throws ProducerException if the stream has not begun or has already
+     *         ended, or if writing fails
+     */
+    public synchronized void end(Footer footer) {
+        currentFrame();
+        try {
+            try {
+                while (frames.size() > 1) {
+                    final Frame subtest = frames.remove(frames.size() - 1);
+                    printTrailingPlan(subtest);
+                    representer.getOptions().setIndent(subtest.indent);
+                }
+                printTrailingPlan(frames.remove(0));
+                representer.printFooter(pw, footer);
+            } catch (RepresenterException re) {
+                throw new ProducerException("Failed to end TAP Stream: "
+                        + re.getMessage(), re);
+            } finally {
+                ended = true;
+            }
+            flush();
+        } finally {
+            if (ownedWriter != null) {
+                try {
+                    ownedWriter.close();
+                } catch (IOException e) {
+                    LOGGER.log(Level.SEVERE, "Failed to close file stream: "
+                            + e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Flushes the output.
+     *
+     * @throws ProducerException if writing failed
+     */
+    public synchronized void flush() {
+        // checkError flushes the writer, then reports any earlier failure
+        if (pw.checkError()) {
+            final IOException error = output.error;
+            if (error != null) {
+                throw new ProducerException("Failed to write TAP Stream: "
+                        + error.getMessage(), error);
+            }
+            throw new ProducerException("Failed to write TAP Stream");
+        }
+    }
+
+    /**
+     * @return the test set or subtest being written
+     * @throws ProducerException if the stream has not begun or has ended
+     */
+    private Frame currentFrame() {
+        if (frames.isEmpty()) {
+            throw new ProducerException(ended ? "TAP Stream already ended"
+                    : "TAP Stream not begun");
+        }
+        return frames.get(frames.size() - 1);
+    }
+
+    /**
+     * Writes the plan of a test set or subtest, if it had none.
+     *
+     * @param frame test set or subtest
+     */
+    private void printTrailingPlan(Frame frame) {
+        if (frame.plan == null) {
+            try {
+                representer.printPlan(pw, new Plan(frame.testResults));
+            } catch (RepresenterException re) {
+                throw new ProducerException("Failed to write plan: "
+                        + re.getMessage(), re);
+            }
+        }
+    }
+
+    /**
+     * Flushes the output after an element, if asked to.
+     */
+    private void written() {
+        if (autoFlush) {
+            flush();
+        }
+    }
+
+    /**
+     * @param output Output File
+     * @param options Dumper options
+     * @return buffered writer of the file
+     */
+    private static Writer openFile(File output, DumperOptions options) {
+        try {
+            final FileOutputStream outputStream = new FileOutputStream(output);
+            final Charset charset = Charset.forName(options.getCharset());
+            return new BufferedWriter(Channels.newWriter(
+                    outputStream.getChannel(), charset.newEncoder(),
+                    BUFFER_SIZE), BUFFER_SIZE);
+        } catch (IOException e) {
+            throw new ProducerException("Failed to open TAP Stream: "
+                    + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Writer keeping the first error of the output, which the
+     * {@link PrintWriter} hides.
+     */
+    private static final class ErrorKeepingWriter extends FilterWriter {
+
+        /**
+         * First error of the output, or <code>null</code>.
+         */
+        private IOException error;
+
+        /**
+         * @param out output
+         */
+        ErrorKeepingWriter(Writer out) {
+            super(out);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void write(int c) throws IOException {
+            try {
+                super.write(c);
+            } catch (IOException e) {
+                throw failed(e);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            try {
+                super.write(cbuf, off, len);
+            } catch (IOException e) {
+                throw failed(e);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            try {
+                super.write(str, off, len);
+            } catch (IOException e) {
+                throw failed(e);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void flush() throws IOException {
+            try {
+                super.flush();
+            } catch (IOException e) {
+                throw failed(e);
+            }
+        }
+
+        /**
+         * @param e error of the output
+         * @return the error, kept if it is the first one
+         */
+        private IOException failed(IOException e) {
+            if (error == null) {
+                error = e;
+            }
+            return e;
+        }
+
+    }
+
+    /**
+     * Test set or subtest being written.
+     */
+    private static final class Frame {
+
+        /**
+         * Plan written at the beginning, or <code>null</code>.
+         */
+        private final Plan plan;
+
+        /**
+         * Number of test results emitted.
+         */
+        private int testResults = 0;
+
+        /**
+         * Indentation of the enclosing test set.
+         */
+        private int indent = 0;
+
+        /**
+         * @param plan Plan written at the beginning, or <code>null</code>
+         */
+        Frame(Plan plan) {
+            super();
+            this.plan = plan;
+        }
+
+    }
+
+    /**
+     * Gives access to the line printing methods of the TAP 13 representer.
+     */
+    private static final class LineRepresenter extends Tap13Representer {
+
+        /**
+         * @param options Dumper options
+         */
+        LineRepresenter(DumperOptions options) {
+            super(options);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void printHeader(PrintWriter pw, Header header) {
+            super.printHeader(pw, header);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void printPlan(PrintWriter pw, Plan plan) {
+            super.printPlan(pw, plan);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void printTapLine(PrintWriter pw, TapElement tapElement) {
+            super.printTapLine(pw, tapElement);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void printFooter(PrintWriter pw, Footer footer) {
+            super.printFooter(pw, footer);
+        }
+
+    }
+
+}
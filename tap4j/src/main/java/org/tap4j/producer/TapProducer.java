@@ -23,11 +23,12 @@
  */
 package org.tap4j.producer;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.nio.channels.Channels;
 import java.nio.charset.Charset;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -35,6 +36,7 @@ import java.util.logging.Logger;
 import org.tap4j.model.TestSet;
 import org.tap4j.representer.Representer;
 import org.tap4j.representer.RepresenterException;
+import org.tap4j.representer.StreamingRepresenter;
 import org.tap4j.representer.Tap13Representer;
 
 /**
@@ -50,6 +52,11 @@ public class TapProducer implements Producer {
     private static final Logger LOGGER = Logger.getLogger(TapProducer.class
             .getCanonicalName());
 
+    /**
+     * Size of the buffers of the files written.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
     /**
      * Represents the TAP Stream.
      */
@@ -91,18 +98,24 @@ public class TapProducer implements Producer {
 
     /**
      * {@inheritDoc}
+     *
+     * The TAP Stream is streamed into the writer if the representer is a
+     * {@link StreamingRepresenter}, and built in memory first otherwise.
      */
     @Override
     public void dump(TestSet testSet, Writer writer) {
-        String tapStream = null;
-
-        try {
-            tapStream = this.dump(testSet);
-        } catch (RepresenterException re) {
-            throw new ProducerException("Failed to dump Test Set to writer: "
-                    + re.getMessage(), re);
+        if (this.representer instanceof StreamingRepresenter) {
+            try {
+                ((StreamingRepresenter) this.representer).representData(
+                        testSet, writer);
+            } catch (RepresenterException re) {
+                throw new ProducerException(
+                        "Failed to dump Test Set to writer: "
+                                + re.getMessage(), re);
+            }
+            return;
         }
-
+        final String tapStream = this.dump(testSet);
         try {
             writer.append(tapStream);
         } catch (IOException e) {
@@ -117,7 +130,7 @@ public class TapProducer implements Producer {
     @Override
     public void dump(TestSet testSet, File output) {
         FileOutputStream outputStream = null;
-        OutputStreamWriter writer = null;
+        Writer writer = null;
         try {
             Charset charset = null;
             if (representer instanceof Tap13Representer) {
@@ -127,7 +140,10 @@ public class TapProducer implements Producer {
                 charset = Charset.defaultCharset();
             }
             outputStream = new FileOutputStream(output);
-            writer = new OutputStreamWriter(outputStream, charset.newEncoder());
+            // the characters are buffered before being encoded into the
+            // byte buffer of the channel
+            writer = new BufferedWriter(Channels.newWriter(outputStream.getChannel(),
+                    charset.newEncoder(), BUFFER_SIZE), BUFFER_SIZE);
             this.dump(testSet, writer);
         } catch (IOException e) {
             throw new ProducerException("Failed to dump TAP Stream: "
@@ -0,0 +1,174 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.representer;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.CharBuffer;
+
+/**
+ * Writer appending to the output of a representer, and keeping the first
+ * error of the output, which the {@link PrintWriter} of the representer
+ * hides.
+ *
+ * @since 4.2.1
+ */
+final class AppendableWriter extends Writer {
+
+    /**
+     * Output.
+     */
+    private final Appendable output;
+
+    /**
+     * Output, if it is a writer, or <code>null</code>.
+     */
+    private final Writer writer;
+
+    /**
+     * First error of the output, or <code>null</code>.
+     */
+    private IOException error;
+
+    /**
+     * @param output output of the representer
+     */
+    AppendableWriter(Appendable output) {
+        super();
+        this.output = output;
+        this.writer = output instanceof Writer ? (Writer) output : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(int c) throws IOException {
+        checkOutput();
+        try {
+            output.append((char) c);
+        } catch (IOException e) {
+            throw failed(e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        checkOutput();
+        try {
+            if (writer != null) {
+                writer.write(cbuf, off, len);
+            } else {
+                output.append(CharBuffer.wrap(cbuf, off, len));
+            }
+        } catch (IOException e) {
+            throw failed(e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        checkOutput();
+        try {
+            if (writer != null) {
+                writer.write(str, off, len);
+            } else {
+                output.append(str, off, off + len);
+            }
+        } catch (IOException e) {
+            throw failed(e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void flush() throws IOException {
+        checkOutput();
+        if (output instanceof Flushable) {
+            try {
+                ((Flushable) output).flush();
+            } catch (IOException e) {
+                throw failed(e);
+            }
+        }
+    }
+
+    /**
+     * Flushes the output, which is not closed as it belongs to the caller.
+     *
+     * @throws IOException if the output fails
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+    /**
+     * Flushes a print writer writing to this writer, and reports the errors
+     * of the output.
+     *
+     * @param pw print writer writing to this writer
+     * @throws RepresenterException if the output failed
+     */
+    void finish(PrintWriter pw) {
+        pw.flush();
+        if (error != null) {
+            throw new RepresenterException("Failed to write TAP Stream: "
+                    + error.getMessage(), error);
+        }
+    }
+
+    /**
+     * Stops writing once the output failed.
+     *
+     * @throws IOException the first error of the output
+     */
+    private void checkOutput() throws IOException {
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * @param e error of the output
+     * @return the error, kept if it is the first one
+     */
+    private IOException failed(IOException e) {
+        if (error == null) {
+            error = e;
+        }
+        return e;
+    }
+
+}
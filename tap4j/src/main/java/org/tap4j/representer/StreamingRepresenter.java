@@ -0,0 +1,49 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.representer;
+
+import org.tap4j.model.TestSet;
+
+/**
+ * Representer that can also write a TestSet to an output as it represents
+ * it, without building the whole text in memory first.
+ *
+ * @since 4.2.1
+ */
+public interface StreamingRepresenter extends Representer {
+
+    /**
+     * Writes the Test Set as text to an output, as it is represented, instead
+     * of building it in memory first. The output is flushed, if it is
+     * {@link java.io.Flushable}, but not closed.
+     *
+     * @param testSet TestSet
+     * @param output output, such as a {@link java.io.Writer} or a
+     * {@link StringBuilder}
+     * @throws RepresenterException if the Test Set cannot be represented, or
+     * if the output fails
+     */
+    void representData(TestSet testSet, Appendable output);
+
+}
@@ -23,10 +23,9 @@
  */
 package org.tap4j.representer;
 
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
-import java.util.List;
-import java.util.Map;
 
 import org.tap4j.model.BailOut;
 import org.tap4j.model.Comment;
@@ -36,31 +35,50 @@ import org.tap4j.model.Plan;
 import org.tap4j.model.TapElement;
 import org.tap4j.model.TestResult;
 import org.tap4j.model.TestSet;
-import org.yaml.snakeyaml.DumperOptions;
-import org.yaml.snakeyaml.DumperOptions.LineBreak;
-import org.yaml.snakeyaml.Yaml;
+import org.tap4j.util.YamlEngine;
 
 /**
  * A TAP 13 representer.
  *
+ * Lines are printed piece by piece, without building intermediate strings.
+ * Instances must not be used by several threads at the same time, as they
+ * keep the indentation of the subtest being printed and a buffer.
+ *
  * @since 1.0
  */
-public class Tap13Representer implements Representer {
+public class Tap13Representer implements StreamingRepresenter {
 
     /**
      * Line separator.
      */
     private static final CharSequence LINE_SEPARATOR = "\n";
 
+    /**
+     * Spaces written by {@link #printFiller(PrintWriter)}, in slices.
+     */
+    private static final String SPACES = "                                "
+            + "                                ";
+
     /**
      * Dumper options.
      */
     private org.tap4j.representer.DumperOptions options;
 
     /**
-     * YAML parser and emitter.
+     * YAML emitter, when printing diagnostics.
+     */
+    private YamlEngine yaml = null;
+
+    /**
+     * Indentation of the diagnostic lines, kept for the current indent.
+     */
+    private String diagnosticIndentation = "  ";
+
+    /**
+     * Buffer of {@link #printNumber(PrintWriter, Integer)}, large enough for
+     * any int.
      */
-    private Yaml yaml = null;
+    private final char[] digits = new char[11];
 
     /**
      * Default constructor.
@@ -76,12 +94,7 @@ public class Tap13Representer implements Representer {
         super();
         this.options = options;
         if (options.isPrintDiagnostics()) {
-            final DumperOptions yamlDumperOptions = new DumperOptions();
-            yamlDumperOptions.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
-            yamlDumperOptions.setLineBreak(LineBreak.getPlatformLineBreak());
-            yamlDumperOptions.setExplicitStart(true);
-            yamlDumperOptions.setExplicitEnd(true);
-            yaml = new Yaml(yamlDumperOptions);
+            yaml = YamlEngine.getDefault();
         }
     }
 
@@ -98,13 +111,35 @@ public class Tap13Representer implements Representer {
     public String representData(TestSet testSet) {
         StringWriter sw = new StringWriter();
         PrintWriter pw = new PrintWriter(sw);
+        printTestSet(pw, testSet);
+        return sw.toString();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void representData(TestSet testSet, Appendable output) {
+        AppendableWriter writer = new AppendableWriter(output);
+        PrintWriter pw = new PrintWriter(writer);
+        printTestSet(pw, testSet);
+        writer.finish(pw);
+    }
+
+    /**
+     * Prints a Test Set, or the subtest of a Test Result at the current
+     * indentation.
+     *
+     * @param pw Print Writer
+     * @param testSet Test Set
+     * @since 4.2.1
+     */
+    protected void printTestSet(PrintWriter pw, TestSet testSet) {
         printHeader(pw, testSet.getHeader());
         printPlan(pw, testSet.getPlan());
         for (TapElement tapLine : testSet.getTapLines()) {
             printTapLine(pw, tapLine);
         }
         printFooter(pw, testSet.getFooter());
-        return sw.toString();
     }
 
     /**
@@ -129,21 +164,21 @@ public class Tap13Representer implements Representer {
     protected void printTestResult(PrintWriter pw, TestResult testResult) {
         printFiller(pw);
         pw.append(testResult.getStatus().toString());
-        pw.append(' ' + Integer.toString(testResult.getTestNumber()));
-        if (testResult.getDescription() != null && testResult.getDescription().trim().length() > 0) {
-            pw.append(' ' + testResult.getDescription());
+        pw.append(' ');
+        printNumber(pw, testResult.getTestNumber());
+        if (!isBlank(testResult.getDescription())) {
+            pw.append(' ').append(testResult.getDescription());
         }
         if (testResult.getDirective() != null) {
-            pw.append(" # "
-                    + testResult.getDirective().getDirectiveValue().toString());
+            pw.append(" # ").append(
+                    testResult.getDirective().getDirectiveValue().toString());
             String reason = testResult.getDirective().getReason();
-            if (reason != null && reason.trim().length() > 0) {
-                pw.append(' ' + testResult.getDirective().getReason());
+            if (!isBlank(reason)) {
+                pw.append(' ').append(reason);
             }
         }
-        List<Comment> comments = testResult.getComments();
-        if (comments.size() > 0) {
-            for (Comment comment : comments) {
+        if (testResult.hasComments()) {
+            for (Comment comment : testResult.getComments()) {
                 if (comment.isInline()) {
                     pw.append(' ');
                     printComment(pw, comment);
@@ -159,7 +194,7 @@ public class Tap13Representer implements Representer {
             int indent = this.options.getIndent();
             int spaces = this.options.getSpaces();
             this.options.setIndent(indent + spaces);
-            pw.append(this.representData(testResult.getSubtest()));
+            printTestSet(pw, testResult.getSubtest());
             this.options.setIndent(indent);
         }
     }
@@ -172,7 +207,7 @@ public class Tap13Representer implements Representer {
         printFiller(pw);
         pw.append("Bail out!");
         if (bailOut.getReason() != null) {
-            pw.append(' ' + bailOut.getReason());
+            pw.append(' ').append(bailOut.getReason());
         }
         if (bailOut.getComment() != null) {
             pw.append(' ');
@@ -189,7 +224,7 @@ public class Tap13Representer implements Representer {
     protected void printFooter(PrintWriter pw, Footer footer) {
         if (footer != null) {
             printFiller(pw);
-            pw.append("TAP " + footer.getText());
+            pw.append("TAP ").append(footer.getText());
             if (footer.getComment() != null) {
                 pw.append(' ');
                 printComment(pw, footer.getComment());
@@ -206,9 +241,9 @@ public class Tap13Representer implements Representer {
     protected void printPlan(PrintWriter pw, Plan plan) {
         if (plan != null) {
             printFiller(pw);
-            pw.append(plan.getInitialTestNumber()
-                    + ".."
-                    + plan.getLastTestNumber());
+            printNumber(pw, plan.getInitialTestNumber());
+            pw.append("..");
+            printNumber(pw, plan.getLastTestNumber());
             if (plan.getSkip() != null) {
                 pw.append(" skip ");
                 pw.append(plan.getSkip().getReason());
@@ -233,7 +268,8 @@ public class Tap13Representer implements Representer {
     protected void printHeader(PrintWriter pw, Header header) {
         if (header != null) {
             printFiller(pw);
-            pw.append("TAP version " + header.getVersion());
+            pw.append("TAP version ");
+            printNumber(pw, header.getVersion());
             if (header.getComment() != null) {
                 pw.append(' ');
                 this.printComment(pw, header.getComment());
@@ -248,39 +284,109 @@ public class Tap13Representer implements Representer {
      * @param comment Comment
      */
     protected void printComment(PrintWriter pw, Comment comment) {
-        pw.append("# " + comment.getText());
+        pw.append("# ").append(comment.getText());
     }
 
     /**
-     * Prints diagnostic of the TAP Element into the Print Writer.
+     * Prints diagnostic of the TAP Element into the Print Writer. The YAML is
+     * emitted straight into the Print Writer, every line indented two spaces
+     * deeper than the element.
      *
      * @param pw Print Writer
      * @param tapElement TAP element
      */
     protected void printDiagnostic(PrintWriter pw, TapElement tapElement) {
         if (this.yaml != null) {
-            Map<String, Object> diagnostic = tapElement.getDiagnostic();
-            if (diagnostic != null && !diagnostic.isEmpty()) {
-                String diagnosticText = yaml.dump(diagnostic);
-                diagnosticText = diagnosticText.replaceAll("((?m)^)", "  ");
+            if (tapElement.hasDiagnostic()) {
                 pw.append(LINE_SEPARATOR);
-                printFiller(pw);
-                pw.append(diagnosticText);
+                try {
+                    yaml.dump(tapElement.getDiagnostic(),
+                            getDiagnosticIndentation(), pw);
+                } catch (IOException e) {
+                    throw new RepresenterException("Failed to write diagnostic: "
+                            + e.getMessage(), e);
+                }
             }
         }
     }
 
+    /**
+     * @return the filler followed by two spaces
+     */
+    private String getDiagnosticIndentation() {
+        final int length = Math.max(this.options.getIndent(), 0) + 2;
+        if (diagnosticIndentation.length() != length) {
+            if (length <= SPACES.length()) {
+                diagnosticIndentation = SPACES.substring(0, length);
+            } else {
+                final StringBuilder spaces = new StringBuilder(length);
+                while (spaces.length() < length) {
+                    spaces.append(' ');
+                }
+                diagnosticIndentation = spaces.toString();
+            }
+        }
+        return diagnosticIndentation;
+    }
+
     /**
      * Print filler.
      *
      * @param pw Print Writer
      */
     protected void printFiller(PrintWriter pw) {
-        if (this.options.getIndent() > 0) {
-            for (int i = 0; i < options.getIndent(); i++) {
-                pw.append(' ');
+        int indent = this.options.getIndent();
+        while (indent > 0) {
+            int length = Math.min(indent, SPACES.length());
+            pw.write(SPACES, 0, length);
+            indent -= length;
+        }
+    }
+
+    /**
+     * Prints a number through a buffer of the representer, without creating
+     * a string.
+     *
+     * @param pw Print Writer
+     * @param number number, printed as <code>null</code> if null
+     * @since 4.2.1
+     */
+    protected void printNumber(PrintWriter pw, Integer number) {
+        if (number == null) {
+            pw.append("null");
+            return;
+        }
+        long value = number.intValue();
+        final boolean negative = value < 0;
+        if (negative) {
+            value = -value;
+        }
+        int start = digits.length;
+        do {
+            digits[--start] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        if (negative) {
+            digits[--start] = '-';
+        }
+        pw.write(digits, start, digits.length - start);
+    }
+
+    /**
+     * @param text text, or <code>null</code>
+     * @return whether the text is null or only made of white space, like
+     * <code>text.trim().length() == 0</code> without trimming it
+     */
+    private static boolean isBlank(String text) {
+        if (text == null) {
+            return true;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) > ' ') {
+                return false;
             }
         }
+        return true;
     }
 
 }
@@ -30,6 +30,7 @@ import org.tap4j.model.BailOut;
 import org.tap4j.model.TapElement;
 import org.tap4j.model.TestResult;
 import org.tap4j.model.TestSet;
+import org.tap4j.model.TestSetSummary;
 import org.tap4j.util.DirectiveValues;
 import org.tap4j.util.StatusValues;
 
@@ -39,7 +40,7 @@ import org.tap4j.util.StatusValues;
  *
  * @since 3.1
  */
-public class TapJunitRepresenter implements Representer {
+public class TapJunitRepresenter implements StreamingRepresenter {
 
     /**
      * Name of test suite.
@@ -59,6 +60,25 @@ public class TapJunitRepresenter implements Representer {
     public String representData(TestSet testSet) {
         StringWriter sw = new StringWriter();
         PrintWriter pw = new PrintWriter(sw);
+        printTestSuite(pw, testSet);
+        return sw.toString();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void representData(TestSet testSet, Appendable output) {
+        AppendableWriter writer = new AppendableWriter(output);
+        PrintWriter pw = new PrintWriter(writer);
+        printTestSuite(pw, testSet);
+        writer.finish(pw);
+    }
+
+    /**
+     * @param pw Print Writer
+     * @param testSet Test Set
+     */
+    private void printTestSuite(PrintWriter pw, TestSet testSet) {
         pw.println("<?xml version=\"1.0\" encoding=\"UTF-8\" ?>"); // TBD: get
                                                                    // encoding
                                                                    // from
@@ -99,7 +119,6 @@ public class TapJunitRepresenter implements Representer {
             }
         }
         pw.println("</testsuite>");
-        return sw.toString();
     }
 
     /**
@@ -107,17 +126,13 @@ public class TapJunitRepresenter implements Representer {
      * @return Statuses
      */
     private Statuses getStatuses(TestSet testSet) {
+        TestSetSummary summary = testSet.getSummary();
         Statuses statuses = new Statuses();
-        statuses.setErrors(testSet.getBailOuts().size());
-        for (TestResult tr : testSet.getTestResults()) {
-            statuses.setTests(statuses.getTests() + 1);
-            if (tr.getDirective() != null
-                    && tr.getDirective().getDirectiveValue() == DirectiveValues.SKIP) {
-                statuses.setSkipped(statuses.getSkipped() + 1);
-            } else if (tr.getStatus() == StatusValues.NOT_OK) {
-                statuses.setFailures(statuses.getFailures() + 1);
-            }
-        }
+        statuses.setErrors(summary.getBailOuts());
+        statuses.setTests(summary.getNumberOfTestResults());
+        statuses.setSkipped(summary.getSkipped());
+        statuses.setFailures(summary.getNotOk()
+                - summary.getCount(StatusValues.NOT_OK, DirectiveValues.SKIP));
         return statuses;
     }
 
@@ -0,0 +1,178 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.util;
+
+import java.lang.ref.WeakReference;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Bounded cache that makes equal strings share one instance, like
+ * {@link String#intern()} but without keeping them forever.
+ *
+ * <p>
+ * Test descriptions, directive reasons and the keys of YAML diagnostics are
+ * often repeated many times in a TAP Stream. Passing them through the cache
+ * keeps a single copy of each in memory. Strings are held weakly, so the cache
+ * does not keep alive strings that nothing else references, and the cache is
+ * cleared when it holds more than its maximum number of strings.
+ * </p>
+ *
+ * <p>
+ * Instances of this class are safe to use from many threads.
+ * </p>
+ *
+ * @since 4.2.1
+ */
+public final class StringCache {
+
+    /**
+     * Default maximum number of strings.
+     */
+    public static final int DEFAULT_MAXIMUM_SIZE = 10000;
+
+    /**
+     * Maximum number of strings.
+     */
+    private final int maximumSize;
+
+    /**
+     * Cached strings, by themselves.
+     */
+    private final Map<String, WeakReference<String>> strings =
+        new WeakHashMap<String, WeakReference<String>>();
+
+    /**
+     * Creates a cache of {@link #DEFAULT_MAXIMUM_SIZE} strings.
+     */
+    public StringCache() {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**
+     * @param maximumSize maximum number of strings
+     */
+    public StringCache(int maximumSize) {
+        super();
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("Invalid maximum size: "
+                    + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * @return maximum number of strings
+     */
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * @return number of strings in the cache
+     */
+    public synchronized int size() {
+        return strings.size();
+    }
+
+    /**
+     * Returns the cached instance equal to a string, caching the string if
+     * there is none.
+     *
+     * @param string string, may be <code>null</code>
+     * @return the cached instance, or <code>null</code>
+     */
+    public synchronized String get(String string) {
+        if (string == null) {
+            return null;
+        }
+        final WeakReference<String> reference = strings.get(string);
+        if (reference != null) {
+            final String cached = reference.get();
+            if (cached != null) {
+                return cached;
+            }
+        }
+        if (strings.size() >= maximumSize) {
+            strings.clear();
+        }
+        strings.put(string, new WeakReference<String>(string));
+        return string;
+    }
+
+    /**
+     * Passes the strings of a YAML document through the cache: the keys and
+     * values of maps, and the elements of lists, at any depth. Lists are
+     * changed in place, and maps are copied. A map or list found several
+     * times, through YAML aliases, is handled once, so that the document
+     * keeps its shared and recursive parts.
+     *
+     * @param yaml YAML document loaded by SnakeYAML or the
+     *        {@link YamlishReader}
+     * @return the YAML document with cached strings
+     */
+    public Object deduplicate(Object yaml) {
+        return deduplicate(yaml, new IdentityHashMap<Object, Object>());
+    }
+
+    /**
+     * @param yaml part of a YAML document
+     * @param done maps and lists already handled, with their replacement
+     * @return the part with cached strings
+     */
+    @SuppressWarnings("unchecked")
+    private Object deduplicate(Object yaml, Map<Object, Object> done) {
+        if (yaml instanceof String) {
+            return get((String) yaml);
+        } else if (yaml instanceof Map || yaml instanceof List) {
+            final Object replacement = done.get(yaml);
+            if (replacement != null) {
+                return replacement;
+            }
+        }
+        if (yaml instanceof Map) {
+            final Map<Object, Object> map = (Map<Object, Object>) yaml;
+            final Map<Object, Object> copy = new LinkedHashMap<Object, Object>(
+                    Math.max(16, map.size() * 4 / 3 + 1));
+            done.put(map, copy);
+            for (Map.Entry<Object, Object> entry : map.entrySet()) {
+                copy.put(deduplicate(entry.getKey(), done),
+                        deduplicate(entry.getValue(), done));
+            }
+            return copy;
+        } else if (yaml instanceof List) {
+            done.put(yaml, yaml);
+            final ListIterator<Object> it = ((List<Object>) yaml).listIterator();
+            while (it.hasNext()) {
+                it.set(deduplicate(it.next(), done));
+            }
+        }
+        return yaml;
+    }
+
+}
@@ -0,0 +1,369 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.DumperOptions.LineBreak;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.error.YAMLException;
+
+/**
+ * Loads and dumps the YAML diagnostics of TAP Streams. A {@link Yaml} instance
+ * is costly to create and must not be shared between threads, so every thread
+ * gets its own loader and dumper, created once and reused.
+ *
+ * Instances of this class are safe to use from many threads. Subclasses can
+ * configure the SnakeYAML instances by overriding {@link #createLoader()} and
+ * {@link #createDumper()}. Unless the dumper is configured that way, flat
+ * diagnostics are written by {@link YamlishWriter}, without SnakeYAML.
+ *
+ * @since 4.2.1
+ */
+public class YamlEngine {
+
+    /**
+     * Engine used by the parser and the representer.
+     */
+    private static final YamlEngine DEFAULT = new YamlEngine();
+
+    /**
+     * Loader of each thread.
+     */
+    private final ThreadLocal<Yaml> loaders = new ThreadLocal<Yaml>() {
+        @Override
+        protected Yaml initialValue() {
+            return createLoader();
+        }
+    };
+
+    /**
+     * Dumper of each thread.
+     */
+    private final ThreadLocal<Yaml> dumpers = new ThreadLocal<Yaml>() {
+        @Override
+        protected Yaml initialValue() {
+            return createDumper();
+        }
+    };
+
+    /**
+     * Whether {@link #createDumper()} is the one of this class, whose output
+     * {@link YamlishWriter} reproduces.
+     */
+    private final boolean defaultDumper;
+
+    /**
+     * Default constructor.
+     */
+    public YamlEngine() {
+        super();
+        this.defaultDumper = !overridesCreateDumper(getClass());
+    }
+
+    /**
+     * @return the engine used by the parser and the representer
+     */
+    public static YamlEngine getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Parses a YAML document.
+     *
+     * @param yaml YAML document
+     * @return the object parsed, usually a map for TAP diagnostics
+     */
+    public Object load(String yaml) {
+        return loaders.get().load(yaml);
+    }
+
+    /**
+     * Emits a YAML document, in block style, between explicit start and end
+     * markers.
+     *
+     * @param data object to emit
+     * @return YAML document
+     */
+    public String dump(Object data) {
+        return dumpers.get().dump(data);
+    }
+
+    /**
+     * Emits a YAML document, as {@link #dump(Object)} does, directly into an
+     * output, writing an indentation at the beginning of each line.
+     *
+     * @param data object to emit
+     * @param indentation text written at the beginning of each line
+     * @param output where to write
+     * @throws IOException if the output fails
+     * @since 4.2.1
+     */
+    public void dump(Object data, String indentation, Appendable output)
+            throws IOException {
+        if (defaultDumper
+                && YamlishWriter.write(data, indentation,
+                        LineBreak.getPlatformLineBreak().getString(), output)) {
+            return;
+        }
+        final IndentingWriter writer = new IndentingWriter(indentation, output);
+        try {
+            dumpers.get().dump(data, writer);
+        } catch (YAMLException e) {
+            writer.check();
+            throw e;
+        }
+    }
+
+    /**
+     * Creates the loader of a thread.
+     *
+     * @return YAML loader
+     */
+    protected Yaml createLoader() {
+        return new Yaml();
+    }
+
+    /**
+     * Creates the dumper of a thread.
+     *
+     * @return YAML dumper
+     */
+    protected Yaml createDumper() {
+        final DumperOptions yamlDumperOptions = new DumperOptions();
+        yamlDumperOptions.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
+        yamlDumperOptions.setLineBreak(LineBreak.getPlatformLineBreak());
+        yamlDumperOptions.setExplicitStart(true);
+        yamlDumperOptions.setExplicitEnd(true);
+        return new Yaml(yamlDumperOptions);
+    }
+
+    /**
+     * @param type class of the engine
+     * @return whether the class or one of its superclasses, below this one,
+     * declares {@link #createDumper()}
+     */
+    private static boolean overridesCreateDumper(Class<?> type) {
+        for (Class<?> c = type; c != YamlEngine.class; c = c.getSuperclass()) {
+            try {
+                c.getDeclaredMethod("createDumper");
+                return true;
+            } catch (NoSuchMethodException e) {
+                continue;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writer forwarding to an output, writing an indentation before the first
+     * character of each line. Nothing is written after the last line break.
+     * SnakeYAML wraps the errors of its writer, so the first one is kept for
+     * {@link #check()}.
+     */
+    private static final class IndentingWriter extends Writer {
+
+        /**
+         * Text written at the beginning of each line.
+         */
+        private final String indentation;
+
+        /**
+         * Where to write.
+         */
+        private final Appendable output;
+
+        /**
+         * The output, if it is a writer, to write ranges of strings without
+         * copying them.
+         */
+        private final Writer writer;
+
+        /**
+         * Whether the next character begins a line.
+         */
+        private boolean lineStart = true;
+
+        /**
+         * Whether the last character was a carriage return.
+         */
+        private boolean carriageReturn = false;
+
+        /**
+         * First error of the output.
+         */
+        private IOException error = null;
+
+        /**
+         * @param indentation text written at the beginning of each line
+         * @param output where to write
+         */
+        IndentingWriter(String indentation, Appendable output) {
+            super();
+            this.indentation = indentation;
+            this.output = output;
+            this.writer = output instanceof Writer ? (Writer) output : null;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            try {
+                final int end = off + len;
+                int from = off;
+                for (int i = off; i < end; i++) {
+                    if (beginsLine(cbuf[i])) {
+                        forward(cbuf, from, i);
+                        output.append(indentation);
+                        from = i;
+                    }
+                }
+                forward(cbuf, from, end);
+            } catch (IOException e) {
+                throw keep(e);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            try {
+                final int end = off + len;
+                int from = off;
+                for (int i = off; i < end; i++) {
+                    if (beginsLine(str.charAt(i))) {
+                        forward(str, from, i);
+                        output.append(indentation);
+                        from = i;
+                    }
+                }
+                forward(str, from, end);
+            } catch (IOException e) {
+                throw keep(e);
+            }
+        }
+
+        /**
+         * Follows the line breaks.
+         *
+         * @param c next character
+         * @return whether the character begins a line, and must be preceded by
+         * the indentation
+         */
+        private boolean beginsLine(char c) {
+            final boolean begins = lineStart && !(c == '\n' && carriageReturn);
+            if (begins) {
+                lineStart = false;
+            }
+            carriageReturn = c == '\r';
+            if (c == '\n' || carriageReturn) {
+                lineStart = true;
+            }
+            return begins;
+        }
+
+        /**
+         * Writes a range of characters to the output.
+         *
+         * @param cbuf characters
+         * @param start index of the first character
+         * @param end index after the last character
+         * @throws IOException if the output fails
+         */
+        private void forward(char[] cbuf, int start, int end)
+                throws IOException {
+            if (start == end) {
+                return;
+            }
+            if (writer != null) {
+                writer.write(cbuf, start, end - start);
+            } else {
+                output.append(CharBuffer.wrap(cbuf, start, end - start));
+            }
+        }
+
+        /**
+         * Writes a range of characters to the output.
+         *
+         * @param str characters
+         * @param start index of the first character
+         * @param end index after the last character
+         * @throws IOException if the output fails
+         */
+        private void forward(String str, int start, int end)
+                throws IOException {
+            if (start == end) {
+                return;
+            }
+            if (writer != null) {
+                writer.write(str, start, end - start);
+            } else {
+                output.append(str, start, end);
+            }
+        }
+
+        /**
+         * @param e error of the output
+         * @return the error, kept if it is the first one
+         */
+        private IOException keep(IOException e) {
+            if (error == null) {
+                error = e;
+            }
+            return e;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void flush() throws IOException {
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void close() throws IOException {
+        }
+
+        /**
+         * @throws IOException the first error of the output, if any
+         */
+        void check() throws IOException {
+            if (error != null) {
+                throw error;
+            }
+        }
+
+    }
+
+}
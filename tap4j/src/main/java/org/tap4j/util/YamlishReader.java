@@ -0,0 +1,411 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.yaml.snakeyaml.nodes.NodeId;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.resolver.Resolver;
+
+/**
+ * Reads the most common YAMLish diagnostics without SnakeYAML: flat maps of
+ * simple keys to scalars, such as the ones written by the TestNG and JMeter
+ * extensions. Values may be plain scalars (strings, decimal integers,
+ * booleans or nulls), single line quoted scalars without escapes, or literal
+ * block scalars.
+ *
+ * Anything else, e.g. nested structures, flow collections, anchors, tags,
+ * comments, multi line plain scalars, timestamps or keys longer than 1024
+ * characters, is left to SnakeYAML:
+ * {@link #read(String)} then returns <code>null</code>. The maps returned
+ * are equal to the ones SnakeYAML would return, with values of the same
+ * types.
+ *
+ * @since 4.2.1
+ */
+public final class YamlishReader {
+
+    /**
+     * SnakeYAML resolver, to type plain scalars the same way.
+     */
+    private static final Resolver RESOLVER = new Resolver();
+
+    /**
+     * First characters of the plain scalars that the resolver may type as
+     * something else than a string.
+     */
+    private static final String RESOLVED_FIRST_CHARACTERS = "yYnNtTfFoO~<=-+.0123456789";
+
+    /**
+     * Value that cannot be read without SnakeYAML.
+     */
+    private static final Object UNSUPPORTED = new Object();
+
+    /**
+     * Largest number of digits always fitting in an {@link Integer}.
+     */
+    private static final int MAX_INTEGER_DIGITS = 9;
+
+    /**
+     * Longest simple key that SnakeYAML accepts.
+     */
+    private static final int MAX_SIMPLE_KEY_LENGTH = 1024;
+
+    /**
+     * YAML text.
+     */
+    private final String text;
+
+    /**
+     * Length of the YAML text.
+     */
+    private final int length;
+
+    /**
+     * Beginning of the next line.
+     */
+    private int position = 0;
+
+    /**
+     * Indentation of the keys.
+     */
+    private int baseIndentation = -1;
+
+    /**
+     * @param text YAML text
+     */
+    private YamlishReader(String text) {
+        super();
+        this.text = text;
+        this.length = text.length();
+    }
+
+    /**
+     * Reads a YAMLish diagnostic.
+     *
+     * @param yaml YAML text
+     * @return the diagnostic as a map, or <code>null</code> if it must be read
+     * by SnakeYAML
+     */
+    public static Map<String, Object> read(String yaml) {
+        return new YamlishReader(yaml).readMap();
+    }
+
+    /**
+     * @return the map, or <code>null</code> if unsupported
+     */
+    private Map<String, Object> readMap() {
+        if (!isPlainText()) {
+            return null;
+        }
+        final Map<String, Object> map = new LinkedHashMap<String, Object>();
+        while (position < length) {
+            final int start = position;
+            final int end = lineEnd(start);
+            final int indentation = indentation(start, end);
+            if (start + indentation == end) {
+                return null;
+            }
+            if (baseIndentation < 0) {
+                baseIndentation = indentation;
+            } else if (indentation != baseIndentation) {
+                return null;
+            }
+            final int keyStart = start + indentation;
+            final int colon = keyEnd(keyStart, end);
+            if (colon < 0 || colon - keyStart > MAX_SIMPLE_KEY_LENGTH) {
+                return null;
+            }
+            final String key = text.substring(keyStart, colon);
+            if (!Tag.STR.equals(resolve(key))) {
+                return null;
+            }
+            position = end + 1;
+            final int valueStart = skipSpaces(colon + 1, end);
+            final Object value;
+            if (valueStart == end) {
+                // a nested structure would fail the indentation check
+                value = null;
+            } else {
+                final char c = text.charAt(valueStart);
+                if (c == '|') {
+                    value = readLiteral(valueStart + 1, end);
+                } else if (c == '\'') {
+                    value = readSingleQuoted(valueStart + 1, end);
+                } else if (c == '"') {
+                    value = readDoubleQuoted(valueStart + 1, end);
+                } else {
+                    value = readPlain(valueStart, end);
+                }
+            }
+            if (value == UNSUPPORTED) {
+                return null;
+            }
+            map.put(key, value);
+        }
+        return map.isEmpty() ? null : map;
+    }
+
+    /**
+     * @return whether the text has only characters that SnakeYAML accepts and
+     * line feeds as the only line breaks, without tabs
+     */
+    private boolean isPlainText() {
+        for (int i = 0; i < length; i++) {
+            final char c = text.charAt(i);
+            if (c == '\n' || (c >= ' ' && c <= '~')) {
+                continue;
+            }
+            if ((c >= '\u00A0' && c < '\u2028') || (c > '\u2029' && c <= '\uD7FF')
+                    || (c >= '\uE000' && c <= '\uFFFD' && c != '\uFEFF')) {
+                continue;
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Finds the end of a simple key: letters, digits, underscores, dashes,
+     * dots, slashes and inner spaces, followed by a colon and a space or the
+     * end of the line.
+     *
+     * @param start beginning of the key
+     * @param end end of the line
+     * @return position of the colon, or -1 if the key is not simple
+     */
+    private int keyEnd(int start, int end) {
+        for (int i = start; i < end; i++) {
+            final char c = text.charAt(i);
+            if (c == ':') {
+                if (i == start || text.charAt(i - 1) == ' ' || (i + 1 < end && text.charAt(i + 1) != ' ')) {
+                    return -1;
+                }
+                return i;
+            }
+            final boolean letterOrDigit = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '_';
+            if (!letterOrDigit && (i == start || (c != '-' && c != '.' && c != '/' && c != ' '))) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param start beginning of the scalar
+     * @param end end of the line
+     * @return the typed value of a plain scalar
+     */
+    private Object readPlain(int start, int end) {
+        int last = end;
+        while (text.charAt(last - 1) == ' ') {
+            last--;
+        }
+        final String value = text.substring(start, last);
+        final char first = value.charAt(0);
+        if ("[]{},#&*!|>'\"%@`".indexOf(first) >= 0) {
+            return UNSUPPORTED;
+        }
+        if ((first == '-' || first == '?' || first == ':') && (value.length() == 1 || value.charAt(1) == ' ')) {
+            return UNSUPPORTED;
+        }
+        if (value.indexOf(": ") >= 0 || value.indexOf(" #") >= 0 || value.charAt(value.length() - 1) == ':') {
+            return UNSUPPORTED;
+        }
+        final Tag tag = resolve(value);
+        if (Tag.STR.equals(tag)) {
+            return value;
+        } else if (Tag.NULL.equals(tag)) {
+            return null;
+        } else if (Tag.BOOL.equals(tag)) {
+            final String lower = value.toLowerCase();
+            return Boolean.valueOf("true".equals(lower) || "yes".equals(lower) || "on".equals(lower));
+        } else if (Tag.INT.equals(tag)) {
+            return readInteger(value);
+        }
+        return UNSUPPORTED;
+    }
+
+    /**
+     * @param value plain scalar
+     * @return its tag, as SnakeYAML resolves it
+     */
+    static Tag resolve(String value) {
+        if (RESOLVED_FIRST_CHARACTERS.indexOf(value.charAt(0)) < 0) {
+            return Tag.STR;
+        }
+        return RESOLVER.resolve(NodeId.scalar, value, true);
+    }
+
+    /**
+     * @param value plain scalar resolved as an integer
+     * @return the integer, if it is a small decimal one
+     */
+    private Object readInteger(String value) {
+        int start = 0;
+        if (value.charAt(0) == '-' || value.charAt(0) == '+') {
+            start = 1;
+        }
+        final int digits = value.length() - start;
+        if (digits == 0 || digits > MAX_INTEGER_DIGITS || (digits > 1 && value.charAt(start) == '0')) {
+            return UNSUPPORTED;
+        }
+        for (int i = start; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return UNSUPPORTED;
+            }
+        }
+        final int number = Integer.parseInt(value.substring(start));
+        return Integer.valueOf(value.charAt(0) == '-' ? -number : number);
+    }
+
+    /**
+     * @param start position after the opening quote
+     * @param end end of the line
+     * @return the value of a single line, single quoted scalar
+     */
+    private Object readSingleQuoted(int start, int end) {
+        final StringBuilder sb = new StringBuilder(end - start);
+        int i = start;
+        while (true) {
+            if (i >= end) {
+                return UNSUPPORTED;
+            }
+            final char c = text.charAt(i);
+            if (c == '\'') {
+                if (i + 1 < end && text.charAt(i + 1) == '\'') {
+                    sb.append('\'');
+                    i += 2;
+                    continue;
+                }
+                break;
+            }
+            sb.append(c);
+            i++;
+        }
+        return skipSpaces(i + 1, end) == end ? sb.toString() : UNSUPPORTED;
+    }
+
+    /**
+     * @param start position after the opening quote
+     * @param end end of the line
+     * @return the value of a single line, double quoted scalar without escapes
+     */
+    private Object readDoubleQuoted(int start, int end) {
+        for (int i = start; i < end; i++) {
+            final char c = text.charAt(i);
+            if (c == '\\') {
+                return UNSUPPORTED;
+            } else if (c == '"') {
+                return skipSpaces(i + 1, end) == end ? text.substring(start, i) : UNSUPPORTED;
+            }
+        }
+        return UNSUPPORTED;
+    }
+
+    /**
+     * Reads a literal block scalar, whose lines follow the current one.
+     *
+     * @param start position after the literal indicator
+     * @param end end of the line
+     * @return the value of the literal block scalar
+     */
+    private Object readLiteral(int start, int end) {
+        int i = start;
+        final boolean strip = i < end && text.charAt(i) == '-';
+        if (i < end && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+            i++;
+        }
+        if (skipSpaces(i, end) != end) {
+            return UNSUPPORTED;
+        }
+        final StringBuilder sb = new StringBuilder();
+        int blockIndentation = -1;
+        while (position < length) {
+            final int lineStart = position;
+            final int lineEnd = lineEnd(lineStart);
+            final int indentation = indentation(lineStart, lineEnd);
+            if (lineStart + indentation == lineEnd) {
+                return UNSUPPORTED;
+            }
+            if (indentation <= baseIndentation) {
+                break;
+            }
+            if (blockIndentation < 0) {
+                blockIndentation = indentation;
+            } else if (indentation < blockIndentation) {
+                return UNSUPPORTED;
+            }
+            if (lineEnd == length) {
+                // the last line break decides the chomping
+                return UNSUPPORTED;
+            }
+            sb.append(text, lineStart + blockIndentation, lineEnd).append('\n');
+            position = lineEnd + 1;
+        }
+        if (blockIndentation < 0) {
+            return UNSUPPORTED;
+        }
+        if (strip) {
+            sb.setLength(sb.length() - 1);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @param start beginning of a line
+     * @return end of the line
+     */
+    private int lineEnd(int start) {
+        final int end = text.indexOf('\n', start);
+        return end < 0 ? length : end;
+    }
+
+    /**
+     * @param start beginning of a line
+     * @param end end of the line
+     * @return number of spaces at the beginning of the line
+     */
+    private int indentation(int start, int end) {
+        return skipSpaces(start, end) - start;
+    }
+
+    /**
+     * @param start position
+     * @param end end of the line
+     * @return position of the first character that is not a space
+     */
+    private int skipSpaces(int start, int end) {
+        int i = start;
+        while (i < end && text.charAt(i) == ' ') {
+            i++;
+        }
+        return i;
+    }
+
+}
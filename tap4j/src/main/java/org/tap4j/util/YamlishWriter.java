@@ -0,0 +1,166 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.util;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.yaml.snakeyaml.nodes.Tag;
+
+/**
+ * Writes the most common YAMLish diagnostics without SnakeYAML: non empty flat
+ * maps of simple string keys to nulls, booleans, integers or strings that
+ * SnakeYAML would write as short plain scalars. It is the counterpart of
+ * {@link YamlishReader}.
+ *
+ * The text written is the one the default {@link YamlEngine} dumper would
+ * emit, line by line, each line preceded by an indentation. Anything else,
+ * e.g. nested structures, strings needing quotes or lines long enough to be
+ * folded, is left to SnakeYAML: {@link #write(Object, String, String,
+ * Appendable)} then writes nothing and returns <code>false</code>.
+ *
+ * @since 4.2.1
+ */
+public final class YamlishWriter {
+
+    /**
+     * Width after which SnakeYAML folds plain scalars at spaces.
+     */
+    private static final int BEST_WIDTH = 80;
+
+    /**
+     * Length from which SnakeYAML writes keys as explicit <code>?</code>
+     * keys: it counts their <code>!!str</code> tag too, up to 128 characters.
+     */
+    private static final int EXPLICIT_KEY_LENGTH = 123;
+
+    /**
+     * Characters that cannot start a plain scalar, or that make it depend on
+     * what follows.
+     */
+    private static final String INDICATORS = "-?:,[]{}#&*!|>'\"%@` ";
+
+    /**
+     * Utility class.
+     */
+    private YamlishWriter() {
+        super();
+    }
+
+    /**
+     * Writes a YAMLish diagnostic, between explicit start and end markers.
+     *
+     * @param data diagnostic
+     * @param indentation text written at the beginning of each line
+     * @param lineBreak text written at the end of each line
+     * @param output where to write
+     * @return <code>true</code> if the diagnostic was written,
+     * <code>false</code> if nothing was written as it must be emitted by
+     * SnakeYAML
+     * @throws IOException if the output fails
+     */
+    public static boolean write(Object data, String indentation,
+            String lineBreak, Appendable output) throws IOException {
+        if (!isSupported(data)) {
+            return false;
+        }
+        output.append(indentation).append("---").append(lineBreak);
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) data).entrySet()) {
+            output.append(indentation).append((String) entry.getKey())
+                    .append(": ").append(toScalar(entry.getValue()))
+                    .append(lineBreak);
+        }
+        output.append(indentation).append("...").append(lineBreak);
+        return true;
+    }
+
+    /**
+     * @param data diagnostic
+     * @return whether it can be written without SnakeYAML
+     */
+    static boolean isSupported(Object data) {
+        if (!(data instanceof Map) || ((Map<?, ?>) data).isEmpty()) {
+            return false;
+        }
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) data).entrySet()) {
+            if (!(entry.getKey() instanceof String)) {
+                return false;
+            }
+            final String key = (String) entry.getKey();
+            final Object value = entry.getValue();
+            if (!isPlain(key) || key.length() >= EXPLICIT_KEY_LENGTH) {
+                return false;
+            }
+            if (value instanceof String) {
+                final String text = (String) value;
+                if (!isPlain(text)
+                        || key.length() + 2 + text.length() > BEST_WIDTH) {
+                    return false;
+                }
+            } else if (value != null && !(value instanceof Boolean)
+                    && !(value instanceof Integer) && !(value instanceof Long)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param value null, boolean, integer or plain string
+     * @return its scalar text
+     */
+    private static String toScalar(Object value) {
+        if (value == null) {
+            return "null";
+        }
+        return value.toString();
+    }
+
+    /**
+     * @param text string
+     * @return whether SnakeYAML would write it as a plain scalar resolved as
+     * a string
+     */
+    private static boolean isPlain(String text) {
+        final int length = text.length();
+        if (length == 0 || INDICATORS.indexOf(text.charAt(0)) >= 0
+                || text.charAt(length - 1) == ' ' || text.startsWith("...")) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            final char c = text.charAt(i);
+            if (c < ' ' || c > '~') {
+                return false;
+            }
+            if (c == ':' && (i == length - 1 || text.charAt(i + 1) == ' ')) {
+                return false;
+            }
+            if (c == '#' && text.charAt(i - 1) == ' ') {
+                return false;
+            }
+        }
+        return Tag.STR.equals(YamlishReader.resolve(text));
+    }
+
+}
@@ -25,6 +25,7 @@
 package org.tap4j;
 
 import java.io.File;
+import java.util.List;
 
 import org.tap4j.consumer.TapConsumer;
 import org.tap4j.consumer.TapConsumerImpl;
@@ -79,4 +80,19 @@ public class BaseTapTest {
         return consumer;
     }
 
+    /**
+     * Lists the TAP files of a directory and of its subdirectories.
+     * @param directory directory
+     * @param files list receiving the TAP files found
+     */
+    protected static void listTapFiles(File directory, List<File> files) {
+        for (File file : directory.listFiles()) {
+            if (file.isDirectory()) {
+                listTapFiles(file, files);
+            } else if (file.getName().endsWith(".tap")) {
+                files.add(file);
+            }
+        }
+    }
+
 }
@@ -0,0 +1,516 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.codec;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.ObjectOutputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.tap4j.BaseTapTest;
+import org.tap4j.model.BailOut;
+import org.tap4j.model.Comment;
+import org.tap4j.model.CompactTestSet;
+import org.tap4j.model.Directive;
+import org.tap4j.model.Footer;
+import org.tap4j.model.Header;
+import org.tap4j.model.Plan;
+import org.tap4j.model.SkipPlan;
+import org.tap4j.model.TestResult;
+import org.tap4j.model.TestSet;
+import org.tap4j.model.Text;
+import org.tap4j.parser.ParserException;
+import org.tap4j.parser.Tap13Parser;
+import org.tap4j.representer.Tap13Representer;
+import org.tap4j.util.DirectiveValues;
+import org.tap4j.util.StatusValues;
+
+/**
+ * Tests for {@link TestSetCodec}.
+ *
+ * @since 4.2.1
+ */
+public class TestTestSetCodec extends BaseTapTest {
+
+    @Test
+    public void testRoundTrip() {
+        final TestSet testSet = new TestSet();
+        testSet.setHeader(new Header(13));
+        final Plan plan = new Plan(1, 3, new SkipPlan("no database"));
+        plan.setIndentation(4);
+        testSet.setPlan(plan);
+        final TestResult ok = new TestResult(StatusValues.OK, 1);
+        ok.setDescription("- first test");
+        final Comment inline = new Comment("inline comment", true);
+        ok.setComment(inline);
+        ok.addComment(inline);
+        testSet.addTestResult(ok);
+        final Comment comment = new Comment("after the first test");
+        testSet.addComment(comment);
+        ok.addComment(comment);
+        final TestResult skipped = new TestResult(StatusValues.NOT_OK, 2);
+        skipped.setDirective(new Directive(DirectiveValues.SKIP, "not supported \u00e9\u20ac\ud83d\ude00\ud800"));
+        final TestSet subtest = new TestSet();
+        subtest.setPlan(new Plan(1));
+        subtest.addTestResult(new TestResult(StatusValues.OK, 1));
+        skipped.setSubtest(subtest);
+        testSet.addTestResult(skipped);
+        final Text text = new Text("  some text");
+        text.setIndentationString("  ");
+        testSet.getTapLines().add(text);
+        testSet.addBailOut(new BailOut("out of memory"));
+        testSet.setFooter(new Footer("end", "footer comment"));
+
+        final TestSet decoded = new TestSetCodec().decode(new TestSetCodec().encode(testSet));
+
+        assertEquals(Integer.valueOf(13), decoded.getHeader().getVersion());
+        assertEquals(4, decoded.getPlan().getIndentation());
+        assertEquals("no database", decoded.getPlan().getSkip().getReason());
+        assertEquals(Integer.valueOf(3), decoded.getPlan().getLastTestNumber());
+        assertEquals(5, decoded.getNumberOfTapLines());
+        assertEquals(2, decoded.getNumberOfTestResults());
+        assertEquals(1, decoded.getNumberOfComments());
+        assertEquals(1, decoded.getNumberOfBailOuts());
+        assertTrue(decoded.hasBailOut());
+        assertEquals("end", decoded.getFooter().getText());
+        assertEquals("footer comment", decoded.getFooter().getComment().getText());
+
+        final TestResult first = decoded.getTestResult(1);
+        assertEquals("- first test", first.getDescription());
+        assertEquals(2, first.getComments().size());
+        assertSame(first.getComment(), first.getComments().get(0));
+        assertTrue(first.getComment().isInline());
+        assertSame(decoded.getComments().get(0), first.getComments().get(1));
+        assertSame(decoded.getTapLines().get(1), decoded.getComments().get(0));
+
+        final TestResult second = decoded.getTestResult(2);
+        assertEquals(StatusValues.NOT_OK, second.getStatus());
+        assertEquals(DirectiveValues.SKIP, second.getDirective().getDirectiveValue());
+        assertEquals(skipped.getDirective().getReason(), second.getDirective().getReason());
+        assertFalse(second.hasComments());
+        assertEquals(1, second.getSubtest().getNumberOfTestResults());
+        assertEquals("  ", ((Text) decoded.getTapLines().get(3)).getIndentationString());
+        assertEquals("out of memory", decoded.getBailOuts().get(0).getReason());
+
+        assertEquals(new Tap13Representer().representData(testSet),
+                new Tap13Representer().representData(decoded));
+    }
+
+    @Test
+    public void testElementsOutsideOfTheLines() {
+        final TestSet testSet = new TestSet();
+        final TestResult listed = new TestResult(StatusValues.OK, 1);
+        testSet.addTestResult(listed);
+        final TestResult unlisted = new TestResult(StatusValues.NOT_OK, 2);
+        testSet.getTapLines().add(unlisted);
+        testSet.getTestResults().add(new TestResult(StatusValues.OK, 3));
+        testSet.getComments().add(new Comment("only in the comments"));
+
+        final TestSet decoded = new TestSetCodec().decode(new TestSetCodec().encode(testSet));
+
+        assertEquals(2, decoded.getNumberOfTapLines());
+        assertEquals(2, decoded.getNumberOfTestResults());
+        assertSame(decoded.getTapLines().get(0), decoded.getTestResults().get(0));
+        assertEquals(Integer.valueOf(2), ((TestResult) decoded.getTapLines().get(1)).getTestNumber());
+        assertEquals(Integer.valueOf(3), decoded.getTestResults().get(1).getTestNumber());
+        assertEquals("only in the comments", decoded.getComments().get(0).getText());
+        assertEquals(0, decoded.getSummary().getCount(StatusValues.NOT_OK, null));
+    }
+
+    @Test
+    public void testDiagnostics() {
+        final Map<String, Object> diagnostic = new LinkedHashMap<String, Object>();
+        diagnostic.put("message", "failed");
+        diagnostic.put("null", null);
+        diagnostic.put("flag", Boolean.TRUE);
+        diagnostic.put("int", -42);
+        diagnostic.put("long", Long.MAX_VALUE);
+        diagnostic.put("double", 0.25);
+        diagnostic.put("big", new BigInteger("123456789012345678901234567890"));
+        diagnostic.put("date", new Date(1234567890123L));
+        diagnostic.put("list", Arrays.asList((Object) "a", 1, Arrays.asList("nested")));
+        diagnostic.put("set", new LinkedHashSet<String>(Arrays.asList("x", "y")));
+        final Map<Object, Object> map = new LinkedHashMap<Object, Object>();
+        map.put(1, "one");
+        map.put("message", "again");
+        diagnostic.put("map", map);
+        final TestResult testResult = new TestResult(StatusValues.NOT_OK, 1);
+        testResult.setDiagnostic(diagnostic);
+        final TestSet testSet = new TestSet();
+        testSet.addTestResult(testResult);
+
+        final Map<String, Object> decoded = new TestSetCodec().decode(new TestSetCodec().encode(testSet))
+                .getTestResult(1).getDiagnostic();
+
+        assertEquals(new ArrayList<String>(diagnostic.keySet()), new ArrayList<String>(decoded.keySet()));
+        for (String key : diagnostic.keySet()) {
+            assertEquals(key, diagnostic.get(key), decoded.get(key));
+        }
+        assertTrue(decoded.get("set") instanceof LinkedHashSet);
+
+        diagnostic.clear();
+        diagnostic.put("bytes", new byte[] {1, 2, 3 });
+        diagnostic.put("float", 1.5f);
+        final Map<String, Object> yaml = new TestSetCodec().decode(new TestSetCodec().encode(testSet))
+                .getTestResult(1).getDiagnostic();
+        assertArrayEquals(new byte[] {1, 2, 3 }, (byte[]) yaml.get("bytes"));
+        assertEquals(1.5, yaml.get("float"));
+    }
+
+    @Test
+    public void testRawDiagnostics() {
+        final Tap13Parser parser = new Tap13Parser();
+        parser.setLazyDiagnostics(true);
+        final TestSet testSet = parser.parseTapStream("1..1\nnot ok 1\n  ---\n  message: failed\n  ...\n");
+        final TestSetCodec codec = new TestSetCodec(true);
+        assertTrue(codec.isRawDiagnostics());
+
+        final TestResult decoded = codec.decode(codec.encode(testSet)).getTestResult(1);
+
+        assertEquals(testSet.getTestResult(1).getRawDiagnostic(), decoded.getRawDiagnostic());
+        assertEquals("failed", decoded.getDiagnostic().get("message"));
+    }
+
+    @Test
+    public void testChangedRawDiagnostics() {
+        final Tap13Parser parser = new Tap13Parser();
+        parser.setLazyDiagnostics(true);
+        final String tap = "1..2\nnot ok 1\n  ---\n  message: failed\n  ...\nnot ok 2\n  ---\n  message: failed\n  ...\n";
+        final TestSet testSet = parser.parseTapStream(tap);
+        testSet.getTestResult(1).getDiagnostic().put("message", "changed");
+        final TestSetCodec codec = new TestSetCodec(true);
+
+        final TestSet decoded = codec.decode(codec.encode(testSet));
+
+        assertEquals("changed", decoded.getTestResult(1).getDiagnostic().get("message"));
+        assertNull(decoded.getTestResult(1).getRawDiagnostic());
+        assertEquals(testSet.getTestResult(2).getRawDiagnostic(), decoded.getTestResult(2).getRawDiagnostic());
+        assertEquals(new TestSetCodec().encode(new Tap13Parser().parseTapStream(tap)).length,
+                new TestSetCodec().encode(parser.parseTapStream(tap)).length);
+        testSet.getTestResult(2).setDiagnostic(new LinkedHashMap<String, Object>());
+        assertNull(testSet.getTestResult(2).getRawDiagnostic());
+    }
+
+    /**
+     * Test that the raw diagnostics with corrupted YAML behave as the ones of
+     * the parser once decoded: removed or raising a parser error.
+     */
+    @Test
+    public void testCorruptedRawDiagnostics() {
+        final String tap = "1..1\nnot ok 1\n  ---\n  message: [unclosed\n  ...\n";
+        final TestSetCodec codec = new TestSetCodec(true);
+        for (boolean removeYamlIfCorrupted : new boolean[] {false, true }) {
+            final Tap13Parser parser = new Tap13Parser("UTF-8", true, false, removeYamlIfCorrupted);
+            parser.setLazyDiagnostics(true);
+            final TestSet decoded = codec.decode(codec.encode(parser.parseTapStream(tap)));
+            try {
+                final Map<String, Object> diagnostic = decoded.getTestResult(1).getDiagnostic();
+                assertTrue(diagnostic.containsKey("TAP processing error"));
+                assertTrue(removeYamlIfCorrupted);
+            } catch (ParserException e) {
+                assertFalse(removeYamlIfCorrupted);
+            }
+        }
+    }
+
+    @Test
+    public void testStreams() {
+        final TestSetCodec codec = new TestSetCodec();
+        final TestSet first = new Tap13Parser().parseTapStream("1..1\nok 1 - first\n");
+        final TestSet second = new Tap13Parser().parseTapStream("1..2\nok 1\nnot ok 2 - second\n");
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        codec.encode(first, out);
+        codec.encode(second, out);
+        final ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+        assertEquals("- first", codec.decode(in).getTestResult(1).getDescription());
+        assertEquals("- second", codec.decode(in).getTestResult(2).getDescription());
+        assertEquals(-1, in.read());
+
+        final ByteBuffer buffer = ByteBuffer.allocate(out.size() + 1);
+        codec.encode(first, buffer);
+        final int end = buffer.position();
+        buffer.put((byte) 42);
+        buffer.flip();
+        assertEquals(1, codec.decode(buffer).getNumberOfTestResults());
+        assertEquals(end, buffer.position());
+        assertEquals(42, buffer.get());
+    }
+
+    @Test
+    public void testLargeTestSet() {
+        final StringBuilder tap = new StringBuilder("1..20000\n");
+        for (int i = 1; i <= 20000; i++) {
+            tap.append(i % 3 == 0 ? "not ok " : "ok ").append(i).append(" - test ").append(i % 100);
+            tap.append(i % 7 == 0 ? " # SKIP no network\n" : "\n");
+        }
+        final TestSet testSet = new Tap13Parser().parseTapStream(tap.toString());
+        final TestSetCodec codec = new TestSetCodec();
+        final byte[] encoded = codec.encode(testSet);
+
+        final TestSet decoded = codec.decode(encoded);
+
+        assertEquals(new Tap13Representer().representData(testSet), new Tap13Representer().representData(decoded));
+        assertEquals(testSet.getSummary().getSkipped(), decoded.getSummary().getSkipped());
+        assertTrue(encoded.length < serializedSize(testSet) / 10);
+        assertEquals(encoded.length, codec.encode(new CompactTestSet(testSet)).length);
+    }
+
+    @Test
+    public void testInvalidData() {
+        final TestSetCodec codec = new TestSetCodec();
+        final byte[] encoded = codec.encode(new Tap13Parser().parseTapStream("1..1\nok 1\n"));
+        try {
+            codec.decode(new byte[] {'T', 'A', 'P' });
+            fail("Truncated header");
+        } catch (CodecException e) {
+            assertTrue(e.getMessage().contains("end"));
+        }
+        final byte[] other = encoded.clone();
+        other[0] = 'X';
+        try {
+            codec.decode(other);
+            fail("Wrong magic");
+        } catch (CodecException e) {
+            assertEquals("Not an encoded test set", e.getMessage());
+        }
+        final byte[] newer = encoded.clone();
+        newer[4] = (byte) (TestSetCodec.FORMAT_VERSION + 1);
+        try {
+            codec.decode(newer);
+            fail("Unsupported version");
+        } catch (CodecException e) {
+            assertTrue(e.getMessage().startsWith("Unsupported version"));
+        }
+        try {
+            codec.decode(Arrays.copyOf(encoded, encoded.length - 2));
+            fail("Truncated data");
+        } catch (CodecException e) {
+            assertTrue(e.getMessage().contains("end"));
+        }
+        final TestSet unsupported = new TestSet();
+        unsupported.getTapLines().add(new Plan(1));
+        try {
+            codec.encode(unsupported);
+            fail("Unsupported TAP line");
+        } catch (CodecException e) {
+            assertTrue(e.getMessage().contains(Plan.class.getName()));
+        }
+    }
+
+    /**
+     * Test that the decoder rejects values nested deeper than the encoder
+     * writes them, and that the encoder rejects subtests nested too deeply.
+     */
+    @Test
+    public void testNestedTooDeeply() {
+        final TestSetCodec codec = new TestSetCodec();
+        Object value = new ArrayList<Object>();
+        for (int depth = CodecFormat.MAX_DEPTH; depth > 1; depth--) {
+            value = new ArrayList<Object>(Arrays.asList(value));
+        }
+        final Map<String, Object> diagnostic = new LinkedHashMap<String, Object>();
+        diagnostic.put("nested", value);
+        final TestResult testResult = new TestResult(StatusValues.OK, 1);
+        testResult.setDiagnostic(diagnostic);
+        final TestSet testSet = new TestSet();
+        testSet.addTestResult(testResult);
+        final byte[] encoded = codec.encode(testSet);
+        assertEquals(diagnostic, codec.decode(encoded).getTestResult(1).getDiagnostic());
+        final byte[] deeper = insert(encoded, new byte[] {CodecFormat.LIST, 1 }, CodecFormat.MAX_DEPTH - 1);
+        try {
+            codec.decode(deeper);
+            fail("Diagnostic nested too deeply");
+        } catch (CodecException e) {
+            assertEquals("Diagnostic value nested too deeply", e.getMessage());
+        }
+        TestSet subtest = new TestSet();
+        for (int depth = 0; depth <= CodecFormat.MAX_DEPTH; depth++) {
+            final TestResult parent = new TestResult(StatusValues.OK, 1);
+            parent.setSubtest(subtest);
+            subtest = new TestSet();
+            subtest.addTestResult(parent);
+        }
+        try {
+            codec.encode(subtest);
+            fail("Subtests nested too deeply");
+        } catch (CodecException e) {
+            assertEquals("Subtests nested too deeply", e.getMessage());
+        }
+    }
+
+    /**
+     * Test that the decoder does not allocate the lengths claimed by
+     * truncated data.
+     */
+    @Test
+    public void testLengthLongerThanData() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final BinaryOutput out = new BinaryOutput() {
+                @Override
+                protected void write(byte[] b, int offset, int length) {
+                    bytes.write(b, offset, length);
+                }
+            };
+            out.writeHeader();
+            if (i == 1) {
+                out.writeByte(CodecFormat.NEW_REFERENCE);
+            }
+            out.writeVarInt(Integer.MAX_VALUE);
+            out.writeByte('x');
+            out.finish();
+            final ByteArrayInputStream source = new ByteArrayInputStream(bytes.toByteArray());
+            final BinaryInput in = new BinaryInput() {
+                @Override
+                protected int read(byte[] b, int offset, int length) {
+                    return source.read(b, offset, length);
+                }
+            };
+            in.readHeader();
+            try {
+                if (i == 0) {
+                    in.readBytes();
+                } else {
+                    in.readString();
+                }
+                fail("Truncated data");
+            } catch (CodecException e) {
+                assertEquals("Unexpected end of the encoded test set", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Test that the TAP files used by the other tests are represented the
+     * same way once decoded, with both kinds of diagnostics.
+     */
+    @Test
+    public void testCorpus() {
+        final List<File> files = new ArrayList<File>();
+        listTapFiles(new File(getClass().getResource("/org/tap4j").getFile()), files);
+        assertTrue(files.size() > 0);
+        for (File file : files) {
+            final TestSet testSet;
+            try {
+                testSet = new Tap13Parser("UTF-8", true, false, true).parseFile(file);
+            } catch (ParserException e) {
+                continue;
+            }
+            final String expected = new Tap13Representer().representData(testSet);
+            for (boolean raw : new boolean[] {false, true }) {
+                final TestSetCodec codec = new TestSetCodec(raw);
+                final TestSet decoded = codec.decode(codec.encode(testSet));
+                assertEquals(file.getName(), expected, new Tap13Representer().representData(decoded));
+                assertEquals(file.getName(), testSet.getNumberOfComments(), decoded.getNumberOfComments());
+                assertNull(file.getName(), decoded.getTapLines().size() == testSet.getTapLines().size() ? null
+                        : decoded.getTapLines());
+            }
+        }
+    }
+
+    /**
+     * Inserts bytes in the single chunk of encoded data, after a run of them.
+     *
+     * @param encoded encoded test set, of a single chunk
+     * @param inserted bytes to insert
+     * @param run number of times the bytes are repeated where they are
+     *        inserted
+     * @return the new encoded test set
+     */
+    private static byte[] insert(byte[] encoded, byte[] inserted, int run) {
+        final int header = CodecFormat.MAGIC.length + 1;
+        int start = header;
+        int length = 0;
+        for (int shift = 0; (encoded[start - 1] & 0x80) != 0 || start == header; shift += 7) {
+            length |= (encoded[start] & 0x7F) << shift;
+            start++;
+        }
+        final List<Byte> chunk = new ArrayList<Byte>();
+        for (int i = start; i < encoded.length - 1; i++) {
+            chunk.add(encoded[i]);
+        }
+        assertEquals(length, chunk.size());
+        final List<Byte> pattern = new ArrayList<Byte>();
+        for (int i = 0; i < run; i++) {
+            for (byte b : inserted) {
+                pattern.add(b);
+            }
+        }
+        final int index = Collections.indexOfSubList(chunk, pattern);
+        assertTrue(index >= 0);
+        for (int i = inserted.length - 1; i >= 0; i--) {
+            chunk.add(index, inserted[i]);
+        }
+        final ByteArrayOutputStream result = new ByteArrayOutputStream();
+        result.write(encoded, 0, header);
+        int remaining = chunk.size();
+        while ((remaining & ~0x7F) != 0) {
+            result.write((remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        result.write(remaining);
+        for (byte b : chunk) {
+            result.write(b);
+        }
+        result.write(0);
+        return result.toByteArray();
+    }
+
+    /**
+     * @param testSet test set
+     * @return the size of the test set serialized
+     */
+    private static int serializedSize(TestSet testSet) {
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final ObjectOutputStream oos = new ObjectOutputStream(out);
+            oos.writeObject(testSet);
+            oos.close();
+            return out.size();
+        } catch (java.io.IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+}
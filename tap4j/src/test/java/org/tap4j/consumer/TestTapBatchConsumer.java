@@ -0,0 +1,196 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tap4j.model.TestSet;
+import org.tap4j.parser.Parser;
+import org.tap4j.parser.Tap13Parser;
+
+/**
+ * Tests for {@link TapBatchConsumer}.
+ *
+ * @since 4.2.1
+ */
+public class TestTapBatchConsumer {
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("tap4j", "batch");
+        directory.delete();
+        directory.mkdir();
+        write("a.tap", "1..3\nok 1\nnot ok 2\nok 3 # SKIP no network\n");
+        write("b.tap", "1..2\nok 1\nnot ok 2 # TODO later\n");
+        write("sub/c.tap", "1..3\nok 1\nBail out! broken\n");
+        write("sub/deeper/d.tap", "ok 1\n");
+        write("sub/e.txt", "1..1\nok 1\n");
+    }
+
+    @After
+    public void tearDown() {
+        delete(directory);
+    }
+
+    @Test
+    public void testLoadDirectory() {
+        final Recorder recorder = new Recorder();
+        final TapBatchTotals totals = new TapBatchConsumer().load(directory, recorder);
+        assertEquals(Arrays.asList("a.tap", "b.tap", "c.tap", "d.tap"), recorder.sortedNames());
+        assertEquals(1, recorder.errors.size());
+        assertTrue(recorder.errors.containsKey("d.tap"));
+
+        assertEquals(4, totals.getNumberOfFiles());
+        assertEquals(1, totals.getNumberOfErrors());
+        assertEquals(6, totals.getNumberOfTestResults());
+        assertEquals(3, totals.getPassed());
+        assertEquals(1, totals.getFailed());
+        assertEquals(1, totals.getSkipped());
+        assertEquals(1, totals.getTodo());
+        assertEquals(1, totals.getBailOuts());
+        assertEquals(1, totals.getPlanMismatches());
+        assertFalse(totals.isSuccessful());
+    }
+
+    @Test
+    public void testLoadGlobWithExecutor() {
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final Recorder recorder = new Recorder();
+            final TapBatchConsumer consumer = new TapBatchConsumer(executor) {
+                @Override
+                protected Parser createParser() {
+                    return new Tap13Parser("UTF-8", true, false);
+                }
+            };
+            final TapBatchTotals totals = consumer.load(directory, "sub/**", recorder);
+            assertEquals(Arrays.asList("c.tap", "d.tap", "e.txt"), recorder.sortedNames());
+            assertTrue(recorder.errors.isEmpty());
+            assertEquals(3, totals.getNumberOfFiles());
+            assertEquals(3, totals.getNumberOfTestResults());
+            assertFalse(executor.isShutdown());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testLoadNothing() {
+        final TapBatchTotals totals = new TapBatchConsumer().load(new ArrayList<File>(), null);
+        assertEquals(0, totals.getNumberOfFiles());
+        assertTrue(totals.isSuccessful());
+    }
+
+    @Test(expected = TapConsumerException.class)
+    public void testMissingDirectory() {
+        new TapBatchConsumer().load(new File(directory, "missing"), null);
+    }
+
+    @Test
+    public void testGlob() {
+        assertTrue(TapBatchConsumer.toPattern("**/*.tap").matcher("a.tap").matches());
+        assertTrue(TapBatchConsumer.toPattern("**/*.tap").matcher("x/y/a.tap").matches());
+        assertFalse(TapBatchConsumer.toPattern("*.tap").matcher("x/a.tap").matches());
+        assertTrue(TapBatchConsumer.toPattern("x/?.tap").matcher("x/a.tap").matches());
+        assertFalse(TapBatchConsumer.toPattern("x/?.tap").matcher("x/ab.tap").matches());
+        assertTrue(TapBatchConsumer.toPattern("x**").matcher("x/y/z").matches());
+        assertFalse(TapBatchConsumer.toPattern("a.tap").matcher("abtap").matches());
+    }
+
+    private void write(String path, String content) throws IOException {
+        final File file = new File(directory, path);
+        file.getParentFile().mkdirs();
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void delete(File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * Records the files received, checking that it is called by one thread.
+     */
+    private static final class Recorder implements TapBatchListener {
+
+        private final Thread thread = Thread.currentThread();
+
+        private final Map<String, TestSet> testSets = new HashMap<String, TestSet>();
+
+        private final Map<String, TapConsumerException> errors = new HashMap<String, TapConsumerException>();
+
+        private final List<String> names = new ArrayList<String>();
+
+        @Override
+        public void onTestSet(File file, TestSet testSet) {
+            assertEquals(thread, Thread.currentThread());
+            testSets.put(file.getName(), testSet);
+            names.add(file.getName());
+        }
+
+        @Override
+        public void onError(File file, TapConsumerException error) {
+            assertEquals(thread, Thread.currentThread());
+            errors.put(file.getName(), error);
+            names.add(file.getName());
+        }
+
+        List<String> sortedNames() {
+            final List<String> sorted = new ArrayList<String>(names);
+            Collections.sort(sorted);
+            return sorted;
+        }
+
+    }
+
+}
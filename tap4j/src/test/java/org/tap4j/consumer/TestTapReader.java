@@ -0,0 +1,155 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.tap4j.BaseTapTest;
+import org.tap4j.model.BailOut;
+import org.tap4j.model.Comment;
+import org.tap4j.model.Footer;
+import org.tap4j.model.Plan;
+import org.tap4j.model.TapElement;
+import org.tap4j.model.TestResult;
+import org.tap4j.model.TestSet;
+import org.tap4j.parser.Tap13Parser;
+
+/**
+ * Tests for {@link TapReader}.
+ *
+ * @since 4.2.1
+ */
+public class TestTapReader extends BaseTapTest {
+
+    private static final String[] FILES = {
+        "/org/tap4j/consumer/tap_with_yaml_comments_bailout_directives.tap",
+        "/org/tap4j/consumer/issue3311330/fala.tap",
+        "/org/tap4j/parser/issueGitHub12/issue-12-tap-stream.tap",
+        "/org/tap4j/parser/issueGitHub15/issue-15-tap-stream.tap",
+        "/org/tap4j/parser/issueGitHub17/issue-17-tap-stream.tap",
+        "/org/tap4j/parser/issueYaml/jsdom_test_result.tap"
+    };
+
+    @Test
+    public void testElements() {
+        TapReader reader = new TapReader(new Tap13Parser(), getFile(FILES[0]));
+        List<TapElement> elements = new ArrayList<TapElement>();
+        while (reader.hasNext()) {
+            elements.add(reader.next());
+        }
+        assertEquals(7, elements.size());
+        assertTrue(elements.get(0) instanceof Plan);
+        assertEquals("Bruno", elements.get(1).getDiagnostic().get("name"));
+        assertTrue(elements.get(3) instanceof Comment);
+        assertEquals(1, ((TestResult) elements.get(2)).getComments().size());
+        assertTrue(elements.get(4) instanceof BailOut);
+        assertTrue(elements.get(6) instanceof Footer);
+        assertEquals(3, reader.getPlan().getLastTestNumber().intValue());
+    }
+
+    @Test
+    public void testSameAsTestSet() {
+        for (String name : FILES) {
+            Tap13Parser parser = new Tap13Parser("UTF-8", true, false, true);
+            TestSet testSet = parser.parseFile(getFile(name));
+            TapReader reader = new TapReader(parser, getFile(name));
+            List<TestResult> testResults = new ArrayList<TestResult>();
+            for (TestResult testResult : reader.testResults()) {
+                testResults.add(testResult);
+            }
+            assertEquals(name, testSet.getNumberOfTestResults(), testResults.size());
+            for (int i = 0; i < testResults.size(); i++) {
+                TestResult expected = testSet.getTestResults().get(i);
+                TestResult actual = testResults.get(i);
+                assertEquals(name, expected.getTestNumber(), actual.getTestNumber());
+                assertEquals(name, expected.getDescription(), actual.getDescription());
+                assertEquals(name, expected.getDiagnostic(), actual.getDiagnostic());
+                assertEquals(name, expected.getComments().size(), actual.getComments().size());
+                assertEquals(name, expected.getSubtest() == null, actual.getSubtest() == null);
+                if (expected.getSubtest() != null) {
+                    assertEquals(name, expected.getSubtest().getNumberOfTapLines(),
+                            actual.getSubtest().getNumberOfTapLines());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testIncremental() {
+        final StringBuilder tap = new StringBuilder("1..100000\n");
+        for (int i = 1; i <= 100000; i++) {
+            tap.append("ok ").append(i).append('\n');
+        }
+        final int[] read = new int[1];
+        Readable readable = new Readable() {
+            private final CharBuffer source = CharBuffer.wrap(tap);
+            public int read(CharBuffer cb) throws IOException {
+                if (!source.hasRemaining()) {
+                    return -1;
+                }
+                int n = Math.min(cb.remaining(), source.remaining());
+                CharBuffer slice = source.slice();
+                slice.limit(n);
+                cb.put(slice);
+                source.position(source.position() + n);
+                read[0] += n;
+                return n;
+            }
+        };
+        TapReader reader = new TapReader(readable);
+        TestResult first = reader.nextTestResult();
+        assertEquals(1, first.getTestNumber().intValue());
+        assertTrue(read[0] < tap.length());
+        int count = 1;
+        while (reader.nextTestResult() != null) {
+            count++;
+        }
+        assertEquals(100000, count);
+        assertFalse(reader.hasNext());
+        assertNull(reader.nextTestResult());
+    }
+
+    @Test(expected = TapConsumerException.class)
+    public void testMissingPlan() {
+        TapReader reader = new TapReader(CharBuffer.wrap("ok 1\nok 2"));
+        while (reader.hasNext()) {
+            reader.next();
+        }
+    }
+
+    private File getFile(String name) {
+        return new File(getClass().getResource(name).getFile());
+    }
+
+}
@@ -0,0 +1,171 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+
+import org.junit.Test;
+import org.tap4j.BaseTapTest;
+
+/**
+ * Tests for {@link TapElementTokenizer}. Every line must be tokenized exactly
+ * as {@link TapElementFactory} does.
+ *
+ * @since 4.2.1
+ */
+public class TapElementTokenizerTest extends BaseTapTest {
+
+    /**
+     * Lines exercising the corner cases of the regular expressions.
+     */
+    private static final String[] LINES = {
+        "", " ", "\t", "\u000B\f ", "foo", "  foo bar", "o", "n", "not", "not  ok", "okay", "nothing",
+        "#", "#bummer", "  #one two", "#   ", "# a # b",
+        "TAP version 13", "TAP version 13 #commented", "    TAP version 12", "TAPversion13", "TAP version",
+        "TAP version 13 foo", "TAP version 13 #", "TAP version 99999999999 foo", "TAP", "TAP ", "TAP done.",
+        "  TAP done.", "    TAP done.# hopefully", "TAP end # a comment", "TAPS are great", "T", "Tap",
+        "1..2", "  1..0", "  1..0 # bummer", "   12..50 # SKIP to avoid failures", "1..0 # SKIP", "1..0 # SKIP   ",
+        "1..0 # SKIP#x", "1..5 # skipped tests", "1..0 # SKIP reason # comment", "1..2 #", "1..2 # Skip it",
+        "1..2x", "1..2 x", "1...2", "1..", "1", "1..2   ", "1..0 #skip\treason\t#\tcomment\t",
+        "Bail out!", "    Bail out!", "  Bail out! Now!", "Bail out!   ", "Bail out!   #c", "Bail out! Now! ",
+        "Bail out! why # because", "Bail", "Bail out",
+        "ok", "ok 365", " not ok 42", "  ok 15 #SKIP", "  ok 15 #TODO fixme", "  ok 22 bummer", "   ok 33 #comment",
+        "ok 1 - desc # SKIP", "ok 1 # SKIPPED", "ok 1 #skip", "ok 12abc", "ok abc", "ok   desc", "ok - foo",
+        "ok 1 2 desc", "ok1", "ok 1 ", "ok 1 #", "ok 1 # a comment", "ok 1 # TODO # SKIP",
+        "ok 1 desc # SKIP reason # comment", "not ok 2 - failed # todo not yet\t", "ok 3 # Todo capital",
+        "not ok 4 # TODO", "\tnot ok\t5\t-\tdesc\t#\tSKIP\twhy\t#\tc\t", "ok 6 # # #", "ok 7 \u001B[?25l",
+        "line with\u2028separator", "ok 1 - line\u0085next", "# comment\rreturn"
+    };
+
+    /**
+     * Test the corner cases.
+     */
+    @Test
+    public void testCornerCases() {
+        for (String line : LINES) {
+            assertSameElements(line);
+        }
+    }
+
+    /**
+     * Test every line in the TAP streams used by the other tests.
+     *
+     * @throws IOException if a stream cannot be read
+     */
+    @Test
+    public void testCorpus() throws IOException {
+        List<File> files = new ArrayList<File>();
+        listTapFiles(new File(getClass().getResource("/org/tap4j").getFile()), files);
+        assertTrue(files.size() > 0);
+        for (File file : files) {
+            Scanner scanner = new Scanner(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            try {
+                while (scanner.hasNextLine()) {
+                    assertSameElements(scanner.nextLine());
+                }
+            } finally {
+                scanner.close();
+            }
+        }
+    }
+
+    /**
+     * Test that a number too large for an int fails the same way.
+     */
+    @Test(expected = NumberFormatException.class)
+    public void testNumberOverflow() {
+        TapElementTokenizer.createTapElement("ok 99999999999");
+    }
+
+    /**
+     * @param line TAP stream line
+     */
+    private void assertSameElements(String line) {
+        assertEquals(line, describe(TapElementFactory.createTapElement(line)),
+                describe(TapElementTokenizer.createTapElement(line)));
+        assertEquals(line, describe(TapElementFactory.createTextElement(line)),
+                describe(TapElementTokenizer.createTextElement(line)));
+    }
+
+    /**
+     * @param element TAP element
+     * @return a description of every field of the element
+     */
+    private String describe(TapElement element) {
+        if (element == null) {
+            return "null";
+        }
+        StringBuilder sb = new StringBuilder(element.getClass().getSimpleName());
+        sb.append('|').append(element.getIndentation());
+        sb.append('|').append(describe(element.getComment()));
+        if (element instanceof Header) {
+            sb.append('|').append(((Header) element).getVersion());
+        } else if (element instanceof Footer) {
+            sb.append('|').append(((Footer) element).getText());
+        } else if (element instanceof Plan) {
+            Plan plan = (Plan) element;
+            sb.append('|').append(plan.getInitialTestNumber()).append('|').append(plan.getLastTestNumber());
+            sb.append('|').append(plan.getSkip() == null ? "-" : "[" + plan.getSkip().getReason() + "]");
+        } else if (element instanceof BailOut) {
+            sb.append('|').append(((BailOut) element).getReason());
+        } else if (element instanceof TestResult) {
+            TestResult testResult = (TestResult) element;
+            sb.append('|').append(testResult.getStatus()).append('|').append(testResult.getTestNumber());
+            sb.append("|[").append(testResult.getDescription()).append(']');
+            Directive directive = testResult.getDirective();
+            if (directive != null) {
+                sb.append('|').append(directive.getDirectiveValue()).append("|[").append(directive.getReason())
+                        .append(']');
+            }
+            for (Comment comment : testResult.getComments()) {
+                sb.append('|').append(describe(comment));
+            }
+        } else if (element instanceof Text) {
+            Text text = (Text) element;
+            sb.append("|[").append(text.getValue()).append("]|[").append(text.getIndentationString()).append(']');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @param comment comment
+     * @return a description of the comment
+     */
+    private String describe(Comment comment) {
+        if (comment == null) {
+            return "-";
+        }
+        return "[" + comment.getText() + "]" + comment.isInline() + comment.getIndentation();
+    }
+
+}
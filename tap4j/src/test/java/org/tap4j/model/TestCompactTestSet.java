@@ -0,0 +1,239 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.tap4j.BaseTapTest;
+import org.tap4j.parser.CompactTestSetBuilder;
+import org.tap4j.parser.ParserException;
+import org.tap4j.parser.Tap13Parser;
+import org.tap4j.representer.Tap13Representer;
+import org.tap4j.representer.TapJunitRepresenter;
+import org.tap4j.util.DirectiveValues;
+import org.tap4j.util.StatusValues;
+
+/**
+ * Tests for {@link CompactTestSet}.
+ *
+ * @since 4.2.1
+ */
+public class TestCompactTestSet extends BaseTapTest {
+
+    @Test
+    public void testColumns() {
+        final CompactTestSet testSet = new CompactTestSet();
+        testSet.setPlan(new Plan(4));
+        final Comment comment = new Comment("Starting tests...");
+        testSet.addComment(comment);
+        final TestResult ok = new TestResult(StatusValues.OK, null);
+        ok.setDescription("same description");
+        testSet.addTestResult(ok);
+        final TestResult skipped = new TestResult(StatusValues.NOT_OK, null);
+        skipped.setDescription("same description");
+        skipped.setDirective(new Directive(DirectiveValues.SKIP, "no db"));
+        testSet.addTestResult(skipped);
+        final BailOut bailOut = new BailOut("Uck!");
+        testSet.addBailOut(bailOut);
+        final TestResult withDiagnostic = new TestResult(StatusValues.NOT_OK, 3);
+        withDiagnostic.getDiagnostic().put("message", "failed");
+        testSet.addTestResult(withDiagnostic);
+
+        assertEquals(3, testSet.getNumberOfTestResults());
+        assertEquals(5, testSet.getNumberOfTapLines());
+        assertEquals(4, testSet.getNextTestNumber());
+        assertEquals(2, testSet.getNumberOfStrings());
+        assertEquals(Integer.valueOf(1), ok.getTestNumber());
+
+        final List<TapElement> tapLines = testSet.getTapLines();
+        assertEquals(5, tapLines.size());
+        assertSame(comment, tapLines.get(0));
+        assertSame(bailOut, tapLines.get(3));
+        assertSame(withDiagnostic, tapLines.get(4));
+
+        final TestResult view = (TestResult) tapLines.get(2);
+        assertNotSame(skipped, view);
+        assertEquals(StatusValues.NOT_OK, view.getStatus());
+        assertEquals(Integer.valueOf(2), view.getTestNumber());
+        assertEquals("same description", view.getDescription());
+        assertEquals(DirectiveValues.SKIP, view.getDirective().getDirectiveValue());
+        assertEquals("no db", view.getDirective().getReason());
+        assertNull(testSet.getTestResult(1).getDirective());
+        assertSame(withDiagnostic, testSet.getTestResult(3));
+        assertNull(testSet.getTestResult(4));
+
+        final TestSetSummary summary = testSet.getSummary();
+        assertEquals(1, summary.getPassed());
+        assertEquals(1, summary.getFailed());
+        assertEquals(1, summary.getSkipped());
+        assertTrue(summary.isPlanMismatch());
+        assertTrue(testSet.containsOk());
+        assertTrue(testSet.containsNotOk());
+        assertTrue(testSet.hasBailOut());
+
+        testSet.trimToSize();
+        testSet.addTestResult(new TestResult(StatusValues.OK, 4));
+        assertEquals(Integer.valueOf(4), testSet.getTestResult(4).getTestNumber());
+        assertFalse(testSet.getSummary().isPlanMismatch());
+    }
+
+    /**
+     * Test that the summary follows the Test Results kept as they are and
+     * changed after they were compacted.
+     */
+    @Test
+    public void testTestResultChangedAfterAdded() {
+        final CompactTestSet testSet = new CompactTestSet();
+        final TestResult tr = new TestResult(StatusValues.OK, 1);
+        tr.addComment(new Comment("kept"));
+        testSet.addTestResult(tr);
+        testSet.addTestResult(new TestResult(StatusValues.OK, 2));
+        assertEquals(2, testSet.getSummary().getPassed());
+        tr.setStatus(StatusValues.NOT_OK);
+        assertEquals(1, testSet.getSummary().getPassed());
+        assertEquals(1, testSet.getSummary().getFailed());
+        assertTrue(testSet.containsNotOk());
+        assertEquals(StatusValues.NOT_OK, testSet.getTestResult(1).getStatus());
+    }
+
+    @Test
+    public void testNonSequentialNumbers() {
+        final CompactTestSet testSet = new CompactTestSet();
+        testSet.addTestResult(new TestResult(StatusValues.OK, 2));
+        testSet.addTestResult(new TestResult(StatusValues.NOT_OK, 1));
+        testSet.addTestResult(new TestResult(StatusValues.NOT_OK, 2));
+        assertEquals(StatusValues.NOT_OK, testSet.getTestResult(1).getStatus());
+        assertEquals(StatusValues.OK, testSet.getTestResult(2).getStatus());
+        assertNull(testSet.getTestResult(3));
+    }
+
+    @Test
+    public void testAppendOnly() {
+        final CompactTestSet testSet = new CompactTestSet();
+        final TestResult tr = new TestResult(StatusValues.OK, 1);
+        testSet.addTestResult(tr);
+        try {
+            testSet.removeTestResult(tr);
+            fail("Not supposed to get here");
+        } catch (UnsupportedOperationException expected) {
+            assertEquals(1, testSet.getNumberOfTestResults());
+        }
+        try {
+            testSet.getTestResults().clear();
+            fail("Not supposed to get here");
+        } catch (UnsupportedOperationException expected) {
+            assertEquals(1, testSet.getNumberOfTestResults());
+        }
+    }
+
+    /**
+     * Test that the TAP files used by the other tests are represented the
+     * same way from a compact copy.
+     */
+    @Test
+    public void testCorpus() {
+        final List<File> files = new ArrayList<File>();
+        listTapFiles(new File(getClass().getResource("/org/tap4j").getFile()), files);
+        assertTrue(files.size() > 0);
+        for (File file : files) {
+            final TestSet testSet;
+            try {
+                testSet = new Tap13Parser("UTF-8", true, false, true).parseFile(file);
+            } catch (ParserException e) {
+                continue;
+            }
+            final CompactTestSet compact = new CompactTestSet(testSet);
+            assertEquals(file.getName(), new Tap13Representer().representData(testSet),
+                    new Tap13Representer().representData(compact));
+            assertEquals(file.getName(), new TapJunitRepresenter("corpus").representData(testSet),
+                    new TapJunitRepresenter("corpus").representData(compact));
+            assertEquals(file.getName(), testSet.getNumberOfTapLines(), compact.getNumberOfTapLines());
+            final CompactTestSetBuilder builder = new CompactTestSetBuilder();
+            new Tap13Parser("UTF-8", true, false, true).parseFile(file, builder);
+            assertEquals(file.getName(), new Tap13Representer().representData(testSet),
+                    new Tap13Representer().representData(builder.getTestSet()));
+        }
+    }
+
+    @Test
+    public void testLastTestResultKeptUntilNextTapLine() {
+        final CompactTestSet testSet = new CompactTestSet();
+        final TestResult first = new TestResult(StatusValues.OK, 1);
+        testSet.addTestResult(first);
+        first.getDiagnostic().put("message", "attached later");
+        first.addComment(new Comment("attached later"));
+        final TestResult second = new TestResult(StatusValues.OK, 2);
+        testSet.addTestResult(second);
+        assertSame(second, testSet.getTestResult(2));
+        testSet.addBailOut(new BailOut("next line"));
+        assertSame(first, testSet.getTestResult(1));
+        assertNotSame(second, testSet.getTestResult(2));
+        assertEquals(Integer.valueOf(2), testSet.getTestResult(2).getTestNumber());
+        final TestResult third = new TestResult(StatusValues.NOT_OK, 3);
+        testSet.addTestResult(third);
+        third.setDirective(new Directive(DirectiveValues.TODO, "later"));
+        testSet.trimToSize();
+        assertNotSame(third, testSet.getTestResult(3));
+        assertEquals("later", testSet.getTestResult(3).getDirective().getReason());
+        assertEquals(1, testSet.getSummary().getTodo());
+        assertEquals(0, testSet.getSummary().getFailed());
+    }
+
+    @Test
+    public void testParseIntoCompactTestSet() {
+        final String tap = "TAP version 13\n"
+                + "1..3\n"
+                + "ok 1 - first\n"
+                + "  ---\n"
+                + "  message: hello\n"
+                + "  ...\n"
+                + "not ok 2 - second\n"
+                + "# a comment\n"
+                + "    1..1\n"
+                + "    ok 1 - subtest\n"
+                + "ok 3 - third\n";
+        final CompactTestSetBuilder builder = new CompactTestSetBuilder();
+        new Tap13Parser().parseTapStream(tap, builder);
+        final TestSet testSet = builder.getTestSet();
+        assertTrue(testSet instanceof CompactTestSet);
+        assertEquals(3, testSet.getNumberOfTestResults());
+        assertEquals("hello", testSet.getTestResult(1).getDiagnostic().get("message"));
+        assertEquals(1, testSet.getTestResult(2).getComments().size());
+        assertEquals(1, testSet.getTestResult(2).getSubtest().getNumberOfTestResults());
+        assertEquals(new Tap13Representer().representData(new Tap13Parser().parseTapStream(tap)),
+                new Tap13Representer().representData(testSet));
+    }
+
+}
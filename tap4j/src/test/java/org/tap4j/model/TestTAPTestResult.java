@@ -24,10 +24,17 @@
 package org.tap4j.model;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.Collections;
 
 import org.junit.Before;
@@ -101,4 +108,44 @@ public class TestTAPTestResult {
         assertTrue(okTestResult.getComments().size() == 0);
     }
 
+    @Test
+    public void testEmptyDiagnosticAndComments() {
+        assertFalse(okTestResult.hasDiagnostic());
+        assertFalse(okTestResult.hasComments());
+        assertTrue(okTestResultSkip.hasComments());
+        assertTrue(okTestResult.getDiagnostic().isEmpty());
+        assertSame(okTestResult.getDiagnostic(), okTestResult.getDiagnostic());
+        okTestResult.getDiagnostic().put("message", "failed");
+        assertTrue(okTestResult.hasDiagnostic());
+        assertEquals("failed", okTestResult.getDiagnostic().get("message"));
+        okTestResult.getComments().add(new Comment("added later"));
+        assertTrue(okTestResult.hasComments());
+        assertEquals(1, okTestResult.getComments().size());
+        notOkTestResult.addComment(new Comment("added later"));
+        assertEquals(1, notOkTestResult.getComments().size());
+        notOkTestResult.setDiagnostic(null);
+        notOkTestResult.setComments(null);
+        assertNull(notOkTestResult.getDiagnostic());
+        assertNull(notOkTestResult.getComments());
+        assertFalse(notOkTestResult.hasDiagnostic());
+        assertFalse(notOkTestResult.hasComments());
+    }
+
+    @Test
+    public void testSerializeEmptyDiagnosticAndComments()
+            throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(baos);
+        oos.writeObject(okTestResult);
+        oos.close();
+        ObjectInputStream ois = new ObjectInputStream(
+                new ByteArrayInputStream(baos.toByteArray()));
+        TestResult copy = (TestResult) ois.readObject();
+        assertFalse(copy.hasDiagnostic());
+        copy.getDiagnostic().put("message", "failed");
+        copy.addComment(new Comment("added later"));
+        assertEquals(1, copy.getDiagnostic().size());
+        assertEquals(1, copy.getComments().size());
+    }
+
 }
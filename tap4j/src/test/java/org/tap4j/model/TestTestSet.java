@@ -23,13 +23,28 @@
  */
 package org.tap4j.model;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
 import org.junit.Before;
 import org.junit.Test;
+import org.tap4j.parser.Tap13Parser;
+import org.tap4j.util.DirectiveValues;
 import org.tap4j.util.StatusValues;
 
 /**
@@ -161,4 +176,205 @@ public class TestTestSet {
         assertNull(testSet.getTestResult(1));
     }
 
+    @Test
+    public void testGetTestResultByNumber() {
+        final TestSet testSet = new TestSet();
+        final TestResult[] testResults = new TestResult[1000];
+        for (int i = 0; i < testResults.length; i++) {
+            testResults[i] = new TestResult(StatusValues.OK, i + 1);
+            testSet.addTestResult(testResults[i]);
+        }
+        final TestResult sparse = new TestResult(StatusValues.OK, 1000000);
+        testSet.addTestResult(sparse);
+        for (int i = 0; i < testResults.length; i++) {
+            assertSame(testResults[i], testSet.getTestResult(i + 1));
+        }
+        assertSame(sparse, testSet.getTestResult(1000000));
+        assertNull(testSet.getTestResult(1001));
+        assertNull(testSet.getTestResult(0));
+        assertNull(testSet.getTestResult(null));
+
+        final TestResult next = new TestResult(StatusValues.OK, 1001);
+        testSet.addTestResult(next);
+        assertSame(next, testSet.getTestResult(1001));
+        assertTrue(testSet.removeTestResult(testResults[499]));
+        assertNull(testSet.getTestResult(500));
+        assertSame(testResults[500], testSet.getTestResult(501));
+        assertEquals(1001, testSet.getNumberOfTestResults());
+    }
+
+    @Test
+    public void testGetTestResultWithDuplicateNumbers() {
+        final TestSet testSet = new TestSet();
+        final TestResult first = new TestResult(StatusValues.OK, 1);
+        final TestResult second = new TestResult(StatusValues.NOT_OK, 1);
+        testSet.addTestResult(first);
+        testSet.addTestResult(second);
+        assertSame(first, testSet.getTestResult(1));
+        testSet.removeTestResult(first);
+        assertSame(second, testSet.getTestResult(1));
+        testSet.getTestResults().add(0, first);
+        assertSame(first, testSet.getTestResult(1));
+    }
+
+    @Test
+    public void testGetTestResultAfterChangingTheList() {
+        final TestSet testSet = new TestSet();
+        final TestResult tr = new TestResult(StatusValues.OK, 1);
+        testSet.addTestResult(tr);
+        assertSame(tr, testSet.getTestResult(1));
+        final TestResult other = new TestResult(StatusValues.OK, 2);
+        testSet.getTestResults().add(other);
+        assertSame(other, testSet.getTestResult(2));
+        final Iterator<TestResult> it = testSet.getTestResults().iterator();
+        it.next();
+        it.remove();
+        assertNull(testSet.getTestResult(1));
+        testSet.getTestResults().set(0, tr);
+        assertNull(testSet.getTestResult(2));
+        assertSame(tr, testSet.getTestResult(1));
+        tr.setTestNumber(3);
+        assertNull(testSet.getTestResult(1));
+        assertSame(tr, testSet.getTestResult(3));
+        testSet.getTestResults().clear();
+        assertNull(testSet.getTestResult(3));
+        testSet.trimToSize();
+        assertEquals(0, testSet.getNumberOfTestResults());
+    }
+
+    @Test
+    public void testRenumberedTestResult() {
+        final TestResult tr2 = new TestResult(StatusValues.OK, 2);
+        testSet.addTestResult(tr2);
+        assertSame(tr2, testSet.getTestResult(2));
+        tr2.setTestNumber(5);
+        assertSame(tr2, testSet.getTestResult(5));
+        assertNull(testSet.getTestResult(2));
+        tr1.setTestNumber(7);
+        assertSame(tr1, testSet.getTestResult(7));
+        assertNull(testSet.getTestResult(1));
+        assertSame(tr2, testSet.getTestResult(5));
+    }
+
+    /**
+     * Test that the counters follow the Test Results changed after they
+     * were added.
+     */
+    @Test
+    public void testTestResultChangedAfterAdded() {
+        final TestSet changed = new TestSet();
+        final TestResult tr = new TestResult(StatusValues.OK, 1);
+        changed.addTestResult(tr);
+        assertTrue(changed.containsOk());
+        tr.setStatus(StatusValues.NOT_OK);
+        assertFalse(changed.containsOk());
+        assertTrue(changed.containsNotOk());
+        tr.setDirective(new Directive(DirectiveValues.TODO, "later"));
+        assertEquals(1, changed.getSummary().getTodo());
+        assertEquals(0, changed.getSummary().getFailed());
+        tr.setStatus(StatusValues.OK);
+        changed.removeTestResult(tr);
+        assertFalse(changed.containsOk());
+        assertFalse(changed.containsNotOk());
+        assertEquals(0, changed.getSummary().getCount(StatusValues.NOT_OK, null));
+        assertEquals(0, changed.getSummary().getCount(StatusValues.OK, DirectiveValues.TODO));
+        changed.addTestResult(tr);
+        assertEquals(1, changed.getSummary().getCount(StatusValues.OK, DirectiveValues.TODO));
+    }
+
+    @Test
+    public void testSerialization() throws IOException, ClassNotFoundException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final ObjectOutputStream oos = new ObjectOutputStream(baos);
+        oos.writeObject(testSet);
+        oos.close();
+        final TestSet copy = read(new ByteArrayInputStream(baos.toByteArray()));
+        assertEquals(testSet.getNumberOfTapLines(), copy.getNumberOfTapLines());
+        assertEquals(1, copy.getNumberOfTestResults());
+        assertSame(copy.getTestResults().get(0), copy.getTestResult(1));
+        assertSame(copy.getBailOuts().get(0), copy.getTapLines().get(3));
+        assertTrue(copy.hasBailOut());
+        assertEquals(1, copy.getSummary().getPassed());
+        copy.addTestResult(new TestResult(StatusValues.NOT_OK, 2));
+        assertEquals(1, copy.getSummary().getFailed());
+    }
+
+    /**
+     * Test that Test Sets serialized when they were backed by linked lists
+     * can still be read, with their counters.
+     */
+    @Test
+    public void testDeserializeLinkedListForm() throws IOException,
+            ClassNotFoundException {
+        final TestSet copy = read(getClass().getResourceAsStream(
+                "/org/tap4j/model/linked-list-testset.ser"));
+        assertEquals(13, copy.getHeader().getVersion().intValue());
+        assertEquals(3, copy.getNumberOfTestResults());
+        assertEquals(5, copy.getNumberOfTapLines());
+        assertEquals(1, copy.getNumberOfComments());
+        assertEquals("failed", copy.getTestResult(2).getDiagnostic().get("message"));
+        assertSame(copy.getTestResults().get(2), copy.getTestResult(3));
+        assertTrue(copy.hasBailOut());
+        assertEquals(1, copy.getSummary().getPassed());
+        assertEquals(1, copy.getSummary().getFailed());
+        assertEquals(1, copy.getSummary().getSkipped());
+        assertFalse(copy.getSummary().isPlanMismatch());
+    }
+
+    /**
+     * Test that Test Sets serialized by this version only hold classes that
+     * the previous versions have: the JDK ones and the model ones.
+     */
+    @Test
+    public void testSerializedWithKnownClasses() throws IOException,
+            ClassNotFoundException {
+        final Tap13Parser parser = new Tap13Parser();
+        parser.setLazyDiagnostics(true);
+        final TestSet parsed = parser.parseTapStream("1..3\nok 1\nnot ok 2\n"
+                + "  ---\n  message: failed\n  ...\n# comment\nok 3\n");
+        parsed.getTestResult(2).getComments().clear();
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final ObjectOutputStream oos = new ObjectOutputStream(baos);
+        oos.writeObject(parsed);
+        oos.close();
+        final List<String> known = Arrays.asList("BailOut", "Comment",
+                "Directive", "Footer", "Header", "Plan", "SkipPlan",
+                "TapElement", "TapResult", "TestResult", "TestSet", "Text",
+                "DirectiveValues", "StatusValues");
+        final ObjectInputStream ois = new ObjectInputStream(
+                new ByteArrayInputStream(baos.toByteArray())) {
+            @Override
+            protected Class<?> resolveClass(ObjectStreamClass desc)
+                    throws IOException, ClassNotFoundException {
+                final String name = desc.getName();
+                if (!name.startsWith("java.") && !name.startsWith("[")
+                        && !known.contains(name.substring(name.lastIndexOf('.') + 1))) {
+                    throw new ClassNotFoundException(name);
+                }
+                return super.resolveClass(desc);
+            }
+        };
+        final TestSet copy;
+        try {
+            copy = (TestSet) ois.readObject();
+        } finally {
+            ois.close();
+        }
+        assertEquals(3, copy.getNumberOfTestResults());
+        assertEquals("failed", copy.getTestResult(2).getDiagnostic().get("message"));
+        assertFalse(copy.getTestResult(1).hasDiagnostic());
+        assertFalse(copy.getTestResult(1).hasComments());
+        assertEquals(1, copy.getNumberOfComments());
+    }
+
+    private static TestSet read(InputStream input) throws IOException,
+            ClassNotFoundException {
+        final ObjectInputStream ois = new ObjectInputStream(input);
+        try {
+            return (TestSet) ois.readObject();
+        } finally {
+            ois.close();
+        }
+    }
+
 }
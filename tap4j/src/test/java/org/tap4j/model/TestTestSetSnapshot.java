@@ -0,0 +1,260 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.tap4j.util.StatusValues;
+
+/**
+ * Tests for {@link TestSet#freeze()} and {@link TestSetSnapshot}.
+ *
+ * @since 4.2.1
+ */
+public class TestTestSetSnapshot {
+
+    @Test
+    public void testSnapshotIsNotChangedByTheTestSet() {
+        final TestSet testSet = new TestSet();
+        testSet.setPlan(new Plan(3));
+        final TestResult tr1 = new TestResult(StatusValues.OK, 1);
+        final TestResult tr2 = new TestResult(StatusValues.NOT_OK, 2);
+        testSet.addTestResult(tr1);
+        testSet.addTestResult(tr2);
+        final Comment comment = new Comment("a comment");
+        testSet.addComment(comment);
+
+        final TestSetSnapshot snapshot = testSet.freeze();
+        testSet.addTestResult(new TestResult(StatusValues.OK, 3));
+        testSet.addBailOut(new BailOut("Uck!"));
+        testSet.removeTestResult(tr1);
+        testSet.getTestResults().set(0, tr1);
+        testSet.removeComment(comment);
+        testSet.setPlan(new Plan(4));
+
+        assertEquals(2, snapshot.getNumberOfTestResults());
+        assertEquals(3, snapshot.getNumberOfTapLines());
+        assertEquals(1, snapshot.getNumberOfComments());
+        assertEquals(0, snapshot.getNumberOfBailOuts());
+        assertSame(tr1, snapshot.getTestResults().get(0));
+        assertSame(tr2, snapshot.getTestResults().get(1));
+        assertSame(comment, snapshot.getTapLines().get(2));
+        assertSame(tr2, snapshot.getTestResult(2));
+        assertNull(snapshot.getTestResult(3));
+        assertEquals(Integer.valueOf(3), snapshot.getPlan().getLastTestNumber());
+        assertFalse(snapshot.hasBailOut());
+        assertFalse(snapshot.containsBailOut());
+        assertTrue(snapshot.containsOk());
+        assertTrue(snapshot.containsNotOk());
+        assertEquals(1, snapshot.getSummary().getPassed());
+        assertTrue(snapshot.getSummary().isPlanMismatch());
+
+        assertTrue(testSet.hasBailOut());
+        assertEquals(2, testSet.getNumberOfTestResults());
+        assertSame(tr1, testSet.getTestResults().get(0));
+    }
+
+    @Test
+    public void testSnapshotIsImmutable() {
+        final TestSet testSet = new TestSet();
+        testSet.addTestResult(new TestResult(StatusValues.OK, 1));
+        final TestSetSnapshot snapshot = testSet.freeze();
+        try {
+            snapshot.getTestResults().add(new TestResult(StatusValues.OK, 2));
+            fail("Not supposed to get here");
+        } catch (UnsupportedOperationException expected) {
+            assertEquals(1, snapshot.getNumberOfTestResults());
+        }
+        try {
+            snapshot.getTapLines().clear();
+            fail("Not supposed to get here");
+        } catch (UnsupportedOperationException expected) {
+            assertEquals(1, snapshot.getNumberOfTapLines());
+        }
+        assertTrue(new TestSet().freeze().getTestResults().isEmpty());
+    }
+
+    @Test
+    public void testCompactTestSetSnapshot() {
+        final CompactTestSet testSet = new CompactTestSet();
+        final Comment comment = new Comment("first");
+        testSet.addComment(comment);
+        testSet.addTestResult(new TestResult(StatusValues.OK, 1));
+        final BailOut bailOut = new BailOut("Uck!");
+        testSet.addBailOut(bailOut);
+        testSet.addTestResult(new TestResult(StatusValues.NOT_OK, 2));
+        final TestSetSnapshot snapshot = testSet.freeze();
+        testSet.addTestResult(new TestResult(StatusValues.OK, 3));
+        assertEquals(2, snapshot.getNumberOfTestResults());
+        assertEquals(4, snapshot.getNumberOfTapLines());
+        assertSame(comment, snapshot.getTapLines().get(0));
+        assertSame(snapshot.getTestResults().get(0), snapshot.getTapLines().get(1));
+        assertSame(bailOut, snapshot.getTapLines().get(2));
+        assertSame(snapshot.getTestResult(2), snapshot.getTapLines().get(3));
+        assertTrue(snapshot.hasBailOut());
+        assertEquals(1, snapshot.getSummary().getPassed());
+        assertEquals(1, snapshot.getSummary().getFailed());
+        assertEquals(1, snapshot.getSummary().getBailOuts());
+    }
+
+    @Test
+    public void testSnapshotIsNotChangedAfterTheTestSetGrows() {
+        final TestSet testSet = new TestSet();
+        final TestResult first = new TestResult(StatusValues.OK, 1);
+        testSet.addTestResult(first);
+        final TestSetSnapshot snapshot = testSet.freeze();
+        for (int i = 2; i <= 100; i++) {
+            testSet.addTestResult(new TestResult(StatusValues.OK, i));
+        }
+        final TestSetSnapshot second = testSet.freeze();
+        testSet.addTestResult(new TestResult(StatusValues.OK, 101));
+        testSet.getTestResults().set(0, new TestResult(StatusValues.NOT_OK, 1));
+        assertSame(first, snapshot.getTestResults().get(0));
+        assertSame(first, second.getTestResults().get(0));
+        assertEquals(100, second.getNumberOfTestResults());
+        assertTrue(second.getSummary().getFailed() == 0);
+    }
+
+    /**
+     * Test that the lazy getters of elements shared by a snapshot hand out
+     * the same instance to every thread.
+     *
+     * @throws InterruptedException if interrupted while waiting for the
+     *         threads
+     */
+    @Test
+    public void testConcurrentLazyGetters() throws InterruptedException {
+        final int rounds = 200;
+        final int threads = 4;
+        final List<TestResult> testResults = new ArrayList<TestResult>();
+        for (int i = 0; i < rounds; i++) {
+            testResults.add(new TestResult(StatusValues.OK, i + 1));
+        }
+        final Object[][] diagnostics = new Object[threads][rounds];
+        final Object[][] comments = new Object[threads][rounds];
+        final List<Thread> readers = new ArrayList<Thread>();
+        for (int t = 0; t < threads; t++) {
+            final int reader = t;
+            readers.add(new Thread(new Runnable() {
+                public void run() {
+                    for (int i = 0; i < rounds; i++) {
+                        diagnostics[reader][i] = testResults.get(i).getDiagnostic();
+                        comments[reader][i] = testResults.get(i).getComments();
+                    }
+                }
+            }));
+        }
+        for (Thread reader : readers) {
+            reader.start();
+        }
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        for (int t = 1; t < threads; t++) {
+            for (int i = 0; i < rounds; i++) {
+                assertSame(diagnostics[0][i], diagnostics[t][i]);
+                assertSame(comments[0][i], comments[t][i]);
+            }
+        }
+    }
+
+    /**
+     * Test that readers can take and read snapshots while another thread adds
+     * Test Results.
+     *
+     * @throws InterruptedException if interrupted while waiting for the
+     *         threads
+     */
+    @Test
+    public void testConcurrentReaders() throws InterruptedException {
+        final int testResults = 200000;
+        final TestSet testSet = new TestSet();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final Thread producer = new Thread() {
+            @Override
+            public void run() {
+                for (int i = 1; i <= testResults; i++) {
+                    testSet.addTestResult(new TestResult(StatusValues.OK, i));
+                    if (i % 1000 == 0) {
+                        testSet.addComment(new Comment("after " + i));
+                    }
+                }
+            }
+        };
+        final List<Thread> readers = new ArrayList<Thread>();
+        for (int r = 0; r < 4; r++) {
+            readers.add(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        int last = 0;
+                        while (last < testResults) {
+                            final TestSetSnapshot snapshot = testSet.freeze();
+                            final int size = snapshot.getNumberOfTestResults();
+                            assertTrue(size >= last);
+                            assertEquals(size, snapshot.getSummary().getOk());
+                            assertEquals(size, snapshot.getSummary().getNumberOfTestResults());
+                            int expected = 1;
+                            for (TestResult testResult : snapshot.getTestResults()) {
+                                assertEquals(Integer.valueOf(expected++), testResult.getTestNumber());
+                            }
+                            if (size > 0) {
+                                assertEquals(Integer.valueOf(size), snapshot.getTestResult(size).getTestNumber());
+                            }
+                            for (TapElement tapLine : snapshot.getTapLines()) {
+                                assertTrue(tapLine != null);
+                            }
+                            last = size;
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                }
+            });
+        }
+        for (Thread reader : readers) {
+            reader.start();
+        }
+        producer.start();
+        producer.join();
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        assertEquals(testResults, testSet.freeze().getNumberOfTestResults());
+    }
+
+}
@@ -0,0 +1,127 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.tap4j.parser.Tap13Parser;
+import org.tap4j.util.DirectiveValues;
+import org.tap4j.util.StatusValues;
+
+/**
+ * Tests for {@link TestSetSummary}.
+ *
+ * @since 4.2.1
+ */
+public class TestTestSetSummary {
+
+    @Test
+    public void testEmptyTestSet() {
+        final TestSetSummary summary = new TestSet().getSummary();
+        assertEquals(0, summary.getNumberOfTestResults());
+        assertEquals(0, summary.getPassed());
+        assertEquals(0, summary.getFailed());
+        assertEquals(0, summary.getBailOuts());
+        assertEquals(-1, summary.getPlanned());
+        assertFalse(summary.isPlanMismatch());
+    }
+
+    @Test
+    public void testCounters() {
+        final TestSet testSet = new TestSet();
+        testSet.setPlan(new Plan(6));
+        testSet.addTestResult(new TestResult(StatusValues.OK, 1));
+        testSet.addTestResult(new TestResult(StatusValues.OK, 2));
+        final TestResult failed = new TestResult(StatusValues.NOT_OK, 3);
+        testSet.addTestResult(failed);
+        final TestResult skipped = new TestResult(StatusValues.OK, 4);
+        skipped.setDirective(new Directive(DirectiveValues.SKIP, "no db"));
+        testSet.addTestResult(skipped);
+        final TestResult todo = new TestResult(StatusValues.NOT_OK, 5);
+        todo.setDirective(new Directive(DirectiveValues.TODO, "later"));
+        testSet.addTestResult(todo);
+        testSet.addBailOut(new BailOut("Uck!"));
+
+        TestSetSummary summary = testSet.getSummary();
+        assertEquals(5, summary.getNumberOfTestResults());
+        assertEquals(2, summary.getPassed());
+        assertEquals(1, summary.getFailed());
+        assertEquals(1, summary.getSkipped());
+        assertEquals(1, summary.getTodo());
+        assertEquals(3, summary.getOk());
+        assertEquals(2, summary.getNotOk());
+        assertEquals(1, summary.getCount(StatusValues.NOT_OK,
+                DirectiveValues.TODO));
+        assertEquals(1, summary.getBailOuts());
+        assertEquals(6, summary.getPlanned());
+        assertTrue(summary.isPlanMismatch());
+
+        testSet.addTestResult(new TestResult(StatusValues.OK, 6));
+        assertFalse(testSet.getSummary().isPlanMismatch());
+        // the snapshot does not change
+        assertEquals(5, summary.getNumberOfTestResults());
+
+        testSet.removeTestResult(failed);
+        testSet.getTestResults().remove(todo);
+        summary = testSet.getSummary();
+        assertEquals(4, summary.getNumberOfTestResults());
+        assertEquals(0, summary.getFailed());
+        assertEquals(0, summary.getTodo());
+        assertEquals(0, summary.getNotOk());
+        assertFalse(testSet.containsNotOk());
+        assertTrue(testSet.containsOk());
+    }
+
+    @Test
+    public void testBailOutAddedToTheTapLines() {
+        final TestSet testSet = new TestSet();
+        final BailOut bailOut = new BailOut("Uck!");
+        testSet.getTapLines().add(bailOut);
+        assertTrue(testSet.hasBailOut());
+        assertFalse(testSet.containsBailOut());
+        testSet.getTapLines().remove(bailOut);
+        assertFalse(testSet.hasBailOut());
+    }
+
+    @Test
+    public void testParsedTestSet() {
+        final TestSet testSet = new Tap13Parser().parseTapStream(
+                "1..4\n"
+                + "ok 1 - first\n"
+                + "not ok 2 - second\n"
+                + "ok 3 # SKIP not now\n"
+                + "not ok 4 # TODO not yet\n");
+        final TestSetSummary summary = testSet.getSummary();
+        assertEquals(4, summary.getNumberOfTestResults());
+        assertEquals(1, summary.getPassed());
+        assertEquals(1, summary.getFailed());
+        assertEquals(1, summary.getSkipped());
+        assertEquals(1, summary.getTodo());
+        assertFalse(summary.isPlanMismatch());
+    }
+
+}
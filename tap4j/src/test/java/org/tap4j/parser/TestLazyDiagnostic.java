@@ -0,0 +1,163 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.tap4j.BaseTapTest;
+import org.tap4j.model.TestResult;
+import org.tap4j.model.TestSet;
+import org.tap4j.representer.DumperOptions;
+import org.tap4j.representer.Tap13Representer;
+
+/**
+ * Tests for the lazy YAML diagnostics of {@link Tap13Parser}.
+ *
+ * @since 4.2.1
+ */
+public class TestLazyDiagnostic extends BaseTapTest {
+
+    private static final String TAP = "1..2\n" +
+            "ok 1 - first\n" +
+            "  ---\n" +
+            "  message: hello\n" +
+            "  data:\n" +
+            "    got: 1\n" +
+            "  ...\n" +
+            "not ok 2 - second\n";
+
+    @Test
+    public void testParsedOnFirstAccess() {
+        Tap13Parser parser = new Tap13Parser();
+        parser.setLazyDiagnostics(true);
+        assertTrue(parser.isLazyDiagnostics());
+        TestSet testSet = parser.parseTapStream(TAP);
+        TestResult testResult = testSet.getTestResult(1);
+        Map<String, Object> diagnostic = testResult.getDiagnostic();
+        assertFalse(((LazyDiagnostic) diagnostic).isLoaded());
+        assertTrue(testResult.getRawDiagnostic().contains("message: hello"));
+        assertFalse(((LazyDiagnostic) diagnostic).isLoaded());
+        assertEquals("hello", diagnostic.get("message"));
+        assertTrue(((LazyDiagnostic) diagnostic).isLoaded());
+        assertEquals(new Tap13Parser().parseTapStream(TAP).getTestResult(1).getDiagnostic(), diagnostic);
+        assertTrue(testSet.getTestResult(2).getDiagnostic().isEmpty());
+        assertNull(testSet.getTestResult(2).getRawDiagnostic());
+    }
+
+    @Test
+    public void testConcurrentFirstAccess() throws InterruptedException {
+        Tap13Parser parser = new Tap13Parser();
+        parser.setLazyDiagnostics(true);
+        final Map<String, Object> diagnostic = parser.parseTapStream(TAP).getTestResult(1).getDiagnostic();
+        final List<Object> messages = Collections.synchronizedList(new ArrayList<Object>());
+        final List<Thread> readers = new ArrayList<Thread>();
+        for (int i = 0; i < 8; i++) {
+            readers.add(new Thread(new Runnable() {
+                public void run() {
+                    messages.add(diagnostic.get("message"));
+                }
+            }));
+        }
+        for (Thread reader : readers) {
+            reader.start();
+        }
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertEquals(8, messages.size());
+        for (Object message : messages) {
+            assertEquals("hello", message);
+        }
+    }
+
+    @Test
+    public void testNoRawDiagnosticWhenEager() {
+        TestResult testResult = new Tap13Parser().parseTapStream(TAP).getTestResult(1);
+        assertNull(testResult.getRawDiagnostic());
+        assertEquals("hello", testResult.getDiagnostic().get("message"));
+    }
+
+    @Test
+    public void testCorruptedYaml() {
+        String tap = "1..1\n" +
+                "ok 1\n" +
+                "  ---\n" +
+                "  message: [unclosed\n" +
+                "  ...\n";
+        Tap13Parser parser = new Tap13Parser();
+        parser.setLazyDiagnostics(true);
+        Map<String, Object> diagnostic = parser.parseTapStream(tap).getTestResult(1).getDiagnostic();
+        try {
+            diagnostic.get("message");
+            fail("Not supposed to get here");
+        } catch (ParserException expected) {
+            assertTrue(expected.getMessage().startsWith("Error parsing YAML"));
+        }
+        parser = new Tap13Parser("UTF-8", false, true, true);
+        parser.setLazyDiagnostics(true);
+        diagnostic = parser.parseTapStream(tap).getTestResult(1).getDiagnostic();
+        assertTrue(diagnostic.containsKey("TAP processing error"));
+    }
+
+    @Test
+    public void testCorpus() {
+        List<File> files = new ArrayList<File>();
+        listTapFiles(new File(getClass().getResource("/org/tap4j").getFile()), files);
+        assertTrue(files.size() > 0);
+        Tap13Parser lazy = new Tap13Parser("UTF-8", true, false, true);
+        lazy.setLazyDiagnostics(true);
+        for (File file : files) {
+            assertEquals(file.getName(), parse(new Tap13Parser("UTF-8", true, false, true), file),
+                    parse(lazy, file));
+        }
+    }
+
+    /**
+     * @param parser TAP parser
+     * @param file TAP File
+     * @return the TAP Stream represented again with its diagnostics, or the
+     * error message
+     */
+    private String parse(Tap13Parser parser, File file) {
+        try {
+            DumperOptions options = new DumperOptions();
+            options.setPrintDiagnostics(true);
+            return new Tap13Representer(options).representData(parser.parseFile(file));
+        } catch (ParserException e) {
+            return e.getMessage();
+        }
+    }
+
+}
@@ -0,0 +1,200 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.tap4j.BaseTapTest;
+import org.tap4j.representer.Tap13Representer;
+
+/**
+ * Tests for {@link MappedTapFileReader} and the memory mapped
+ * {@link Tap13Parser#parseFile(File)}.
+ *
+ * @since 4.2.1
+ */
+public class TestMappedTapFileReader extends BaseTapTest {
+
+    /**
+     * Streams exercising the line terminators.
+     */
+    private static final String[] STREAMS = {
+        "", "\n", "\n\n", "\r\n", "\r\r\n", "a", "a\n", "a\nb", "a\r\nb\r\n", "a\rb\r", "a\n\r\nb",
+        "a\u0085b\u2028c\u2029d", "x\u2028", "x\u2028\n", "\r\n\r\n\r\nlast", "\u00e7\u00e3o\r\n\u00e9",
+        "long line that does not fit in the smallest windows\r\nshort\r\n"
+    };
+
+    /**
+     * Test that the lines are the same as the ones of a {@link TapLineReader},
+     * whatever the size of the windows.
+     *
+     * @throws IOException if a file cannot be read or written
+     */
+    @Test
+    public void testSameLinesAsLineReader() throws IOException {
+        Charset utf8 = Charset.forName("UTF-8");
+        for (String stream : STREAMS) {
+            List<String> expected = new ArrayList<String>();
+            TapLineReader lineReader = new TapLineReader(new StringReader(stream));
+            String line;
+            while ((line = lineReader.readLine()) != null) {
+                expected.add(line);
+            }
+            File file = write(stream.getBytes("UTF-8"));
+            for (int windowSize = 1; windowSize <= 9; windowSize++) {
+                MappedTapFileReader reader = new MappedTapFileReader(file, utf8.newDecoder(), windowSize);
+                try {
+                    assertEquals(stream, expected, readLines(reader));
+                } finally {
+                    reader.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Test that the TAP files used by the other tests are parsed the same way.
+     */
+    @Test
+    public void testCorpus() {
+        List<File> files = new ArrayList<File>();
+        listTapFiles(new File(getClass().getResource("/org/tap4j").getFile()), files);
+        assertTrue(files.size() > 0);
+        Tap13Parser mapped = new Tap13Parser("UTF-8", true, false, true);
+        mapped.setUseMemoryMapping(true);
+        assertTrue(mapped.isUseMemoryMapping());
+        for (File file : files) {
+            assertEquals(file.getName(), parse(new Tap13Parser("UTF-8", true, false, true), file),
+                    parse(mapped, file));
+        }
+    }
+
+    /**
+     * Test that a file that is not valid in the encoding of the parser is
+     * still rejected.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    @Test
+    public void testInvalidEncoding() throws IOException {
+        File file = write(new byte[] {'1', '.', '.', '1', '\n', 'o', 'k', ' ', '1', ' ', (byte) 0xff, '\n'});
+        Tap13Parser parser = new Tap13Parser();
+        parser.setUseMemoryMapping(true);
+        try {
+            parser.parseFile(file);
+            fail("Not supposed to get here");
+        } catch (ParserException expected) {
+            assertTrue(expected.getCause() instanceof IOException);
+        }
+    }
+
+    /**
+     * Test that a missing file is reported as such.
+     */
+    @Test
+    public void testFileNotFound() {
+        Tap13Parser parser = new Tap13Parser();
+        parser.setUseMemoryMapping(true);
+        try {
+            parser.parseFile(new File("does-not-exist.tap"));
+            fail("Not supposed to get here");
+        } catch (ParserException expected) {
+            assertTrue(expected.getMessage().startsWith("TAP file not found"));
+        }
+    }
+
+    /**
+     * Test that encodings with multi byte line feeds are not mapped.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    @Test
+    public void testUnsupportedEncoding() throws IOException {
+        assertTrue(MappedTapFileReader.isSupported(Charset.forName("ISO-8859-1")));
+        assertFalse(MappedTapFileReader.isSupported(Charset.forName("UTF-16")));
+        File file = write("1..1\nok 1 - \u00e7\n".getBytes("UTF-16"));
+        Tap13Parser parser = new Tap13Parser("UTF-16", false);
+        parser.setUseMemoryMapping(true);
+        assertEquals("- \u00e7", parser.parseFile(file).getTestResult(1).getDescription());
+    }
+
+    /**
+     * @param parser TAP parser
+     * @param file TAP File
+     * @return the TAP Stream represented again, or the error message
+     */
+    private String parse(Tap13Parser parser, File file) {
+        try {
+            return new Tap13Representer().representData(parser.parseFile(file));
+        } catch (ParserException e) {
+            return e.getMessage();
+        }
+    }
+
+    /**
+     * @param content content of the file
+     * @return a temporary file
+     * @throws IOException if the file cannot be written
+     */
+    private File write(byte[] content) throws IOException {
+        File file = File.createTempFile("tap4j", ".tap");
+        file.deleteOnExit();
+        FileOutputStream fos = new FileOutputStream(file);
+        try {
+            fos.write(content);
+        } finally {
+            fos.close();
+        }
+        return file;
+    }
+
+    /**
+     * @param reader line reader
+     * @return every line read
+     * @throws IOException if the file cannot be read
+     */
+    private List<String> readLines(MappedTapFileReader reader) throws IOException {
+        List<String> lines = new ArrayList<String>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lines.add(line);
+        }
+        assertNull(reader.readLine());
+        return lines;
+    }
+
+}
@@ -25,12 +25,15 @@ package org.tap4j.parser;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.tap4j.model.TapElement;
+import org.tap4j.model.TestSet;
 import org.tap4j.model.Text;
 
 /**
@@ -78,4 +81,17 @@ public class TestMemento {
         assertEquals(baseIndentationLevel, memento.getIndentationLevel());
         assertEquals(currentlyInYaml, memento.isInYaml());
     }
+
+    @SuppressWarnings("deprecation")
+    @Test
+    public void testTestSet() {
+        StreamStatus status = new StreamStatus();
+        assertNull(status.looseSubtests);
+        TestSet testSet = status.getTestSet();
+        assertNotNull(testSet);
+        assertSame(testSet, status.getTestSet());
+        TestSetBuilder builder = new TestSetBuilder();
+        status.setBuiltTestSet(builder.getTestSet());
+        assertSame(builder.getTestSet(), status.getTestSet());
+    }
 }
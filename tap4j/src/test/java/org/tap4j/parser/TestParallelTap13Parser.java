@@ -0,0 +1,184 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tap4j.BaseTapTest;
+import org.tap4j.model.TestSet;
+import org.tap4j.representer.Tap13Representer;
+
+/**
+ * Tests for {@link ParallelTap13Parser}.
+ *
+ * @since 4.2.1
+ */
+public class TestParallelTap13Parser extends BaseTapTest {
+
+    private static final int[] CHUNK_SIZES = { 1, 2, 3, 7, ParallelTap13Parser.DEFAULT_CHUNK_SIZE };
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Test that the TAP files used by the other tests are parsed like
+     * {@link Tap13Parser} does, or fail the same way, whatever the chunks.
+     */
+    @Test
+    public void testCorpus() {
+        final List<File> files = new ArrayList<File>();
+        listTapFiles(new File(getClass().getResource("/org/tap4j").getFile()), files);
+        assertTrue(files.size() > 0);
+        for (File tapFile : files) {
+            for (boolean planRequired : new boolean[] { true, false }) {
+                final String expected = parse(new Tap13Parser("UTF-8", true, planRequired), tapFile);
+                for (int chunkSize : CHUNK_SIZES) {
+                    final ParallelTap13Parser parser = new ParallelTap13Parser("UTF-8", true, planRequired, false,
+                            executor);
+                    parser.setChunkSize(chunkSize);
+                    assertEquals(tapFile.getName() + " in chunks of " + chunkSize, expected, parse(parser, tapFile));
+                }
+            }
+        }
+    }
+
+    /**
+     * Test a large stream with subtests, YAML diagnostics cut by the chunks,
+     * corrupted YAML and control sequences.
+     */
+    @Test
+    public void testLargeStream() {
+        final StringBuilder sb = new StringBuilder("TAP version 13\n1..300\n");
+        for (int i = 1; i <= 300; i++) {
+            if (i % 10 == 0) {
+                sb.append("    1..2\n    ok 1 - child\n    not ok - child without number\n");
+            }
+            sb.append(i % 7 == 0 ? "not ok " : "ok ").append(i).append(" - test \u001B[?25lnumber ").append(i)
+                    .append('\n');
+            if (i % 3 == 0) {
+                sb.append("  ---\n  message: failed ").append(i).append("\n  data:\n    got: ").append(i)
+                        .append("\n  ...\n");
+            }
+            if (i == 100) {
+                sb.append("  ---\n  message: [ corrupted\n  ...\n");
+            }
+            if (i % 11 == 0) {
+                sb.append("# comment ").append(i).append('\n');
+            }
+        }
+        final String tapStream = sb.toString();
+        final String expected = parse(new Tap13Parser("UTF-8", true, true, true), tapStream);
+        for (int chunkSize : CHUNK_SIZES) {
+            for (boolean lazyDiagnostics : new boolean[] { false, true }) {
+                final ParallelTap13Parser parser = new ParallelTap13Parser("UTF-8", true, true, true, executor);
+                parser.setChunkSize(chunkSize);
+                parser.setLazyDiagnostics(lazyDiagnostics);
+                assertEquals("chunks of " + chunkSize, expected, parse(parser, tapStream));
+            }
+        }
+    }
+
+    /**
+     * Test that a corrupted YAML diagnostic fails the parser like
+     * {@link Tap13Parser}.
+     */
+    @Test
+    public void testCorruptedYaml() {
+        final String tapStream = "1..2\nok 1\n  ---\n  message: [ corrupted\n  ...\nok 2\n";
+        final ParallelTap13Parser parser = new ParallelTap13Parser("UTF-8", true, executor);
+        parser.setChunkSize(1);
+        try {
+            parser.parseTapStream(tapStream);
+            fail("Expected a ParserException");
+        } catch (ParserException e) {
+            assertEquals(parse(new Tap13Parser("UTF-8", true), tapStream), "error: " + e.getMessage());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingExecutor() {
+        new ParallelTap13Parser("UTF-8", true, null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidChunkSize() {
+        new ParallelTap13Parser("UTF-8", true, executor).setChunkSize(0);
+    }
+
+    /**
+     * @param parser parser
+     * @param tapFile TAP file
+     * @return the test set parsed in TAP, or the error
+     */
+    private static String parse(Tap13Parser parser, File tapFile) {
+        try {
+            return represent(parser.parseFile(tapFile));
+        } catch (ParserException e) {
+            return "error: " + e.getMessage();
+        }
+    }
+
+    /**
+     * @param parser parser
+     * @param tapStream TAP Stream
+     * @return the test set parsed in TAP, or the error
+     */
+    private static String parse(Tap13Parser parser, String tapStream) {
+        try {
+            return represent(parser.parseTapStream(tapStream));
+        } catch (ParserException e) {
+            return "error: " + e.getMessage();
+        }
+    }
+
+    /**
+     * @param testSet test set
+     * @return the test set in TAP
+     */
+    private static String represent(TestSet testSet) {
+        return testSet.getNumberOfTestResults() + " " + testSet.getNumberOfBailOuts() + "\n"
+                + new Tap13Representer().representData(testSet);
+    }
+
+}
@@ -24,13 +24,17 @@
 package org.tap4j.parser;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
 import java.io.File;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.tap4j.model.TestResult;
 import org.tap4j.model.TestSet;
+import org.tap4j.util.StringCache;
 
 /**
  * Tests for TAP 13 Parser.
@@ -165,6 +169,39 @@ public class TestTap13Parser {
         assertEquals("a comment", testSet.getPlan().getComment().getText());
     }
     
+    @Test
+    public void testStringCache() {
+        String tap = "1..2\n" +
+                "ok 1 - same test # SKIP same reason\n" +
+                "  ---\n" +
+                "  message: same message\n" +
+                "  ...\n" +
+                "ok 2 - same test # SKIP same reason\n" +
+                "  ---\n" +
+                "  message: same message\n" +
+                "  ...\n";
+        TestSet testSet = parser.parseTapStream(tap);
+        assertNotSame(testSet.getTestResult(1).getDescription(), testSet.getTestResult(2).getDescription());
+        for (boolean useTokenizer : new boolean[] {false, true}) {
+            for (boolean lazyDiagnostics : new boolean[] {false, true}) {
+                parser.setStringCache(new StringCache());
+                parser.setUseTokenizer(useTokenizer);
+                parser.setLazyDiagnostics(lazyDiagnostics);
+                testSet = parser.parseTapStream(tap);
+                TestResult tr1 = testSet.getTestResult(1);
+                TestResult tr2 = testSet.getTestResult(2);
+                assertEquals("- same test ", tr1.getDescription());
+                assertSame(tr1.getDescription(), tr2.getDescription());
+                assertSame(tr1.getDirective().getReason(), tr2.getDirective().getReason());
+                String key1 = tr1.getDiagnostic().keySet().iterator().next();
+                String key2 = tr2.getDiagnostic().keySet().iterator().next();
+                assertEquals("message", key1);
+                assertSame(key1, key2);
+                assertSame(tr1.getDiagnostic().get("message"), tr2.getDiagnostic().get("message"));
+            }
+        }
+    }
+
     @Test(expected=ParserException.class)
     public void notExistentFile() {
         parser.parseFile(new File(""+System.currentTimeMillis()+System.nanoTime()));
@@ -0,0 +1,155 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.tap4j.model.BailOut;
+import org.tap4j.model.Comment;
+import org.tap4j.model.Plan;
+import org.tap4j.model.TapElement;
+import org.tap4j.model.TestResult;
+import org.tap4j.model.Text;
+
+/**
+ * Tests for {@link TapEventHandler} events fired by {@link Tap13Parser}.
+ *
+ * @since 4.2.1
+ */
+public class TestTapEventHandler {
+
+    /**
+     * Records the events received.
+     */
+    private static class RecordingHandler extends DefaultTapEventHandler {
+
+        private final List<String> events = new ArrayList<String>();
+
+        @Override
+        public void onStreamStart() {
+            events.add("start");
+        }
+
+        @Override
+        public void onStreamEnd() {
+            events.add("end");
+        }
+
+        @Override
+        public void onPlan(Plan plan) {
+            events.add("plan " + plan.getLastTestNumber());
+        }
+
+        @Override
+        public void onTestResult(TestResult testResult) {
+            events.add("test " + testResult.getTestNumber());
+        }
+
+        @Override
+        public void onBailOut(BailOut bailOut) {
+            events.add("bailout");
+        }
+
+        @Override
+        public void onComment(Comment comment) {
+            events.add("comment " + comment.getText());
+        }
+
+        @Override
+        public void onText(Text text) {
+            events.add("text " + text.getValue());
+        }
+
+        @Override
+        public void onYamlBlock(TapElement tapElement) {
+            events.add("yaml " + tapElement.getDiagnostic().get("message"));
+        }
+
+        @Override
+        public void onSubtestStart(TestResult parent) {
+            events.add("subtest " + (parent == null ? "loose" : parent.getTestNumber()));
+        }
+
+        @Override
+        public void onSubtestEnd() {
+            events.add("end subtest");
+        }
+    }
+
+    @Test
+    public void testEvents() {
+        String tap = "1..2\n" +
+                "some text\n" +
+                "# first\n" +
+                "ok 1\n" +
+                "  ---\n" +
+                "  message: hello\n" +
+                "  ...\n" +
+                "    1..1\n" +
+                "    ok 1\n" +
+                "# between\n" +
+                "    1..1\n" +
+                "    not ok 1\n" +
+                "ok 2\n" +
+                "Bail out!";
+        RecordingHandler handler = new RecordingHandler();
+        new Tap13Parser().parseTapStream(tap, handler);
+        String[] expected = {
+            "start", "plan 2", "text some text", "comment first", "test 1", "yaml hello", "subtest 1", "plan 1",
+            "test 1", "end subtest", "comment between", "subtest loose", "plan 1", "test 1", "end subtest", "test 2", "bailout",
+            "end"
+        };
+        assertEquals(Arrays.asList(expected), handler.events);
+    }
+
+    @Test
+    public void testBuilderMatchesTree() {
+        File file = new File(getClass().getResource("/org/tap4j/parser/issueGitHub12/issue-12-tap-stream.tap")
+                .getFile());
+        TestSetBuilder builder = new TestSetBuilder();
+        new Tap13Parser("UTF-8", true, false).parseFile(file, builder);
+        assertEquals(2, builder.getTestSet().getNumberOfTestResults());
+        assertEquals(1, builder.getTestSet().getTestResult(1).getSubtest().getNumberOfTestResults());
+        assertEquals(4, builder.getTestSet().getTestResult(2).getSubtest().getNumberOfTestResults());
+    }
+
+    @Test
+    public void testParserReusable() {
+        Tap13Parser parser = new Tap13Parser();
+        TestSetBuilder builder = new TestSetBuilder();
+        parser.parseTapStream("1..1\nok 1 - first", builder);
+        parser.parseTapStream("1..1\nok 1 - second", builder);
+        assertEquals(1, builder.getTestSet().getNumberOfTestResults());
+        assertEquals("- second", builder.getTestSet().getTestResult(1).getDescription());
+        assertSame(builder.getTestSet(), builder.getTestSet());
+    }
+
+}
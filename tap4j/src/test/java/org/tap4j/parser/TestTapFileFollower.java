@@ -0,0 +1,168 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tap4j.model.TapElement;
+import org.tap4j.model.TestResult;
+import org.tap4j.model.TestSet;
+
+/**
+ * Tests for {@link TapFileFollower}.
+ *
+ * @since 4.2.1
+ */
+public class TestTapFileFollower {
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("tap4j", ".tap");
+        file.delete();
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    private void append(byte[] bytes) throws IOException {
+        FileOutputStream fos = new FileOutputStream(file, true);
+        try {
+            fos.write(bytes);
+        } finally {
+            fos.close();
+        }
+    }
+
+    private void append(String text) throws IOException {
+        append(text.getBytes("UTF-8"));
+    }
+
+    @Test
+    public void testFollow() throws IOException {
+        TestSetBuilder builder = new TestSetBuilder();
+        TapFileFollower follower = new TapFileFollower(new Tap13Parser(), file, builder);
+        assertEquals(0, follower.poll());
+
+        append("1..3\nok 1 - first\n  ---\n  message: hel");
+        assertEquals(3, follower.poll());
+        TestSet testSet = builder.getTestSet();
+        assertEquals(1, testSet.getNumberOfTestResults());
+        assertTrue(testSet.getTestResult(1).getDiagnostic().isEmpty());
+
+        append("lo\n  ...\nok 2 - s");
+        follower.poll();
+        assertEquals("hello", testSet.getTestResult(1).getDiagnostic().get("message"));
+        assertEquals(1, testSet.getNumberOfTestResults());
+
+        // a multi-byte character split between two polls, and a CR LF split as well
+        byte[] bytes = "econd é\r\nok 3".getBytes("UTF-8");
+        int split = bytes.length - 6;
+        byte[] head = new byte[split];
+        System.arraycopy(bytes, 0, head, 0, split);
+        byte[] tail = new byte[bytes.length - split];
+        System.arraycopy(bytes, split, tail, 0, tail.length);
+        append(head);
+        follower.poll();
+        assertEquals(1, testSet.getNumberOfTestResults());
+        append(tail);
+        follower.poll();
+        assertEquals(2, testSet.getNumberOfTestResults());
+        assertEquals("- second é", testSet.getTestResult(2).getDescription());
+        int tapLines = testSet.getNumberOfTapLines();
+
+        follower.finish();
+        assertEquals(3, testSet.getNumberOfTestResults());
+        assertEquals(tapLines + 1, testSet.getNumberOfTapLines());
+        assertEquals(file.length(), follower.getOffset());
+        for (TapElement tapElement : testSet.getTapLines()) {
+            assertTrue(tapElement instanceof TestResult);
+        }
+    }
+
+    @Test
+    public void testSameAsParseFile() throws IOException {
+        File source = new File(getClass().getResource("/org/tap4j/parser/issueGitHub17/issue-17-tap-stream.tap")
+                .getFile());
+        byte[] bytes = new byte[(int) source.length()];
+        FileInputStream fis = new FileInputStream(source);
+        try {
+            assertEquals(bytes.length, fis.read(bytes));
+        } finally {
+            fis.close();
+        }
+        TestSetBuilder builder = new TestSetBuilder();
+        TapFileFollower follower = new TapFileFollower(new Tap13Parser("UTF-8", true), file, builder);
+        for (int i = 0; i < bytes.length; i += 7) {
+            byte[] chunk = new byte[Math.min(7, bytes.length - i)];
+            System.arraycopy(bytes, i, chunk, 0, chunk.length);
+            append(chunk);
+            follower.poll();
+        }
+        follower.finish();
+        TestSet expected = new Tap13Parser("UTF-8", true).parseFile(source);
+        TestSet actual = builder.getTestSet();
+        assertEquals(expected.getNumberOfTestResults(), actual.getNumberOfTestResults());
+        for (int i = 1; i <= expected.getNumberOfTestResults(); i++) {
+            assertEquals(expected.getTestResult(i).getDescription(), actual.getTestResult(i).getDescription());
+            assertEquals(expected.getTestResult(i).getDiagnostic(), actual.getTestResult(i).getDiagnostic());
+        }
+    }
+
+    @Test
+    public void testTruncated() throws IOException {
+        append("1..2\nok 1\n");
+        TapFileFollower follower = new TapFileFollower(new Tap13Parser(), file, new DefaultTapEventHandler());
+        follower.poll();
+        file.delete();
+        append("1..2\n");
+        try {
+            follower.poll();
+            fail("Not supposed to get here");
+        } catch (ParserException expected) {
+            assertTrue(expected.getMessage().contains("truncated"));
+        }
+    }
+
+    @Test(expected = ParserException.class)
+    public void testInvalidEncoding() throws IOException {
+        append(new byte[] {'o', 'k', ' ', (byte) 0xff, '\n'});
+        TapFileFollower follower = new TapFileFollower(new Tap13Parser(), file, new DefaultTapEventHandler());
+        follower.poll();
+    }
+
+}
@@ -0,0 +1,227 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tap4j.BaseTapTest;
+import org.tap4j.model.BailOut;
+import org.tap4j.model.TestResult;
+import org.tap4j.model.TestSet;
+import org.tap4j.representer.Tap13Representer;
+
+/**
+ * Tests for {@link TapIndex}.
+ *
+ * @since 4.2.1
+ */
+public class TestTapIndex extends BaseTapTest {
+
+    private static final String TAP_STREAM = "TAP version 13\n"
+            + "1..5\n"
+            + "    1..1\n"
+            + "    ok 1 - loose child\n"
+            + "ok 1 - first\n"
+            + "not ok 2 - second\r\n"
+            + "  ---\n"
+            + "  message: failed\n"
+            + "  ...\n"
+            + "# a comment\n"
+            + "ok 3 - parent of the next subtest\n"
+            + "    1..1\n"
+            + "    ok 1 - child\n"
+            + "    # Subtest: nested\n"
+            + "        1..1\n"
+            + "        ok 1 - grandchild\n"
+            + "    ok 2 - nested\n"
+            + "# belongs to the third test result\n"
+            + "ok - \u00e9l\u00e8ve without number\n"
+            + "Bail out! disk full\n"
+            + "  ---\n"
+            + "  free: 0\n"
+            + "  ...\n"
+            + "ok 5 - last\n";
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("tap4j", ".tap");
+        write(TAP_STREAM);
+    }
+
+    @After
+    public void tearDown() {
+        TapIndex.getSidecarFile(file).delete();
+        file.delete();
+    }
+
+    private void write(String tapStream) throws IOException {
+        FileOutputStream fos = new FileOutputStream(file);
+        try {
+            fos.write(tapStream.getBytes("UTF-8"));
+        } finally {
+            fos.close();
+        }
+    }
+
+    @Test
+    public void testEntries() {
+        final TapIndex index = TapIndex.build(file, "UTF-8");
+        assertFalse(index.isFromSidecar());
+        assertEquals(5, index.getNumberOfTestResults());
+        assertEquals(6, index.getEntries().size());
+        assertEquals(1, index.getBailOuts().size());
+        assertEquals(TapIndex.Type.BAIL_OUT, index.getBailOuts().get(0).getType());
+        assertEquals(2, index.getSubtests().size());
+        assertEquals(1, index.getSubtests().get(0).getNumber());
+        assertEquals(3, index.getSubtests().get(1).getNumber());
+        assertNull(index.getEntry(6));
+        assertNull(index.getEntry(0));
+
+        final TestResult second = index.readTestResult(2);
+        assertEquals("- second", second.getDescription());
+        assertEquals("failed", second.getDiagnostic().get("message"));
+
+        assertEquals("- loose child", index.readTestResult(1).getSubtest().getTestResult(1).getDescription());
+
+        final TestResult third = index.readTestResult(3);
+        assertEquals(2, third.getSubtest().getNumberOfTestResults());
+        assertEquals(1, third.getSubtest().getTestResult(1).getSubtest().getNumberOfTestResults());
+        assertEquals("belongs to the third test result", third.getComments().get(0).getText());
+
+        final TestResult fourth = index.readTestResult(4);
+        assertEquals(Integer.valueOf(4), fourth.getTestNumber());
+        assertEquals("- \u00e9l\u00e8ve without number", fourth.getDescription());
+        assertNull(fourth.getSubtest());
+
+        final BailOut bailOut = index.readBailOut(1);
+        assertEquals("disk full", bailOut.getReason());
+        assertEquals(0, bailOut.getDiagnostic().get("free"));
+        assertNull(index.readBailOut(2));
+
+        assertEquals("- last", index.readTestResult(5).getDescription());
+        assertEquals(1, index.read(index.getEntry(2)).getNumberOfTestResults());
+    }
+
+    @Test
+    public void testSidecar() throws IOException {
+        final TapIndex first = TapIndex.open(file);
+        assertFalse(first.isFromSidecar());
+        assertTrue(TapIndex.getSidecarFile(file).isFile());
+
+        final TapIndex second = TapIndex.open(file);
+        assertTrue(second.isFromSidecar());
+        assertEquals(first.getEntries().toString(), second.getEntries().toString());
+        assertEquals("- last", second.readTestResult(5).getDescription());
+
+        write(TAP_STREAM + "ok 6 - appended\n");
+        final TapIndex third = TapIndex.open(file);
+        assertFalse(third.isFromSidecar());
+        assertEquals("- appended", third.readTestResult(6).getDescription());
+        assertTrue(TapIndex.open(file).isFromSidecar());
+
+        final long modified = file.lastModified();
+        assertTrue(file.setLastModified(modified - 10000));
+        assertFalse(TapIndex.open(file).isFromSidecar());
+
+        write("garbage");
+        FileOutputStream fos = new FileOutputStream(TapIndex.getSidecarFile(file));
+        try {
+            fos.write(new byte[] {1, 2, 3 });
+        } finally {
+            fos.close();
+        }
+        final TapIndex rebuilt = TapIndex.open(file);
+        assertFalse(rebuilt.isFromSidecar());
+        assertEquals(0, rebuilt.getEntries().size());
+    }
+
+    @Test
+    public void testUnsupportedEncoding() {
+        try {
+            TapIndex.build(file, "UTF-16");
+            fail("UTF-16 is not supported");
+        } catch (ParserException e) {
+            assertTrue(e.getMessage().contains("UTF-16"));
+        }
+    }
+
+    /**
+     * Test that every top-level test result of the TAP files used by the
+     * other tests is read from the index like it is parsed with the whole
+     * file.
+     */
+    @Test
+    public void testCorpus() {
+        final List<File> files = new ArrayList<File>();
+        listTapFiles(new File(getClass().getResource("/org/tap4j").getFile()), files);
+        assertTrue(files.size() > 0);
+        for (File tapFile : files) {
+            final TestSet testSet;
+            try {
+                testSet = new Tap13Parser("UTF-8", true, false).parseFile(tapFile);
+            } catch (ParserException e) {
+                continue;
+            }
+            final TapIndex index = TapIndex.build(tapFile, "UTF-8");
+            assertEquals(tapFile.getName(), testSet.getNumberOfTestResults(), index.getNumberOfTestResults());
+            final Set<Integer> seen = new HashSet<Integer>();
+            for (TestResult expected : testSet.getTestResults()) {
+                if (!seen.add(expected.getTestNumber())) {
+                    continue;
+                }
+                final TestResult actual = index.readTestResult(expected.getTestNumber());
+                assertEquals(tapFile.getName(), represent(expected), represent(actual));
+            }
+            assertEquals(tapFile.getName(), testSet.getNumberOfBailOuts(), index.getBailOuts().size());
+        }
+    }
+
+    /**
+     * @param testResult test result
+     * @return the test result and its subtest in TAP
+     */
+    private static String represent(TestResult testResult) {
+        final TestSet testSet = new TestSet();
+        testSet.addTestResult(testResult);
+        return new Tap13Representer().representData(testSet);
+    }
+
+}
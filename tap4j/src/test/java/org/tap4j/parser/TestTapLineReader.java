@@ -0,0 +1,148 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link TapLineReader}.
+ *
+ * @since 4.2.1
+ */
+public class TestTapLineReader {
+
+    /**
+     * Streams exercising the line terminators.
+     */
+    private static final String[] STREAMS = {
+        "", "\n", "\n\n", "\r\n", "\r\r\n", "a", "a\n", "a\nb", "a\r\nb\r\n", "a\rb\r", "a\n\r\nb",
+        "a\u0085b\u2028c\u2029d", "\r\n\r\n\r\nlast", "1..2\nok 1 - first\r\nnot ok 2 - second\n",
+        "long line that does not fit in the smallest buffers\r\nshort\r\n"
+    };
+
+    /**
+     * Test that the lines are the same as the ones of a scanner, whatever the
+     * size of the buffer.
+     *
+     * @throws IOException if a stream cannot be read
+     */
+    @Test
+    public void testSameLinesAsScanner() throws IOException {
+        for (String stream : STREAMS) {
+            List<String> expected = new ArrayList<String>();
+            Scanner scanner = new Scanner(stream);
+            while (scanner.hasNextLine()) {
+                expected.add(scanner.nextLine());
+            }
+            scanner.close();
+            for (int bufferSize = 1; bufferSize <= 9; bufferSize++) {
+                assertEquals(stream, expected, readLines(new TapLineReader(new StringReader(stream), bufferSize)));
+            }
+            assertEquals(stream, expected, readLines(new TapLineReader(new StringReader(stream))));
+        }
+    }
+
+    /**
+     * Test that read errors are not taken as the end of the stream.
+     */
+    @Test
+    public void testReadError() {
+        Reader reader = new StringReader("ok 1\n") {
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                throw new IOException("broken");
+            }
+        };
+        try {
+            new TapLineReader(reader).readLine();
+            fail("Not supposed to get here");
+        } catch (IOException expected) {
+            assertEquals("broken", expected.getMessage());
+        }
+    }
+
+    /**
+     * Test that a file that is not valid in the encoding of the parser is not
+     * silently truncated.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    @Test
+    public void testInvalidEncoding() throws IOException {
+        File file = File.createTempFile("tap4j", ".tap");
+        file.deleteOnExit();
+        FileOutputStream fos = new FileOutputStream(file);
+        try {
+            fos.write(new byte[] {'1', '.', '.', '1', '\n', 'o', 'k', ' ', '1', ' ', (byte) 0xff, '\n'});
+        } finally {
+            fos.close();
+        }
+        try {
+            new Tap13Parser().parseFile(file);
+            fail("Not supposed to get here");
+        } catch (ParserException expected) {
+            assertTrue(expected.getCause() instanceof IOException);
+        }
+    }
+
+    /**
+     * Test that the cursor control sequences are still removed.
+     */
+    @Test
+    public void testCursorControl() {
+        assertEquals("- desc", new Tap13Parser().parseTapStream("1..1\n\u001B[?25lok 1 - desc\u001B[?25h\n")
+                .getTestResult(1).getDescription());
+    }
+
+    /**
+     * @param reader line reader
+     * @return every line read
+     * @throws IOException if the stream cannot be read
+     */
+    private List<String> readLines(TapLineReader reader) throws IOException {
+        List<String> lines = new ArrayList<String>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lines.add(line);
+        }
+        assertNull(reader.readLine());
+        reader.close();
+        return lines;
+    }
+
+}
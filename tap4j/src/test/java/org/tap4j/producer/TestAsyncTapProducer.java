@@ -0,0 +1,259 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.producer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.tap4j.model.Comment;
+import org.tap4j.model.Footer;
+import org.tap4j.model.TestResult;
+import org.tap4j.model.TestSet;
+import org.tap4j.parser.Tap13Parser;
+import org.tap4j.util.StatusValues;
+
+/**
+ * Tests for {@link AsyncTapProducer}.
+ *
+ * @since 4.2.1
+ */
+public class TestAsyncTapProducer {
+
+    /**
+     * Counts the flushes.
+     */
+    private static class FlushCountingWriter extends StringWriter {
+
+        private volatile int flushes = 0;
+
+        @Override
+        public void flush() {
+            flushes++;
+            super.flush();
+        }
+    }
+
+    @Test
+    public void testManyThreads() throws InterruptedException {
+        FlushCountingWriter writer = new FlushCountingWriter();
+        final AsyncTapProducer producer = new AsyncTapProducer(new StreamingTapProducer(writer), 16, 8);
+        producer.begin(null);
+        final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < 8; t++) {
+            final int thread = t;
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 1000; i++) {
+                            TestResult testResult = new TestResult(i % 10 == 0 ? StatusValues.NOT_OK
+                                    : StatusValues.OK, null);
+                            testResult.setDescription("thread " + thread + " test " + i);
+                            producer.emit(testResult);
+                        }
+                    } catch (Throwable e) {
+                        errors.add(e);
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        producer.end(new Footer("done"));
+        assertEquals(Collections.emptyList(), errors);
+        assertEquals(0, producer.getPendingElements());
+        // at least one flush per batch of 8 elements, and one at the end
+        assertTrue(writer.flushes >= 1000);
+
+        TestSet testSet = new Tap13Parser().parseTapStream(writer.toString());
+        assertEquals(8000, testSet.getNumberOfTestResults());
+        assertEquals(800, testSet.getSummary().getFailed());
+        assertEquals(Integer.valueOf(8000), testSet.getPlan().getLastTestNumber());
+        for (int i = 1; i <= 8000; i++) {
+            assertEquals(Integer.valueOf(i), testSet.getTestResults().get(i - 1).getTestNumber());
+        }
+        assertEquals("done", testSet.getFooter().getText());
+    }
+
+    /**
+     * Test that every element emitted without error while the stream ends is
+     * written.
+     *
+     * @throws InterruptedException if interrupted while waiting for the
+     *         threads
+     */
+    @Test
+    public void testEmitWhileEnding() throws InterruptedException {
+        StringWriter writer = new StringWriter();
+        final AsyncTapProducer producer = new AsyncTapProducer(new StreamingTapProducer(writer), 4, 2);
+        producer.begin(null);
+        final int[] emitted = new int[4];
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < emitted.length; t++) {
+            final int thread = t;
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        while (true) {
+                            producer.emit(new TestResult(StatusValues.OK, null));
+                            emitted[thread]++;
+                        }
+                    } catch (ProducerException expected) {
+                        // ended
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        Thread.sleep(20);
+        producer.end(null);
+        int total = 0;
+        for (int t = 0; t < threads.size(); t++) {
+            threads.get(t).join();
+            total += emitted[t];
+        }
+        assertEquals(total, new Tap13Parser().parseTapStream(writer.toString()).getNumberOfTestResults());
+    }
+
+    @Test
+    public void testOrderOfOneThread() {
+        StringWriter writer = new StringWriter();
+        AsyncTapProducer producer = new AsyncTapProducer(new StreamingTapProducer(writer));
+        producer.begin(null);
+        producer.emit(new TestResult(StatusValues.OK, null));
+        producer.emit(new Comment("between"));
+        producer.emit(new TestResult());
+        producer.end(null);
+        assertEquals("TAP version 13\nok 1\n# between\nnot ok 2\n1..2\n", writer.toString());
+    }
+
+    @Test
+    public void testWriteFailure() {
+        Writer failing = new Writer() {
+            @Override
+            public void write(char[] cbuf, int off, int len) throws IOException {
+                throw new IOException("disk full");
+            }
+
+            @Override
+            public void flush() throws IOException {
+            }
+
+            @Override
+            public void close() throws IOException {
+            }
+        };
+        AsyncTapProducer producer = new AsyncTapProducer(new StreamingTapProducer(failing), 4, 2);
+        producer.begin(null);
+        producer.emit(new TestResult(StatusValues.OK, null));
+        try {
+            producer.end(null);
+            fail("Expected a ProducerException");
+        } catch (ProducerException e) {
+            assertEquals("Failed to write TAP Stream: Failed to write TAP Stream: disk full", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testWriteFailureAfterBegin() {
+        final StringWriter out = new StringWriter();
+        Writer failing = new Writer() {
+            @Override
+            public void write(char[] cbuf, int off, int len) throws IOException {
+                if (out.getBuffer().length() > 20) {
+                    throw new IOException("disk full");
+                }
+                out.write(cbuf, off, len);
+            }
+
+            @Override
+            public void flush() throws IOException {
+            }
+
+            @Override
+            public void close() throws IOException {
+            }
+        };
+        AsyncTapProducer producer = new AsyncTapProducer(new StreamingTapProducer(failing), 4, 2);
+        producer.begin(null);
+        try {
+            // emitting does not wait forever once the writer thread failed
+            for (int i = 0; i < 100; i++) {
+                producer.emit(new TestResult(StatusValues.OK, null));
+            }
+            producer.end(null);
+            fail("Expected a ProducerException");
+        } catch (ProducerException e) {
+            assertTrue(e.getMessage().startsWith("Failed to write TAP Stream"));
+        }
+    }
+
+    @Test
+    public void testStates() {
+        AsyncTapProducer producer = new AsyncTapProducer(new StreamingTapProducer(new StringWriter()));
+        try {
+            producer.emit(new TestResult(StatusValues.OK, 1));
+            fail("Expected a ProducerException");
+        } catch (ProducerException e) {
+            assertEquals("TAP Stream not begun", e.getMessage());
+        }
+        producer.begin(null);
+        try {
+            producer.begin(null);
+            fail("Expected a ProducerException");
+        } catch (ProducerException e) {
+            assertEquals("TAP Stream already begun", e.getMessage());
+        }
+        producer.end(null);
+        try {
+            producer.emit(new TestResult(StatusValues.OK, 1));
+            fail("Expected a ProducerException");
+        } catch (ProducerException e) {
+            assertEquals("TAP Stream already ended", e.getMessage());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCapacity() {
+        new AsyncTapProducer(new StreamingTapProducer(new StringWriter()), 0, 1);
+    }
+
+}
@@ -0,0 +1,235 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.producer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Collections;
+
+import org.junit.Test;
+import org.tap4j.model.Comment;
+import org.tap4j.model.Footer;
+import org.tap4j.model.Header;
+import org.tap4j.model.Plan;
+import org.tap4j.model.TestResult;
+import org.tap4j.model.TestSet;
+import org.tap4j.parser.Tap13Parser;
+import org.tap4j.representer.DumperOptions;
+import org.tap4j.representer.Tap13Representer;
+import org.tap4j.util.StatusValues;
+
+/**
+ * Tests for {@link StreamingTapProducer}.
+ *
+ * @since 4.2.1
+ */
+public class TestStreamingTapProducer {
+
+    /**
+     * Counts the flushes.
+     */
+    private static class FlushCountingWriter extends StringWriter {
+
+        private int flushes = 0;
+
+        @Override
+        public void flush() {
+            flushes++;
+            super.flush();
+        }
+    }
+
+    @Test
+    public void testSameAsRepresenter() {
+        TestSet subtest = new TestSet();
+        subtest.setPlan(new Plan(2));
+        subtest.addTestResult(new TestResult(StatusValues.OK, 1));
+        subtest.addTestResult(new TestResult(StatusValues.NOT_OK, 2));
+        TestResult parent = new TestResult(StatusValues.NOT_OK, 2);
+        parent.setDescription("with subtest");
+        TestSet testSet = new TestSet();
+        testSet.setHeader(new Header(13));
+        testSet.setPlan(new Plan(3));
+        testSet.addTestResult(new TestResult(StatusValues.OK, 1));
+        testSet.addComment(new Comment("a comment"));
+        testSet.addTestResult(parent);
+        testSet.addTestResult(new TestResult(StatusValues.OK, 3));
+        testSet.setFooter(new Footer("done"));
+
+        StringWriter sw = new StringWriter();
+        StreamingTapProducer producer = new StreamingTapProducer(sw);
+        producer.begin(new Plan(3));
+        producer.emit(new TestResult(StatusValues.OK, 1));
+        producer.emit(new Comment("a comment"));
+        producer.beginSubtest(parent, new Plan(2));
+        producer.emit(new TestResult(StatusValues.OK, 1));
+        producer.emit(new TestResult(StatusValues.NOT_OK, 2));
+        producer.endSubtest();
+        producer.emit(new TestResult(StatusValues.OK, 3));
+        producer.end(new Footer("done"));
+
+        parent.setSubtest(subtest);
+        assertEquals(new Tap13Representer().representData(testSet), sw.toString());
+    }
+
+    @Test
+    public void testTrailingPlans() {
+        StringWriter sw = new StringWriter();
+        StreamingTapProducer producer = new StreamingTapProducer(sw);
+        producer.begin();
+        assertEquals("TAP version 13\n", sw.toString());
+        producer.emit(new TestResult(StatusValues.OK, null));
+        assertEquals("TAP version 13\nok 1\n", sw.toString());
+        producer.beginSubtest(new TestResult(StatusValues.OK, null), null);
+        producer.emit(new TestResult(StatusValues.OK, null));
+        producer.emit(new TestResult(StatusValues.OK, null));
+        producer.endSubtest();
+        producer.beginSubtest(new TestResult(StatusValues.NOT_OK, null), null);
+        producer.emit(new TestResult(StatusValues.NOT_OK, null));
+        producer.end();
+        String expected = "TAP version 13\nok 1\nok 2\n    ok 1\n    ok 2\n    1..2\nnot ok 3\n    not ok 1\n    1..1\n1..3\n";
+        assertEquals(expected, sw.toString());
+
+        TestSet testSet = new Tap13Parser("UTF-8", true).parseTapStream(sw.toString());
+        assertEquals(3, testSet.getNumberOfTestResults());
+        assertEquals(2, testSet.getTestResult(2).getSubtest().getNumberOfTestResults());
+        assertEquals(1, testSet.getTestResult(3).getSubtest().getNumberOfTestResults());
+    }
+
+    @Test
+    public void testDiagnostics() {
+        DumperOptions options = new DumperOptions();
+        options.setPrintDiagnostics(true);
+        StringWriter sw = new StringWriter();
+        StreamingTapProducer producer = new StreamingTapProducer(sw, options);
+        producer.begin(new Plan(1));
+        producer.beginSubtest(new TestResult(StatusValues.NOT_OK, 1), new Plan(1));
+        TestResult failed = new TestResult(StatusValues.NOT_OK, 1);
+        failed.setDiagnostic(Collections.<String, Object>singletonMap("message", "failed"));
+        producer.emit(failed);
+        producer.endSubtest();
+        producer.end();
+        assertEquals("TAP version 13\n1..1\nnot ok 1\n    1..1\n    not ok 1\n      ---\n      message: failed\n      ...\n\n",
+                sw.toString());
+        assertEquals(0, options.getIndent());
+    }
+
+    @Test
+    public void testAutoFlush() {
+        FlushCountingWriter writer = new FlushCountingWriter();
+        StreamingTapProducer producer = new StreamingTapProducer(writer);
+        producer.begin();
+        producer.emit(new TestResult(StatusValues.OK, null));
+        assertEquals(2, writer.flushes);
+        producer.setAutoFlush(false);
+        assertFalse(producer.isAutoFlush());
+        producer.emit(new TestResult(StatusValues.OK, null));
+        producer.emit(new TestResult(StatusValues.OK, null));
+        assertEquals(2, writer.flushes);
+        producer.flush();
+        assertEquals(3, writer.flushes);
+        producer.end();
+        assertEquals(4, writer.flushes);
+    }
+
+    @Test
+    public void testWriteFailure() {
+        Writer failing = new Writer() {
+            @Override
+            public void write(char[] cbuf, int off, int len) throws IOException {
+                throw new IOException("disk full");
+            }
+
+            @Override
+            public void flush() throws IOException {
+            }
+
+            @Override
+            public void close() throws IOException {
+            }
+        };
+        StreamingTapProducer producer = new StreamingTapProducer(failing);
+        try {
+            producer.begin();
+            fail("Expected a ProducerException");
+        } catch (ProducerException e) {
+            assertEquals("Failed to write TAP Stream: disk full", e.getMessage());
+            assertEquals("disk full", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void testFile() throws IOException {
+        File file = File.createTempFile("tap4j_", ".tap");
+        file.deleteOnExit();
+        StreamingTapProducer producer = new StreamingTapProducer(file, new DumperOptions());
+        producer.begin();
+        for (int i = 0; i < 1000; i++) {
+            producer.emit(new TestResult(i % 10 == 0 ? StatusValues.NOT_OK : StatusValues.OK, null));
+        }
+        producer.end();
+        TestSet testSet = new Tap13Parser().parseFile(file);
+        assertEquals(1000, testSet.getNumberOfTestResults());
+        assertEquals(100, testSet.getSummary().getFailed());
+        assertEquals(Integer.valueOf(1000), testSet.getPlan().getLastTestNumber());
+    }
+
+    @Test
+    public void testStates() {
+        StreamingTapProducer producer = new StreamingTapProducer(new StringWriter());
+        try {
+            producer.emit(new TestResult(StatusValues.OK, 1));
+            fail("Expected a ProducerException");
+        } catch (ProducerException e) {
+            assertEquals("TAP Stream not begun", e.getMessage());
+        }
+        producer.begin();
+        try {
+            producer.begin();
+            fail("Expected a ProducerException");
+        } catch (ProducerException e) {
+            assertEquals("TAP Stream already begun", e.getMessage());
+        }
+        try {
+            producer.endSubtest();
+            fail("Expected a ProducerException");
+        } catch (ProducerException e) {
+            assertEquals("No subtest to end", e.getMessage());
+        }
+        producer.end();
+        try {
+            producer.end();
+            fail("Expected a ProducerException");
+        } catch (ProducerException e) {
+            assertEquals("TAP Stream already ended", e.getMessage());
+        }
+    }
+
+}
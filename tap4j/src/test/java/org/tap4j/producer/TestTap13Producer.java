@@ -23,12 +23,14 @@
  */
 package org.tap4j.producer;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.StringWriter;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -38,6 +40,7 @@ import org.tap4j.model.Header;
 import org.tap4j.model.Plan;
 import org.tap4j.model.TestResult;
 import org.tap4j.model.TestSet;
+import org.tap4j.representer.Representer;
 import org.tap4j.util.StatusValues;
 
 /**
@@ -131,4 +134,17 @@ public class TestTap13Producer {
 
     }
 
+    @Test
+    public void testDumpToWriterWithPlainRepresenter() {
+        // a representer written before StreamingRepresenter existed
+        Representer representer = new Representer() {
+            public String representData(TestSet testSet) {
+                return "1..0\n";
+            }
+        };
+        StringWriter writer = new StringWriter();
+        new TapProducer(representer).dump(testSet, writer);
+        assertEquals("1..0\n", writer.toString());
+    }
+
 }
@@ -2,9 +2,15 @@ package org.tap4j.representer;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
 
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import org.junit.Test;
 import org.tap4j.model.BailOut;
@@ -16,6 +22,7 @@ import org.tap4j.model.Plan;
 import org.tap4j.model.SkipPlan;
 import org.tap4j.model.TapResult;
 import org.tap4j.model.TestResult;
+import org.tap4j.model.TestSet;
 import org.tap4j.model.Text;
 import org.tap4j.util.DirectiveValues;
 import org.tap4j.util.StatusValues;
@@ -240,4 +247,112 @@ public class TestTap13Representer {
         assertEquals("TAP version 13 # my comment\n", sw.toString());
     }
 
+    @Test
+    public void testRepresentDataToAppendable() {
+        TestSet subtest = new TestSet();
+        subtest.setPlan(new Plan(1));
+        subtest.addTestResult(new TestResult(StatusValues.OK, 1));
+        TestSet testSet = new TestSet();
+        testSet.setHeader(new Header(13));
+        testSet.setPlan(new Plan(2));
+        TestResult parent = new TestResult(StatusValues.OK, 1);
+        parent.setSubtest(subtest);
+        testSet.addTestResult(parent);
+        testSet.addTestResult(new TestResult(StatusValues.NOT_OK, 2));
+
+        Tap13Representer repr = new Tap13Representer();
+        String expected = "TAP version 13\n1..2\nok 1\n    1..1\n    ok 1\nnot ok 2\n";
+        assertEquals(expected, repr.representData(testSet));
+        StringBuilder sb = new StringBuilder();
+        repr.representData(testSet, sb);
+        assertEquals(expected, sb.toString());
+        StringWriter sw = new StringWriter();
+        repr.representData(testSet, sw);
+        assertEquals(expected, sw.toString());
+        assertEquals(0, repr.getOptions().getIndent());
+    }
+
+    @Test
+    public void testPrintNumber() {
+        Tap13Representer repr = new Tap13Representer();
+        StringWriter sw = new StringWriter();
+        PrintWriter pw = new PrintWriter(sw);
+        repr.printNumber(pw, 0);
+        pw.append(' ');
+        repr.printNumber(pw, 1234567890);
+        pw.append(' ');
+        repr.printNumber(pw, -42);
+        pw.append(' ');
+        repr.printNumber(pw, Integer.MIN_VALUE);
+        pw.append(' ');
+        repr.printNumber(pw, null);
+        assertEquals("0 1234567890 -42 -2147483648 null", sw.toString());
+    }
+
+    @Test
+    public void testPrintFiller() {
+        DumperOptions options = new DumperOptions();
+        options.setIndent(100);
+        Tap13Representer repr = new Tap13Representer(options);
+        StringWriter sw = new StringWriter();
+        PrintWriter pw = new PrintWriter(sw);
+        repr.printTapLine(pw, new TestResult(StatusValues.OK, 1));
+        assertEquals(String.format("%100s", "") + "ok 1\n", sw.toString());
+    }
+
+    @Test
+    public void testPrintSubtestDiagnostics() {
+        Map<String, Object> flat = new LinkedHashMap<String, Object>();
+        flat.put("message", "failed");
+        flat.put("line", 12);
+        Map<String, Object> nested = new LinkedHashMap<String, Object>();
+        nested.put("data", Collections.singletonMap("got", "a: b"));
+        TestSet subtest = new TestSet();
+        subtest.setPlan(new Plan(2));
+        TestResult first = new TestResult(StatusValues.NOT_OK, 1);
+        first.setDiagnostic(flat);
+        subtest.addTestResult(first);
+        TestResult second = new TestResult(StatusValues.NOT_OK, 2);
+        second.setDiagnostic(nested);
+        subtest.addTestResult(second);
+        TestSet testSet = new TestSet();
+        testSet.setPlan(new Plan(1));
+        TestResult parent = new TestResult(StatusValues.NOT_OK, 1);
+        parent.setSubtest(subtest);
+        testSet.addTestResult(parent);
+
+        DumperOptions options = new DumperOptions();
+        options.setPrintDiagnostics(true);
+        String expected = "1..1\nnot ok 1\n    1..2\n    not ok 1\n      ---\n      message: failed\n      line: 12\n"
+                + "      ...\n\n    not ok 2\n      ---\n      data:\n        got: 'a: b'\n      ...\n\n";
+        assertEquals(expected, new Tap13Representer(options).representData(testSet));
+    }
+
+    @Test
+    public void testRepresentDataToFailingAppendable() {
+        final IOException error = new IOException("disk full");
+        Appendable failing = new Appendable() {
+            public Appendable append(CharSequence csq) throws IOException {
+                throw error;
+            }
+
+            public Appendable append(CharSequence csq, int start, int end) throws IOException {
+                throw error;
+            }
+
+            public Appendable append(char c) throws IOException {
+                throw error;
+            }
+        };
+        TestSet testSet = new TestSet();
+        testSet.setPlan(new Plan(1));
+        testSet.addTestResult(new TestResult(StatusValues.OK, 1));
+        try {
+            new Tap13Representer().representData(testSet, failing);
+            fail("Expected a RepresenterException");
+        } catch (RepresenterException e) {
+            assertSame(error, e.getCause());
+        }
+    }
+
 }
@@ -64,6 +64,14 @@ public class TestTapJunitRepresenter {
         assertEquals("Wrong XML output", expected, s);
     }
 
+    @Test
+    public void testRepresentDataToAppendable() {
+        StreamingRepresenter r = new TapJunitRepresenter("Streamed");
+        StringBuilder sb = new StringBuilder();
+        r.representData(testSet, sb);
+        assertEquals(r.representData(testSet), sb.toString());
+    }
+
     @Test
     public void testWithFailures() {
         TestSet testSet2 = new TestSet();
@@ -0,0 +1,123 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.tap4j.model.TestSet;
+import org.tap4j.parser.Tap13Parser;
+
+/**
+ * Tests for {@link StringCache}.
+ *
+ * @since 4.2.1
+ */
+public class TestStringCache {
+
+    @Test
+    public void testGet() {
+        StringCache cache = new StringCache();
+        String first = new String("message");
+        String second = new String("message");
+        assertNotSame(first, second);
+        assertSame(first, cache.get(first));
+        assertSame(first, cache.get(second));
+        assertNull(cache.get(null));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testMaximumSize() {
+        StringCache cache = new StringCache(2);
+        assertEquals(2, cache.getMaximumSize());
+        String a = cache.get(new String("a"));
+        cache.get("b");
+        cache.get("c");
+        assertTrue(cache.size() <= 2);
+        String other = new String("a");
+        assertSame(other, cache.get(other));
+        assertNotSame(a, cache.get(other));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaximumSize() {
+        new StringCache(0);
+    }
+
+    @Test
+    public void testDeduplicate() {
+        StringCache cache = new StringCache();
+        String file = cache.get("file");
+        Map<String, Object> at = new LinkedHashMap<String, Object>();
+        at.put(new String("file"), new String("file"));
+        List<Object> backtrace = new ArrayList<Object>();
+        backtrace.add(new String("file"));
+        backtrace.add(Integer.valueOf(42));
+        Map<String, Object> diagnostic = new LinkedHashMap<String, Object>();
+        diagnostic.put("at", at);
+        diagnostic.put("backtrace", backtrace);
+        diagnostic.put("line", Integer.valueOf(42));
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> cached = (Map<String, Object>) cache.deduplicate(diagnostic);
+        assertEquals(diagnostic, cached);
+        @SuppressWarnings("unchecked")
+        Map<String, Object> cachedAt = (Map<String, Object>) cached.get("at");
+        assertSame(file, cachedAt.keySet().iterator().next());
+        assertSame(file, cachedAt.get("file"));
+        assertSame(backtrace, cached.get("backtrace"));
+        assertSame(file, backtrace.get(0));
+    }
+
+    /**
+     * Test that the maps and lists shared or recursive through YAML aliases
+     * are handled once, when parsing with a string cache.
+     */
+    @Test
+    public void testDeduplicateAliases() {
+        Tap13Parser parser = new Tap13Parser();
+        parser.setStringCache(new StringCache());
+        TestSet testSet = parser.parseTapStream("1..1\nok 1\n  ---\n"
+                + "  a: &x {b: *x}\n  l: &y [1, *y]\n"
+                + "  s: &z {c: file}\n  t: *z\n  ...\n");
+        Map<String, Object> diagnostic = testSet.getTestResult(1).getDiagnostic();
+        Map<?, ?> a = (Map<?, ?>) diagnostic.get("a");
+        assertSame(a, a.get("b"));
+        List<?> l = (List<?>) diagnostic.get("l");
+        assertSame(l, l.get(1));
+        assertSame(diagnostic.get("s"), diagnostic.get("t"));
+        assertEquals("file", ((Map<?, ?>) diagnostic.get("t")).get("c"));
+    }
+
+}
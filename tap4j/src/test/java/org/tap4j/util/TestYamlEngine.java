@@ -0,0 +1,161 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.yaml.snakeyaml.Yaml;
+
+/**
+ * Tests for {@link YamlEngine}.
+ *
+ * @since 4.2.1
+ */
+public class TestYamlEngine {
+
+    private static final String YAML = "message: hello\nseverity: fail\ndata:\n  got: 1\n  expect: 2\n";
+
+    /**
+     * Counts the SnakeYAML instances created.
+     */
+    private static class CountingYamlEngine extends YamlEngine {
+
+        private final AtomicInteger loaders = new AtomicInteger();
+
+        private final AtomicInteger dumpers = new AtomicInteger();
+
+        @Override
+        protected Yaml createLoader() {
+            loaders.incrementAndGet();
+            return super.createLoader();
+        }
+
+        @Override
+        protected Yaml createDumper() {
+            dumpers.incrementAndGet();
+            return super.createDumper();
+        }
+    }
+
+    @Test
+    public void testLoadAndDump() {
+        YamlEngine engine = YamlEngine.getDefault();
+        assertSame(engine, YamlEngine.getDefault());
+        assertEquals(new Yaml().load(YAML), engine.load(YAML));
+        Map<String, Object> diagnostic = new LinkedHashMap<String, Object>();
+        diagnostic.put("message", "hello");
+        String dumped = engine.dump(diagnostic);
+        assertTrue(dumped.startsWith("---"));
+        assertTrue(dumped.contains("message: hello"));
+        assertTrue(dumped.trim().endsWith("..."));
+        assertEquals(diagnostic, engine.load(dumped));
+    }
+
+    @Test
+    public void testDumpIndented() throws IOException {
+        YamlEngine engine = YamlEngine.getDefault();
+        Map<String, Object> flat = new LinkedHashMap<String, Object>();
+        flat.put("message", "hello");
+        flat.put("line", 3);
+        Map<String, Object> nested = new LinkedHashMap<String, Object>();
+        nested.put("message", "it's: nested");
+        nested.put("data", new Yaml().load(YAML));
+        nested.put("text", "line 1\nline 2\n");
+        for (Map<String, Object> map : Arrays.asList(flat, nested, new LinkedHashMap<String, Object>())) {
+            StringBuilder sb = new StringBuilder();
+            engine.dump(map, "    ", sb);
+            assertEquals(engine.dump(map).replaceAll("((?m)^)", "    "), sb.toString());
+            StringWriter sw = new StringWriter();
+            engine.dump(map, "", sw);
+            assertEquals(engine.dump(map), sw.toString());
+        }
+    }
+
+    @Test
+    public void testDumpIndentedWithCustomDumper() throws IOException {
+        CountingYamlEngine engine = new CountingYamlEngine();
+        StringBuilder sb = new StringBuilder();
+        engine.dump(Collections.singletonMap("message", "hello"), "  ", sb);
+        assertEquals(1, engine.dumpers.get());
+        assertEquals("  ---\n  message: hello\n  ...\n", sb.toString().replace("\r", ""));
+    }
+
+    @Test
+    public void testReusedByThread() {
+        CountingYamlEngine engine = new CountingYamlEngine();
+        for (int i = 0; i < 10; i++) {
+            engine.load(YAML);
+            engine.dump(Collections.singletonMap("i", i));
+        }
+        assertEquals(1, engine.loaders.get());
+        assertEquals(1, engine.dumpers.get());
+    }
+
+    @Test
+    public void testManyThreads() throws InterruptedException {
+        final CountingYamlEngine engine = new CountingYamlEngine();
+        final Object expected = new Yaml().load(YAML);
+        final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < 8; t++) {
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 500; i++) {
+                            assertEquals(expected, engine.load(YAML));
+                            Map<String, Object> map = Collections.<String, Object>singletonMap("value", i);
+                            assertEquals(map, engine.load(engine.dump(map)));
+                        }
+                    } catch (Throwable e) {
+                        errors.add(e);
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(Collections.emptyList(), errors);
+        assertEquals(8, engine.loaders.get());
+        assertEquals(8, engine.dumpers.get());
+    }
+
+}
@@ -0,0 +1,180 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.tap4j.BaseTapTest;
+import org.tap4j.model.TapElement;
+import org.tap4j.parser.DefaultTapEventHandler;
+import org.tap4j.parser.ParserException;
+import org.tap4j.parser.Tap13Parser;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.error.YAMLException;
+
+/**
+ * Tests for {@link YamlishReader}. Whatever it reads must be read the same
+ * way by SnakeYAML.
+ *
+ * @since 4.2.1
+ */
+public class TestYamlishReader extends BaseTapTest {
+
+    /**
+     * Diagnostics read without SnakeYAML.
+     */
+    private static final String[] SUPPORTED = {
+        "message: hello\n", "  message: hello world  \n  severity: fail\n", "line: 42\n", "line: -7\n",
+        "line: +7\n", "line: 0\n", "line: 999999999\n", "ok: true\n", "ok: Yes\n", "ok: OFF\n", "value: ~\n",
+        "value: null\n", "value:\n", "value:\nother: 1\n", "msg: 'it''s'\n", "msg: \"quoted\"  \n", "msg: ''\n",
+        "a.b/c-d e: x\n", "file: C:\\dev\\x.jpg\n", "dup: 1\ndup: 2\n", "url: http://host/path\n",
+        "msg: a, b [c] {d}\n", "msg: -5 and -x\n", "message: caf\u00e9\n", "last: no line feed",
+        "text: |\n  line 1\n    line 2\n  line 3: not a key\nnext: x\n", "text: |-\n  a\n  b\n",
+        "text: |+\n  a\n", "  text: |\n     deep\n     block\n  other: 1\n"
+    };
+
+    /**
+     * Diagnostics left to SnakeYAML.
+     */
+    private static final String[] UNSUPPORTED = {
+        "", "   \n", "a:\n  b: 1\n", "list:\n  - 1\n", "m: {a: 1}\n", "m: [1, 2]\n", "a: &x 1\n", "a: *x\n",
+        "a: !!str 1\n", "# comment\na: 1\n", "a: 1 # comment\n", "a: 1.5\n", "d: 2010-12-05T20:12:22\n",
+        "d: 2010-12-05\n", "n: 0x1F\n", "n: 1_000\n", "n: 12345678901\n", "n: 010\n", "s: \"esc\\n\"\n",
+        "s: 'multi\n  line'\n", "s: plain\n  continued\n", "s: >\n  folded\n", "s: |2\n   x\n",
+        "'quoted key': 1\n", "1: one\n", "true: x\n", "? complex\n", "---\na: 1\n", "a: 1\n\nb: 2\n",
+        "a:\tb\n", "- a\n", "a: =\n", "a: <<\n", "s: |\n  last", "a: x\u2028y\n", "a: x\u0085y\n",
+        "a : b\n", "a:b\n", "a: b:\n", "s: |\n  x\n y\n", "key: -\n", "a: 1\n b: 2\n"
+    };
+
+    @Test
+    public void testSupported() {
+        for (String yaml : SUPPORTED) {
+            Map<String, Object> map = YamlishReader.read(yaml);
+            assertNotNull(yaml, map);
+            assertSameAsSnakeYaml(yaml, map);
+        }
+    }
+
+    @Test
+    public void testUnsupported() {
+        for (String yaml : UNSUPPORTED) {
+            assertNull(yaml, YamlishReader.read(yaml));
+        }
+    }
+
+    @Test
+    public void testLiteral() {
+        Map<String, Object> map = YamlishReader.read("text: |\n  line 1\n    line 2\nnext: x\n");
+        assertEquals("line 1\n  line 2\n", map.get("text"));
+        assertEquals("x", map.get("next"));
+    }
+
+    /**
+     * Test that the keys longer than SnakeYAML accepts are left to it.
+     */
+    @Test
+    public void testLongKeys() {
+        String yaml = key(1024) + ": x\n";
+        Map<String, Object> map = YamlishReader.read(yaml);
+        assertNotNull(map);
+        assertSameAsSnakeYaml(yaml, map);
+        yaml = "  " + key(1025) + ": x\n";
+        assertNull(YamlishReader.read(yaml));
+        try {
+            new Yaml().load(yaml);
+            fail("Key too long for SnakeYAML");
+        } catch (YAMLException e) {
+            assertTrue(e.getMessage().contains("mapping values are not allowed here"));
+        }
+    }
+
+    /**
+     * Test the diagnostics of the TAP streams used by the other tests.
+     */
+    @Test
+    public void testCorpus() {
+        final List<String> diagnostics = new ArrayList<String>();
+        List<File> files = new ArrayList<File>();
+        listTapFiles(new File(getClass().getResource("/org/tap4j").getFile()), files);
+        Tap13Parser parser = new Tap13Parser("UTF-8", true, false, true);
+        parser.setLazyDiagnostics(true);
+        for (File file : files) {
+            try {
+                parser.parseFile(file, new DefaultTapEventHandler() {
+                    @Override
+                    public void onYamlBlock(TapElement tapElement) {
+                        diagnostics.add(tapElement.getRawDiagnostic());
+                    }
+                });
+            } catch (ParserException e) {
+                // not a valid stream, the diagnostics found are still tested
+            }
+        }
+        assertTrue(diagnostics.size() > 0);
+        for (String yaml : diagnostics) {
+            Map<String, Object> map = YamlishReader.read(yaml);
+            if (map != null) {
+                assertSameAsSnakeYaml(yaml, map);
+            }
+        }
+    }
+
+    /**
+     * @param length length of the key
+     * @return plain key with inner spaces
+     */
+    private static String key(int length) {
+        StringBuilder key = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            key.append(i % 7 == 3 ? ' ' : 'k');
+        }
+        return key.toString();
+    }
+
+    /**
+     * @param yaml YAML text
+     * @param map map read
+     */
+    private void assertSameAsSnakeYaml(String yaml, Map<String, Object> map) {
+        Object expected = new Yaml().load(yaml);
+        assertEquals(yaml, expected, map);
+        assertEquals(yaml, expected.getClass(), map.getClass());
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            Object value = ((Map<?, ?>) expected).get(entry.getKey());
+            assertEquals(yaml, value == null ? null : value.getClass(),
+                    entry.getValue() == null ? null : entry.getValue().getClass());
+        }
+    }
+
+}
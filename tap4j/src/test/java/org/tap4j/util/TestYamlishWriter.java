@@ -0,0 +1,126 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 tap4j team (see AUTHORS)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tap4j.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link YamlishWriter}. Whatever it writes must be written the same
+ * way by SnakeYAML.
+ *
+ * @since 4.2.1
+ */
+public class TestYamlishWriter {
+
+    private static final String LINE_BREAK = "\n";
+
+    /**
+     * Diagnostics written without SnakeYAML.
+     */
+    private static final Object[][] SUPPORTED = {
+        {"message", "hello"}, {"message", "hello world", "severity", "fail"}, {"line", 42},
+        {"line", -7}, {"size", 12345678901L}, {"ok", true}, {"ok", false}, {"value", null},
+        {"file", "C:\\dev\\x.jpg"}, {"url", "http://host/path"}, {"msg", "a, b [c] {d}"},
+        {"msg", "it's a#b"}, {"msg", "x:y"}, {"a.b/c-d e", "x"}, {"msg", "Yesterday"},
+        {"msg", "abcdefghij abcdefghij abcdefghij abcdefghij abcdefghij abcdefghij abcdefghi"},
+        {key(122), 1}, {key(122), null}
+    };
+
+    /**
+     * Diagnostics left to SnakeYAML.
+     */
+    private static final Object[][] UNSUPPORTED = {
+        {}, {"msg", ""}, {"msg", "yes"}, {"msg", "null"}, {"msg", "12"}, {"msg", "1.5"}, {"msg", "a: b"},
+        {"msg", "b:"}, {"msg", "a #b"}, {"msg", "-x"}, {"msg", "'x'"}, {"msg", "#x"}, {"msg", " x"},
+        {"msg", "x "}, {"msg", "...x"}, {"msg", "line\nbreak"}, {"msg", "tab\tx"}, {"msg", "caf\u00e9"},
+        {"msg", "2010-12-05"}, {"ok", "true"}, {"true", "x"}, {"n", 1.5}, {"n", (short) 1},
+        {"list", Arrays.asList(1, 2)}, {"data", Collections.singletonMap("got", 1)},
+        {"msg", "abcdefghij abcdefghij abcdefghij abcdefghij abcdefghij abcdefghij abcdefghij"},
+        {key(123), 1}, {key(123), true}, {key(129), 1}
+    };
+
+    @Test
+    public void testSupported() throws IOException {
+        YamlEngine engine = new YamlEngine();
+        for (Object[] entries : SUPPORTED) {
+            Map<Object, Object> map = map(entries);
+            StringBuilder sb = new StringBuilder();
+            assertTrue(map.toString(), YamlishWriter.write(map, "", LINE_BREAK, sb));
+            assertEquals(engine.dump(map), sb.toString());
+            sb.setLength(0);
+            assertTrue(YamlishWriter.write(map, "    ", LINE_BREAK, sb));
+            assertEquals(engine.dump(map).replaceAll("((?m)^)", "    "), sb.toString());
+        }
+    }
+
+    @Test
+    public void testUnsupported() throws IOException {
+        for (Object[] entries : UNSUPPORTED) {
+            Map<Object, Object> map = map(entries);
+            StringBuilder sb = new StringBuilder();
+            assertFalse(map.toString(), YamlishWriter.write(map, "  ", LINE_BREAK, sb));
+            assertEquals("", sb.toString());
+        }
+        Map<Object, Object> numberKey = new LinkedHashMap<Object, Object>();
+        numberKey.put(1, "one");
+        assertFalse(YamlishWriter.write(numberKey, "", LINE_BREAK, new StringBuilder()));
+        assertFalse(YamlishWriter.write("text", "", LINE_BREAK, new StringBuilder()));
+        assertFalse(YamlishWriter.write(null, "", LINE_BREAK, new StringBuilder()));
+    }
+
+    /**
+     * @param length length of the key
+     * @return plain key of the given length
+     */
+    private static String key(int length) {
+        StringBuilder sb = new StringBuilder(length);
+        while (sb.length() < length) {
+            sb.append('k');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @param entries keys followed by their values
+     * @return map of the entries, in order
+     */
+    private static Map<Object, Object> map(Object[] entries) {
+        Map<Object, Object> map = new LinkedHashMap<Object, Object>();
+        for (int i = 0; i < entries.length; i += 2) {
+            map.put(entries[i], entries[i + 1]);
+        }
+        return map;
+    }
+
+}